@@ -3,6 +3,9 @@
  */
 package edu.caltech.ipac.astro.conv;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 public class CoordConv {
    public static final int EQUATORIAL_J = 0;
    public static final int EQUATORIAL_B = 1;
@@ -11,6 +14,9 @@ public class CoordConv {
    public static final int SUPERGALACTIC   = 4;
    public static final int ECLIPTIC_J   = 13;
 
+   private record ConverterKey(int in_sys, double in_equinox, int out_sys, double out_equinox, double tobs) {}
+   private static final Map<ConverterKey, CoordConverter> converters= new ConcurrentHashMap<>();
+
 
    /**
     * do the conversion when there is no proper motion
@@ -31,6 +37,19 @@ public class CoordConv {
 	  return lonLat;
        }
 
+   /**
+    * Return a converter that does the same conversion as doConv with the setup
+    * done once, use it when converting many points.
+    * Converters are kept and shared, there are only a few system combinations in use.
+    */
+   public static CoordConverter getConverter(int in_sys, double in_equinox,
+                                             int out_sys, double out_equinox,
+                                             double tobs) {
+       return converters.computeIfAbsent(
+               new ConverterKey(in_sys, in_equinox, out_sys, out_equinox, tobs),
+               k -> new CoordConverter(in_sys, in_equinox, out_sys, out_equinox, tobs));
+   }
+
 
    /**
     * only handles the Proper Motion conversion from Equatorial B1950 to 
@@ -0,0 +1,202 @@
+/*
+ * License information at https://github.com/Caltech-IPAC/firefly/blob/master/License.txt
+ */
+package edu.caltech.ipac.astro.conv;
+
+/**
+ * Converts positions from one coordinate system to another many times without redoing the setup for each point.
+ * <p>
+ * The conversions between equatorial, ecliptic, galactic and supergalactic systems of the same kind (all Julian or
+ * all Besselian) are rotations, so the full rotation matrix is computed once when the converter is made and each
+ * point is only a matrix multiply.  A conversion between the Besselian (FK4) and the Julian (FK5) systems also removes
+ * or adds the E-terms and applies the FK5-FK4 systematic corrections, which are not a rotation; that step is done
+ * per point by {@link Jcnvc2}, with the rotations before and after it precomputed.
+ * <p>
+ * The matrices are found by passing the three unit axes through {@link Jcnvc2}, so the results agree with
+ * {@link CoordConv#doConv} to round off.  Use {@link CoordConv#getConverter} to get a shared instance.
+ */
+public class CoordConverter {
+
+    private static final double DTOR = Math.PI / 180.0;
+    private static final double RTOD = 180.0 / Math.PI;
+
+    private final boolean identity;
+    /** rotation done before the FK4/FK5 step, or the full conversion when there is not one, null if none */
+    private final double[] before;
+    /** rotation done after the FK4/FK5 step, null if none */
+    private final double[] after;
+    private final boolean fkStep;
+    private final int fkInSys, fkOutSys;
+    private final double fkInEquinox, fkOutEquinox, tobs;
+
+    CoordConverter(int in_sys, double in_equinox, int out_sys, double out_equinox, double tobs) {
+        this.tobs= tobs;
+        boolean inJulian= isJulian(in_sys);
+        boolean outJulian= isJulian(out_sys);
+        if (!isKnown(in_sys) || !isKnown(out_sys)) {
+            // not a system this class knows how to break up, let Jcnvc2 do all of it
+            identity= false;
+            before= after= null;
+            fkStep= true;
+            fkInSys= in_sys;
+            fkInEquinox= in_equinox;
+            fkOutSys= out_sys;
+            fkOutEquinox= out_equinox;
+        }
+        else if (inJulian==outJulian) {
+            identity= sameSystem(in_sys, in_equinox, out_sys, out_equinox);
+            before= identity ? null : makeMatrix(in_sys, in_equinox, out_sys, out_equinox, tobs);
+            after= null;
+            fkStep= false;
+            fkInSys= fkOutSys= 0;
+            fkInEquinox= fkOutEquinox= 0;
+        }
+        else if (outJulian) {      // Besselian to Julian: to B equatorial, to J2000, then to the output
+            double bEquinox= besselianEquinox(in_sys, in_equinox);
+            identity= false;
+            before= makeMatrixOrNull(in_sys, in_equinox, CoordConv.EQUATORIAL_B, bEquinox);
+            after= makeMatrixOrNull(CoordConv.EQUATORIAL_J, 2000.0, out_sys, out_equinox);
+            fkStep= true;
+            fkInSys= CoordConv.EQUATORIAL_B;
+            fkInEquinox= bEquinox;
+            fkOutSys= CoordConv.EQUATORIAL_J;
+            fkOutEquinox= 2000.0;
+        }
+        else {                     // Julian to Besselian: to J2000, to B equatorial, then to the output
+            double bEquinox= besselianEquinox(out_sys, out_equinox);
+            identity= false;
+            before= makeMatrixOrNull(in_sys, in_equinox, CoordConv.EQUATORIAL_J, 2000.0);
+            after= makeMatrixOrNull(CoordConv.EQUATORIAL_B, bEquinox, out_sys, out_equinox);
+            fkStep= true;
+            fkInSys= CoordConv.EQUATORIAL_J;
+            fkInEquinox= 2000.0;
+            fkOutSys= CoordConv.EQUATORIAL_B;
+            fkOutEquinox= bEquinox;
+        }
+    }
+
+    /**
+     * @return true if the conversion is only a rotation, then {@link #getMatrix()} describes all of it
+     */
+    public boolean isRotation() { return !fkStep; }
+
+    /**
+     * @return the 3x3 rotation matrix, row major, that takes a unit vector in the input system to the output system
+     * @throws IllegalStateException if the conversion is not a rotation
+     */
+    public double[] getMatrix() {
+        if (fkStep) throw new IllegalStateException("conversion between FK4 and FK5 systems is not a rotation");
+        return identity ? new double[] {1,0,0, 0,1,0, 0,0,1} : before.clone();
+    }
+
+    public LonLat convert(double lon, double lat) {
+        double[] lonA= {lon}, latA= {lat};
+        convert(lonA, latA, lonA, latA, 0, 1);
+        return new LonLat(lonA[0], latA[0]);
+    }
+
+    /**
+     * Convert all the points, the output arrays may be the same as the input arrays.
+     */
+    public void convert(double[] lon, double[] lat, double[] lonOut, double[] latOut) {
+        convert(lon, lat, lonOut, latOut, 0, lon.length);
+    }
+
+    /**
+     * Convert the points from start (inclusive) to end (exclusive), the output arrays may be the same as the input
+     * arrays. Angles are in degrees, the output longitude is in the range 0 to 360.
+     */
+    public void convert(double[] lon, double[] lat, double[] lonOut, double[] latOut, int start, int end) {
+        if (identity) {
+            if (lon!=lonOut) System.arraycopy(lon, start, lonOut, start, end-start);
+            if (lat!=latOut) System.arraycopy(lat, start, latOut, start, end-start);
+            return;
+        }
+        double[] pt= new double[2];
+        for (int i= start; i<end; i++) {
+            pt[0]= lon[i];
+            pt[1]= lat[i];
+            if (before!=null) rotate(before, pt);
+            if (fkStep) {
+                Jcnvc2.Jcnvc2Retval r= Jcnvc2.jcnvc2(fkInSys, fkInEquinox, pt[0], pt[1],
+                                                      fkOutSys, fkOutEquinox, 0, 0, tobs);
+                pt[0]= r._xnew;
+                pt[1]= r._ynew;
+            }
+            if (after!=null) rotate(after, pt);
+            lonOut[i]= pt[0];
+            latOut[i]= pt[1];
+        }
+    }
+
+    /**
+     * @param m the rotation matrix
+     * @param pt lon and lat in degrees, replaced by the rotated lon and lat
+     */
+    private static void rotate(double[] m, double[] pt) {
+        double cosLat= Math.cos(pt[1]*DTOR);
+        double vx= cosLat*Math.cos(pt[0]*DTOR);
+        double vy= cosLat*Math.sin(pt[0]*DTOR);
+        double vz= Math.sin(pt[1]*DTOR);
+        double x= m[0]*vx + m[1]*vy + m[2]*vz;
+        double y= m[3]*vx + m[4]*vy + m[5]*vz;
+        double z= m[6]*vx + m[7]*vy + m[8]*vz;
+        if (x==0 && y==0) {              // at the pole, same as Jcnvc2
+            pt[0]= 0;
+        }
+        else {
+            double lon= Math.atan2(y, x) * RTOD;
+            pt[0]= lon<0 ? lon+360 : lon;
+        }
+        pt[1]= Math.atan2(z, Math.sqrt(x*x + y*y)) * RTOD;
+    }
+
+    private double[] makeMatrixOrNull(int in_sys, double in_equinox, int out_sys, double out_equinox) {
+        return sameSystem(in_sys, in_equinox, out_sys, out_equinox) ? null :
+                makeMatrix(in_sys, in_equinox, out_sys, out_equinox, tobs);
+    }
+
+    /**
+     * The columns of the rotation matrix are the three unit axes of the input system in the output system.
+     */
+    private static double[] makeMatrix(int in_sys, double in_equinox, int out_sys, double out_equinox, double tobs) {
+        double[][] axes= {{0,0}, {90,0}, {0,90}};
+        double[] m= new double[9];
+        for (int col= 0; col<3; col++) {
+            Jcnvc2.Jcnvc2Retval r= Jcnvc2.jcnvc2(in_sys, in_equinox, axes[col][0], axes[col][1],
+                                                  out_sys, out_equinox, 0, 0, tobs);
+            double cosLat= Math.cos(r._ynew*DTOR);
+            m[col]= cosLat*Math.cos(r._xnew*DTOR);
+            m[3+col]= cosLat*Math.sin(r._xnew*DTOR);
+            m[6+col]= Math.sin(r._ynew*DTOR);
+        }
+        return m;
+    }
+
+    private static boolean isKnown(int sys) {
+        return sys==0 || sys==11 || sys==13 || (sys>=1 && sys<=4);
+    }
+
+    private static boolean isJulian(int sys) {
+        return sys==CoordConv.EQUATORIAL_J || sys==11 || sys==CoordConv.ECLIPTIC_J;
+    }
+
+    /** the equinox Jcnvc2 uses for the Besselian equatorial step of this system */
+    private static double besselianEquinox(int sys, double equinox) {
+        if (sys==CoordConv.GALACTIC || sys==CoordConv.SUPERGALACTIC) return 1950.0;
+        return equinox==0.0 ? 1950.0 : equinox;
+    }
+
+    private static boolean sameSystem(int in_sys, double in_equinox, int out_sys, double out_equinox) {
+        return normalizeSys(in_sys)==normalizeSys(out_sys) &&
+                normalizeEquinox(in_sys, in_equinox)==normalizeEquinox(out_sys, out_equinox);
+    }
+
+    private static int normalizeSys(int sys) { return sys==11 ? CoordConv.EQUATORIAL_J : sys; }
+
+    private static double normalizeEquinox(int sys, double equinox) {
+        if (sys==CoordConv.GALACTIC || sys==CoordConv.SUPERGALACTIC) return 1950.0;
+        if (equinox!=0.0) return equinox;
+        return isJulian(sys) ? 2000.0 : 1950.0;
+    }
+}
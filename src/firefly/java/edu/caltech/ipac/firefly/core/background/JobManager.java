@@ -81,6 +81,7 @@ public class JobManager {
         }
         // send updated jobInfo to client
         FluxAction addAction = new FluxAction(FluxAction.JOB_INFO, toJsonObject(jobInfo));
+        addAction.setSupersedeKey(FluxAction.JOB_INFO + "|" + jobInfo.getJobId());
         ServerEventManager.fireAction(addAction, ServerEvent.Scope.USER);
     }
 
@@ -25,6 +25,7 @@ public class ServerEvent implements Serializable {
     private DataType dataType = DataType.STRING;
     private Serializable data;
     private String from;
+    private String supersedeKey;
 //======================================================================
 //----------------------- Constructors ---------------------------------
 //======================================================================
@@ -73,6 +74,18 @@ public class ServerEvent implements Serializable {
         this.from = from;
     }
 
+    /**
+     * Events with the same supersede key replace each other; only the latest is sent
+     * when the previous one has not been delivered yet.  Null means every event is sent.
+     */
+    public String getSupersedeKey() {
+        return supersedeKey;
+    }
+
+    public void setSupersedeKey(String supersedeKey) {
+        this.supersedeKey = supersedeKey;
+    }
+
     public String toJsonString() {
         StringBuffer sb = new StringBuffer("{");
         sb.append("\"name\":\"").append(name.getName()).append("\", ");
@@ -180,6 +180,7 @@ public class ServerParams {
     public static final String LOGOUT = "CmdLogout";
     public static final String TILE_SIZE = "tileSize";
     public static final String DATA_COMPRESS = "dataCompress";
+    public static final String VIEWPORT = "viewport";
     public static final String POINT_SIZE= "pointSize";
     public static final String POINT_SIZE_X= "pointSizeX";
     public static final String POINT_SIZE_Y= "pointSizeY";
@@ -114,6 +114,14 @@ public class Counters {
 
 
 
+    /**
+     * @return the current value of a count, 0 if it was never updated
+     */
+    public long getCount(Category cat, String key) {
+        AtomicLong v= cntMap.get(makeMapKey(cat.toString(),key,Unit.CNT));
+        return v!=null ? v.get() : 0;
+    }
+
     public void initKey(Category cat, String key) { initKey(cat,key,0); }
     public void initKey(String cat, String key) { initKey(cat,key, 0); }
     public void initKey(Category cat, String key, long value) { initKey(cat,key,Unit.CNT,value); }
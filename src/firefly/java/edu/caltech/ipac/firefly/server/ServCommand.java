@@ -8,6 +8,11 @@ import edu.caltech.ipac.firefly.server.util.Logger;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Date: 10/24/16
@@ -23,6 +28,12 @@ public abstract class ServCommand extends ServerCommandAccess.HttpCommand {
         JSONObject json=new JSONObject();
         String jsonData;
         try {
+            ResultWriter rw = getCanCreateJson() ? getResultWriter(new SrvParam(sp.getParamMap())) : null;
+            if (rw != null) {
+                streamResult(res, rw);
+                return;
+            }
+
             String result = doCommand(new SrvParam(sp.getParamMap()));
 
             if (getCanCreateJson()) {
@@ -35,16 +46,37 @@ public abstract class ServCommand extends ServerCommandAccess.HttpCommand {
             }
         } catch (Exception e) {
             _log.error(e, e.getMessage());
+            jsonData = makeErrorJson(e);
+        }
+        sendJson(res, jsonData);
+    }
 
-            String[] errorCause = getErrorCause(e);
-
-            json.put("success", "false");
-            json.put("error", errorCause[0]);
-            if (errorCause[1] != null) json.put("cause1", errorCause[1] );   // kept cause1 for backward compatibility
-            //make it size=1 array since the UI side expects an array
-            jsonData= makeOneEntryArray(json);
+    /**
+     * Write the result directly to the response.  If it fails before anything is sent, the error is returned as json
+     * like the non-streaming case.  Otherwise, part of the result is already sent and it can no longer be replaced;
+     * the response is closed and the client will fail to parse the incomplete json.
+     */
+    private static void streamResult(HttpServletResponse res, ResultWriter rw) {
+        res.setContentType("application/json");
+        res.setCharacterEncoding("UTF-8");
+        try {
+            Writer out = new BufferedWriter(new OutputStreamWriter(res.getOutputStream(), StandardCharsets.UTF_8), 64*1024);
+            rw.write(out);
+            out.close();
+        } catch (Exception e) {
+            _log.error(e, "Failed while sending result: " + e.getMessage());
+            try {
+                if (!res.isCommitted()) {
+                    res.reset();
+                    sendJson(res, makeErrorJson(e));
+                } else {
+                    res.getOutputStream().close();
+                }
+            } catch (Exception ignored) {}      // connection may already be gone
         }
+    }
 
+    private static void sendJson(HttpServletResponse res, String jsonData) throws IOException {
         res.setContentType("application/json");
         res.setContentLength(jsonData.length());
         ServletOutputStream out = res.getOutputStream();
@@ -52,9 +84,34 @@ public abstract class ServCommand extends ServerCommandAccess.HttpCommand {
         out.close();
     }
 
+    private static String makeErrorJson(Exception e) {
+        String[] errorCause = getErrorCause(e);
+
+        JSONObject json = new JSONObject();
+        json.put("success", "false");
+        json.put("error", errorCause[0]);
+        if (errorCause[1] != null) json.put("cause1", errorCause[1] );   // kept cause1 for backward compatibility
+        //make it size=1 array since the UI side expects an array
+        return makeOneEntryArray(json);
+    }
+
     public boolean getCanCreateJson() { return true; }
     public abstract String doCommand(SrvParam params) throws Exception;
 
+    /**
+     * Commands with large results may override this to stream its json directly to the response
+     * instead of returning it as a String from doCommand.  All of the work that may fail should be
+     * done here; the returned ResultWriter should only serialize the result.
+     * @param params
+     * @return a ResultWriter, or null to use doCommand
+     * @throws Exception
+     */
+    public ResultWriter getResultWriter(SrvParam params) throws Exception { return null; }
+
+    public interface ResultWriter {
+        void write(Writer out) throws IOException;
+    }
+
     private static String makeOneEntryArray(JSONObject entry) {
         JSONArray jArray = new JSONArray();
         jArray.add(entry);
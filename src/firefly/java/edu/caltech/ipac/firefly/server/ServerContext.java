@@ -860,6 +860,7 @@ public class ServerContext {
                         DbMonitor.CLEANUP_INTVL,
                         DbMonitor.CLEANUP_INTVL,
                         TimeUnit.MILLISECONDS);
+                DbMonitor.registerMBean();
             } catch (Throwable e) {
                 e.printStackTrace();
             }
@@ -869,6 +870,7 @@ public class ServerContext {
             try {
                 System.out.println("contextDestroyed...");
                 DbMonitor.cleanup(true, false);
+                DbMonitor.unregisterMBean();
                 ((EhcacheProvider)CacheManager.getCacheProvider()).shutdown();
                 try {
                     SHORT_TASK_EXEC.shutdownNow();
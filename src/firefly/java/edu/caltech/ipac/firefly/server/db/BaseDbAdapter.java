@@ -57,6 +57,7 @@ import static edu.caltech.ipac.util.StringUtils.groupMatch;
  */
 abstract public class BaseDbAdapter implements DbAdapter {
     static final Logger.LoggerImpl LOGGER = Logger.getLogger();
+    static final String TOTAL_ROWS = "_TOTAL_ROWS_";      // transient column used to return the total row count with a page
     private File dbFile;
 
 
@@ -146,6 +147,7 @@ abstract public class BaseDbAdapter implements DbAdapter {
 
     public FileInfo ingestData(DataGroupSupplier dataGroupSupplier, String forTable) throws DataAccessException {
         StopWatch.getInstance().start("%s:ingestData for %s".formatted(getName(), forTable));
+        long start = System.currentTimeMillis();
 
         StopWatch.getInstance().start("  ingestData: getDataGroup");
         var dg = dataGroupSupplier.get();
@@ -167,6 +169,7 @@ abstract public class BaseDbAdapter implements DbAdapter {
         }
         FileInfo finfo = new FileInfo(getDbFile());
         StopWatch.getInstance().printLog("  ingestData: load data for " + forTable);
+        DbMonitor.dbChanged(this, System.currentTimeMillis() - start);
 
         StopWatch.getInstance().printLog("%s:ingestData for %s".formatted(getName(), forTable));
         return finfo;
@@ -175,6 +178,7 @@ abstract public class BaseDbAdapter implements DbAdapter {
 
     public void createTempResults(TableServerRequest treq, String resultSetID) {
         StopWatch.getInstance().start("%s:createTempResults for %s".formatted(getName(), resultSetID));
+        long start = System.currentTimeMillis();
         try {
             List<String> cols = isEmpty(treq.getInclColumns()) ? getColumnNames(getDataTable(), "\"")
                     : StringUtils.asList(treq.getInclColumns(), ",");
@@ -210,6 +214,7 @@ abstract public class BaseDbAdapter implements DbAdapter {
                 getJdbc().update(auxSql);
             } catch (Exception ax) {/*ignore table may not exist*/}
 
+            DbMonitor.dbChanged(this, System.currentTimeMillis() - start);
         }catch (RuntimeException e) {
             LOGGER.error("createTempResults failed with error: " + e.getMessage(),
                     "resultSetID: " + resultSetID,
@@ -221,6 +226,16 @@ abstract public class BaseDbAdapter implements DbAdapter {
     }
     
     protected String buildSqlFrom(TableServerRequest treq, String forTable) {
+        return buildSqlFrom(treq, forTable, false);
+    }
+
+    /**
+     * @param treq          request parameters used for select, where, order by, and limit
+     * @param forTable      table to run the query on.
+     * @param withTotalRows if true, the total row count of the query(before paging) is returned as an additional column, TOTAL_ROWS
+     * @return the sql statement
+     */
+    protected String buildSqlFrom(TableServerRequest treq, String forTable, boolean withTotalRows) {
         String selectPart = selectPart(treq);
         String wherePart = wherePart(treq);
         String orderByPart = orderByPart(treq);
@@ -232,25 +247,47 @@ abstract public class BaseDbAdapter implements DbAdapter {
                 selectPart = "select " + StringUtils.toString(getColumnNames(forTable, "\""));
             }
         }
+        if (withTotalRows) {
+            selectPart += ", %s as \"%s\"".formatted(totalRowsSql(), TOTAL_ROWS);
+        }
         return  "%s FROM %s %s %s %s".formatted(selectPart, forTable, wherePart, orderByPart, pagingPart);
     }
     
     /**
      * Similar to execQuery, except this method creates the SQL statement from the given request object.
      * It needs to take filter, sort, and paging into consideration.
+     * When paging, the total row count is cached per (table, where clause) in the database instance, so
+     * subsequent pages do not need to run the filter again.
      * @param treq      request parameters used for select, where, order by, and limit
      * @param forTable  table to run the query on.
      * @return
      */
     public DataGroupPart execRequestQuery(TableServerRequest treq, String forTable) throws DataAccessException {
-        String sql = buildSqlFrom(treq, forTable);
+        boolean isPaged = !isEmpty(pagingPart(treq));
+        String wherePart = wherePart(treq);
+        EmbeddedDbInstance db = (EmbeddedDbInstance) getDbInstance();
+
+        Integer totalRows = isPaged ? db.getRowCount(forTable, wherePart) : null;
+        boolean withTotalRows = isPaged && totalRows == null && useTotalRowsColumn(treq);
+
+        String sql = buildSqlFrom(treq, forTable, withTotalRows);
         DataGroup data = execQuery(sql, forTable);
 
+        if (withTotalRows) {
+            // an empty page(startIdx beyond last row) has no count; fallback to count(*) below
+            if (data.size() > 0) totalRows = ((Number) data.getData(TOTAL_ROWS, 0)).intValue();
+            data.removeDataDefinition(TOTAL_ROWS);
+        }
+
         int rowCnt = data.size();
-        if (!isEmpty(pagingPart(treq))) {
-            // fetch total row count for the query; datagroup may contain partial results(paging)
-            String cntSql = "select count(*) FROM %s %s".formatted(forTable, wherePart(treq));
-            rowCnt = getJdbc().queryForInt(cntSql);
+        if (isPaged) {
+            if (totalRows == null) {
+                // fetch total row count for the query; datagroup may contain partial results(paging)
+                String cntSql = "select count(*) FROM %s %s".formatted(forTable, wherePart);
+                totalRows = getJdbc().queryForInt(cntSql);
+            }
+            db.setRowCount(forTable, wherePart, totalRows);
+            rowCnt = totalRows;
         }
 
         DataGroupPart page = EmbeddedDbUtil.toDataGroupPart(data, treq);
@@ -262,6 +299,15 @@ abstract public class BaseDbAdapter implements DbAdapter {
         return page;
     }
 
+    /**
+     * @return true if the total row count can be returned together with the paged results
+     */
+    boolean useTotalRowsColumn(TableServerRequest treq) {
+        if (totalRowsSql() == null) return false;
+        String cols = treq.getParam(INCL_COLUMNS);
+        return cols == null || !cols.toLowerCase().contains("distinct");   // window function is applied before distinct
+    }
+
     /**
      * Executes the give sql and returns the results as a DataGroup.  If refTable is provided, it will query the
      * ?_DD and ?_META tables of this refTable and add the information into the returned DataGroup.
@@ -375,6 +421,8 @@ abstract public class BaseDbAdapter implements DbAdapter {
             var sql = "ALTER TABLE %s DROP COLUMN \"%s\"".formatted(getDataTable(), col.getKeyName());
             execUpdate(sql);
             throw handleSqlExp("Add column failed", e);
+        } finally {
+            clearRowCounts();
         }
 
     }
@@ -439,6 +487,8 @@ abstract public class BaseDbAdapter implements DbAdapter {
                 renameColumn(newCol.getKeyName(), editColName);
             }
             throw handleSqlExp("Update column failed", e);
+        } finally {
+            clearRowCounts();
         }
     }
 
@@ -576,6 +626,7 @@ abstract public class BaseDbAdapter implements DbAdapter {
 
     public void clearCachedData() {
         LOGGER.debug("DbAdapter -> compacting DB: %s".formatted(getDbFile().getPath()));
+        clearRowCounts();
         List<String> tables = getTempTables();
         if (tables.size() > 0) {
             // remove all temporary tables
@@ -612,6 +663,20 @@ abstract public class BaseDbAdapter implements DbAdapter {
     protected void removeDbFile() {}
     protected String rowNumSql() { return "ROWNUM"; }
 
+    /**
+     * @return a window function returning the total row count of a query, or null if not supported
+     */
+    protected String totalRowsSql() { return null; }
+
+    /**
+     * remove cached row counts; call this when the content of the tables changed.
+     */
+    protected void clearRowCounts() {
+        if (getDbFile() == null) return;
+        EmbeddedDbInstance db = getDbInstances().get(getDbFile().getPath());
+        if (db != null) db.clearRowCounts();
+    }
+
     protected List<String> getTempTables() {
         return getTableNames().stream()
                 .filter(n -> !MAIN_TABLES.contains(n)).collect(Collectors.toList());
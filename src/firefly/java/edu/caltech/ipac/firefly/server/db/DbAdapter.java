@@ -20,6 +20,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Function;
 
@@ -74,6 +75,11 @@ public interface DbAdapter {
      */
     boolean useTxnDuringLoad();
 
+    /**
+     * @return true if this database holds its data on the JVM heap; closing it relieves heap pressure
+     */
+    default boolean isDataOnHeap() { return true; }
+
     /**
      * @param forTable  table to query
      * @param inclCols  only for these columns.  null to get all columns
@@ -271,12 +277,14 @@ public interface DbAdapter {
         int rowCnt = -1;
         int totalRows = -1;
         long memory = -1;
+        long tempStorage = -1;      // bytes spilled to temporary storage once the database ran out of memory
 
         public int tblCnt() { return tblCnt; }
         public int colCnt() { return colCnt;}
         public int rowCnt() { return rowCnt; }
         public int totalRows() { return totalRows;}
         public long memory() { return memory;}
+        public long tempStorage() { return tempStorage;}
     }
 
     /**
@@ -291,6 +299,8 @@ public interface DbAdapter {
         boolean isCompact;
         DbStats dbStats;
         boolean isResourceDb;
+        long rebuildCost;                                               // time(ms) spent ingesting data and creating results; the cost of evicting it
+        Map<String, Integer> rowCounts = new ConcurrentHashMap<>();   // total row count keyed by table and where clause
 
         EmbeddedDbInstance(String type, DbAdapter dbAdapter, String dbUrl, String driver) {
             this(type, dbAdapter, dbUrl, driver, System.currentTimeMillis());
@@ -347,6 +357,31 @@ public interface DbAdapter {
 
         public void updateStats() { this.dbStats = dbAdapter.getDbStats(); }
         public DbStats getDbStats() { return dbStats == null ? new DbStats() : dbStats; }
+
+        public long getRebuildCost() { return rebuildCost; }
+        public void addRebuildCost(long elapsed) { rebuildCost += Math.max(elapsed, 0); }
+
+        /**
+         * The higher the score, the sooner this database should be evicted.
+         * It is the idle time weighted by the memory(or rows when memory is not known) it holds,
+         * discounted by the time it would take to rebuild it.
+         * @param now   the current time in ms
+         * @return the eviction score of this database
+         */
+        public double evictionScore(long now) {
+            DbStats stats = getDbStats();
+            long size = stats.memory > 0 ? stats.memory : stats.totalRows;
+            return (double) Math.max(now - lastAccessed, 0) * Math.max(size, 1) / (1 + rebuildCost/1000.0);
+        }
+
+        /**
+         * @param forTable  the table queried
+         * @param wherePart the where clause of the query; empty for all rows
+         * @return the cached total row count of the given query, or null if not cached
+         */
+        public Integer getRowCount(String forTable, String wherePart) { return rowCounts.get(forTable + "|" + wherePart); }
+        public void setRowCount(String forTable, String wherePart, int rowCount) { rowCounts.put(forTable + "|" + wherePart, rowCount); }
+        public void clearRowCounts() { rowCounts.clear(); }
     }
 
     /**
@@ -363,6 +398,14 @@ public interface DbAdapter {
         public long peakMemRows;
         public long memory;
         public long peakMemory;
+        public long tempStorage;
+        public long maxTempStorage = DbMonitor.MAX_TEMP_STORAGE;
+        public long sharedDbs;      // results shared across sessions; see SharedResultStore
+        public long sharedSize;
+        public long sharedHits;
+        public long sharedLinks;    // databases currently linked to shared results
+        public long evictions;      // databases closed before expiry to free memory
+        public long lastEviction;
         public long lastCleanup;
     }
 
@@ -49,14 +49,17 @@ public class DbDataIngestor {
 
         int tblIdx = req.getIntParam(TBL_INDEX, 0);
 
+        long start = System.currentTimeMillis();
         try {
-            return switch (format) {
+            FileInfo finfo = switch (format) {
                 case IPACTABLE -> ingestIpacTableDirectly(dbAdapter, srcFile, meta, searchForSpectrum);
                 case VO_TABLE -> ingestVoTableDirectly(dbAdapter, source, meta, tblIdx, searchForSpectrum);
                 case CSV, TSV, PARQUET -> DuckDbReadable.castInto(format, dbAdapter).ingestDataDirectly(source, meta);
                 case FITS -> ingestFitsTable(req, dbAdapter, source, tblIdx);
                 default -> throw new DataAccessException("Unsupported format, file:" + source);
             };
+            DbMonitor.dbChanged(dbAdapter, System.currentTimeMillis() - start);
+            return finfo;
         } catch (IOException e) {
             throw new DataAccessException(e);
         }
@@ -68,13 +71,18 @@ public class DbDataIngestor {
     }
 
     static FileInfo ingestIpacTableDirectly(DbAdapter dbAdapter, File source, DataGroup meta, boolean searchForSpectrum) throws IOException {
-        IpacTableReader.parseTable(new TableParseHandler.DbIngest(dbAdapter, meta, searchForSpectrum), source);   // only the first table.
+        IpacTableReader.parseTableInParallel(new TableParseHandler.DbIngest(dbAdapter, meta, searchForSpectrum), source);   // only the first table.
         return new FileInfo(dbAdapter.getDbFile());
     }
 
     static FileInfo ingestFitsTable(TableServerRequest req, DbAdapter dbAdapter, String source, int tableIndex) throws IOException, DataAccessException {
-        var table = FITSTableReader.convertFitsToDataGroup(source, req, FITSTableReader.DEFAULT, tableIndex);
-        dbAdapter.ingestData(() -> table, dbAdapter.getDataTable());
+        // stream the rows of a table into the database; spectrum search is done by the reader with the HDU header
+        boolean streamed = FITSTableReader.parseTable(new TableParseHandler.DbIngest(dbAdapter, null, false), source, req, tableIndex);
+        if (!streamed) {
+            // an image read as a table
+            var table = FITSTableReader.convertFitsToDataGroup(source, req, FITSTableReader.DEFAULT, tableIndex);
+            dbAdapter.ingestData(() -> table, dbAdapter.getDataTable());
+        }
         return new FileInfo(dbAdapter.getDbFile());
     }
 
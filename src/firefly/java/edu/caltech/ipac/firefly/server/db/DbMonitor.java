@@ -4,14 +4,22 @@
 
 package edu.caltech.ipac.firefly.server.db;
 
+import edu.caltech.ipac.firefly.server.ServerContext;
 import edu.caltech.ipac.firefly.server.util.Logger;
 import edu.caltech.ipac.util.AppProperties;
 
+import javax.management.ObjectName;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Date: 5/3/24
@@ -20,7 +28,7 @@ import java.util.stream.Collectors;
  * @version : $
  */
 public
-class DbMonitor {
+class DbMonitor implements DbMonitorMBean {
     /*
       CLEAN UP POLICY:
         A rough estimate:
@@ -31,7 +39,12 @@ class DbMonitor {
         There are two stages of clean-up; compact(remove all temp tables), then shutdown(remove from memory)
         - Compact DB once it has idled longer than a time based on COMPACT_FACTOR
         - Shutdown DB once it has expired; idle longer than MAX_IDLE_TIME
-        - Shutdown DB based on LRU(Least Recently Used) once the total rows have exceeded MAX_MEMORY_ROWS
+        - Evict DB once the total memory(or rows) exceeded MAX_MEMORY(or MAX_MEMORY_ROWS), the temp storage exceeded MAX_TEMP_STORAGE,
+          or the heap is above HEAP_HIGH_WATER.  Memory is what the database itself reports; for DuckDB, this is off-heap.
+          Heap pressure only evicts DBs that hold their data on the heap.
+          Besides CLEANUP_INTVL, eviction is checked in the background after ingest and createTempResults, at most once every STATS_INTVL.
+          DBs are evicted in the order of their eviction score(idle time x memory / rebuild cost) until usage is below LOW_WATER_FACTOR.
+          Evicted DBs are shutdown but their files are kept; they are reopened on next access.
 
         Default settings:
           - CLEANUP_INTVL:  1 minutes
@@ -39,11 +52,21 @@ class DbMonitor {
           - MAX_IDLE_TIME_RSC: MAX_IDLE_TIME
           - COMPACT_FACTOR: .5
           - MAX_MEMORY_ROWS:  1m rows for every 1GB of memory at startup. minimum of 2 million.
+          - MAX_MEMORY: 75% of max heap; for DuckDB, duckdb.max.memory
+          - MAX_TEMP_STORAGE: 10GB
+          - LOW_WATER_FACTOR: .8
+          - HEAP_HIGH_WATER: .9
      */
     public static final long MAX_IDLE_PROP  = AppProperties.getLongProperty("dbTbl.maxIdle", 15);                       // idle time before DB is shutdown.  Defaults to 15 minutes.
     public static final long MAX_IDLE_TIME_RSC = AppProperties.getLongProperty("dbRsc.maxIdle", MAX_IDLE_PROP) * 1000 * 60;  // same as dbTbl.maxIdle, but for Resource tables.
     public static final float COMPACT_FACTOR = AppProperties.getFloatProperty("dbTbl.compactFactor", 0.5f);             // when to compact the DB as a factor of MAX_IDLE.  defaults to 1/2 of MAX_IDLE_TIME
     public static final int  CLEANUP_INTVL  = 1000 * 60;        // check every 1 minutes
+    public static final float LOW_WATER_FACTOR = AppProperties.getFloatProperty("dbTbl.lowWaterFactor", 0.8f);         // once evicting, continue until usage is below this factor of the high-water mark
+    public static final float HEAP_HIGH_WATER = AppProperties.getFloatProperty("dbTbl.heapHighWater", 0.9f);           // evict when heap used after GC exceeds this factor of max heap
+    public static final long IN_USE_TIME = 5 * 1000;            // DBs accessed within the last 5 seconds are not evicted
+    public static final long STATS_INTVL = 5 * 1000;            // after a change, refresh stats and check for eviction at most every 5 seconds
+    public static final long MAX_TEMP_STORAGE = AppProperties.getLongProperty("dbTbl.maxTempStorage", 10L * 1024 * 1024 * 1024);  // evict when DBs spilled more than this to temp storage
+    public static final String MBEAN_NAME = "edu.caltech.ipac.firefly:type=DbMonitor";
 
     public static long MAX_MEM_ROWS   = AppProperties.getLongProperty("dbTbl.maxMemRows", maxMemRows());
     public static long MAX_MEMORY   = AppProperties.getLongProperty("dbTbl.maxMemory", maxMemory());
@@ -66,6 +89,8 @@ class DbMonitor {
     private static final ConcurrentHashMap<String, DbAdapter.EmbeddedDbInstance> dbInstances = new ConcurrentHashMap<>();
     private static final DbAdapter.EmbeddedDbStats dbStats = new DbAdapter.EmbeddedDbStats();
     private static final Logger.LoggerImpl LOGGER = Logger.getLogger();
+    private static final AtomicBoolean evicting = new AtomicBoolean();
+    private static final AtomicLong lastChangeCheck = new AtomicLong();
 
     public static ConcurrentHashMap<String, DbAdapter.EmbeddedDbInstance> getDbInstances() {
         return dbInstances;
@@ -84,6 +109,7 @@ class DbMonitor {
 
         int memRows = dbInstances.values().stream().mapToInt((db) -> db.getDbStats().totalRows).sum();
         long memory = dbInstances.values().stream().mapToLong((db) -> db.getDbStats().memory).sum();
+        long tempStorage = dbInstances.values().stream().mapToLong((db) -> Math.max(db.getDbStats().tempStorage, 0)).sum();
         dbStats.maxMemRows = MAX_MEM_ROWS;
         dbStats.maxMemory = MAX_MEMORY;
         dbStats.memDbs = dbInstances.size();
@@ -91,6 +117,12 @@ class DbMonitor {
         dbStats.peakMemRows = Math.max(memRows, dbStats.peakMemRows);
         dbStats.memory = Math.max(-1,memory);
         dbStats.peakMemory = Math.max(memory, dbStats.peakMemory);
+        dbStats.tempStorage = tempStorage;
+        dbStats.maxTempStorage = MAX_TEMP_STORAGE;
+        dbStats.sharedDbs = SharedResultStore.getCount();
+        dbStats.sharedSize = SharedResultStore.getSize();
+        dbStats.sharedHits = SharedResultStore.getHits();
+        dbStats.sharedLinks = SharedResultStore.getLinkCount();
         return dbStats;
     }
 
@@ -130,15 +162,11 @@ class DbMonitor {
                     .filter((db) -> db.mayCompact())
                     .forEach((db) -> db.dbAdapter.compact());
 
-            var sysStats = getRuntimeStats(true);
-            boolean useMemory = sysStats.memory > 0;
-
-            // remove search results based on LRU(least recently used) when count is greater than the high-water mark
-            if (useMemory && sysStats.memory > MAX_MEMORY) {
-                doMemoryCleanup(deleteFile);
-            } else if (sysStats.memRows > MAX_MEM_ROWS) {
-                doRowCleanup(deleteFile);
+            // evict search results when usage is greater than the high-water mark
+            if (isOverHighWater(getRuntimeStats(true))) {
+                evict(deleteFile);
             }
+            SharedResultStore.cleanup();
             dbStats.lastCleanup = System.currentTimeMillis();
         } catch (Exception e) {
             LOGGER.error(e);
@@ -146,29 +174,156 @@ class DbMonitor {
 
     }
 
-    private static void doRowCleanup(boolean deleteFile) {
-        long cRows = 0;
-        List<DbAdapter.EmbeddedDbInstance> active = new ArrayList<>(dbInstances.values());
-        Collections.sort(active, (db1, db2) -> Long.compare(db2.getLastAccessed(), db1.getLastAccessed()));  // sorted descending..
-        for (DbAdapter.EmbeddedDbInstance db : active) {
-            cRows += db.getDbStats().totalRows;
-            if (cRows > MAX_MEM_ROWS) {
-                db.dbAdapter.close(deleteFile);
+    /**
+     * Called after a database has changed, i.e. data ingested or results created.  Instead of waiting for the next cleanup,
+     * refresh the stats and evict when the high-water mark is crossed.  This is done in the background, at most once every STATS_INTVL,
+     * so that ingest does not wait on querying every database.
+     * @param dbAdapter the database that changed
+     * @param elapsed   time(ms) it took; added to the cost of rebuilding this database
+     */
+    public static void dbChanged(DbAdapter dbAdapter, long elapsed) {
+        File dbFile = dbAdapter.getDbFile();
+        DbAdapter.EmbeddedDbInstance db = dbFile == null ? null : dbInstances.get(dbFile.getPath());
+        if (db == null) return;
+
+        db.addRebuildCost(elapsed);
+        long now = System.currentTimeMillis();
+        long last = lastChangeCheck.get();
+        if (now - last < STATS_INTVL || !lastChangeCheck.compareAndSet(last, now)) return;
+        if (!evicting.compareAndSet(false, true)) return;
+        ServerContext.SHORT_TASK_EXEC.submit(() -> {
+            try {
+                if (isOverHighWater(getRuntimeStats(true))) evict(false);
+            } catch (Exception e) {
+                LOGGER.error(e);
+            } finally {
+                evicting.set(false);
             }
+        });
+    }
+
+    /**
+     * @return the open databases ordered by their eviction score; highest first
+     */
+    public static List<DbAdapter.EmbeddedDbInstance> evictionQueue() {
+        long now = System.currentTimeMillis();
+        List<DbAdapter.EmbeddedDbInstance> queue = new ArrayList<>(dbInstances.values());
+        queue.sort(Comparator.comparingDouble((DbAdapter.EmbeddedDbInstance db) -> db.evictionScore(now)).reversed());
+        return queue;
+    }
+
+    /**
+     * Evict databases in the order of evictionQueue until usage is below the low-water mark.
+     * Under heap pressure, only databases holding their data on the heap are evicted, until their usage is
+     * below the low-water mark relative to their current usage.
+     * @param deleteFile  true to also delete the files; otherwise, the databases are reopened on next access
+     * @return the number of databases evicted
+     */
+    static int evict(boolean deleteFile) {
+        var sysStats = getRuntimeStats();
+        boolean useMemory = sysStats.memory > 0;
+        long usage = useMemory ? sysStats.memory : sysStats.memRows;
+        long target = (long) ((useMemory ? MAX_MEMORY : MAX_MEM_ROWS) * LOW_WATER_FACTOR);
+        long tempUsage = sysStats.tempStorage;
+        long tempTarget = (long) (MAX_TEMP_STORAGE * LOW_WATER_FACTOR);
+        long heapUsage = dbInstances.values().stream()
+                .filter(db -> db.dbAdapter.isDataOnHeap())
+                .mapToLong(db -> usageOf(db, useMemory)).sum();
+        long heapTarget = getHeapUsage(true) > HEAP_HIGH_WATER ? (long) (heapUsage * LOW_WATER_FACTOR) : Long.MAX_VALUE;
+
+        int count = 0;
+        long now = System.currentTimeMillis();
+        for (DbAdapter.EmbeddedDbInstance db : evictionQueue()) {
+            boolean overDb = usage > target || tempUsage > tempTarget;
+            if (!overDb && heapUsage <= heapTarget) break;
+            if (now - db.getLastAccessed() < IN_USE_TIME) continue;
+            boolean onHeap = db.dbAdapter.isDataOnHeap();
+            if (!overDb && !onHeap) continue;       // only heap pressure remains; closing this one won't relieve it
+
+            long dbUsage = usageOf(db, useMemory);
+            usage -= dbUsage;
+            tempUsage -= Math.max(db.getDbStats().tempStorage, 0);
+            if (onHeap) heapUsage -= dbUsage;
+            db.dbAdapter.close(deleteFile);
+            count++;
+        }
+        if (count > 0) {
+            LOGGER.info("Evicted %d databases; %d remain open.".formatted(count, dbInstances.size()));
+            dbStats.evictions += count;
+            dbStats.lastEviction = System.currentTimeMillis();
         }
+        return count;
     }
 
-    private static void doMemoryCleanup(boolean deleteFile) {
-        long memory = 0;
-        List<DbAdapter.EmbeddedDbInstance> active = new ArrayList<>(dbInstances.values());
-        Collections.sort(active, (db1, db2) -> Long.compare(db2.getLastAccessed(), db1.getLastAccessed()));  // sorted descending..
-        for (DbAdapter.EmbeddedDbInstance db : active) {
-            memory += db.getDbStats().memory;
-            if (memory > MAX_MEMORY) {
-                db.dbAdapter.close(deleteFile);
-            }
+    private static long usageOf(DbAdapter.EmbeddedDbInstance db, boolean useMemory) {
+        return Math.max(useMemory ? db.getDbStats().memory : db.getDbStats().totalRows, 0);
+    }
+
+    static boolean isOverHighWater(DbAdapter.EmbeddedDbStats sysStats) {
+        boolean useMemory = sysStats.memory > 0;
+        boolean overDb = useMemory ? sysStats.memory > MAX_MEMORY : sysStats.memRows > MAX_MEM_ROWS;
+        if (overDb || sysStats.tempStorage > MAX_TEMP_STORAGE) return true;
+        return getHeapUsage(true) > HEAP_HIGH_WATER && dbInstances.values().stream().anyMatch(db -> db.dbAdapter.isDataOnHeap());
+    }
+
+    /**
+     * @param afterGC  true to use the usage measured after the last garbage collection, which excludes garbage
+     * @return the fraction of the max heap in use, based on the tenured pool
+     */
+    private static double getHeapUsage(boolean afterGC) {
+        double usage = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() != MemoryType.HEAP || !pool.isUsageThresholdSupported() || !pool.isCollectionUsageThresholdSupported()) continue;
+            MemoryUsage mu = afterGC ? pool.getCollectionUsage() : pool.getUsage();
+            if (mu != null && mu.getMax() > 0) usage = Math.max(usage, (double) mu.getUsed() / mu.getMax());
+        }
+        return usage;
+    }
+
+//====================================================================
+//  JMX
+//====================================================================
+
+    public static void registerMBean() {
+        try {
+            var server = ManagementFactory.getPlatformMBeanServer();
+            var name = new ObjectName(MBEAN_NAME);
+            if (!server.isRegistered(name)) server.registerMBean(new DbMonitor(), name);
+        } catch (Exception e) {
+            LOGGER.warn(e, "Unable to register " + MBEAN_NAME);
         }
     }
+
+    public static void unregisterMBean() {
+        try {
+            var server = ManagementFactory.getPlatformMBeanServer();
+            var name = new ObjectName(MBEAN_NAME);
+            if (server.isRegistered(name)) server.unregisterMBean(name);
+        } catch (Exception e) {
+            LOGGER.warn(e, "Unable to unregister " + MBEAN_NAME);
+        }
+    }
+
+    public int getOpenDbs() { return dbInstances.size(); }
+    public long getMemory() { return getRuntimeStats().memory; }
+    public long getMaxMemory() { return MAX_MEMORY; }
+    public long getMemRows() { return getRuntimeStats().memRows; }
+    public long getMaxMemRows() { return MAX_MEM_ROWS; }
+    public long getTempStorage() { return getRuntimeStats().tempStorage; }
+    public double getHeapUsage() { return getHeapUsage(false); }
+    public long getEvictions() { return dbStats.evictions; }
+    public long getLastEviction() { return dbStats.lastEviction; }
+
+    public String[] getEvictionQueue() {
+        long now = System.currentTimeMillis();
+        return evictionQueue().stream()
+                .map(db -> "%s idle(s):%d rows:%d memory:%d rebuild(ms):%d score:%.0f".formatted(
+                        db.getDbFile().getName(), (now - db.getLastAccessed())/1000, db.getDbStats().totalRows,
+                        db.getDbStats().memory, db.getRebuildCost(), db.evictionScore(now)))
+                .toArray(String[]::new);
+    }
+
+    public int evictNow() { return evict(false); }
 }
 /*
  * THIS SOFTWARE AND ANY RELATED MATERIALS WERE CREATED BY THE CALIFORNIA
@@ -0,0 +1,31 @@
+/*
+ * License information at https://github.com/Caltech-IPAC/firefly/blob/master/License.txt
+ */
+
+package edu.caltech.ipac.firefly.server.db;
+
+/**
+ * Management interface of DbMonitor, exposed via JMX as edu.caltech.ipac.firefly:type=DbMonitor
+ */
+public interface DbMonitorMBean {
+    int getOpenDbs();
+    long getMemory();
+    long getMaxMemory();
+    long getMemRows();
+    long getMaxMemRows();
+    long getTempStorage();
+    double getHeapUsage();
+    long getEvictions();
+    long getLastEviction();
+
+    /**
+     * @return the open databases in the order they will be evicted, with the stats used to rank them
+     */
+    String[] getEvictionQueue();
+
+    /**
+     * evict databases until usage is below the low-water mark
+     * @return the number of databases evicted
+     */
+    int evictNow();
+}
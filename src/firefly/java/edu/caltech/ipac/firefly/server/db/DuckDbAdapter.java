@@ -4,11 +4,13 @@
 package edu.caltech.ipac.firefly.server.db;
 
 import edu.caltech.ipac.firefly.data.TableServerRequest;
+import edu.caltech.ipac.firefly.data.table.SelectionInfo;
 import edu.caltech.ipac.firefly.server.ServerContext;
 import edu.caltech.ipac.firefly.server.db.spring.JdbcFactory;
 import edu.caltech.ipac.firefly.server.query.DataAccessException;
 import edu.caltech.ipac.table.DataGroup;
 import edu.caltech.ipac.table.DataType;
+import edu.caltech.ipac.table.PrimitiveList;
 import edu.caltech.ipac.util.AppProperties;
 import org.duckdb.DuckDBAppender;
 import org.duckdb.DuckDBConnection;
@@ -25,6 +27,7 @@ import java.sql.Statement;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 
@@ -43,12 +46,6 @@ public class DuckDbAdapter extends BaseDbAdapter {
     private static int threadCnt=1;    // min 125mb per thread.  recommend 5gb per thread; we will config 1gb per thread but not more than 4.
 
     static {
-        if (DEF_DB_TYPE.equals(NAME)) {
-            // no need manual cleanup; let DuckDB handles it.
-            DbMonitor.MAX_MEMORY = 1_000_000_000_000L;
-            DbMonitor.MAX_MEM_ROWS = DbMonitor.MAX_MEMORY;
-            DbMonitor.MAX_IDLE_TIME = 60 * 1000 * 60;       // (60 minutes) since we don't compact duckdb, this is the time before info is removed from DB Monitor
-        }
         if (isEmpty(maxMemory)) {
             ServerContext.Info sInfo = ServerContext.getSeverInfo();
             var dbMaxMem = Math.max(sInfo.pMemory() - sInfo.jvmMax(), 500*1024*1024);     // Greater of available RAM or 500MB.
@@ -56,10 +53,27 @@ public class DuckDbAdapter extends BaseDbAdapter {
             maxMemory = "%.1fG".formatted(maxMemInGb);
             threadCnt = Math.max(Math.min(4, (int)maxMemInGb), 1);
         }
+        if (DEF_DB_TYPE.equals(NAME)) {
+            // DuckDB keeps its data off-heap; evict based on the memory DuckDB reports, up to the same budget given to each database.
+            DbMonitor.MAX_MEMORY = AppProperties.getLongProperty("dbTbl.maxMemory", toBytes(maxMemory));
+            DbMonitor.MAX_MEM_ROWS = Long.MAX_VALUE;
+            DbMonitor.MAX_IDLE_TIME = 60 * 1000 * 60;       // (60 minutes) since we don't compact duckdb, this is the time before info is removed from DB Monitor
+        }
+    }
+
+    /**
+     * @param size  a DuckDB memory setting; e.g. 2G, 5.5GB, 500MiB
+     * @return the size in bytes
+     */
+    static long toBytes(String size) {
+        String s = size.trim().toUpperCase().replaceAll("I?B$", "");
+        int power = "KMGT".indexOf(s.isEmpty() ? ' ' : s.charAt(s.length() - 1)) + 1;
+        double val = Double.parseDouble(power > 0 ? s.substring(0, s.length() - 1).trim() : s);
+        return (long) (val * Math.pow(1024, power));
     }
 
     private static final String [] customFunctions = {
-            decimate_key, lg, nvl2, deg2pix
+            decimate_key, lg, nvl2, deg2pix, rotate_lon, rotate_lat
     };
 
     private static final List<String> SUPPORTS = List.of("duckdb");
@@ -69,6 +83,8 @@ public class DuckDbAdapter extends BaseDbAdapter {
 
     public String getName() { return NAME; }
 
+    public boolean isDataOnHeap() { return false; }
+
     protected EmbeddedDbInstance createDbInstance() {
         String filePath = getDbFile() == null ? "" : getDbFile().getAbsolutePath();
         String dbUrl = "jdbc:duckdb:" + filePath;
@@ -115,6 +131,67 @@ public class DuckDbAdapter extends BaseDbAdapter {
         return getDbFile();
     }
 
+    /**
+     * Export the main tables of this database into the given directory, one Parquet file per table.
+     * Used by SharedResultStore.
+     * @param dir the directory to export into.  It will be created.
+     */
+    void exportTo(File dir) {
+        dir.mkdirs();
+        for (String tbl : getTableNames()) {
+            if (MAIN_TABLES.contains(tbl)) {
+                execUpdate("COPY %s TO '%s' (FORMAT PARQUET)".formatted(tbl, sqlPath(new File(dir, tbl + ".parquet"))));
+            }
+        }
+    }
+
+    /**
+     * Use the tables exported by exportTo instead of ingesting the data.
+     * DATA becomes a read-only view of the shared file.  DD, META and AUX are small and updated by the session, so they are copied.
+     * @param dir the directory of the exported tables
+     */
+    void linkShared(File dir) {
+        for (String tbl : MAIN_TABLES) {
+            File f = new File(dir, tbl + ".parquet");
+            if (!f.exists()) continue;
+            String type = tbl.equals(getDataTable()) ? "VIEW" : "TABLE";
+            execUpdate("CREATE %s %s AS SELECT * FROM read_parquet('%s')".formatted(type, tbl, sqlPath(f)));
+        }
+    }
+
+    /**
+     * Copy-on-write; when DATA is a view of shared results, replace it with a copy of its own before it is modified.
+     */
+    private void ensureOwnData() {
+        String tbl = getDataTable();
+        String sql = "SELECT count(*) FROM duckdb_views() WHERE database_name = current_database() AND view_name = '%s'".formatted(tbl);
+        if (JdbcFactory.getSimpleTemplate(getDbInstance()).queryForInt(sql) > 0) {
+            execUpdate("CREATE TABLE %s_COPY AS SELECT * FROM %s".formatted(tbl, tbl));
+            execUpdate("DROP VIEW %s".formatted(tbl));
+            execUpdate("ALTER TABLE %s_COPY RENAME TO %s".formatted(tbl, tbl));
+        }
+        SharedResultStore.unlink(getDbFile());
+    }
+
+    private static String sqlPath(File f) {
+        return f.getAbsolutePath().replace("'", "''");
+    }
+
+    public void addColumn(DataType col, int atIndex, String expression, String preset, String resultSetID, SelectionInfo si) throws DataAccessException {
+        ensureOwnData();
+        super.addColumn(col, atIndex, expression, preset, resultSetID, si);
+    }
+
+    public void updateColumn(DataType newCol, String expression, String editColName, String preset, String resultSetID, SelectionInfo si) throws DataAccessException {
+        ensureOwnData();
+        super.updateColumn(newCol, expression, editColName, preset, resultSetID, si);
+    }
+
+    public void deleteColumn(String cname) {
+        ensureOwnData();
+        super.deleteColumn(cname);
+    }
+
     public void compact() {
         // no need to compact.  it will automatically push out of memory.
         ((EmbeddedDbInstance) getDbInstance()).setCompact(true);
@@ -123,6 +200,7 @@ public class DuckDbAdapter extends BaseDbAdapter {
     protected void shutdown(EmbeddedDbInstance db) {}
     protected void removeDbFile() {
         var dbFile = getDbFile();
+        SharedResultStore.unlink(dbFile);
         if (dbFile.exists()) {
             if (!dbFile.delete()) {
                 LOGGER.trace("Unable to remove duckdb file:" + dbFile.getAbsolutePath());
@@ -135,8 +213,17 @@ public class DuckDbAdapter extends BaseDbAdapter {
         return "row_number() over()";
     }
 
+    protected String totalRowsSql() {
+        return "count(*) over()";
+    }
+
     public List<String> getTableNames() {
-        String sql = "SELECT table_name FROM duckdb_tables()";
+        // DATA is a view when linked to shared results; see SharedResultStore
+        String sql = """
+                SELECT table_name FROM duckdb_tables() WHERE database_name = current_database()
+                UNION ALL
+                SELECT view_name FROM duckdb_views() WHERE database_name = current_database() AND NOT internal
+                """;
         return JdbcFactory.getSimpleTemplate(getDbInstance()).query(sql, (rs, i) -> rs.getString(1));
     }
 
@@ -152,12 +239,17 @@ public class DuckDbAdapter extends BaseDbAdapter {
                 dbStats.totalRows = rs.getInt(2);
                 return null;
             });
+            jdbc.queryForObject("select sum(memory_usage_bytes), sum(temporary_storage_bytes) from duckdb_memory()", (rs, i) -> {
+                dbStats.memory = rs.getLong(1);
+                dbStats.tempStorage = rs.getLong(2);
+                return null;
+            });
+            // no row when DATA is a view of shared results; those are accounted for once by SharedResultStore
             jdbc.queryForObject("SELECT column_count, estimated_size from duckdb_tables() where table_name = 'DATA'", (rs, i) -> {
                 dbStats.colCnt = rs.getInt(1);
                 dbStats.rowCnt = rs.getInt(2);
                 return null;
             });
-            dbStats.memory = jdbc.queryForLong("select sum(memory_usage_bytes) from duckdb_memory()");
 
         } catch (Exception ignored) {}
         return dbStats;
@@ -180,12 +272,7 @@ public class DuckDbAdapter extends BaseDbAdapter {
             if (totalRows > 0) {
                 // using try-with-resources to automatically close the appender at the end of the scope
                 try (var appender = conn.createAppender(DuckDBConnection.DEFAULT_SCHEMA, tblName)) {
-                    List<Integer> aryIdx = colIdxWithArrayData(colsAry);
-                    for (int r = 0; r < totalRows; r++) {
-                        Object[] row = dg.get(r).getData();
-                        aryIdx.forEach(idx -> row[idx] = serialize(row[idx]));      // serialize array data if necessary
-                        addRow(appender, row, r);
-                    }
+                    appendRows(appender, dg, 0);
                     appender.flush();
                 }
             }
@@ -197,46 +284,98 @@ public class DuckDbAdapter extends BaseDbAdapter {
         return totalRows;
     }
 
+    /**
+     * Append all rows of the given DataGroup, reading the values column by column without boxing.
+     * ROW_IDX and ROW_NUM are added to the end of each row.
+     * @param appender      the appender of a table created from EmbeddedDbUtil.makeDbCols(dg)
+     * @param dg            the data to append
+     * @param ridxOffset    the ROW_IDX of the first row
+     * @throws SQLException
+     */
+    public static void appendRows(DuckDBAppender appender, DataGroup dg, int ridxOffset) throws SQLException {
+        DataType[] dgCols = dg.getDataDefinitions();       // without ROW_IDX and ROW_NUM
+        List<Boolean> isAry = isColumnTypeArray(dgCols);
+        PrimitiveList[] colData = Arrays.stream(dgCols).map(dt -> dg.getColumnData(dt.getKeyName())).toArray(PrimitiveList[]::new);
+        for (int r = 0; r < dg.size(); r++) {
+            appender.beginRow();
+            for (int c = 0; c < colData.length; c++) {
+                if (isAry.get(c)) {
+                    appendValue(appender, serialize(colData[c].get(r)));      // serialize array data if necessary
+                } else {
+                    appendValue(appender, colData[c], r);
+                }
+            }
+            appender.append(ridxOffset + r);         // add ROW_IDX
+            appender.append(ridxOffset + r);         // add ROW_NUM
+            appender.endRow();
+        }
+    }
+
     public static void addRow(DuckDBAppender appender, Object[] row, int ridx) throws SQLException {
         appender.beginRow();
         for (Object d : row) {
-            if (d == null) {
-                appender.append(null);
-            } else if (d instanceof Boolean v) {
-                appender.append(v);
-            } else if (d instanceof Byte v) {
-                appender.append(v);
-            } else if (d instanceof Short v) {
-                appender.append(v);
-            } else if (d instanceof Integer v) {
-                appender.append(v);
-            } else if (d instanceof Long v) {
-                appender.append(v);
-            } else if (d instanceof Float v) {
-                appender.append(v);
-            } else if (d instanceof Double v) {
-                appender.append(v);
-            } else if (d instanceof String v) {
-                appender.append(v);
-            } else if (d instanceof BigDecimal v) {
-                appender.appendBigDecimal(v);
-            } else if (d instanceof java.sql.Date v) {
-                appender.appendLocalDateTime(v.toLocalDate().atStartOfDay());
-            } else if (d instanceof LocalDate v) {
-                appender.appendLocalDateTime(v.atStartOfDay());
-            } else if (d instanceof LocalDateTime v) {
-                appender.appendLocalDateTime(v.atZone(ZoneOffset.UTC).toLocalDateTime());
-            } else if (d instanceof Date v) {
-                appender.appendLocalDateTime(LocalDateTime.ofInstant(v.toInstant(), ZoneOffset.UTC));  // date/time should be stored as utc.
-            } else {
-                throw new IllegalStateException("Unexpected value: " + d);
-            }
+            appendValue(appender, d);
         }
         appender.append(ridx);         // add ROW_IDX
         appender.append(ridx);         // add ROW_NUM
         appender.endRow();
     }
 
+    /**
+     * append the value at the given row of a column without boxing when the column is stored as primitives
+     */
+    static void appendValue(DuckDBAppender appender, PrimitiveList col, int ridx) throws SQLException {
+        if (col == null || col.isNull(ridx)) {
+            appender.append(null);
+        } else if (col instanceof PrimitiveList.Doubles l) {
+            appender.append(l.getDouble(ridx));
+        } else if (col instanceof PrimitiveList.Floats l) {
+            appender.append(l.getFloat(ridx));
+        } else if (col instanceof PrimitiveList.Longs l) {
+            appender.append(l.getLong(ridx));
+        } else if (col instanceof PrimitiveList.Integers l) {
+            appender.append(l.getInt(ridx));
+        } else if (col instanceof PrimitiveList.Booleans l) {
+            appender.append(l.getBoolean(ridx));
+        } else {
+            appendValue(appender, col.get(ridx));
+        }
+    }
+
+    static void appendValue(DuckDBAppender appender, Object d) throws SQLException {
+        if (d == null) {
+            appender.append(null);
+        } else if (d instanceof Boolean v) {
+            appender.append(v);
+        } else if (d instanceof Byte v) {
+            appender.append(v);
+        } else if (d instanceof Short v) {
+            appender.append(v);
+        } else if (d instanceof Integer v) {
+            appender.append(v);
+        } else if (d instanceof Long v) {
+            appender.append(v);
+        } else if (d instanceof Float v) {
+            appender.append(v);
+        } else if (d instanceof Double v) {
+            appender.append(v);
+        } else if (d instanceof String v) {
+            appender.append(v);
+        } else if (d instanceof BigDecimal v) {
+            appender.appendBigDecimal(v);
+        } else if (d instanceof java.sql.Date v) {
+            appender.appendLocalDateTime(v.toLocalDate().atStartOfDay());
+        } else if (d instanceof LocalDate v) {
+            appender.appendLocalDateTime(v.atStartOfDay());
+        } else if (d instanceof LocalDateTime v) {
+            appender.appendLocalDateTime(v.atZone(ZoneOffset.UTC).toLocalDateTime());
+        } else if (d instanceof Date v) {
+            appender.appendLocalDateTime(LocalDateTime.ofInstant(v.toInstant(), ZoneOffset.UTC));  // date/time should be stored as utc.
+        } else {
+            throw new IllegalStateException("Unexpected value: " + d);
+        }
+    }
+
     @Override
     // DuckDB do not have a global property to make all LIKE operations case-insensitive
     String wherePart(TableServerRequest treq) {
@@ -4,9 +4,14 @@
 
 package edu.caltech.ipac.firefly.server.db;
 
+import edu.caltech.ipac.astro.conv.CoordConv;
+import edu.caltech.ipac.astro.conv.CoordConverter;
 import edu.caltech.ipac.util.FileUtil;
+import edu.caltech.ipac.visualize.plot.CoordinateSys;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.stream.Collectors;
 
 /**
  * Date: 11/3/24
@@ -29,6 +34,46 @@ public class DuckDbUDF {
         END
     """;
 
+    // rotate a lon/lat position, in degrees, by the row major 3x3 matrix m0..m8.  see coordConvSql()
+    public static final String rotate_lon = """
+        CREATE FUNCTION rotate_lon(lon, lat, m0, m1, m2, m3, m4, m5, m6, m7, m8) AS
+        (DEGREES(ATAN2(
+            m3*COS(RADIANS(lat))*COS(RADIANS(lon)) + m4*COS(RADIANS(lat))*SIN(RADIANS(lon)) + m5*SIN(RADIANS(lat)),
+            m0*COS(RADIANS(lat))*COS(RADIANS(lon)) + m1*COS(RADIANS(lat))*SIN(RADIANS(lon)) + m2*SIN(RADIANS(lat))
+        )) + 360) % 360
+    """;
+    public static final String rotate_lat = """
+        CREATE FUNCTION rotate_lat(lon, lat, m0, m1, m2, m3, m4, m5, m6, m7, m8) AS
+        DEGREES(ATAN2(
+            m6*COS(RADIANS(lat))*COS(RADIANS(lon)) + m7*COS(RADIANS(lat))*SIN(RADIANS(lon)) + m8*SIN(RADIANS(lat)),
+            SQRT(POW(m0*COS(RADIANS(lat))*COS(RADIANS(lon)) + m1*COS(RADIANS(lat))*SIN(RADIANS(lon)) + m2*SIN(RADIANS(lat)), 2) +
+                 POW(m3*COS(RADIANS(lat))*COS(RADIANS(lon)) + m4*COS(RADIANS(lat))*SIN(RADIANS(lon)) + m5*SIN(RADIANS(lat)), 2))
+        ))
+    """;
+
+    /**
+     * Returns the SQL expressions that convert the given lon and lat columns from one coordinate system to another
+     * inside the database, using the converter's precomputed matrix with rotate_lon and rotate_lat.
+     * @param from convert from
+     * @param to convert to
+     * @param lon the longitude column or expression, in degrees
+     * @param lat the latitude column or expression, in degrees
+     * @return the longitude and latitude expressions
+     * @throws IllegalArgumentException if the conversion is not a rotation, i.e. it is between FK4 and FK5 systems
+     */
+    public static String[] coordConvSql(CoordinateSys from, CoordinateSys to, String lon, String lat) {
+        double tobs = from.equals(CoordinateSys.EQ_B1950) ? 1983.5 : 0.0;
+        CoordConverter conv = CoordConv.getConverter(from.getJsys(), from.getEquinox(), to.getJsys(), to.getEquinox(), tobs);
+        if (!conv.isRotation()) {
+            throw new IllegalArgumentException("Conversion from %s to %s can not be done in SQL".formatted(from, to));
+        }
+        String args = Arrays.stream(conv.getMatrix()).mapToObj(Double::toString).collect(Collectors.joining(", "));
+        return new String[] {
+                "rotate_lon(%s, %s, %s)".formatted(lon, lat, args),
+                "rotate_lat(%s, %s, %s)".formatted(lon, lat, args)
+        };
+    }
+
     private static String importDeg2Pix() {
         try {
             String deg2pixFile = "/edu/caltech/ipac/firefly/resources/healpix-java.sql";
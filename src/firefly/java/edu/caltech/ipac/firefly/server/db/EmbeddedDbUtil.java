@@ -134,20 +134,61 @@ public class EmbeddedDbUtil {
         } catch (Exception ignored) {
             return dg;                // no row found
         }
-        List<Boolean> isAryType = isColumnTypeArray(dg.getDataDefinitions());
+        DataType[] cols = dg.getDataDefinitions();
+        List<Boolean> isAryType = isColumnTypeArray(cols);
+        PrimitiveList[] colData = Arrays.stream(cols).map(dt -> dg.getColumnData(dt.getKeyName())).toArray(PrimitiveList[]::new);
+        int row = dg.size();
         do {
-            DataObject row = new DataObject(dg);
-            for (int i = 0; i < dg.getDataDefinitions().length; i++) {
-                DataType dt = dg.getDataDefinitions()[i];
-                Object val = convertToType(dt.getDataType(), rs, i, isAryType.get(i));  // ResultSet index starts from 1
-                row.setDataElement(dt, val);
+            for (int i = 0; i < cols.length; i++) {
+                setValue(colData[i], row, rs, i, cols[i].getDataType(), isAryType.get(i));
             }
-            dg.add(row);
+            row++;
         } while (rs.next()) ;
+        dg.setSize(row);
         logger.trace("converting a %,d rows ResultSet into a DataGroup".formatted(dg.size()));
         return dg;
     }
 
+    /**
+     * Read the value of the current row directly into the column's storage.
+     * Numeric and boolean columns are read as primitives, avoiding boxing.
+     */
+    private static void setValue(PrimitiveList list, int row, ResultSet rs, int idx, Class clz, boolean isAry) throws SQLException {
+        int cIdx = idx+1;      // ResultSet index starts from 1
+        if (!isAry) {
+            if (list instanceof PrimitiveList.Doubles l) {
+                double v = rs.getDouble(cIdx);
+                if (rs.wasNull()) l.set(row, null); else l.setDouble(row, v);
+                return;
+            } else if (list instanceof PrimitiveList.Floats l) {
+                float v = rs.getFloat(cIdx);
+                if (rs.wasNull()) l.set(row, null); else l.setFloat(row, v);
+                return;
+            } else if (list instanceof PrimitiveList.Longs l) {
+                long v = rs.getLong(cIdx);
+                if (rs.wasNull()) l.set(row, null); else l.setLong(row, v);
+                return;
+            } else if (list instanceof PrimitiveList.Integers l) {
+                int v = rs.getInt(cIdx);
+                if (rs.wasNull()) l.set(row, null); else l.setInt(row, v);
+                return;
+            } else if (list instanceof PrimitiveList.Shorts l) {
+                short v = rs.getShort(cIdx);
+                if (rs.wasNull()) l.set(row, null); else l.setShort(row, v);
+                return;
+            } else if (list instanceof PrimitiveList.Bytes l) {
+                byte v = rs.getByte(cIdx);
+                if (rs.wasNull()) l.set(row, null); else l.setByte(row, v);
+                return;
+            } else if (list instanceof PrimitiveList.Booleans l) {
+                boolean v = rs.getBoolean(cIdx);
+                if (rs.wasNull()) l.set(row, null); else l.setBoolean(row, v);
+                return;
+            }
+        }
+        list.set(row, convertToType(clz, rs, idx, isAry));
+    }
+
     private static Object convertToType(Class clz, ResultSet rs, int idx, boolean isAry) throws SQLException {
         int cIdx = idx+1;      // ResultSet index starts from 1
         Object val = rs.getObject(cIdx);
@@ -0,0 +1,323 @@
+/*
+ * License information at https://github.com/Caltech-IPAC/firefly/blob/master/License.txt
+ */
+
+package edu.caltech.ipac.firefly.server.db;
+
+import edu.caltech.ipac.firefly.data.TableServerRequest;
+import edu.caltech.ipac.firefly.server.ServerContext;
+import edu.caltech.ipac.firefly.server.util.Logger;
+import edu.caltech.ipac.util.AppProperties;
+import edu.caltech.ipac.util.FileUtil;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static edu.caltech.ipac.util.StringUtils.isEmpty;
+
+/**
+ * A store of search results shared by all sessions.
+ *
+ * Processors whose results do not depend on the user may opt in by declaring the parameters that make up the results.
+ * The first search creates its database as usual, then its tables are exported here as read-only Parquet files.
+ * Subsequent identical searches, from any session, link their database to these files instead of fetching and ingesting
+ * the data again.  The DATA table of a linked database is a view of the shared file; only the small DD, META, and AUX
+ * tables are copied.  Sorting and filtering create their results in the session's own database.  The first column edit
+ * replaces the view with a copy of the data(copy-on-write), so changes do not affect others.
+ *
+ * An entry is kept as long as databases are linked to it.  Once unused, it is removed after dbShared.maxIdle minutes,
+ * or when the store exceeds dbShared.maxSize bytes, starting with the least recently used.
+ *
+ * The entries and links are saved in an index file in the store's directory every time they change, and loaded on first
+ * use.  Session databases outlive a restart, so their views must still find the shared files they point to.
+ */
+public class SharedResultStore {
+    public static final long MAX_IDLE_TIME = AppProperties.getLongProperty("dbShared.maxIdle", 60) * 1000 * 60;          // defaults to 60 minutes
+    public static final long MAX_SIZE = AppProperties.getLongProperty("dbShared.maxSize", 5L * 1024 * 1024 * 1024);      // defaults to 5GB
+
+    private static final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Entry> links = new ConcurrentHashMap<>();           // keyed by the path of the linked database file
+    private static final Logger.LoggerImpl LOGGER = Logger.getLogger();
+    private static final AtomicLong hits = new AtomicLong();
+    private static final String INDEX_FILE = "index.properties";
+    private static volatile boolean loaded = false;
+
+    /**
+     * @param treq      the search request
+     * @param params    the parameters that make up the results
+     * @return a key identifying the results of the given request, independent of the user or session
+     */
+    public static String makeKey(TableServerRequest treq, Collection<String> params) {
+        StringBuilder sb = new StringBuilder(treq.getRequestId());
+        params.stream().distinct().sorted().forEach(p -> {
+            String v = treq.getParam(p);
+            if (!isEmpty(v)) sb.append('|').append(p).append('=').append(v.trim());
+        });
+        return sb.toString();
+    }
+
+    /**
+     * Link the database of the given adapter to the shared results, if they exist.
+     * Only DuckDB databases are supported.
+     * @param key       key returned by makeKey
+     * @param dbAdapter the adapter of the database to link
+     * @return true if the database is now linked to the shared results
+     */
+    public static boolean restore(String key, DbAdapter dbAdapter) {
+        ensureLoaded();
+        Entry entry = entries.get(key);
+        if (!(dbAdapter instanceof DuckDbAdapter duckDb) || entry == null || !entry.acquire()) return false;
+        File dbFile = dbAdapter.getDbFile();
+        try {
+            duckDb.initDbFile();            // remove any database that may have been created for this request
+            links.put(dbFile.getPath(), entry);
+            duckDb.linkShared(entry.dir);
+            entry.lastAccessed = System.currentTimeMillis();
+            hits.incrementAndGet();
+            saveIndex();
+            LOGGER.debug("SharedResultStore: linked %s to %s".formatted(dbFile.getName(), entry.dir.getName()));
+            return true;
+        } catch (Exception e) {
+            LOGGER.warn(e, "SharedResultStore: unable to restore " + key);
+            if (!unlink(dbFile)) entry.release();
+            dbAdapter.close(true);
+            return false;
+        }
+    }
+
+    /**
+     * Save the tables of the given database so it can be used by identical requests.
+     * Only DuckDB databases are supported; others are ignored.
+     * @param key       key returned by makeKey
+     * @param dbAdapter the adapter of the newly created database
+     */
+    public static void save(String key, DbAdapter dbAdapter) {
+        ensureLoaded();
+        if (entries.containsKey(key) || !(dbAdapter instanceof DuckDbAdapter duckDb)) return;
+
+        File dir = new File(getStoreDir(), "%s_%d".formatted(DigestUtils.md5Hex(key), System.currentTimeMillis()));
+        try {
+            duckDb.exportTo(dir);
+            if (entries.putIfAbsent(key, new Entry(dir)) != null) {
+                FileUtil.deleteDirectory(dir);       // someone else saved it first
+            } else {
+                saveIndex();
+            }
+        } catch (Exception e) {
+            LOGGER.warn(e, "SharedResultStore: unable to save " + key);
+            FileUtil.deleteDirectory(dir);
+        }
+    }
+
+    /**
+     * @param dbFile    the database file
+     * @return the directory of the shared results the given database is linked to, or null if it's not linked
+     */
+    public static File getLinked(File dbFile) {
+        ensureLoaded();
+        Entry entry = dbFile == null ? null : links.get(dbFile.getPath());
+        return entry == null ? null : entry.dir;
+    }
+
+    /**
+     * Called when the given database no longer uses the shared results, i.e. it is deleted, or it has made its own copy.
+     * @param dbFile    the database file
+     * @return true if the database was linked
+     */
+    public static boolean unlink(File dbFile) {
+        ensureLoaded();
+        Entry entry = dbFile == null ? null : links.remove(dbFile.getPath());
+        if (entry == null) return false;
+        entry.lastAccessed = System.currentTimeMillis();
+        entry.release();
+        saveIndex();
+        return true;
+    }
+
+    /**
+     * remove entries that have expired, then the least recently used ones when the store exceeded MAX_SIZE.
+     * Also remove files that are no longer referenced, e.g. from a previous run.
+     */
+    public static void cleanup() {
+        ensureLoaded();
+        long now = System.currentTimeMillis();
+        entries.forEach((k, e) -> {
+            if (now - e.lastAccessed > MAX_IDLE_TIME) remove(k, e);
+        });
+
+        List<String> keys = new ArrayList<>(entries.keySet());
+        keys.sort(Comparator.comparingLong((String k) -> entries.getOrDefault(k, Entry.EMPTY).lastAccessed).reversed());
+        long size = 0;
+        for (String k : keys) {
+            Entry e = entries.get(k);
+            if (e == null) continue;
+            size += e.size();
+            if (size > MAX_SIZE) remove(k, e);
+        }
+
+        File[] files = getStoreDir().listFiles();
+        if (files != null) {
+            for (File f : files) {
+                if (f.getName().equals(INDEX_FILE)) continue;
+                boolean inUse = entries.values().stream().anyMatch(e -> e.dir.equals(f));
+                if (!inUse && now - f.lastModified() > MAX_IDLE_TIME) {
+                    if (f.isDirectory()) FileUtil.deleteDirectory(f); else f.delete();
+                }
+            }
+        }
+    }
+
+    public static int getCount() { return entries.size(); }
+
+    public static long getSize() { return entries.values().stream().mapToLong(Entry::size).sum(); }
+
+    public static int getLinkCount() { return links.size(); }
+
+    public static long getHits() { return hits.get(); }
+
+    static void clear() {
+        entries.forEach(SharedResultStore::remove);
+    }
+
+    /**
+     * Drop what is in memory without touching the files, as a restart does.  The index is loaded again on next use.
+     */
+    static synchronized void forget() {
+        entries.clear();
+        links.clear();
+        loaded = false;
+    }
+
+//====================================================================
+//
+//====================================================================
+
+    private static void remove(String key, Entry entry) {
+        if (entry.markRemoved()) {          // only when no database is linked to it
+            entries.remove(key, entry);
+            saveIndex();
+            FileUtil.deleteDirectory(entry.dir);
+        }
+    }
+
+    /**
+     * Load the index saved by a previous run.  Links to databases that no longer exist are dropped, and so are entries
+     * whose directory is gone.
+     */
+    private static void ensureLoaded() {
+        if (loaded) return;
+        synchronized (SharedResultStore.class) {
+            if (loaded) return;
+            File index = new File(getStoreDir(), INDEX_FILE);
+            if (index.canRead()) {
+                Properties p = new Properties();
+                try (InputStream in = new FileInputStream(index)) {
+                    p.load(in);
+                    Map<String, Entry> byDir = new HashMap<>();
+                    for (int i = 0; p.containsKey("entry." + i + ".key"); i++) {
+                        File dir = new File(getStoreDir(), p.getProperty("entry." + i + ".dir"));
+                        if (!dir.isDirectory()) continue;
+                        Entry e = new Entry(dir);
+                        e.lastAccessed = Long.parseLong(p.getProperty("entry." + i + ".lastAccessed", "0"));
+                        entries.putIfAbsent(p.getProperty("entry." + i + ".key"), e);
+                        byDir.put(dir.getName(), e);
+                    }
+                    for (int i = 0; p.containsKey("link." + i + ".db"); i++) {
+                        String db = p.getProperty("link." + i + ".db");
+                        Entry e = byDir.get(p.getProperty("link." + i + ".dir"));
+                        if (e != null && new File(db).exists() && links.putIfAbsent(db, e) == null) e.acquire();
+                    }
+                    LOGGER.info("SharedResultStore: loaded %d entries and %d links".formatted(entries.size(), links.size()));
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.warn(e, "SharedResultStore: unable to load " + index.getPath());
+                }
+            }
+            loaded = true;
+        }
+    }
+
+    /**
+     * Save the entries and links, so they are known after a restart.  The file is replaced atomically.
+     */
+    private static synchronized void saveIndex() {
+        Properties p = new Properties();
+        Map<Entry, String> keys = new HashMap<>();
+        entries.forEach((k, e) -> keys.put(e, k));
+        int i = 0;
+        for (Map.Entry<Entry, String> me : keys.entrySet()) {
+            p.setProperty("entry." + i + ".key", me.getValue());
+            p.setProperty("entry." + i + ".dir", me.getKey().dir.getName());
+            p.setProperty("entry." + i + ".lastAccessed", String.valueOf(me.getKey().lastAccessed));
+            i++;
+        }
+        i = 0;
+        for (Map.Entry<String, Entry> me : links.entrySet()) {
+            if (!keys.containsKey(me.getValue())) continue;
+            p.setProperty("link." + i + ".db", me.getKey());
+            p.setProperty("link." + i + ".dir", me.getValue().dir.getName());
+            i++;
+        }
+        File dir = getStoreDir();
+        try {
+            Path tmp = Files.createTempFile(dir.toPath(), "index-", ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                p.store(out, "shared results");
+            }
+            Files.move(tmp, new File(dir, INDEX_FILE).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.warn(e, "SharedResultStore: unable to save the index");
+        }
+    }
+
+    private static File getStoreDir() {
+        File dir = new File(ServerContext.getTempWorkDir(), "shared_results");
+        if (!dir.exists()) dir.mkdirs();
+        return dir;
+    }
+
+    /**
+     * A directory of shared tables.  refCnt is the number of databases linked to it; -1 when it has been removed.
+     */
+    private static class Entry {
+        static final Entry EMPTY = new Entry(null);
+        final File dir;
+        final AtomicInteger refCnt = new AtomicInteger();
+        volatile long lastAccessed = System.currentTimeMillis();
+
+        Entry(File dir) { this.dir = dir; }
+
+        long size() {
+            File[] files = dir == null ? null : dir.listFiles();
+            return files == null ? 0 : Arrays.stream(files).mapToLong(File::length).sum();
+        }
+
+        boolean acquire() {
+            for (int c = refCnt.get(); c >= 0; c = refCnt.get()) {
+                if (refCnt.compareAndSet(c, c + 1)) return true;
+            }
+            return false;
+        }
+
+        void release() { refCnt.decrementAndGet(); }
+
+        boolean markRemoved() { return refCnt.compareAndSet(0, -1); }
+    }
+}
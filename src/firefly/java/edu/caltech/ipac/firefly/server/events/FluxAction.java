@@ -19,6 +19,7 @@ public class FluxAction {
     public static final String JOB_INFO = "background.jobInfo";
 
     private JSONObject root;
+    private String supersedeKey;
 
     public FluxAction(String type) {
         this(type, new JSONObject());
@@ -42,6 +43,19 @@ public class FluxAction {
         return  (JSONObject) root.get(PAYLOAD);
     }
 
+    public String getSupersedeKey() {
+        return supersedeKey;
+    }
+
+    /**
+     * Use for progress-like actions where only the latest state matters.
+     * If an action with the same key has not been sent to a client yet, it is replaced by this one.
+     * @param supersedeKey  a key unique to the thing being updated, e.g. type and id
+     */
+    public void setSupersedeKey(String supersedeKey) {
+        this.supersedeKey = supersedeKey;
+    }
+
     /**
      * convenience method to set a value using a path.
      * this will create new node along the path if one does not exists.
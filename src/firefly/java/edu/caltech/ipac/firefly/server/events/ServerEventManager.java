@@ -10,23 +10,44 @@ package edu.caltech.ipac.firefly.server.events;
 
 
 import edu.caltech.ipac.firefly.data.ServerEvent;
+import edu.caltech.ipac.firefly.messaging.Message;
+import edu.caltech.ipac.firefly.messaging.Messenger;
 import edu.caltech.ipac.firefly.server.ServerContext;
 import edu.caltech.ipac.firefly.server.util.Logger;
 import edu.caltech.ipac.firefly.util.event.Name;
+import edu.caltech.ipac.util.FileUtil;
 import edu.caltech.ipac.util.StringUtils;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
+ * Events are delivered directly to the queues they target.  Queues are indexed by connID, channel, and userKey,
+ * so only the matching queues are visited.  Queues send their events asynchronously; see ServerEventQueue.
+ *
+ * When Messenger is connected, i.e. multiple nodes, events are also published to the EVENT_TOPIC
+ * so they are delivered to the queues on the other nodes.
+ *
  * @author Trey Roby
  */
 public class ServerEventManager {
 
-    private static final boolean USE_CACHE_EVENT_WORKER = true;
-    private static final EventWorker eventWorker = USE_CACHE_EVENT_WORKER ?
-                                                    new CacheEventWorker() : new SimpleEventWorker();
+    private static final String EVENT_TOPIC = "ServerEvents";
+    private static final String NODE_ID = FileUtil.getHostname() + "_" + UUID.randomUUID();
     private static final List<ServerEventQueue> evQueueList= new CopyOnWriteArrayList<ServerEventQueue>();
+    private static final Map<String, Set<ServerEventQueue>> byConnID = new ConcurrentHashMap<>();
+    private static final Map<String, Set<ServerEventQueue>> byChannel = new ConcurrentHashMap<>();
+    private static final Map<String, Set<ServerEventQueue>> byUserKey = new ConcurrentHashMap<>();
+    private static final Set<ServerEventQueue> serverQueues = ConcurrentHashMap.newKeySet();      // queues receiving all events
+    private static final AtomicBoolean subscribed = new AtomicBoolean();
     private static final Logger.LoggerImpl LOG = Logger.getLogger();
     private static long totalEventCnt;
     private static long deliveredEventCnt;
@@ -46,7 +67,9 @@ public class ServerEventManager {
      * @param action
      */
     public static void fireAction(FluxAction action, ServerEvent.Scope scope) {
-        fireJsonAction(action.toString(), scope);
+        ServerEvent sev = new ServerEvent(Name.ACTION, scope, ServerEvent.DataType.JSON, action.toString());
+        sev.setSupersedeKey(action.getSupersedeKey());
+        ServerEventManager.fireEvent(sev);
     }
 
     /**
@@ -55,7 +78,9 @@ public class ServerEventManager {
      * @param target
      */
     public static void fireAction(FluxAction action, ServerEvent.EventTarget target) {
-        fireJsonAction(action.toString(), target);
+        ServerEvent sev = new ServerEvent(Name.ACTION, target, ServerEvent.DataType.JSON, action.toString());
+        sev.setSupersedeKey(action.getSupersedeKey());
+        ServerEventManager.fireEvent(sev);
     }
 
     /**
@@ -93,14 +118,20 @@ public class ServerEventManager {
             } else if (scope == ServerEvent.Scope.SELF && sev.getTarget().getConnID() == null) {
                 sev.getTarget().setConnID(ServerContext.getRequestOwner().getEventConnID());
             }
-            eventWorker.deliver(sev);
+            boolean delivered = processEvent(sev);
+            if (!(delivered && scope == ServerEvent.Scope.SELF)) publish(sev);     // a SELF event delivered here has no other destination
         }
     }
 
     public static void addEventQueue(ServerEventQueue queue) {
         Logger.briefInfo("Channel: create new Queue for: "+ queue.getQueueID() );
         evQueueList.add(queue);
+        if (ServerEvent.SERVER_CONN_ID.equals(queue.getConnID())) serverQueues.add(queue);
+        index(byConnID, queue.getConnID(), queue);
+        index(byChannel, queue.getChannel(), queue);
+        index(byUserKey, queue.getUserKey(), queue);
         repQueueList.setQueueListForNode(evQueueList);
+        subscribe();
     }
 
     static List<ServerEventQueue> getEvQueueList() {
@@ -111,14 +142,21 @@ public class ServerEventManager {
         return repQueueList.getCombinedNodeList();
     }
 
-    static void processEvent(ServerEvent ev) {
+    /**
+     * Deliver the event to the matching queues on this node.
+     * @param ev the event
+     * @return true if it was delivered to at least one queue
+     */
+    static boolean processEvent(ServerEvent ev) {
         totalEventCnt++;
         boolean delivered = false;
-        for(ServerEventQueue queue : evQueueList) {
+        String message = null;
+        for(ServerEventQueue queue : findQueues(ev)) {
             try {
                 if (queue.matches(ev)) {
                     try {
-                        queue.putEvent(ev);
+                        if (message == null) message = ServerEventQueue.convertToJson(ev);     // convert once for all queues
+                        queue.putEvent(ev, message);
                         delivered = true;
                     } catch (Exception e) {
                         // queue is bad..  release it.
@@ -134,13 +172,106 @@ public class ServerEventManager {
             }
         }
         if (delivered) deliveredEventCnt++;
+        return delivered;
     }
 
     public static void removeEventQueue(ServerEventQueue queue) {
         evQueueList.remove(queue);
+        serverQueues.remove(queue);
+        unindex(byConnID, queue.getConnID(), queue);
+        unindex(byChannel, queue.getChannel(), queue);
+        unindex(byUserKey, queue.getUserKey(), queue);
         repQueueList.setQueueListForNode(evQueueList);
     }
 
+    /**
+     * @param ev the event
+     * @return the queues that may match the given event, based on its scope.
+     */
+    private static Collection<ServerEventQueue> findQueues(ServerEvent ev) {
+        ServerEvent.EventTarget target = ev.getTarget();
+        ServerEvent.Scope scope = target.getScope() == null ? ServerEvent.Scope.SELF : target.getScope();
+        Collection<ServerEventQueue> queues = switch (scope) {
+            case CHANNEL -> lookup(byChannel, target.getChannel());
+            case USER -> lookup(byUserKey, target.getUserKey());
+            case SELF -> lookup(byConnID, target.getConnID());
+            case WORLD -> evQueueList;
+        };
+        if (serverQueues.isEmpty() || scope == ServerEvent.Scope.WORLD) return queues;
+
+        Set<ServerEventQueue> all = new LinkedHashSet<>(queues);
+        all.addAll(serverQueues);
+        return all;
+    }
+
+    private static Collection<ServerEventQueue> lookup(Map<String, Set<ServerEventQueue>> index, String key) {
+        return key == null ? Collections.emptySet() : index.getOrDefault(key, Collections.emptySet());
+    }
+
+    private static void index(Map<String, Set<ServerEventQueue>> index, String key, ServerEventQueue queue) {
+        if (key == null) return;
+        index.compute(key, (k, queues) -> {
+            if (queues == null) queues = ConcurrentHashMap.newKeySet();
+            queues.add(queue);
+            return queues;
+        });
+    }
+
+    private static void unindex(Map<String, Set<ServerEventQueue>> index, String key, ServerEventQueue queue) {
+        if (key == null) return;
+        index.computeIfPresent(key, (k, queues) -> {
+            queues.remove(queue);
+            return queues.isEmpty() ? null : queues;
+        });
+    }
+
+//====================================================================
+//  Cross-node delivery via Messenger
+//====================================================================
+
+    private static boolean isMultiNode() {
+        return Messenger.getStatus() == Messenger.Status.CONNECTED;
+    }
+
+    /**
+     * listen to events published by other nodes.  Only once, and only when there are multiple nodes.
+     */
+    private static void subscribe() {
+        if (isMultiNode() && subscribed.compareAndSet(false, true)) {
+            Messenger.subscribe(EVENT_TOPIC, ServerEventManager::onRemoteEvent);
+        }
+    }
+
+    private static void publish(ServerEvent sev) {
+        if (!isMultiNode()) return;
+        ServerEvent.EventTarget target = sev.getTarget();
+        Message msg = new Message()
+                .setValue(NODE_ID, "node")
+                .setValue(ServerEventQueue.convertToJson(sev), "event")
+                .setValue(target.getConnID(), "target", "connID")
+                .setValue(target.getChannel(), "target", "channel")
+                .setValue(target.getUserKey(), "target", "userKey")
+                .setValue(sev.getFrom(), "from")
+                .setValue(sev.getSupersedeKey(), "supersedeKey");
+        Messenger.publish(EVENT_TOPIC, msg);
+    }
+
+    private static void onRemoteEvent(Message msg) {
+        try {
+            if (NODE_ID.equals(msg.getValue("", "node"))) return;      // our own event
+            ServerEvent sev = ServerEventQueue.parseJsonEvent(msg.getValue(null, "event"));
+            if (sev == null) return;
+            sev.getTarget().setConnID(msg.getValue(null, "target", "connID"));
+            sev.getTarget().setChannel(msg.getValue(null, "target", "channel"));
+            sev.getTarget().setUserKey(msg.getValue(null, "target", "userKey"));
+            sev.setFrom(msg.getValue(null, "from"));
+            sev.setSupersedeKey(msg.getValue(null, "supersedeKey"));
+            processEvent(sev);
+        } catch (Exception e) {
+            LOG.warn(e, "Unable to process event from another node");
+        }
+    }
+
 //====================================================================
 //  For stats
 //====================================================================
@@ -192,21 +323,4 @@ public class ServerEventManager {
         return deliveredEventCnt;
     }
 
-
-//====================================================================
-//
-//====================================================================
-
-    public interface EventWorker {
-        public void deliver(ServerEvent sev);
-    }
-
-    private static class SimpleEventWorker implements EventWorker {
-        public void deliver(ServerEvent sev) {
-            ServerEventManager.processEvent(sev);
-        }
-    }
-
-
 }
-
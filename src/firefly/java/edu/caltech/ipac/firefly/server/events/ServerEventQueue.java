@@ -7,28 +7,57 @@ package edu.caltech.ipac.firefly.server.events;
 import edu.caltech.ipac.firefly.data.ServerEvent;
 import edu.caltech.ipac.firefly.server.util.Logger;
 import edu.caltech.ipac.firefly.util.event.Name;
+import edu.caltech.ipac.util.AppProperties;
 import edu.caltech.ipac.util.StringUtils;
 import org.json.simple.JSONObject;
 import org.json.simple.JSONValue;
 
 import java.io.Serializable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
+ * Events put into this queue are sent to its EventConnector in order, with at most one send in flight.
+ * Sends are asynchronous; no thread waits on a slow connection.  When events back up while a send is in flight,
+ * the next send combines them into one message(a json array) if the connector supports it.
+ * The queue holds up to event.queue.maxPending events; beyond that, progress events(those with a supersede key)
+ * are dropped first, then the oldest.  A pending event is replaced by a newer one with the same supersede key.
+ *
  * @author Trey Roby
  */
 public class ServerEventQueue implements Serializable {
     private static final transient Logger.LoggerImpl LOG = Logger.getLogger();
+    private static final int MAX_PENDING = AppProperties.getIntProperty("event.queue.maxPending", 1000);
+    private static final int MAX_BATCH = 200;                   // max number of events combined into one message
+    private static final int MAX_BATCH_CHARS = 1024 * 1024;     // stop adding to a batch once it reached this size
+    private static final int IN_FLIGHT = 0, COMPLETED = 1, WAITING = 2;     // state of a send
     private final transient EventConnector eventTerminal;
     private String connID;
     private String channel;
     private String userKey;
     private transient long lastPutTime= 0;
+    private transient ConcurrentLinkedQueue<Pending> pending;
+    private transient AtomicInteger pendingCnt;
+    private transient AtomicBoolean sending;
+    private transient volatile boolean released;
+    private transient long droppedCnt;
+    private transient long sentCnt;
+    private transient volatile long inFlightSince;      // when the current send started; 0 when none
+    private transient volatile long lastLag;            // time the last sent event waited in this queue
+    private transient long maxLag;
 
     public ServerEventQueue(String connID, String channel, String userKey, EventConnector terminal) {
         this.connID = connID;
         this.channel = channel;
         this.userKey = userKey;
         this.eventTerminal = terminal;
+        if (terminal != null) {
+            pending = new ConcurrentLinkedQueue<>();
+            pendingCnt = new AtomicInteger();
+            sending = new AtomicBoolean();
+        }
     }
 
     public static String convertToJson(ServerEvent ev) {
@@ -81,16 +110,119 @@ public class ServerEventQueue implements Serializable {
     public String getUserKey() { return userKey; }
 
     public void putEvent(ServerEvent ev) throws Exception{
+        putEvent(ev, convertToJson(ev));
+    }
+
+    /**
+     * Queue the event to be sent.  This returns immediately.
+     * @param ev        the event
+     * @param message   the event converted to json; see convertToJson
+     */
+    public void putEvent(ServerEvent ev, String message) throws Exception{
         if (eventTerminal ==null){
             throw new IllegalStateException("Event terminal is null.. should remove this queue.");
         }
-        String message = convertToJson(ev);
-        if (message != null) {
-            lastPutTime= System.currentTimeMillis();
-            eventTerminal.send(message);
+        if (message == null) return;
+
+        String key = ev.getSupersedeKey();
+        if (key != null) {
+            for (Pending p : pending) {
+                if (key.equals(p.key()) && pending.remove(p)) pendingCnt.decrementAndGet();
+            }
+        }
+        pending.add(new Pending(key, message, System.currentTimeMillis()));
+        if (pendingCnt.incrementAndGet() > MAX_PENDING && dropOne()) {
+            if (droppedCnt++ % MAX_PENDING == 0) LOG.warn("Event queue is full; dropping events: " + getQueueID());
+        }
+        lastPutTime= System.currentTimeMillis();
+        if (sending.compareAndSet(false, true)) {
+            sendPending();
+        }
+    }
+
+    /**
+     * drop the oldest progress event, or the oldest event if there are none.
+     * @return true if an event was dropped
+     */
+    private boolean dropOne() {
+        for (Pending p : pending) {
+            if (p.key() != null && pending.remove(p)) {
+                pendingCnt.decrementAndGet();
+                return true;
+            }
+        }
+        if (pending.poll() != null) {
+            pendingCnt.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Send pending events until the queue is empty, one send at a time.  The caller must own the sending flag.
+     * When a send completes on the calling thread, this continues in the loop.  Otherwise, it continues from the
+     * send's completion callback.
+     * When sending fails, the connection is closed and this queue is removed.
+     */
+    private void sendPending() {
+        while (!released) {
+            String message = nextMessage();
+            if (message == null) {
+                sending.set(false);
+                if (pending.isEmpty() || !sending.compareAndSet(false, true)) return;
+                continue;
+            }
+
+            AtomicInteger state = new AtomicInteger(IN_FLIGHT);
+            inFlightSince = System.currentTimeMillis();
+            eventTerminal.sendAsync(message, (error) -> {
+                inFlightSince = 0;
+                if (error != null) {
+                    release(error);
+                } else if (!state.compareAndSet(IN_FLIGHT, COMPLETED)) {
+                    sendPending();          // completed after sendAsync returned; continue on this thread
+                }
+            });
+            if (state.compareAndSet(IN_FLIGHT, WAITING)) return;
+        }
+    }
+
+    /**
+     * @return the next message to send, combining pending events into one when the connector supports it; null if none.
+     */
+    private String nextMessage() {
+        Pending p = pending.poll();
+        if (p == null) return null;
+        pendingCnt.decrementAndGet();
+        updateLag(p);
+        if (!eventTerminal.supportsBatch() || pending.isEmpty()) return p.message();
+
+        StringBuilder sb = new StringBuilder("[").append(p.message());
+        for (int cnt = 1; cnt < MAX_BATCH && sb.length() < MAX_BATCH_CHARS && (p = pending.poll()) != null; cnt++) {
+            pendingCnt.decrementAndGet();
+            updateLag(p);
+            sb.append(',').append(p.message());
         }
+        return sb.append(']').toString();
+    }
+
+    private void updateLag(Pending p) {
+        sentCnt++;
+        lastLag = System.currentTimeMillis() - p.queued();
+        maxLag = Math.max(maxLag, lastLag);
     }
 
+    private void release(Throwable error) {
+        released = true;
+        LOG.warn("Event queue is bad.. releasing it:" + getQueueID(), "Exception: "+ error.getMessage());
+        pending.clear();
+        pendingCnt.set(0);
+        eventTerminal.close();
+        ServerEventManager.removeEventQueue(this);   // cleanup.. but only as a precaution.  WebsocketConnector should have done it already.
+    }
+
+    public int getPendingCnt() { return pendingCnt == null ? 0 : pendingCnt.get(); }
+
     public EventConnector getEventConnector() {
         return eventTerminal;
     }
@@ -148,10 +280,42 @@ public class ServerEventQueue implements Serializable {
         public void send(String message) throws Exception;
         public boolean isOpen();
         public void close();
+
+        /**
+         * Send the message without waiting for it to complete.
+         * @param message   the message to send
+         * @param onDone    called when the send completed; with the error if it failed, otherwise null
+         */
+        default void sendAsync(String message, Consumer<Throwable> onDone) {
+            try {
+                send(message);
+                onDone.accept(null);
+            } catch (Exception e) {
+                onDone.accept(e);
+            }
+        }
+
+        /**
+         * @return true if the receiving end accepts a json array of events in one message
+         */
+        default boolean supportsBatch() { return false; }
+    }
+
+    public QueueDescription convertToDescription() {
+        long now = System.currentTimeMillis();
+        Pending oldest = pending == null ? null : pending.peek();
+        long lag = Math.max(oldest == null ? 0 : now - oldest.queued(), inFlightSince == 0 ? 0 : now - inFlightSince);
+        return new QueueDescription(connID, channel, userKey, lastPutTime, getPendingCnt(), sentCnt, droppedCnt, lag, lastLag, maxLag);
     }
 
-    public QueueDescription convertToDescription() { return new QueueDescription(connID,channel,userKey,lastPutTime); }
+    /**
+     * @param lag       how long the oldest pending event or the current send has been waiting
+     * @param lastLag   how long the last sent event waited in the queue
+     * @param maxLag    the longest an event waited in the queue
+     */
+    public record QueueDescription(String connID, String channel, String userKey, long lastPutTime,
+                                   int pendingCnt, long sentCnt, long droppedCnt, long lag, long lastLag, long maxLag) {}
 
-    public record QueueDescription(String connID, String channel, String userKey, long lastPutTime) {}
+    private record Pending(String key, String message, long queued) {}
 }
 
@@ -24,16 +24,19 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Future;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 @ServerEndpoint(value = "/sticky/firefly/events")
 public class WebsocketConnector implements ServerEventQueue.EventConnector {
     public static final String CHANNEL_ID = "channelID";
+    public static final String BATCH = "batch";         // when true, the client accepts a json array of events in one message
     public static final Logger.LoggerImpl LOG = Logger.getLogger();
     private static final String CONN_UPDATED = "app_data.wsConnUpdated";
     private Session session;
     private String channelID;
     private String userKey;
     private ServerEventQueue eventQueue;
+    private boolean batch;
     private final ReentrantLock lock = new ReentrantLock();
 
     private static final long WS_TIMEOUT = 30*1000;  // give up after 30 sec when sending msg
@@ -50,6 +53,7 @@ public class WebsocketConnector implements ServerEventQueue.EventConnector {
             userKey = ServerContext.getRequestOwner().getUserKey();
             channelID = params.containsKey(CHANNEL_ID) ? String.valueOf(params.get(CHANNEL_ID).get(0)) : null;
             channelID = StringUtils.isEmpty(channelID) ? userKey : channelID;
+            batch = params.containsKey(BATCH) && Boolean.parseBoolean(params.get(BATCH).get(0));
             eventQueue = new ServerEventQueue(session.getId(), channelID, userKey, this);
             ServerEvent connected = new ServerEvent(Name.EVT_CONN_EST, ServerEvent.Scope.SELF, "{\"connID\": \"" + session.getId() + "\", \"channel\": \"" + channelID + "\"}");
             send(ServerEventQueue.convertToJson(connected));
@@ -122,6 +126,26 @@ public class WebsocketConnector implements ServerEventQueue.EventConnector {
         }
     }
 
+    /**
+     * Send without waiting.  The container times out the send after WS_TIMEOUT.
+     * Only one send may be in flight at a time; ServerEventQueue ensures that.
+     */
+    public void sendAsync(String message, Consumer<Throwable> onDone) {
+        if (session == null) {
+            onDone.accept(new IOException("No longer available"));
+            return;
+        }
+        try {
+            session.getAsyncRemote().sendText(message, (result) -> onDone.accept(result.isOK() ? null : result.getException()));
+        } catch (Exception e) {
+            onDone.accept(e);
+        }
+    }
+
+    public boolean supportsBatch() {
+        return batch;
+    }
+
     public boolean isOpen() {
         return session != null && session.isOpen();
     }
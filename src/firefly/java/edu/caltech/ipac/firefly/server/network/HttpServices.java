@@ -5,6 +5,7 @@ package edu.caltech.ipac.firefly.server.network;
 
 import com.google.common.net.HttpHeaders;
 import edu.caltech.ipac.firefly.server.util.VersionUtil;
+import edu.caltech.ipac.util.AppProperties;
 import edu.caltech.ipac.util.FileUtil;
 import edu.caltech.ipac.util.download.URLDownload;
 import edu.caltech.ipac.firefly.server.util.Logger;
@@ -12,6 +13,8 @@ import edu.caltech.ipac.util.CollectionUtil;
 import org.apache.commons.httpclient.Header;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.IdleConnectionTimeoutThread;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
 import org.apache.commons.httpclient.NameValuePair;
 import org.apache.commons.httpclient.UsernamePasswordCredentials;
 import org.apache.commons.httpclient.auth.AuthScope;
@@ -54,11 +57,39 @@ public class HttpServices {
     public static final int BUFFER_SIZE = FileUtil.BUFFER_SIZE;    // 64k
     private static final Logger.LoggerImpl LOG = Logger.getLogger();
 
-    private static HttpClient newHttpClient() {
-        HttpClient httpClient = new HttpClient();
-        HttpConnectionManagerParams params = httpClient.getHttpConnectionManager().getParams();
+    private static final int MAX_CONNECTIONS = AppProperties.getIntProperty("http.pool.maxConnections", 200);
+    private static final int MAX_HOST_CONNECTIONS = AppProperties.getIntProperty("http.pool.maxHostConnections", 20);
+    private static final long IDLE_TIMEOUT = AppProperties.getLongProperty("http.pool.idleTimeoutSec", 60) * 1000;
+    private static final long WAIT_TIMEOUT = AppProperties.getLongProperty("http.pool.waitTimeoutSec", 60) * 1000;
+
+    /**
+     * One connection pool shared by all requests, so calls to the same host reuse an open connection
+     * instead of doing the TCP and TLS setup again.  Idle connections are closed after http.pool.idleTimeoutSec.
+     */
+    private static final MultiThreadedHttpConnectionManager CONN_MANAGER = new MultiThreadedHttpConnectionManager();
+    static {
+        HttpConnectionManagerParams params = CONN_MANAGER.getParams();
         params.setConnectionTimeout(5000);
         params.setSoTimeout(0);     // this is the default.. but, setting it explicitly to be sure
+        params.setMaxTotalConnections(MAX_CONNECTIONS);
+        params.setDefaultMaxConnectionsPerHost(MAX_HOST_CONNECTIONS);
+        params.setStaleCheckingEnabled(true);   // the server may close a pooled connection at any time
+
+        IdleConnectionTimeoutThread idleThread = new IdleConnectionTimeoutThread();
+        idleThread.setName("http-idle-connection-evictor");
+        idleThread.setConnectionTimeout(IDLE_TIMEOUT);
+        idleThread.setTimeoutInterval(Math.max(IDLE_TIMEOUT/2, 1000));
+        idleThread.addConnectionManager(CONN_MANAGER);
+        idleThread.start();     // it is a daemon thread
+    }
+
+    /**
+     * @return a client using the shared connection pool. A client is still made per call since it holds the
+     * credentials and cookie state of the request.
+     */
+    private static HttpClient newHttpClient() {
+        HttpClient httpClient = new HttpClient(CONN_MANAGER);
+        httpClient.getParams().setConnectionManagerTimeout(WAIT_TIMEOUT);   // wait for a free connection when the host limit is reached
         return httpClient;
     }
 
@@ -226,7 +257,6 @@ public class HttpServices {
         try {
             input = input == null ? new HttpServiceInput() : input;
 
-            method.setRequestHeader("Connection", "close");            // request server to NOT keep-alive.. we don't plan to reuse this connection.
             method.setRequestHeader("User-Agent", VersionUtil.getUserAgentString());
             method.setRequestHeader(HttpHeaders.ACCEPT_ENCODING, "gzip");
             if (method instanceof GetMethod) {
@@ -251,6 +281,10 @@ public class HttpServices {
             }
 
             return status == null ? Status.getStatus(method) : status;
+        } catch (IOException | RuntimeException e) {
+            // the body may not have been read, close the connection instead of reading the rest of it back into the pool
+            method.abort();
+            throw e;
         } finally {
             logRequestEnd(method, input, status);
 
@@ -22,14 +22,24 @@ import edu.caltech.ipac.util.FileUtil;
 import edu.caltech.ipac.firefly.core.background.Job;
 import edu.caltech.ipac.firefly.core.background.JobInfo;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.URLEncoder;
 import java.nio.file.AccessDeniedException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.StreamSupport;
 import java.util.zip.ZipOutputStream;
 
 import static edu.caltech.ipac.firefly.server.ws.WsServerParams.WS_SERVER_PARAMS.CURRENTRELPATH;
@@ -46,6 +56,7 @@ public final class PackagingWorker implements Job.Worker {
     private static final String DOWNLOAD_SERVLET_PATH = "servlet/Download";
     private static final long MAX_ZIP_FILE_SIZE = AppProperties.getLongProperty("download.data.bytesize", 1024*1024*1024*16L);
     private final static String README_SUCCESS_TEXT = AppProperties.getProperty("download.readme.success", "");
+    private static final int PREFETCH_THREADS = AppProperties.getIntProperty("download.package.prefetchThreads", 4);
     private static final Logger.LoggerImpl logger = Logger.getLogger();
 
     private Job job;
@@ -59,8 +70,8 @@ public final class PackagingWorker implements Job.Worker {
     private long lastUpdatedTime = System.currentTimeMillis();
     private int lastUpdatedPct;
     private int totalFiles;
-    private int totalBytes;
-    private int zippedBytes;
+    private long totalBytes;
+    private long zippedBytes;
     private String suggestedName;
     private String wsDestPath;
     private boolean hasErrors;
@@ -92,18 +103,33 @@ public final class PackagingWorker implements Job.Worker {
 
             totalFiles = result.stream().mapToInt(fg -> fg.getSize()).sum();
 
-            for (FileGroup fg : result) {
-                ZipHandler zipHandler = new ZipHandler((fg.getBaseDir()));
-                for (FileInfo fi : fg) {
+            ExecutorService prefetchers = Executors.newFixedThreadPool(PREFETCH_THREADS);
+            Deque<PendingEntry> pending = new ArrayDeque<>();
+            Iterator<PendingEntry> toRead = result.stream()
+                    .flatMap(fg -> {
+                        ZipHandler zipHandler = new ZipHandler((fg.getBaseDir()));
+                        return StreamSupport.stream(fg.spliterator(), false).map(fi -> new PendingEntry(zipHandler, fi));
+                    })
+                    .iterator();
+            try {
+                while (toRead.hasNext() || !pending.isEmpty()) {
+                    // keep the next few files reading while the current one is written
+                    while (toRead.hasNext() && pending.size() < PREFETCH_THREADS * 2) {
+                        PendingEntry pe = toRead.next();
+                        pe.start(prefetchers);
+                        pending.add(pe);
+                    }
 
                     rotateZipFileIfNeeded();
 
                     updateJobProgress();
 
                     curFileInfoIdx++;
+                    PendingEntry pe = pending.poll();
                     try {
-                        zippedBytes += zipHandler.addZipEntry(zout, fi);
-                        totalBytes += zippedBytes;
+                        long bytes = pe.zipHandler.writeZipEntry(zout, pe.get());
+                        zippedBytes += bytes;
+                        totalBytes += bytes;
                     } catch (AccessDeniedException e) {
                         denied.add(e.getMessage());
                     } catch (Exception e) {
@@ -111,6 +137,9 @@ public final class PackagingWorker implements Job.Worker {
                     }
                     hasErrors = hasErrors || denied.size() > 0 || failed.size() > 0;
                 }
+            } finally {
+                pending.forEach(PendingEntry::discard);     // only when aborted
+                prefetchers.shutdown();
             }
 
         } else {
@@ -186,7 +215,7 @@ public final class PackagingWorker implements Job.Worker {
         curZipIdx++;
         startFileInfoIdx = curFileInfoIdx;
         zipFile = getZipFile(getJob().getJobId(), curZipIdx);
-        zout = new ZipOutputStream(new FileOutputStream(zipFile));
+        zout = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(zipFile), ZipHandler.IO_BUFFER_SIZE));
         zout.setMethod(ZipOutputStream.DEFLATED);
         zout.setLevel(ZipHandler.COMPRESSION_LEVEL);
     }
@@ -225,6 +254,51 @@ public final class PackagingWorker implements Job.Worker {
                 AnyFileDownload.LOG_PARAM + "=true&";
     }
 
+    /**
+     * A file that is read and uncompressed by one of the prefetch threads, to be written to the zip in order.
+     */
+    private static class PendingEntry {
+        private final ZipHandler zipHandler;
+        private final FileInfo fi;
+        private CompletableFuture<ZipHandler.PreparedEntry> prepared;
+        private volatile boolean discarded = false;
+
+        PendingEntry(ZipHandler zipHandler, FileInfo fi) {
+            this.zipHandler = zipHandler;
+            this.fi = fi;
+        }
+
+        void start(ExecutorService exe) {
+            prepared = CompletableFuture.supplyAsync(() -> {
+                if (discarded) return null;
+                try {
+                    return zipHandler.prepareZipEntry(fi);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, exe);
+        }
+
+        ZipHandler.PreparedEntry get() throws Exception {
+            try {
+                return prepared.get();
+            } catch (ExecutionException e) {
+                throw (e.getCause() instanceof Exception ex) ? ex : e;
+            }
+        }
+
+        /**
+         * A file that has not started is not read.  One being read, or already read, is discarded when done, so its
+         * temp file is removed.  The future is not cancelled; that would complete it right away and skip the cleanup.
+         */
+        void discard() {
+            discarded = true;
+            prepared.thenAccept(pe -> {
+                if (pe != null) pe.discard();
+            });
+        }
+    }
+
     private static File getZipFile(String jobId, int packageIdx) {
         File stagingDir = ServerContext.getStageWorkDir();
         String fname = String.format("%s%s.zip", jobId, (packageIdx > 0 ? "_" + packageIdx : ""));
@@ -4,23 +4,34 @@
 package edu.caltech.ipac.firefly.server.packagedata;
 
 import edu.caltech.ipac.firefly.data.FileInfo;
+import edu.caltech.ipac.firefly.server.ServerContext;
 import edu.caltech.ipac.util.download.URLDownload;
 import edu.caltech.ipac.firefly.server.util.Logger;
 import edu.caltech.ipac.util.AppProperties;
 import edu.caltech.ipac.util.FileUtil;
 
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.AccessDeniedException;
+import java.nio.file.StandardOpenOption;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
@@ -33,6 +44,10 @@ import java.util.zip.ZipOutputStream;
 public class ZipHandler {
 
     public final static int COMPRESSION_LEVEL = AppProperties.getIntProperty("download.compression.level", 1);
+    public final static int IO_BUFFER_SIZE = 64 * 1024;
+    private final static long MEM_ENTRY_SIZE = AppProperties.getLongProperty("download.package.memEntryKB", 1024) * 1024;
+    private final static Set<String> COMPRESSED_EXTENSIONS = Set.of("gz", "tgz", "zip", "bz2", "xz", "7z", "fz", "z",
+                                                                    "png", "jpg", "jpeg", "gif", "mp4", "mov");
     private final static Logger.LoggerImpl logger = Logger.getLogger();
 
     private File baseDir;
@@ -53,37 +68,83 @@ public class ZipHandler {
      * @throws Exception
      */
     public long addZipEntry(ZipOutputStream zout, FileInfo fi) throws Exception {
+        return writeZipEntry(zout, prepareZipEntry(fi));
+    }
+
+    /**
+     * Read the url, or the file if it is gzipped, uncompressing it, into memory or a temp file, so that it can be added
+     * to the zip later by {@link #writeZipEntry}.  A plain local file is not copied, it is streamed into the zip by
+     * {@link #writeZipEntry}; if it will be stored without compression only its crc is computed here.
+     * This does not change the zip, so it can be called for several files at the same time from different threads.
+     * @param fi        file to read
+     * @return          the data of the entry, call {@link PreparedEntry#discard()} if it is not written
+     * @throws Exception AccessDeniedException if the file is not accessible, otherwise an Exception with the file name
+     */
+    public PreparedEntry prepareZipEntry(FileInfo fi) throws Exception {
 
         if (!fi.hasAccess()) {
             throw new AccessDeniedException("");
         }
 
-        // construct and add zip entry
         InputStream is = null;
-        BufferedInputStream bis = null;
-        ZipEntry zipEntry = null;
-        long totalBytes = 0;
-
-        String filename = fi.getExternalName();     // file name before it has gone through FileNameResolver
+        InputStream bis = null;
+        PreparedEntry entry = new PreparedEntry(fi);
         try {
-
-            is = getInputStream(fi.getInternalFilename(), fi, baseDir);  // filename may change if FileNameResolver is set
-            String zipEntryComment = "(" + fi.getSizeInBytes() + "b) ";
-            filename = FileUtil.getUniqueFileNameForGroup(fi.getExternalName(), dupMap);
-
-            int inBufSize = 4096;
+            File localFile = getLocalFile(fi.getInternalFilename(), baseDir);
+            String filename = fi.getExternalName();
+            if (localFile != null && (filename == null || !FileUtil.isExtension(filename, FileUtil.GZ))) {
+                entry.useFile(localFile, filename != null && isCompressed(filename));
+                return entry;
+            }
+            is = getInputStream(fi.getInternalFilename(), fi, baseDir);  // external name may change if FileNameResolver is set
+            filename = fi.getExternalName();
             if (filename != null && FileUtil.isExtension(filename, FileUtil.GZ)) {
                 InputStream decompressedIs = null;
                 try {// try to uncompress the data
-                    decompressedIs = new GZIPInputStream(is);  // for uncompressed data, throw an exception
-                    bis = new BufferedInputStream(decompressedIs);
+                    decompressedIs = new GZIPInputStream(is, IO_BUFFER_SIZE);  // for uncompressed data, throw an exception
+                    bis = decompressedIs;
                 } catch (Exception e) {
                     FileUtil.silentClose(decompressedIs);
-                    bis = new BufferedInputStream(is, inBufSize);
+                    bis = new BufferedInputStream(is, IO_BUFFER_SIZE);
                 }
             } else {
-                bis = new BufferedInputStream(is, inBufSize);
+                bis = new BufferedInputStream(is, IO_BUFFER_SIZE);
             }
+            entry.read(bis);
+            return entry;
+        } catch (Exception e) {
+            entry.discard();
+            String error = "Failed packaging " + fi.getExternalName() + " - " + e.getMessage();
+            Logger.error(error);
+            throw new Exception(fi.getExternalName());
+        } finally {
+            FileUtil.silentClose(bis);
+            if (is != null) {
+                try {
+                    is.close();
+                } catch (Exception e) {
+                    logger.warn("Can not close input stream: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Add an entry made by {@link #prepareZipEntry} to the zip.  Entries have to be written from one thread,
+     * in the order they should appear in the zip. The prepared entry is discarded.
+     * @param zout      ZipOutputStream to add to
+     * @param entry     the prepared entry
+     * @return          the number of bytes added
+     * @throws Exception an Exception with the file name if it fails
+     */
+    public long writeZipEntry(ZipOutputStream zout, PreparedEntry entry) throws Exception {
+
+        ZipEntry zipEntry = null;
+        FileInfo fi = entry.fi;
+        String filename = fi.getExternalName();
+        try {
+            String zipEntryComment = "(" + fi.getSizeInBytes() + "b) ";
+            filename = FileUtil.getUniqueFileNameForGroup(fi.getExternalName(), dupMap);
             // remove .gz, if exists - filename or url stream are all going to be uncompressed at this point
             if (FileUtil.isExtension(filename, FileUtil.GZ)) {
                 filename = filename.substring(0, filename.length() - 3);
@@ -91,14 +152,16 @@ public class ZipHandler {
 
             zipEntry = new ZipEntry(filename);
             zipEntry.setComment(zipEntryComment);
-            zout.putNextEntry(zipEntry);
-
-            int read;
-            byte[] buffer = new byte[inBufSize];
-            while ((read = bis.read(buffer)) != -1) {
-                zout.write(buffer, 0, read);
-                totalBytes += read;
+            if (isCompressed(filename) && entry.hasCrc) {
+                // deflating already compressed data only costs time, STORED needs the size and crc up front
+                zipEntry.setMethod(ZipEntry.STORED);
+                zipEntry.setSize(entry.size);
+                zipEntry.setCompressedSize(entry.size);
+                zipEntry.setCrc(entry.crc);
             }
+            zout.putNextEntry(zipEntry);
+            entry.writeTo(zout);
+            return entry.size;
         } catch (ZipException ze) {
             String zipError = ze.getMessage();
 
@@ -117,14 +180,7 @@ public class ZipHandler {
             throw new Exception(fi.getExternalName());
 
         } finally {
-            FileUtil.silentClose(bis);
-            if (is != null) {
-                try {
-                    is.close();
-                } catch (Exception e) {
-                    logger.warn("Can not close input stream: " + e.getMessage());
-                }
-            }
+            entry.discard();
             if (zipEntry != null) {
                 try {
                     zout.closeEntry();
@@ -133,9 +189,13 @@ public class ZipHandler {
                 }
             }
         }
-        return totalBytes;
+        return 0;
     }
 
+    private static boolean isCompressed(String filename) {
+        String ext = FileUtil.getExtension(filename);
+        return ext != null && COMPRESSED_EXTENSIONS.contains(ext.toLowerCase());
+    }
 
     static public void addReadmeZipEntry(ZipOutputStream zout, String msg) {
 
@@ -157,6 +217,20 @@ public class ZipHandler {
         }
     }
 
+    /**
+     * @param filename (filename can be url)
+     * @return the local file to read, or null if filename is a url
+     */
+    private static File getLocalFile(String filename, File baseDir) {
+        if (filename.contains("://")) {
+            try {
+                new URL(filename);
+                return null;
+            } catch (MalformedURLException e) { /* not a url, getInputStream reads it as a file too */ }
+        }
+        return baseDir == null ? new File(filename) : new File(baseDir, filename);
+    }
+
     /**
      * @param filename (filename can be url)
      * @param fi       file info pbject
@@ -206,4 +280,91 @@ public class ZipHandler {
 
         return is;
     }
+
+    /**
+     * The data of a file to add to the zip. Small files are kept in memory, larger ones in a temp file.
+     * A plain local file is read from where it is when the entry is written.
+     */
+    public static class PreparedEntry {
+        private final FileInfo fi;
+        private final CRC32 crc32 = new CRC32();
+        private ByteArrayOutputStream mem = new ByteArrayOutputStream();
+        private File tmpFile;
+        private File localFile;
+        private long size;
+        private long crc;
+        private boolean hasCrc;
+
+        private PreparedEntry(FileInfo fi) {
+            this.fi = fi;
+        }
+
+        public FileInfo getFileInfo() { return fi; }
+
+        private void read(InputStream in) throws IOException {
+            OutputStream out = mem;
+            try {
+                byte[] buffer = new byte[IO_BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    crc32.update(buffer, 0, read);
+                    size += read;
+                    if (tmpFile == null && size > MEM_ENTRY_SIZE) {
+                        tmpFile = File.createTempFile("package-", ".tmp", ServerContext.getTempWorkDir());
+                        out = new BufferedOutputStream(new FileOutputStream(tmpFile), IO_BUFFER_SIZE);
+                        mem.writeTo(out);
+                        mem = null;
+                    }
+                    out.write(buffer, 0, read);
+                }
+                crc = crc32.getValue();
+                hasCrc = true;
+            } finally {
+                if (out != mem) FileUtil.silentClose(out);
+            }
+        }
+
+        /**
+         * @param f         the file to stream into the zip when the entry is written
+         * @param needCrc   true to read the file now to compute its crc, for an entry stored without compression
+         */
+        private void useFile(File f, boolean needCrc) throws IOException {
+            if (!f.isFile() || !f.canRead()) throw new FileNotFoundException(f.getPath());
+            localFile = f;
+            mem = null;
+            size = f.length();
+            if (needCrc) {
+                try (InputStream in = new FileInputStream(f)) {
+                    byte[] buffer = new byte[IO_BUFFER_SIZE];
+                    int read;
+                    while ((read = in.read(buffer)) != -1) crc32.update(buffer, 0, read);
+                }
+                crc = crc32.getValue();
+                hasCrc = true;
+            }
+        }
+
+        private void writeTo(OutputStream out) throws IOException {
+            File src = localFile != null ? localFile : tmpFile;
+            if (src == null) {
+                mem.writeTo(out);
+            } else {
+                try (FileChannel ch = FileChannel.open(src.toPath(), StandardOpenOption.READ)) {
+                    ByteBuffer bb = ByteBuffer.allocate(IO_BUFFER_SIZE);
+                    while (ch.read(bb) != -1) {
+                        out.write(bb.array(), 0, bb.position());
+                        bb.clear();
+                    }
+                }
+            }
+        }
+
+        /**
+         * release the memory or delete the temp file
+         */
+        public void discard() {
+            mem = null;
+            if (tmpFile != null) tmpFile.delete();
+        }
+    }
 }
@@ -6,6 +6,7 @@ package edu.caltech.ipac.firefly.server.persistence;
 import edu.caltech.ipac.firefly.data.CatalogRequest;
 import edu.caltech.ipac.firefly.data.ServerParams;
 import edu.caltech.ipac.firefly.data.TableServerRequest;
+import edu.caltech.ipac.firefly.server.network.HttpServiceInput;
 import edu.caltech.ipac.firefly.server.query.DataAccessException;
 import edu.caltech.ipac.firefly.server.query.ParamDoc;
 import edu.caltech.ipac.firefly.server.query.SearchProcessorImpl;
@@ -14,6 +15,11 @@ import edu.caltech.ipac.firefly.visualize.VisUtil;
 import edu.caltech.ipac.visualize.plot.CoordinateSys;
 import edu.caltech.ipac.visualize.plot.WorldPt;
 
+import java.util.List;
+
+import static edu.caltech.ipac.firefly.data.TableServerRequest.TBL_INDEX;
+import static edu.caltech.ipac.util.StringUtils.isEmpty;
+
 /**
  * @author tatianag
  *         $Id: $
@@ -32,6 +38,24 @@ public class QueryByConeSearchURL extends QueryVOTABLE {
     public static final String ACCESS_URL = "accessUrl";
 
 
+    /**
+     * A cone search on a public service returns the same results for every user.  When the service gets the
+     * user's credential, the results may be specific to that user, so they are not shared.
+     */
+    @Override
+    protected List<String> getSharedResultParams(TableServerRequest treq) {
+        String accessUrl = treq.getParam(ACCESS_URL);
+        if (accessUrl == null || hasCredential(accessUrl)) return null;
+        return List.of(ACCESS_URL, ServerParams.USER_TARGET_WORLD_PT, RADIUS_KEY, CatalogRequest.RAD_UNITS, TBL_INDEX, USE_KEY, TITLE_KEY);
+    }
+
+    private static boolean hasCredential(String accessUrl) {
+        HttpServiceInput input = HttpServiceInput.createWithCredential(accessUrl);
+        return (input.getHeaders() != null && !input.getHeaders().isEmpty()) ||
+               (input.getCookies() != null && !input.getCookies().isEmpty()) ||
+               !isEmpty(input.getUserId());
+    }
+
     protected String getQueryString(TableServerRequest req) throws DataAccessException {
         String accessUrl = req.getSafeParam(ACCESS_URL);
         if (accessUrl == null) {
@@ -18,6 +18,7 @@ import edu.caltech.ipac.firefly.data.table.SelectionInfo;
 import edu.caltech.ipac.table.TableMeta;
 import edu.caltech.ipac.firefly.server.db.DbAdapter;
 import edu.caltech.ipac.firefly.server.db.EmbeddedDbUtil;
+import edu.caltech.ipac.firefly.server.db.SharedResultStore;
 import edu.caltech.ipac.firefly.server.db.spring.JdbcFactory;
 import edu.caltech.ipac.firefly.server.util.QueryUtil;
 import edu.caltech.ipac.firefly.server.util.StopWatch;
@@ -119,6 +120,17 @@ abstract public class EmbeddedDbProcessor implements SearchProcessor<DataGroupPa
         return DbAdapter.getAdapter(treq, dbFileCreator);
     }
 
+    /**
+     * Override this when the results of this processor do not depend on the user or session.
+     * Identical requests, based on the values of the returned parameters, will share the fetched results
+     * across sessions via SharedResultStore instead of fetching the data again.
+     * @param treq  the search request
+     * @return the names of the parameters that make up the results, or null if results should not be shared.
+     */
+    protected List<String> getSharedResultParams(TableServerRequest treq) {
+        return null;
+    }
+
     public DataGroupPart getData(ServerRequest request) throws DataAccessException {
         TableServerRequest treq = (TableServerRequest) request;
 
@@ -129,9 +141,16 @@ abstract public class EmbeddedDbProcessor implements SearchProcessor<DataGroupPa
             var dbAdapter = getDbAdapter(treq);
             jobExecIf(v -> v.progress(10, "fetching data..."));
             if (!dbAdapter.hasTable(dbAdapter.getDataTable())) {
-                StopWatch.getInstance().start("createDbFile: " + treq.getRequestId());
-                createDbFromRequest(treq, dbAdapter);
-                StopWatch.getInstance().stop("createDbFile: " + treq.getRequestId()).printLog("createDbFile: " + treq.getRequestId());
+                List<String> sharedParams = getSharedResultParams(treq);
+                String sharedKey = sharedParams == null ? null : SharedResultStore.makeKey(treq, sharedParams);
+                if (sharedKey != null && SharedResultStore.restore(sharedKey, dbAdapter)) {
+                    EmbeddedDbUtil.setDbMetaInfo(treq, dbAdapter);
+                } else {
+                    StopWatch.getInstance().start("createDbFile: " + treq.getRequestId());
+                    createDbFromRequest(treq, dbAdapter);
+                    StopWatch.getInstance().stop("createDbFile: " + treq.getRequestId()).printLog("createDbFile: " + treq.getRequestId());
+                    if (sharedKey != null) SharedResultStore.save(sharedKey, dbAdapter);
+                }
             }
 
             StopWatch.getInstance().start("getDataset: " + request.getRequestId());
@@ -2,6 +2,9 @@ package edu.caltech.ipac.firefly.server.query;
 
 import edu.caltech.ipac.firefly.data.Param;
 import edu.caltech.ipac.firefly.data.TableServerRequest;
+import edu.caltech.ipac.firefly.server.db.DbAdapter;
+import edu.caltech.ipac.firefly.server.db.DuckDbAdapter;
+import edu.caltech.ipac.firefly.server.db.spring.JdbcFactory;
 import edu.caltech.ipac.firefly.server.util.QueryUtil;
 import edu.caltech.ipac.table.DataGroup;
 import edu.caltech.ipac.table.DataGroupPart;
@@ -36,9 +39,13 @@ import static edu.caltech.ipac.firefly.server.util.QueryUtil.SEARCH_REQUEST;
  * 5/23/17
  * IRSA-371 Changed the showEmptyBin to true.  It was false previously.
  *
+ * 10/18/26
+ * Changed to a TableFunctionProcessor.  When the source table is in DuckDB, the histogram is computed
+ * in the database instead of loading the whole table into memory.
+ *
  */
 @SearchProcessorImpl(id = "HistogramProcessor")
-public class HistogramProcessor extends IpacTablePartProcessor {
+public class HistogramProcessor extends TableFunctionProcessor {
 
     private static DataType[] columns = new DataType[]{
         new DataType("numInBin", Long.class),
@@ -65,11 +72,11 @@ public class HistogramProcessor extends IpacTablePartProcessor {
     private double binWidth=0.0;
     private String binSelection=null;
     private String binSize;
-    private String columnName;
     private boolean sortedColData = false;
     private double falsePostiveRate = 0.05;
 
     //change to protected so that they can be set by unit test class
+    protected String columnName;
     protected boolean showEmptyBin= true;
     protected int numBins=0;
     protected double min = Double.NaN;
@@ -110,18 +117,43 @@ public class HistogramProcessor extends IpacTablePartProcessor {
         }
     }
 
-    protected File loadDataFile(TableServerRequest request) throws IOException, DataAccessException {
+    protected String getResultSetTablePrefix() {
+        return "HIST";
+    }
 
-        TableServerRequest sReq = QueryUtil.getSearchRequest(request);
-        getParameters(request);
+    protected DataGroup fetchData(TableServerRequest treq, DbAdapter dbAdapter) throws DataAccessException {
 
-        // get the relevant data
-        sReq.setPageSize(Integer.MAX_VALUE);
+        TableServerRequest sReq = getSourceRequest(treq);
+        DataGroup histogramDataGroup = dbAdapter instanceof DuckDbAdapter
+                                        ? createHistogramFromDb(sReq, dbAdapter)
+                                        : createHistogramTable(getSourceData(sReq));
+        histogramDataGroup.addAttribute(SEARCH_REQUEST, sReq.toString());
+        return histogramDataGroup;
+    }
+
+    /**
+     * Used when the source table is not kept in a database.  The histogram is computed from the whole table in memory.
+     */
+    @Override
+    public DataGroup fetchDataGroup(TableServerRequest treq) throws DataAccessException {
+        return fetchData(treq, null);
+    }
+
+    private TableServerRequest getSourceRequest(TableServerRequest treq) throws DataAccessException {
+        TableServerRequest sReq = QueryUtil.getSearchRequest(treq);
+        getParameters(treq);
 
         if (!sortedColData) {
             sReq.setSortInfo(null);
             sReq.removeParam(INCL_COLUMNS);
         }
+        return sReq;
+    }
+
+    /* Old method of computing histogram; the whole table is fetched into memory */
+    private double[] getSourceData(TableServerRequest sReq) throws DataAccessException {
+        // get the relevant data
+        sReq.setPageSize(Integer.MAX_VALUE);
 
         DataGroupPart sourceData = new SearchManager().getDataGroup(sReq);
         if (sourceData == null) {
@@ -129,14 +161,89 @@ public class HistogramProcessor extends IpacTablePartProcessor {
         } else if (sourceData.getErrorMsg() != null) {
             throw new DataAccessException(sourceData.getErrorMsg());
         }
-        DataGroup sourceDataGroup = sourceData.getData();
-        double[] columnData = getColumnData(sourceDataGroup);
-        DataGroup histogramDataGroup = createHistogramTable(columnData);
-        histogramDataGroup.addAttribute(SEARCH_REQUEST, sReq.toString());
+        return getColumnData(sourceData.getData());
+    }
+
+    /**
+     * Compute the histogram inside the database.  Fixed size bins are counted with a GROUP BY,
+     * so only the bins are returned.  Variable size bins(Bayesian Blocks) need every value in sorted order;
+     * only the one column is streamed into a double array instead of fetching the whole table.
+     * @param sReq      the search request of the source table
+     * @param dbAdapter the database of the source table
+     * @return the histogram table
+     */
+    DataGroup createHistogramFromDb(TableServerRequest sReq, DbAdapter dbAdapter) throws DataAccessException {
+
+        String dataTbl = getSearchProcessor(sReq).getResultSetID(sReq);
+        if (!dbAdapter.hasTable(dataTbl)) {
+            // if table does not exist; load it.
+            TableServerRequest cReq = (TableServerRequest) sReq.cloneRequest();
+            cReq.setPageSize(1);    // load table into database; ignore results.
+            new SearchManager().getDataGroup(cReq);
+        }
+        return createHistogramFromTable(dataTbl, dbAdapter);
+    }
+
+    /**
+     * @param dataTbl   the table containing the source data
+     * @param dbAdapter the database of the source table
+     * @return the histogram table of columnName in dataTbl
+     */
+    DataGroup createHistogramFromTable(String dataTbl, DbAdapter dbAdapter) throws DataAccessException {
+
+        if (dbAdapter.getHeaders(dataTbl).getDataDefintion(columnName) == null) {
+            throw new DataAccessException("Invalid column: "+ columnName);
+        }
+
+        String values = """
+                SELECT "%1$s"::DOUBLE as "val" FROM %2$s
+                WHERE "%1$s" IS NOT NULL AND NOT isnan("%1$s"::DOUBLE)
+                """.formatted(columnName, dataTbl);
+
+        DataGroup stats = dbAdapter.execQuery("""
+                SELECT MIN("val") as "dMin", MAX("val") as "dMax", COUNT(*) as "dCount" FROM (%s)
+                """.formatted(values), null);
+        int count = ((Number) stats.getData("dCount", 0)).intValue();
+        if (count == 0) return new DataGroup("histogramTable", columns);
+
+        if (Double.isNaN(min)) {
+            min = ((Number) stats.getData("dMin", 0)).doubleValue();
+        }
+        if (Double.isNaN(max)) {
+            max = ((Number) stats.getData("dMax", 0)).doubleValue();
+        }
+
+        if (algorithm == null || !algorithm.equalsIgnoreCase(FIXED_SIZE_ALGORITHM)) {
+            double[] columnData = new double[count];
+            JdbcFactory.getTemplate(dbAdapter.getDbInstance()).query("%s ORDER BY \"val\"".formatted(values), rs -> {
+                int i = 0;
+                while (rs.next() && i < columnData.length) {
+                    columnData[i++] = rs.getDouble(1);
+                }
+                return i;
+            });
+            sortedColData = true;
+            return createHistogramTable(columnData);
+        }
+
+        double binSize = numBins>0? (max-min)/numBins:binWidth;
+        int nBins = numBins>0? numBins : (int) Math.ceil((max-min)/binSize);
+        if (nBins <= 0) return new DataGroup("histogramTable", columns);
+
+        // same rule as calculateFixedBinSizeDataArray; values equal to max go into the last bin
+        DataGroup bins = dbAdapter.execQuery("""
+                SELECT CASE WHEN "val" >= %2$s THEN %4$d ELSE LEAST(FLOOR(("val" - %1$s) / %3$s)::BIGINT, %4$d) END as "bin", COUNT(*) as "cnt"
+                FROM (%5$s)
+                WHERE "val" >= %1$s AND "val" <= %2$s
+                GROUP BY "bin"
+                """.formatted(min, max, binSize, nBins - 1, values), null);
 
-        File histogramFile = createFile(request);
-        IpacTableWriter.save(histogramFile, histogramDataGroup);
-        return histogramFile;
+        long[] numPointsInBin = new long[nBins];
+        for (int i = 0; i < bins.size(); i++) {
+            int iBin = ((Number) bins.getData("bin", i)).intValue();
+            numPointsInBin[iBin] = ((Number) bins.getData("cnt", i)).longValue();
+        }
+        return toHistogramTable(makeFixedBins(numPointsInBin, binSize));
     }
 
     private void getParameters(TableServerRequest tableServerRequest) {
@@ -218,26 +325,35 @@ public class HistogramProcessor extends IpacTablePartProcessor {
 
             }
 
-            long[] numPointsInBin = (long[]) obj[0];
-            double[] binMin = (double[]) obj[1];
-            double[] binMax = (double[]) obj[2];
-            int nPoints = numPointsInBin.length;
-
-            //add each row to the DataGroup
-            HistogramTable = new DataGroup("histogramTable", tblcolumns);
-            for (int i = 0; i < nPoints; i++) {
-                DataObject row = new DataObject(HistogramTable);
-                row.setDataElement(tblcolumns[0], numPointsInBin[i]);
-                row.setDataElement(tblcolumns[1], binMin[i]);
-                row.setDataElement(tblcolumns[2], binMax[i]);
-                HistogramTable.add(row);
-            }
+            HistogramTable = toHistogramTable(obj);
         } else {
             HistogramTable = new DataGroup("histogramTable", tblcolumns);
         }
         return HistogramTable;
     }
 
+    /**
+     * @param obj an array of 3 arrays: numInBin[], min[], max[]
+     * @return a DataGroup with one row per bin
+     */
+    private DataGroup toHistogramTable(Object[] obj) {
+        long[] numPointsInBin = (long[]) obj[0];
+        double[] binMin = (double[]) obj[1];
+        double[] binMax = (double[]) obj[2];
+        int nPoints = numPointsInBin.length;
+
+        //add each row to the DataGroup
+        DataGroup HistogramTable = new DataGroup("histogramTable", columns);
+        for (int i = 0; i < nPoints; i++) {
+            DataObject row = new DataObject(HistogramTable);
+            row.setDataElement(columns[0], numPointsInBin[i]);
+            row.setDataElement(columns[1], binMin[i]);
+            row.setDataElement(columns[2], binMax[i]);
+            HistogramTable.add(row);
+        }
+        return HistogramTable;
+    }
+
     /**
      * Calculate the numInBin, binMin and binMax arrays
      *
@@ -259,9 +375,6 @@ public class HistogramProcessor extends IpacTablePartProcessor {
         int nBins = numBins>0? numBins : (int) Math.ceil((max-min)/binSize);
 
         long[] numPointsInBin = new long[nBins];
-        double[] binMin = new double[nBins];
-
-        double[] binMax = new double[nBins];
 
         int iBin;
         for (int i = 0; i < columnData.length; i++) {
@@ -275,6 +388,22 @@ public class HistogramProcessor extends IpacTablePartProcessor {
             }
 
         }
+        return makeFixedBins(numPointsInBin, binSize);
+    }
+
+    /**
+     * Create the bin edges for the given counts
+     *
+     * @param numPointsInBin number of points in each bin
+     * @param binSize the width of each bin starting from min
+     * @return an array of 3 arrays: numInBin[], min[], max[]
+     */
+    private Object[] makeFixedBins(long[] numPointsInBin, double binSize) {
+
+        int nBins = numPointsInBin.length;
+        double[] binMin = new double[nBins];
+        double[] binMax = new double[nBins];
+
         if  (nBins > 0) {
             binMin[0] = min;
             binMax[0] = min+binSize;
@@ -95,6 +95,15 @@ public class SearchServerCommands {
                 return json.toJSONString();
             }
         }
+
+        public ResultWriter getResultWriter(SrvParam params) throws Exception {
+            // only when called directly; a Job's result is always returned as a String
+            if (getJobId() != null || params.getOptional(FORMAT, "json").toLowerCase().contains("votable")) return null;
+
+            TableServerRequest tsr = params.getTableServerRequest();
+            DataGroupPart dgp = new SearchManager().getDataGroup(tsr, SearchManager.getProcessor(tsr.getRequestId()));
+            return out -> JsonTableUtil.writeJsonTableModel(out, dgp, tsr);
+        }
     }
 
     public static class TableSearchSpatialBinary extends ServerCommandAccess.HttpCommand{
@@ -225,6 +234,18 @@ public class SearchServerCommands {
     public static class QueryTable extends ServCommand {
 
         public String doCommand(SrvParam params) throws Exception {
+            TableServerRequest treq = makeRequest(params);
+            DataGroupPart page = new SearchManager().getDataGroup(treq);
+            return JsonTableUtil.toJsonTableModel(page, treq).toJSONString();
+        }
+
+        public ResultWriter getResultWriter(SrvParam params) throws Exception {
+            TableServerRequest treq = makeRequest(params);
+            DataGroupPart page = new SearchManager().getDataGroup(treq);
+            return out -> JsonTableUtil.writeJsonTableModel(out, page, treq);
+        }
+
+        private static TableServerRequest makeRequest(SrvParam params) {
             TableServerRequest treq = (TableServerRequest) params.getTableServerRequest().cloneRequest();
             treq.setStartIndex(0);
             treq.setPageSize(Integer.MAX_VALUE);
@@ -235,9 +256,7 @@ public class SearchServerCommands {
             if (!isEmpty(sortInfo)) {
                 treq.setSortInfo(SortInfo.parse(sortInfo));
             }
-
-            DataGroupPart page = new SearchManager().getDataGroup(treq);
-            return JsonTableUtil.toJsonTableModel(page, treq).toJSONString();
+            return treq;
         }
     }
 
@@ -246,12 +265,22 @@ public class SearchServerCommands {
         public String doCommand(SrvParam params) throws Exception {
             String requestJson = params.getRequired(ServerParams.REQUEST);
             TableServerRequest treq = QueryUtil.convertToServerRequest(requestJson);
+            return JsonTableUtil.toJsonTableModel(getSelectedData(params, treq), treq).toJSONString();
+        }
+
+        public ResultWriter getResultWriter(SrvParam params) throws Exception {
+            String requestJson = params.getRequired(ServerParams.REQUEST);
+            TableServerRequest treq = QueryUtil.convertToServerRequest(requestJson);
+            DataGroupPart page = getSelectedData(params, treq);
+            return out -> JsonTableUtil.writeJsonTableModel(out, page, treq);
+        }
+
+        private static DataGroupPart getSelectedData(SrvParam params, TableServerRequest treq) throws DataAccessException {
             try {
                 List<String> cols = StringUtils.asList(params.getRequired("columnNames"), ",");
                 String[] colsAry = cols == null ? null : cols.toArray(new String[cols.size()]);
                 List<Integer> rows = StringUtils.convertToListInteger(params.getRequired("selectedRows"), ",");
-                DataGroupPart page = EmbeddedDbUtil.getSelectedDataAsDGPart(treq, rows, colsAry);
-                return JsonTableUtil.toJsonTableModel(page, treq).toJSONString();
+                return EmbeddedDbUtil.getSelectedDataAsDGPart(treq, rows, colsAry);
             } catch (IOException e) {
                 throw new DataAccessException("Unable to resolve a search processor for this request.  SelectedValues aborted.");
             }
@@ -40,11 +40,28 @@ public abstract class TableFunctionProcessor extends EmbeddedDbProcessor {
     @Override
     public DbAdapter getDbAdapter(TableServerRequest treq) {
         try {
-            TableServerRequest sreq = QueryUtil.getSearchRequest(treq);
-            return getSearchProcessor(sreq).getDbAdapter(sreq);
+            if (isSourceInDb(treq)) {
+                TableServerRequest sreq = QueryUtil.getSearchRequest(treq);
+                return getSearchProcessor(sreq).getDbAdapter(sreq);
+            }
         } catch (DataAccessException e) {
             // should not happen
-            return super.getDbAdapter(treq);
+        }
+        // source table is not in a database; results are saved into this processor's own database.
+        return super.getDbAdapter(treq);
+    }
+
+    /**
+     * @param treq  the request of this processor
+     * @return true if the source table of this request is kept in a database, i.e. created by an EmbeddedDbProcessor.
+     * When false, this processor behaves like a regular EmbeddedDbProcessor; fetchDataGroup is used to create its results.
+     */
+    protected boolean isSourceInDb(TableServerRequest treq) {
+        try {
+            TableServerRequest sreq = QueryUtil.getSearchRequest(treq);
+            return SearchManager.getProcessor(sreq.getRequestId()) instanceof EmbeddedDbProcessor;
+        } catch (DataAccessException e) {
+            return false;
         }
     }
 
@@ -53,6 +70,8 @@ public abstract class TableFunctionProcessor extends EmbeddedDbProcessor {
      */
     @Override
     public FileInfo ingestDataIntoDb(TableServerRequest treq, DbAdapter dbAdapter) throws DataAccessException {
+        if (!isSourceInDb(treq)) return super.ingestDataIntoDb(treq, dbAdapter);
+
         TableServerRequest sreq = QueryUtil.getSearchRequest(treq);
         sreq.setPageSize(1);  // set to small number it's not used.
         new SearchManager().getDataGroup(sreq).getData();
@@ -65,6 +84,8 @@ public abstract class TableFunctionProcessor extends EmbeddedDbProcessor {
     @Override
     protected DataGroupPart getResultSet(TableServerRequest treq, DbAdapter dbAdapter) throws DataAccessException {
 
+        if (!isSourceInDb(treq)) return super.getResultSet(treq, dbAdapter);
+
         String resTblName = getResultSetTable(treq);
 
         if (!dbAdapter.hasTable(resTblName)) {
@@ -8,6 +8,7 @@ import edu.caltech.ipac.firefly.server.ServCommand;
 import edu.caltech.ipac.firefly.server.ServerCommandAccess;
 import edu.caltech.ipac.firefly.server.SrvParam;
 import edu.caltech.ipac.firefly.server.visualize.DirectStretchUtils.CompressType;
+import edu.caltech.ipac.firefly.server.visualize.DirectStretchUtils.Viewport;
 import edu.caltech.ipac.firefly.server.visualize.VisJsonSerializer;
 import edu.caltech.ipac.firefly.server.visualize.VisServerOps;
 import edu.caltech.ipac.firefly.server.visualize.imagesources.ImageMasterData;
@@ -113,7 +114,9 @@ public class VisServerCommands {
                 ct= CompressType.FULL;
             }
 
-            byte[] data = VisServerOps.getByteStretchArray(state,tileSize,mask,maskBits,ct);
+            Viewport viewport= Viewport.parse(sp.getOptional(ServerParams.VIEWPORT));
+
+            byte[] data = VisServerOps.getByteStretchArray(state,tileSize,mask,maskBits,ct,viewport);
 
             res.setContentType("application/octet-stream");
             ByteBuffer byteBuf = ByteBuffer.wrap(data);
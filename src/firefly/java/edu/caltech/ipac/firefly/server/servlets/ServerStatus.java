@@ -190,6 +190,10 @@ public class ServerStatus extends BaseHttpServlet {
                 System.currentTimeMillis() - db.getLastAccessed(),
                 System.currentTimeMillis() - db.getCreated()
         ));
+        writer.printf("\nShared results:  %,d databases  %.1f MB  %,d linked  %,d hits\n", stats.sharedDbs, stats.sharedSize/1024/1024.0, stats.sharedLinks, stats.sharedHits);
+        writer.printf("Temp storage:    %.1f MB  max %.1f MB\n", stats.tempStorage/1024/1024.0, stats.maxTempStorage/1024/1024.0);
+        writer.printf("Evictions:       %,d databases  last at %s\n", stats.evictions,
+                stats.lastEviction > 0 ? new SimpleDateFormat("HH:mm:ss").format(stats.lastEviction) : "-");
     }
 
     private static void hsqldbConfig(PrintWriter writer, DbAdapter.EmbeddedDbStats stats) {
@@ -292,7 +296,8 @@ public class ServerStatus extends BaseHttpServlet {
 
     private static String makeQueueList() {
         return ServerEventManager.getQueueDescriptionList(10).stream()
-                .map( d -> String.format("     - %s, %s\n",d.channel(), new Date(d.lastPutTime())))
+                .map( d -> String.format("     - %s, %s, pending: %d, sent: %d, dropped: %d, lag(ms): %d, last lag(ms): %d, max lag(ms): %d\n",
+                                    d.channel(), new Date(d.lastPutTime()), d.pendingCnt(), d.sentCnt(), d.droppedCnt(), d.lag(), d.lastLag(), d.maxLag()))
                 .reduce("", (all, entry) -> all+entry);
     }
 
@@ -9,12 +9,14 @@ import edu.caltech.ipac.visualize.plot.ImageHeader;
 import edu.caltech.ipac.visualize.plot.ImageMask;
 import edu.caltech.ipac.visualize.plot.RangeValues;
 import edu.caltech.ipac.visualize.plot.plotdata.FitsRead;
+import edu.caltech.ipac.visualize.plot.plotdata.ImagePyramid;
 import edu.caltech.ipac.visualize.plot.plotdata.ImageStretch;
 import edu.caltech.ipac.visualize.plot.plotdata.RGBIntensity;
 import nom.tam.fits.Header;
 
 import java.awt.Color;
 import java.io.Serializable;
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
@@ -37,17 +39,27 @@ public class DirectStretchUtils {
 
     public static StretchDataInfo getStretchData(PlotState state, ActiveFitsReadGroup frGroup, int tileSize, CompressType ct)
             throws Exception {
+        return getStretchData(state,frGroup,tileSize,ct,null);
+    }
+
+    /**
+     * Stretch the image by tiles.  The result is the tiles' bytes, one tile after the other, ordered by
+     * column of tiles then row.  Lines are in display order, the first line is the top of the image.
+     * @param viewport if not null, only the tiles intersecting this region are stretched and returned, in the same order
+     * @return the stretched data
+     */
+    public static StretchDataInfo getStretchData(PlotState state, ActiveFitsReadGroup frGroup, int tileSize,
+                                                 CompressType ct, Viewport viewport) throws Exception {
         return state.isThreeColor() ?
-                getStretch3C(state,frGroup,tileSize,ct) :
-                getStretchStandard(state,frGroup.getFitsRead(state.firstBand()),tileSize,ct);
+                getStretch3C(state,frGroup,tileSize,ct,viewport) :
+                getStretchStandard(state,frGroup.getFitsRead(state.firstBand()),tileSize,ct,viewport);
     }
 
     public static StretchDataInfo getStretchDataMask(PlotState state, ActiveFitsReadGroup frGroup, int tileSize, long maskBits)
             throws Exception {
         FitsRead fr= frGroup.getFitsRead(state.firstBand());
-        float [] float1d= fr.getRawFloatAry();
-        StretchVars sv= getStretchVars(fr,tileSize, CompressType.FULL);
-        float [] flip1d= flipFloatArray(float1d,sv.totWidth,sv.totHeight);
+        StretchVars sv= getStretchVars(fr,tileSize, CompressType.FULL, null);
+        FloatBuffer flip1d= FloatBuffer.wrap(flipFloatArray(fr.getRawFloatBuffer(),sv.totWidth,sv.totHeight));
         List<ImageMask> maskList=  new ArrayList<>();
 
         for(int j= 0; (j<31); j++) {
@@ -56,26 +68,26 @@ public class DirectStretchUtils {
         var sTileList= doTileStretch(sv,tileSize, StretchMaskTile::new,
                 (stdef, strContainer) -> () -> strContainer.stretch(stdef, maskList,  flip1d,fr.getNaxis1()) );
 
-        byte[] byte1d= combineArray(flip1d.length, sTileList.stream().map( st -> st.result).toList());
+        byte[] byte1d= combineArray(flip1d.capacity(), sTileList.stream().map( st -> st.result).toList());
         return new StretchDataInfo(byte1d, null, null, getRangeValuesToUse(state));
     }
 
-    private static StretchDataInfo getStretchStandard(PlotState state, FitsRead fr, int tileSize, CompressType ct)
+    private static StretchDataInfo getStretchStandard(PlotState state, FitsRead fr, int tileSize, CompressType ct, Viewport viewport)
             throws Exception {
-        StretchVars sv= getStretchVars(fr,tileSize, ct);
-        float [] float1d= fr.getRawFloatAry();
-        float [] flip1d= flipFloatArray(float1d,sv.totWidth,sv.totHeight);
+        StretchVars sv= getStretchVars(fr,tileSize, ct, viewport);
+        FloatBuffer float1d= fr.getRawFloatBuffer();          // read in native orientation, tiles flip the lines as they stretch
         RangeValues rv= state.getRangeValues();
+        ImagePyramid pyramid= usePyramid(fr.getPyramid(), tileSize, ct) ? fr.getPyramid() : null;
 
         var sTileList = doTileStretch(sv,tileSize, StretchStandardTile::new,
-                (stdef, strContainer) -> () -> strContainer.stretch(stdef, rv, flip1d,fr.getHeader(),fr.getHistogram()) );
-        return buildStandardResult(sTileList,rv,sv.totWidth,sv.totHeight,ct);
+                (stdef, strContainer) -> () -> strContainer.stretch(stdef, rv, float1d,fr.getHeader(),fr.getHistogram(),pyramid) );
+        return buildStandardResult(sTileList,rv,ct);
     }
 
-    private static StretchDataInfo getStretch3C(PlotState state, ActiveFitsReadGroup frGroup, int tileSize, CompressType ct)
+    private static StretchDataInfo getStretch3C(PlotState state, ActiveFitsReadGroup frGroup, int tileSize, CompressType ct, Viewport viewport)
             throws Exception {
         FitsRead fr= frGroup.getFitsRead(state.firstBand());
-        StretchVars sv= getStretchVars(fr,tileSize, ct);
+        StretchVars sv= getStretchVars(fr,tileSize, ct, viewport);
         RangeValues[] rvAry= getRangeValuesToUse(state);
         int bPos= 0;
         int bPosHalf=0;
@@ -87,10 +99,18 @@ public class DirectStretchUtils {
 
         var sTileList =doTileStretch(sv,tileSize, Stretch3CTile::new,
                 (stdef,strContainer) -> () -> strContainer.stretch(stdef, rvAry, tComp.float1dAry,tComp.imHeadAry,tComp.histAry,rgbI) );
-        int bLen= state.getBands().length;
-        byte[] byte1d= new byte[sv.totWidth*sv.totHeight * bLen];
-        byte[] byte1dHalf=  useHalf(ct) ? new byte[dRoundUp(sv.totWidth,2) * dRoundUp(sv.totHeight,2) * bLen] : null;
-        byte[] byte1dQuarter= useQuarter(ct) ? new byte[dRoundUp(sv.totWidth,4) * dRoundUp(sv.totHeight,4) * bLen] : null;
+        int len= 0, lenHalf= 0, lenQuarter= 0;
+        for (Stretch3CTile stretchTile : sTileList) {
+            for(int bandIdx=0; (bandIdx<3);bandIdx++) {
+                if (tComp.float1dAry[bandIdx]==null) continue;
+                len+= stretchTile.result[bandIdx].length;
+                if (useHalf(ct)) lenHalf+= stretchTile.resultHalf[bandIdx].length;
+                if (useQuarter(ct)) lenQuarter+= stretchTile.resultQuarter[bandIdx].length;
+            }
+        }
+        byte[] byte1d= new byte[len];
+        byte[] byte1dHalf=  useHalf(ct) ? new byte[lenHalf] : null;
+        byte[] byte1dQuarter= useQuarter(ct) ? new byte[lenQuarter] : null;
 
         for (Stretch3CTile stretchTile : sTileList) {
             byte[][] tmpByte3CAry= stretchTile.result;
@@ -117,9 +137,9 @@ public class DirectStretchUtils {
     private static <T> List<T> doTileStretch(StretchVars sv, int tileSize, Callable<T> stretchContainerFactory,
                                             SetupStretchTask<T> setupTileStretch) throws Exception {
         var stretchResultList= new ArrayList<T>(300);
-        var taskList= new ArrayList<Callable<Void>>(sv.xPanels*sv.yPanels);
-        for(int i= 0; i<sv.xPanels; i++) {
-            for(int j= 0; j<sv.yPanels; j++) {
+        var taskList= new ArrayList<Callable<Void>>(sv.tileLen);
+        for(int i= sv.tiles.xFirst(); i<=sv.tiles.xLast(); i++) {
+            for(int j= sv.tiles.yFirst(); j<=sv.tiles.yLast(); j++) {
                 int width= (i<sv.xPanels-1) ? tileSize : ((sv.totWidth-1) % tileSize + 1);
                 int height= (j<sv.yPanels-1) ? tileSize : ((sv.totHeight-1) % tileSize + 1);
                 T stretchContainer= stretchContainerFactory.call();
@@ -133,11 +153,11 @@ public class DirectStretchUtils {
     }
 
     private static StretchDataInfo buildStandardResult(List<StretchStandardTile> sTileList, RangeValues rv,
-                                                      int totWidth, int totHeight, CompressType ct) throws Exception {
+                                                      CompressType ct) throws Exception {
         var taskList= new ArrayList<Callable<Void>>();
-        byte[] byte1d= useFull(ct ) ? new byte[totWidth*totHeight] : null;
-        byte[] byte1dQuarter=  useQuarter(ct) ? new byte[dRoundUp(totWidth,4) * dRoundUp(totHeight,4)]:null;
-        byte[] byte1dHalf= useHalf(ct) ? new byte[dRoundUp(totWidth,2) * dRoundUp(totHeight,2)]:null;
+        byte[] byte1d= useFull(ct ) ? new byte[sTileList.stream().mapToInt(st -> st.result.length).sum()] : null;
+        byte[] byte1dQuarter=  useQuarter(ct) ? new byte[sTileList.stream().mapToInt(st -> st.resultQuarter.length).sum()]:null;
+        byte[] byte1dHalf= useHalf(ct) ? new byte[sTileList.stream().mapToInt(st -> st.resultHalf.length).sum()]:null;
         if (useFull(ct)) {
             taskList.add(() -> combineArray(byte1d, sTileList.stream().map( st -> st.result).toList()));
         }
@@ -173,27 +193,39 @@ public class DirectStretchUtils {
         return ct==CompressType.FULL || ct==CompressType.HALF_FULL || ct==CompressType.QUARTER_HALF_FULL;
     }
 
-    private static float [] flipFloatArray(float [] float1d, int naxis1, int naxis2) {
-        float [] flipped= new float[float1d.length];
+    /**
+     * The reduced levels can replace decimating the full resolution stretch when the tiles line up with the blocks of the
+     * levels. When the full resolution is not requested it does not have to be stretched at all.
+     */
+    private static boolean usePyramid(ImagePyramid pyramid, int tileSize, CompressType ct) {
+        if (pyramid==null || tileSize % 4 != 0) return false;
+        return useQuarter(ct) ? pyramid.hasLevel(2) : useHalf(ct) && pyramid.hasLevel(1);
+    }
+
+    private static float [] flipFloatArray(FloatBuffer float1d, int naxis1, int naxis2) {
+        float [] flipped= new float[naxis1*naxis2];
         int idx=0;
         for (int y= naxis2-1; y>=0; y--) {
-            for (int x= 0; x<naxis1; x++) {
-                flipped[idx]= float1d[y*naxis1+x];
-                idx++;
-            }
+            float1d.get(y*naxis1, flipped, idx, naxis1);
+            idx+= naxis1;
         }
         return flipped;
     }
 
-    private static StretchVars getStretchVars(FitsRead fr, int tileSize, CompressType ct) {
+    private static StretchVars getStretchVars(FitsRead fr, int tileSize, CompressType ct, Viewport viewport) {
         int totWidth= fr.getNaxis1();
         int totHeight= fr.getNaxis2();
         int xPanels= totWidth / tileSize;
         int yPanels= totHeight / tileSize;
         if (totWidth % tileSize > 0) xPanels++;
         if (totHeight % tileSize > 0) yPanels++;
-        int tileLen= xPanels * yPanels;
-        return new StretchVars(totWidth,totHeight,xPanels,yPanels,tileLen,ct);
+        TileRange tiles= viewport==null ? new TileRange(0, xPanels-1, 0, yPanels-1) :
+                new TileRange(Math.max(0, Math.floorDiv(viewport.x(), tileSize)),
+                              Math.min(xPanels-1, Math.floorDiv(viewport.x()+viewport.width()-1, tileSize)),
+                              Math.max(0, Math.floorDiv(viewport.y(), tileSize)),
+                              Math.min(yPanels-1, Math.floorDiv(viewport.y()+viewport.height()-1, tileSize)));
+        int tileLen= Math.max(0, tiles.xLast()-tiles.xFirst()+1) * Math.max(0, tiles.yLast()-tiles.yFirst()+1);
+        return new StretchVars(totWidth,totHeight,xPanels,yPanels,tileLen,ct,tiles);
     }
 
     private static ThreeCComponents get3CComponents(ActiveFitsReadGroup frGroup, int totWidth, int totHeight, PlotState state) {
@@ -206,7 +238,7 @@ public class DirectStretchUtils {
         for(Band band : bands) {
             FitsRead bandFr= frGroup.getFitsRead(band);
             idx= band.getIdx();
-            float1dAry[idx] = flipFloatArray(bandFr.getRawFloatAry(),totWidth,totHeight);
+            float1dAry[idx] = flipFloatArray(bandFr.getRawFloatBuffer(),totWidth,totHeight);
             imHeadAry[idx]= new ImageHeader(bandFr.getHeader());
             histAry[idx]= bandFr.getHistogram();
         }
@@ -301,9 +333,33 @@ public class DirectStretchUtils {
 
     private interface SetupStretchTask<T> { Callable<Void> makeTask(StretchTileDef stdef, T stretchContainer); }
     private record ThreeCComponents(float[][] float1dAry, ImageHeader[] imHeadAry, Histogram[] histAry) {}
-    private record StretchVars(int totWidth, int totHeight, int xPanels, int yPanels, int tileLen, CompressType ct) {}
+    private record StretchVars(int totWidth, int totHeight, int xPanels, int yPanels, int tileLen, CompressType ct, TileRange tiles) {}
+    private record TileRange(int xFirst, int xLast, int yFirst, int yLast) {}
     private record StretchTileDef(int x, int y, int width, int height, CompressType ct) {}
 
+    /**
+     * A region of the image in display order(the first line is the top of the image), at full resolution.
+     */
+    public record Viewport(int x, int y, int width, int height) {
+        /**
+         * @param s "x,y,width,height"
+         * @return the viewport, or null if s is empty or not valid
+         */
+        public static Viewport parse(String s) {
+            if (s==null || s.isBlank()) return null;
+            try {
+                String[] parts= s.split(",");
+                if (parts.length!=4) return null;
+                int w= Integer.parseInt(parts[2].trim());
+                int h= Integer.parseInt(parts[3].trim());
+                if (w<1 || h<1) return null;
+                return new Viewport(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()), w, h);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
     public static class StretchDataInfo implements Serializable, HasSizeOf {
         private final byte [] byte1d;
         private final byte [] byte1dHalf;
@@ -403,23 +459,51 @@ public class DirectStretchUtils {
         byte[] resultHalf;
         byte[] resultQuarter;
 
-        Void stretch(StretchTileDef stdef, RangeValues rv, float [] float1d, Header header, Histogram histogram) {
+        Void stretch(StretchTileDef stdef, RangeValues rv, FloatBuffer float1d, Header header, Histogram histogram,
+                     ImagePyramid pyramid) {
             final ImageHeader imHead= new ImageHeader(header) ;
-            byte [] byteAry= new byte[stdef.width * stdef.height];
-            int lastPixel = stdef.x + stdef.width -1;
-            int lastLine = stdef.y + stdef.height -1;
-            ImageStretch.stretchPixels8Bit(rv, float1d, byteAry, imHead,  histogram, stdef.x, lastPixel, stdef.y, lastLine );
+            if (pyramid!=null) {
+                if (useFull(stdef.ct)) this.result= stretchFull(stdef, rv, float1d, imHead, histogram);
+                if (useHalf(stdef.ct)) this.resultHalf= stretchLevel(stdef, rv, float1d, imHead, histogram, pyramid, 1);
+                if (useQuarter(stdef.ct)) this.resultQuarter= stretchLevel(stdef, rv, float1d, imHead, histogram, pyramid, 2);
+                return null;
+            }
+            byte [] byteAry= stretchFull(stdef, rv, float1d, imHead, histogram);
             if (useHalf(stdef.ct))   this.resultHalf = makeDecimated(byteAry, 2, stdef.width, stdef.height);
             if (useQuarter(stdef.ct)) this.resultQuarter = makeDecimated(byteAry, 4, stdef.width, stdef.height);
             this.result =byteAry;
             return null;
         }
+
+        private static byte[] stretchFull(StretchTileDef stdef, RangeValues rv, FloatBuffer float1d, ImageHeader imHead, Histogram histogram) {
+            byte [] byteAry= new byte[stdef.width * stdef.height];
+            int lastPixel = stdef.x + stdef.width -1;
+            int lastLine = stdef.y + stdef.height -1;
+            ImageStretch.stretchPixels8Bit(rv, float1d, byteAry, imHead,  histogram, stdef.x, lastPixel, stdef.y, lastLine, true);
+            return byteAry;
+        }
+
+        /**
+         * stretch the part of a reduced level covered by this tile, the result has the same layout as makeDecimated
+         */
+        private static byte[] stretchLevel(StretchTileDef stdef, RangeValues rv, FloatBuffer float1d, ImageHeader imHead,
+                                           Histogram histogram, ImagePyramid pyramid, int level) {
+            int factor= 1<<level;
+            int x= stdef.x/factor;
+            int y= stdef.y/factor;
+            int width= dRoundUp(stdef.width,factor);
+            int height= dRoundUp(stdef.height,factor);
+            byte [] byteAry= new byte[width * height];
+            ImageStretch.stretchPixels8Bit(rv, float1d, imHead, histogram, pyramid, level, byteAry,
+                    x, x+width-1, y, y+height-1);
+            return byteAry;
+        }
     }
 
     private static class StretchMaskTile {
         byte[] result;
 
-        Void stretch(StretchTileDef stdef, List<ImageMask> maskList, final float [] float1d, final int naxis1) {
+        Void stretch(StretchTileDef stdef, List<ImageMask> maskList, final FloatBuffer float1d, final int naxis1) {
             byte [] byteAry= new byte[stdef.width * stdef.height];
             int[] pixelhist = new int[256];
             int lastPixel = stdef.x + stdef.width -1;
@@ -4,7 +4,9 @@
 package edu.caltech.ipac.firefly.server.visualize;
 
 import edu.caltech.ipac.firefly.data.FileInfo;
+import edu.caltech.ipac.firefly.server.Counters;
 import edu.caltech.ipac.firefly.server.util.Logger;
+import edu.caltech.ipac.util.AppProperties;
 import edu.caltech.ipac.util.FileUtil;
 import edu.caltech.ipac.util.download.BaseNetParams;
 import edu.caltech.ipac.util.download.CacheHelper;
@@ -19,21 +21,35 @@ import edu.caltech.ipac.visualize.net.ImageServiceParams;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.SocketTimeoutException;
 import java.net.URL;
+import java.net.UnknownHostException;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 
 /**
- * This class will download files via VisNetwork.  However, it also locks so that two of the same request do not happen
- * at the same time. This way a file will not overwrite itself during download.
+ * This class will download files via VisNetwork.  However, it also makes sure that two of the same request do not
+ * happen at the same time. This way a file will not overwrite itself during download.  A request that comes in while
+ * the same one is running waits for that one and gets its result.
+ * <p>
+ * A request that fails in a way that is not likely to change soon (not found, a timeout or a server error) is
+ * remembered for a short time, so the requests that follow fail right away instead of trying again.
  *
  * @author Trey Roby
  */
 public class LockingVisNetwork {
 
-    private static final Map<BaseNetParams, Object> _activeRequest = Collections.synchronizedMap(new HashMap<>());
+    private static final long FAILURE_TTL= AppProperties.getLongProperty("visualize.retrieve.failureCacheSec", 30) * 1000;
+    private static final Map<String, CompletableFuture<FileInfo>> _activeRequest = new ConcurrentHashMap<>();
+    private static final Map<String, FailedRetrieve> _recentFailures = new ConcurrentHashMap<>();
+    private static final Counters counters= Counters.getInstance();
+
+    /** a failed retrieve, either a FileInfo with an error response code or the exception */
+    private record FailedRetrieve(FileInfo fileInfo, FailedRequestException e, long expires) {}
 
     public static FileInfo retrieveURL(AnyUrlParams params) throws FailedRequestException {
         return lockingRetrieve(params, null);
@@ -62,20 +78,91 @@ public class LockingVisNetwork {
     private static FileInfo lockingRetrieve(BaseNetParams params, ServiceCaller svcCaller) throws FailedRequestException {
         Objects.requireNonNull(params);
         confirmParamsType(params);
+        String key= params.getUniqueString();
+        FileInfo failedFileInfo= getRecentFailure(key);
+        if (failedFileInfo!=null) return failedFileInfo;
+
+        CompletableFuture<FileInfo> future= new CompletableFuture<>();
+        CompletableFuture<FileInfo> active= _activeRequest.putIfAbsent(key, future);
+        if (active!=null) return waitForActive(active);
         try {
-            Object lockKey= _activeRequest.computeIfAbsent(params, k -> new Object());
-            synchronized (lockKey) {
-                return (params instanceof AnyUrlParams urlP) ?
-                    retrieveURL( urlP, makeDownloadProgress(params) ) :
-                        (params instanceof ImageServiceParams isParam) ?
-                                retrieveService(isParam, svcCaller) :
-                                retrieveServiceCaller((ServiceCallerParams) params);
-            }
+            FileInfo fileInfo= doRetrieve(params, svcCaller);
+            if (isLastingFailure(fileInfo.getResponseCode(), null)) addRecentFailure(key, fileInfo, null);
+            future.complete(fileInfo);
+            return fileInfo;
+        } catch (FailedRequestException e) {
+            if (isLastingFailure(e.getResponseCode(), e)) addRecentFailure(key, null, e);
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            if (!future.isDone()) future.completeExceptionally(new FailedRequestException("Retrieve failed"));
+            _activeRequest.remove(key, future);
+        }
+    }
+
+    private static FileInfo doRetrieve(BaseNetParams params, ServiceCaller svcCaller) throws FailedRequestException {
+        try {
+            return (params instanceof AnyUrlParams urlP) ?
+                retrieveURL( urlP, makeDownloadProgress(params) ) :
+                    (params instanceof ImageServiceParams isParam) ?
+                            retrieveService(isParam, svcCaller) :
+                            retrieveServiceCaller((ServiceCallerParams) params);
         } catch (IOException | SecurityException e) {
             throw ResponseMessage.simplifyNetworkCallException(e);
+        }
+    }
+
+    /**
+     * Wait for the same request that is already running and return its result.
+     */
+    private static FileInfo waitForActive(CompletableFuture<FileInfo> active) throws FailedRequestException {
+        long start= System.currentTimeMillis();
+        try {
+            return active.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof FailedRequestException fe) throw fe;
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw ResponseMessage.simplifyNetworkCallException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FailedRequestException("Retrieve interrupted", e);
         } finally {
-            _activeRequest.remove(params);
+            counters.incrementVis("Retrieve: Shared");
+            counters.increment(Counters.Category.Visualization, "Retrieve: Shared wait ms",
+                               (int)(System.currentTimeMillis()-start));
+        }
+    }
+
+    private static FileInfo getRecentFailure(String key) throws FailedRequestException {
+        FailedRetrieve failed= _recentFailures.get(key);
+        if (failed==null) return null;
+        if (failed.expires()<System.currentTimeMillis()) {
+            _recentFailures.remove(key, failed);
+            return null;
+        }
+        counters.incrementVis("Retrieve: Recent failure");
+        if (failed.e()!=null) throw failed.e();
+        return failed.fileInfo();
+    }
+
+    private static void addRecentFailure(String key, FileInfo fileInfo, FailedRequestException e) {
+        if (FAILURE_TTL<=0) return;
+        long now= System.currentTimeMillis();
+        _recentFailures.values().removeIf(f -> f.expires()<now);
+        _recentFailures.put(key, new FailedRetrieve(fileInfo, e, now+FAILURE_TTL));
+    }
+
+    /**
+     * Authorization errors are not included since the same request with other credentials might work.
+     */
+    private static boolean isLastingFailure(int responseCode, Exception e) {
+        if (responseCode==404 || responseCode==408 || responseCode==410 || (responseCode>=500 && responseCode<=504)) {
+            return true;
+        }
+        for(Throwable t= e; t!=null; t= t.getCause()) {
+            if (t instanceof SocketTimeoutException || t instanceof UnknownHostException) return true;
         }
+        return false;
     }
 
     private static DownloadProgress makeDownloadProgress(BaseNetParams params) { // todo: generalize beyond just plotId
@@ -120,7 +207,9 @@ public class LockingVisNetwork {
         try {
             File fileName= (fileInfo==null) ? CacheHelper.makeFile(params.getFileDir(), params.getUniqueString()) : fileInfo.getFile();
             var ops= URLDownload.Options.listenerOp(params.getMaxSizeToDownload(), dl);
-            fileInfo= URLDownload.getDataToFile(params.getURL(), fileName, params.getCookies(), params.getHeaders(), ops);
+            fileInfo= params.getSegmentedDownload() ?
+                    URLDownload.getDataToFileInSegments(params.getURL(), fileName, params.getCookies(), params.getHeaders(), ops) :
+                    URLDownload.getDataToFile(params.getURL(), fileName, params.getCookies(), params.getHeaders(), ops);
             if (fileInfo.getResponseCode()==200) CacheHelper.putFileInfo(params,fileInfo);
             return fileInfo;
         } catch (Exception e) {
@@ -65,6 +65,7 @@ public class PlotServUtils {
             a.setValue(pStat.getType()==ProgressStat.PType.GROUP,"group");
             a.setValue(progMsg.done,"done");
             a.setValue( pStat.getPlotId(),"plotId");
+            if (pStat.getId()!=null) a.setSupersedeKey(a.getType()+"|"+pStat.getId());
             ServerEventManager.fireAction(a);
         }
     }
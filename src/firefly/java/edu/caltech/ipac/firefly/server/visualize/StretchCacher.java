@@ -0,0 +1,115 @@
+/*
+ * License information at https://github.com/Caltech-IPAC/firefly/blob/master/License.txt
+ */
+
+package edu.caltech.ipac.firefly.server.visualize;
+
+import edu.caltech.ipac.firefly.server.Counters;
+import edu.caltech.ipac.firefly.server.visualize.DirectStretchUtils.CompressType;
+import edu.caltech.ipac.firefly.server.visualize.DirectStretchUtils.StretchDataInfo;
+import edu.caltech.ipac.firefly.visualize.Band;
+import edu.caltech.ipac.firefly.visualize.PlotState;
+import edu.caltech.ipac.util.AppProperties;
+import edu.caltech.ipac.util.StringUtils;
+import edu.caltech.ipac.util.cache.Cache;
+import edu.caltech.ipac.util.cache.CacheKey;
+import edu.caltech.ipac.util.cache.CacheManager;
+import edu.caltech.ipac.util.cache.StringKey;
+import edu.caltech.ipac.visualize.plot.ActiveFitsReadGroup;
+import edu.caltech.ipac.visualize.plot.plotdata.FitsRead;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps stretched image data in the shared memory cache, so a stretch that was just computed is not computed
+ * again when another tab, another user of the same image, or the same user going back to a previous stretch
+ * asks for it.  The key is made from the data of each band, the RangeValues, the mask and the compress type,
+ * so it does not depend on the plot context.  Concurrent identical requests wait for the first one to finish
+ * instead of doing the same stretch.
+ */
+class StretchCacher {
+
+    /** larger stretches are not cached, so they do not push the FitsRead data out of the cache */
+    private static final long MAX_ENTRY_SIZE=
+            AppProperties.getLongProperty("visualize.stretchCache.maxEntryMB", 64) * StringUtils.MEG;
+    private static final boolean ENABLED= AppProperties.getBooleanProperty("visualize.stretchCache.enabled", true);
+
+    private static final Cache memCache= CacheManager.getCache(Cache.TYPE_VIS_SHARED_MEM);
+    private static final Map<CacheKey, Object> activeRequest = new ConcurrentHashMap<>(61);
+    private static final Counters counters = Counters.getInstance();
+    static final String HIT= "Stretch Cache: Hit";
+    static final String SHARED= "Stretch Cache: Shared";
+    static final String MISS= "Stretch Cache: Miss";
+
+    interface StretchMaker { StretchDataInfo make() throws Exception; }
+
+    static StretchDataInfo getStretchData(PlotState state, ActiveFitsReadGroup frGroup, int tileSize,
+                                          boolean mask, long maskBits, CompressType ct) throws Exception {
+        StretchMaker maker= () -> makeStretchData(state,frGroup,tileSize,mask,maskBits,ct);
+        if (!ENABLED) return maker.make();
+        return getStretchData(makeKey(state,frGroup,tileSize,mask,maskBits,ct), maker);
+    }
+
+    static StretchDataInfo getStretchData(CacheKey key, StretchMaker maker) throws Exception {
+        StretchDataInfo data= getFromCache(key);
+        if (data!=null) {
+            counters.incrementVis(HIT);
+            return data;
+        }
+        Object lockKey= activeRequest.computeIfAbsent(key, k -> new Object());
+        try {
+            synchronized (lockKey) {
+                data= getFromCache(key);
+                if (data!=null) {     // an identical request finished while this one waited
+                    counters.incrementVis(SHARED);
+                    return data;
+                }
+                counters.incrementVis(MISS);
+                data= maker.make();
+                if (data.getSizeOf()<=MAX_ENTRY_SIZE) memCache.put(key, data);
+                return data;
+            }
+        } finally {
+            activeRequest.remove(key, lockKey);
+        }
+    }
+
+    private static StretchDataInfo makeStretchData(PlotState state, ActiveFitsReadGroup frGroup, int tileSize,
+                                                   boolean mask, long maskBits, CompressType ct) throws Exception {
+        return !mask ? DirectStretchUtils.getStretchData(state,frGroup,tileSize,ct) :
+                       DirectStretchUtils.getStretchDataMask(state,frGroup,tileSize,maskBits);
+    }
+
+    /**
+     * The data of a band is identified by its working file, the file's modified time, and the HDU and plane of the
+     * FitsRead.  A FitsRead that is read again from the same file after leaving the cache uses the same entries;
+     * a file that is written again gets new ones.  A FitsRead made by the pipeline (rotated, flipped or cropped) keeps
+     * the original file as its working file, so the pipeline operations of the request are part of the key.
+     */
+    static CacheKey makeKey(PlotState state, ActiveFitsReadGroup frGroup, int tileSize,
+                            boolean mask, long maskBits, CompressType ct) {
+        StringBuilder sb= new StringBuilder(200).append("stretch-data");
+        for (Band band : state.getBands()) {
+            FitsRead fr= frGroup.getFitsRead(band);
+            sb.append('|').append(band)
+              .append('|').append(state.getWorkingFitsFileStr(band))
+              .append('|').append(state.getImageIdx(band))
+              .append('|').append(lastModified(PlotStateUtil.getWorkingFitsFile(state,band)))
+              .append('|').append(fr.getHduNumber())
+              .append('|').append(fr.getPlaneNumber())
+              .append('|').append(WebPlotPipeline.getPipelineDesc(state.getWebPlotRequest(band)))
+              .append('|').append(state.getRangeValues(band));
+        }
+        sb.append("|tile=").append(tileSize).append("|ct=").append(ct);
+        if (mask) sb.append("|mask=").append(maskBits);
+        return new StringKey(sb.toString());
+    }
+
+    private static long lastModified(File f) { return f!=null ? f.lastModified() : 0; }
+
+    private static StretchDataInfo getFromCache(CacheKey key) {
+        return (memCache.get(key) instanceof StretchDataInfo data) ? data : null;
+    }
+}
@@ -11,6 +11,7 @@ import edu.caltech.ipac.firefly.server.util.Logger;
 import edu.caltech.ipac.firefly.server.util.multipart.UploadFileInfo;
 import edu.caltech.ipac.firefly.server.visualize.DirectStretchUtils.CompressType;
 import edu.caltech.ipac.firefly.server.visualize.DirectStretchUtils.StretchDataInfo;
+import edu.caltech.ipac.firefly.server.visualize.DirectStretchUtils.Viewport;
 import edu.caltech.ipac.firefly.server.visualize.WebPlotFactory.WebPlotFactoryRet;
 import edu.caltech.ipac.firefly.visualize.Band;
 import edu.caltech.ipac.firefly.visualize.BandState;
@@ -203,8 +204,7 @@ public class VisServerOps {
                 fromCache= " (from Cache)";
             }
             else {
-                data= !mask ? DirectStretchUtils.getStretchData(state,frGroup,tileSize,ct) :
-                              DirectStretchUtils.getStretchDataMask(state,frGroup,tileSize,maskBits);
+                data= StretchCacher.getStretchData(state,frGroup,tileSize,mask,maskBits,ct);
                 if (ct!= CompressType.FULL) memCache.put(stretchDataKey, data.copyParts(ct));
             }
             counters.incrementVis("Byte Data: " + StretchDataInfo.getMostCompressedDescription(ct));
@@ -218,6 +218,34 @@ public class VisServerOps {
         }
     }
 
+    /**
+     * Stretch only the tiles intersecting the viewport.  The result is not cached since it depends on the viewport.
+     * Only the most compressed level of ct is computed.
+     * @param viewport the region in view; if null or a mask is requested, the whole image is stretched
+     * @return the bytes of the tiles intersecting the viewport
+     */
+    public static byte[] getByteStretchArray(PlotState state, int tileSize, boolean mask, long maskBits,
+                                             CompressType ct, Viewport viewport) {
+        if (viewport==null || mask) return getByteStretchArray(state,tileSize,mask,maskBits,ct);
+        try {
+            CompressType viewCt= switch (ct) {
+                case HALF_FULL -> CompressType.HALF;
+                case QUARTER_HALF_FULL -> CompressType.QUARTER_HALF;
+                default -> ct;
+            };
+            ActiveFitsReadGroup frGroup= CtxControl.prepare(state);
+            StretchDataInfo data= DirectStretchUtils.getStretchData(state,frGroup,tileSize,viewCt,viewport);
+            counters.incrementVis("Byte Data: Viewport " + StretchDataInfo.getMostCompressedDescription(viewCt));
+            PlotServUtils.statsLog("byteAry",
+                    "total-MB", (float)data.findMostCompressAry(viewCt).length / StringUtils.MEG,
+                    "Type", (state.isThreeColor() ? "3 Color" : "Standard") +" - "+ viewCt + " viewport " + viewport);
+            CtxControl.refreshCache(state);
+            return data.findMostCompressAry(viewCt);
+        } catch (Exception e) {
+            return new byte[] {};
+        }
+    }
+
     public static WebPlotResult crop(PlotState[] stateAry, ImagePt c1, ImagePt c2, boolean cropMultiAll) {
         List<WebPlotResult> resultsList= Arrays.stream(stateAry).map((s) -> crop(s, c1, c2, cropMultiAll)).toList();
         boolean success= resultsList.stream().filter(r -> !r.success()).toList().isEmpty();
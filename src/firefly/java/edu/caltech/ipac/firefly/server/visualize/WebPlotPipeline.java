@@ -137,6 +137,37 @@ public class WebPlotPipeline {
                 projType != Projection.UNSPECIFIED);
     }
 
+    /**
+     * @param r the request
+     * @return a string describing the operations applyPipeline would do with the given request, in order, or an empty
+     * string when there are none.  Two requests with the same description make the same FitsRead from the same file.
+     */
+    static String getPipelineDesc(WebPlotRequest r) {
+        if (r==null) return "";
+        StringBuilder sb= new StringBuilder();
+        for(WebPlotRequest.Order order : r.getPipelineOrder()) {
+            switch (order) {
+                case FLIP_Y -> { if (r.isFlipY()) sb.append("flipY;"); }
+                case FLIP_X -> { if (r.isFlipX()) sb.append("flipX;"); }
+                case ROTATE -> {
+                    if (!isRotation(r)) break;
+                    if (r.getRotateNorth()) sb.append("north=").append(r.getRotateNorthType()).append(';');
+                    else sb.append("rotate=").append(r.getRotationAngle()).append(';');
+                }
+                case POST_CROP -> {
+                    if (r.getPostCrop()) sb.append("crop=").append(getCropPt1(r)).append(',').append(getCropPt2(r)).append(';');
+                }
+                case POST_CROP_AND_CENTER -> {
+                    if (r.getPostCropAndCenter()) {
+                        sb.append("cropCenter=").append(PlotServUtils.getRequestArea(r))
+                          .append(',').append(r.getPostCropAndCenterType()).append(';');
+                    }
+                }
+            }
+        }
+        return sb.toString();
+    }
+
     static boolean isRotation(WebPlotRequest r) {
         return r!=null && ((r.getRotate() && !Double.isNaN(r.getRotationAngle())) || r.getRotateNorth());
     }
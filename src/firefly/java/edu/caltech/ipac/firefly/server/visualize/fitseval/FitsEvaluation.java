@@ -4,14 +4,20 @@
 package edu.caltech.ipac.firefly.server.visualize.fitseval;
 
 import edu.caltech.ipac.firefly.data.RelatedData;
+import edu.caltech.ipac.firefly.server.ServerContext;
+import edu.caltech.ipac.firefly.server.util.Logger;
+import edu.caltech.ipac.firefly.server.visualize.FitsCacher;
 import edu.caltech.ipac.firefly.visualize.WebPlotRequest;
+import edu.caltech.ipac.util.AppProperties;
 import edu.caltech.ipac.util.FileUtil;
 import edu.caltech.ipac.visualize.plot.plotdata.FitsRead;
 import edu.caltech.ipac.visualize.plot.plotdata.FitsReadFactory;
 import edu.caltech.ipac.visualize.plot.plotdata.FitsReadUtil;
+import edu.caltech.ipac.visualize.plot.plotdata.ImagePyramid;
 import nom.tam.fits.BasicHDU;
 import nom.tam.fits.Fits;
 import nom.tam.fits.FitsException;
+import org.apache.commons.codec.digest.DigestUtils;
 
 import java.io.File;
 import java.io.IOException;
@@ -28,6 +34,12 @@ public class FitsEvaluation {
     }
 
     static final private List<Eval> evalList= Arrays.asList(new MaskEval(), new SpectralCubeEval());
+    /** images with at least this many pixels get an ImagePyramid, 0 to disable */
+    static final private long PYRAMID_MIN_PIXELS= AppProperties.getLongProperty("visualize.fits.pyramid.minPixels", 2048L*2048L);
+    /** the smallest level is no larger than this on its longer side */
+    static final private int PYRAMID_MIN_SIZE= AppProperties.getIntProperty("visualize.fits.pyramid.minSize", 512);
+    /** images with at least this many pixels keep their data in a memory mapped file instead of the heap, 0 to disable */
+    static final private long MAPPED_MIN_PIXELS= AppProperties.getLongProperty("visualize.fits.mappedStorage.minPixels", 0);
 
     public static FitsDataEval readAndEvaluate(File f, boolean clearHdu, WebPlotRequest req) throws FitsException, IOException  {
         return readAndEvaluate(new Fits(f), f, clearHdu, req);
@@ -46,6 +58,8 @@ public class FitsEvaluation {
             if (workingHDUS.length==0) throw new FitsException("Bad format in FITS file, no HDUs found");
             FitsRead[] frAry = FitsReadFactory.createFitsReadArray(workingHDUS, f, clearHdu);
             FitsDataEval fitsDataEval= new FitsDataEval(frAry,fitsFile);
+            useMappedStorage(f, frAry);
+            buildPyramidsInBackground(f, frAry);
             if (workingHDUS.length >1) { // Do evaluation
                 for(int i= 0; i<frAry.length; i++) {
                     if (frAry[i].getPlaneNumber()==0) {
@@ -66,4 +80,65 @@ public class FitsEvaluation {
         }
     }
 
+    private static void useMappedStorage(File f, FitsRead[] frAry) {
+        if (MAPPED_MIN_PIXELS<=0) return;
+        String base= cacheBaseName(f);
+        for(FitsRead fr : frAry) {
+            if (fr.isDeferredRead() || (long)fr.getNaxis1()*fr.getNaxis2() < MAPPED_MIN_PIXELS) continue;
+            File storageFile= new File(ServerContext.getVisCacheDir(), base+"-"+fr.getHduNumber()+"-"+fr.getPlaneNumber()+".f32");
+            try {
+                fr.useMappedStorage(storageFile);
+            } catch (IOException e) {
+                Logger.getLogger().warn(e, "Could not use mapped storage, keeping data on the heap: " + f.getName());
+            }
+        }
+    }
+
+    /**
+     * Build the reduced resolution levels of the large images in the background, so the first stretch does not wait for them.
+     * The levels are saved in a sidecar file next to the FITS file, when the file is read again they are loaded from there.
+     * Once the levels are set, the cache entry of the file is refreshed so its size includes them.
+     */
+    private static void buildPyramidsInBackground(File f, FitsRead[] frAry) {
+        if (PYRAMID_MIN_PIXELS<=0) return;
+        for(FitsRead fr : frAry) {
+            if (fr.isDeferredRead() || (long)fr.getNaxis1()*fr.getNaxis2() < PYRAMID_MIN_PIXELS) continue;
+            ServerContext.SHORT_TASK_EXEC.submit(() -> {
+                try {
+                    fr.setPyramid(getPyramid(f, fr));
+                    FitsCacher.refreshCache(f);
+                } catch (Exception e) {
+                    Logger.getLogger().warn(e, "Could not build image pyramid for: " + f.getName());
+                }
+            });
+        }
+    }
+
+    /**
+     * Files derived from a FITS file may end up in the shared vis cache directory, where files from different
+     * directories can have the same name.  Name them after the absolute path instead.
+     */
+    private static String cacheBaseName(File f) {
+        return f.getName()+"-"+DigestUtils.md5Hex(f.getAbsolutePath());
+    }
+
+    private static ImagePyramid getPyramid(File f, FitsRead fr) {
+        File dir= f.getParentFile()!=null && f.getParentFile().canWrite() ? f.getParentFile() : ServerContext.getVisCacheDir();
+        File sidecar= new File(dir, cacheBaseName(f)+"-"+fr.getHduNumber()+"-"+fr.getPlaneNumber()+".pyramid");
+        if (sidecar.lastModified() >= f.lastModified()) {
+            try {
+                ImagePyramid pyramid= ImagePyramid.read(sidecar, fr.getNaxis1(), fr.getNaxis2());
+                if (pyramid!=null) return pyramid;
+            } catch (IOException e) {
+                Logger.getLogger().info("Could not read pyramid, rebuilding: " + sidecar.getName());
+            }
+        }
+        ImagePyramid pyramid= ImagePyramid.build(fr.getRawFloatBuffer(), fr.getNaxis1(), fr.getNaxis2(), PYRAMID_MIN_SIZE);
+        try {
+            pyramid.write(sidecar);
+        } catch (IOException e) {
+            Logger.getLogger().info("Could not write pyramid: " + sidecar.getPath());
+        }
+        return pyramid;
+    }
 }
@@ -83,6 +83,7 @@ public class URLFileRetriever implements FileRetriever {
             params.setCheckForNewer(request.getUrlCheckForNewer());
             params.setLocalFileExtensions(extsList);
             params.setMaxSizeToDownload(VisContext.FITS_MAX_SIZE);
+            params.setSegmentedDownload(true);
             if (request.getUserDesc() != null) params.setDesc(request.getUserDesc()); // set file description
 
             PlotServUtils.updateProgress(request, ProgressStat.PType.READING, PlotServUtils.READ_PERCENT_MSG);
@@ -4,6 +4,7 @@
 package edu.caltech.ipac.firefly.visualize;
 
 import edu.caltech.ipac.astro.conv.CoordConv;
+import edu.caltech.ipac.astro.conv.CoordConverter;
 import edu.caltech.ipac.astro.conv.LonLat;
 import edu.caltech.ipac.visualize.plot.CoordinateSys;
 import edu.caltech.ipac.visualize.plot.ImagePt;
@@ -77,16 +78,32 @@ public class VisUtil {
         if (from.equals(to) || to == null) {
             retval = wpt;
         } else {
-            double tobs = 0.0;
-            if (from.equals(CoordinateSys.EQ_B1950)) tobs = 1983.5;
-            LonLat ll = CoordConv.doConv(from.getJsys(), from.getEquinox(),
-                                         wpt.getLon(), wpt.getLat(),
-                                         to.getJsys(), to.getEquinox(), tobs);
+            LonLat ll = getConverter(from, to).convert(wpt.getLon(), wpt.getLat());
             retval = new WorldPt(ll.getLon(), ll.getLat(), to);
         }
         return retval;
     }
 
+    /**
+     * Convert many positions from one coordinate system to another, the output arrays may be the input arrays.
+     *
+     * @param lon    the longitudes in degrees
+     * @param lat    the latitudes in degrees
+     * @param from   the coordinate system of the input
+     * @param to     the coordinate system to convert to
+     * @param lonOut the converted longitudes
+     * @param latOut the converted latitudes
+     */
+    public static void convert(double[] lon, double[] lat, CoordinateSys from, CoordinateSys to,
+                               double[] lonOut, double[] latOut) {
+        getConverter(from, to).convert(lon, lat, lonOut, latOut);
+    }
+
+    private static CoordConverter getConverter(CoordinateSys from, CoordinateSys to) {
+        double tobs = from.equals(CoordinateSys.EQ_B1950) ? 1983.5 : 0.0;
+        return CoordConv.getConverter(from.getJsys(), from.getEquinox(), to.getJsys(), to.getEquinox(), tobs);
+    }
+
 
     /**
      * Find an approximate central point and search radius for a group of positions
@@ -499,6 +499,31 @@ public class DataGroup implements Serializable, Cloneable, Iterable<DataObject>
         }
     }
 
+    /**
+     * @param cname  column name
+     * @param rowIdx row index
+     * @return the value of the given cell as a double without boxing; NaN if null or not a number
+     */
+    public double getDouble(String cname, int rowIdx) {
+        PrimitiveList data = getDataList(cname);
+        return data == null ? Double.NaN : data.getDouble(rowIdx);
+    }
+
+    public boolean isNull(String cname, int rowIdx) {
+        PrimitiveList data = getDataList(cname);
+        return data == null || data.isNull(rowIdx);
+    }
+
+    /**
+     * Direct access to the storage of a column; use for bulk read or write without boxing.
+     * When writing directly, call setSize() afterward to keep the DataGroup consistent.
+     * @param cname column name
+     * @return the data of the given column, or null if the column does not exist
+     */
+    public PrimitiveList getColumnData(String cname) {
+        return getDataList(cname);
+    }
+
     public void trimToSize() {
         for (PrimitiveList plist : data.values()) {
             plist.trimToSize();
@@ -539,6 +564,8 @@ public class DataGroup implements Serializable, Cloneable, Iterable<DataObject>
                         dataList = new PrimitiveList.Bytes(initCapacity);
                     } else if (clz == Boolean.class) {
                         dataList = new PrimitiveList.Booleans(initCapacity);
+                    } else if (clz == String.class) {
+                        dataList = new PrimitiveList.Strings(initCapacity);
                     } else {
                         dataList = new PrimitiveList.Objects(initCapacity);
                     }
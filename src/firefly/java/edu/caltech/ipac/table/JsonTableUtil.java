@@ -10,12 +10,16 @@ import org.apache.commons.lang.ArrayUtils;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONAware;
 import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
 import org.json.simple.JSONValue;
 
 import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.text.SimpleDateFormat;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
@@ -42,8 +46,99 @@ public class JsonTableUtil {
      * @throws IOException
      */
     public static JSONObject toJsonTableModel(DataGroupPart page, TableServerRequest request) throws IOException {
+        return toJsonTableModel(page, request, true);
+    }
+
+    /**
+     * Same as toJsonTableModel(page, request).toJSONString(), but the table data is written directly to the given
+     * writer one row at a time, so the whole page is never held as JSON objects or as a String.
+     *
+     * @param out       the writer to send the JSON to.  It is not closed.
+     * @param page
+     * @param request
+     * @throws IOException
+     */
+    public static void writeJsonTableModel(Writer out, DataGroupPart page, TableServerRequest request) throws IOException {
+
+        JSONObject tableModel = toJsonTableModel(page, request, false);
+        JSONObject tableData = (JSONObject) tableModel.remove("tableData");
+
+        out.write('{');
+        writeEntries(out, tableModel);
+        out.write(",\"tableData\":{");
+        writeEntries(out, tableData);
+        if (page.getData().size() > 0) {
+            if (tableData.size() > 0) out.write(',');
+            out.write("\"data\":");
+            writeTableData(out, page.getData(), false);
+        }
+        out.write("}}");
+        out.flush();
+    }
+
+    /**
+     * Writes the data of the given DataGroup as a JSON array of rows, reading each column's values by type
+     * so no row objects or boxed values are created for primitive columns.
+     * The output is identical to the "data" array produced by toJsonTableData.
+     */
+    public static void writeTableData(Writer out, DataGroup data, boolean cleanUpStrings) throws IOException {
+        DataType[] cols = data.getDataDefinitions();
+        PrimitiveList[] colData = Arrays.stream(cols).map(dt -> data.getColumnData(dt.getKeyName())).toArray(PrimitiveList[]::new);
+
+        out.write('[');
+        for (int i = 0; i < data.size(); i++) {
+            if (i > 0) out.write(',');
+            out.write('[');
+            for (int c = 0; c < cols.length; c++) {
+                if (c > 0) out.write(',');
+                writeValue(out, colData[c], i, cleanUpStrings);
+            }
+            out.write(']');
+        }
+        out.write(']');
+    }
+
+    private static void writeValue(Writer out, PrimitiveList col, int idx, boolean cleanUpStrings) throws IOException {
+        if (col == null || col.isNull(idx)) {
+            out.write("null");
+        } else if (col instanceof PrimitiveList.Doubles dl) {
+            double d = dl.getDouble(idx);
+            out.write(Double.isNaN(d) || Double.isInfinite(d) ? "null" : Double.toString(d));       // same as json-simple
+        } else if (col instanceof PrimitiveList.Floats fl) {
+            float f = fl.getFloat(idx);
+            out.write(Float.isNaN(f) || Float.isInfinite(f) ? "null" : Float.toString(f));
+        } else if (col instanceof PrimitiveList.Longs || col instanceof PrimitiveList.Integers ||
+                   col instanceof PrimitiveList.Shorts || col instanceof PrimitiveList.Bytes) {
+            out.write(Long.toString(col.getLong(idx)));
+        } else if (col instanceof PrimitiveList.Booleans bl) {
+            out.write(bl.getBoolean(idx) ? "true" : "false");
+        } else {
+            Object v = col.get(idx);
+            if (v instanceof String str) {
+                out.write('"');
+                out.write(JSONValue.escape(cleanUpStrings ? str.replaceAll("[^\\x01-\\x7F]", " ") : str));
+                out.write('"');
+            } else {
+                JSONValue.writeJSONString(mapToJsonAware(v, cleanUpStrings), out);
+            }
+        }
+    }
+
+    private static void writeEntries(Writer out, Map<?,?> entries) throws IOException {
+        boolean first = true;
+        for (Map.Entry<?,?> e : entries.entrySet()) {
+            if (!first) out.write(',');
+            first = false;
+            out.write('"');
+            out.write(JSONValue.escape(String.valueOf(e.getKey())));
+            out.write("\":");
+            JSONValue.writeJSONString(e.getValue(), out);
+        }
+    }
+
+    private static JSONObject toJsonTableModel(DataGroupPart page, TableServerRequest request, boolean includeData) {
 
-        JSONObject tableModel = toJsonDataGroup(page.getData());
+        JSONObject tableModel = toJsonDataGroup(page.getData(), false, includeData);
         tableModel.put("totalRows", page.getRowCount());                // override DataGroup size because it may be just one page of data.
         if (request != null ){
             tableModel.put("request", toJsonTableRequest(request));
@@ -77,6 +172,10 @@ public class JsonTableUtil {
      * @return
      */
     public static JSONObject toJsonDataGroup(DataGroup dataGroup, boolean cleanUpStrings) {
+        return toJsonDataGroup(dataGroup, cleanUpStrings, true);
+    }
+
+    private static JSONObject toJsonDataGroup(DataGroup dataGroup, boolean cleanUpStrings, boolean includeData) {
 
         JSONObject tableModel = new JSONObject();
         TableMeta meta = dataGroup.getTableMeta();
@@ -90,7 +189,7 @@ public class JsonTableUtil {
         }
 
         tableModel.put("type", guessType(meta));
-        tableModel.put("tableData", toJsonTableData(dataGroup,cleanUpStrings));
+        tableModel.put("tableData", toJsonTableData(dataGroup, cleanUpStrings, includeData));
 
         if (meta.getKeywords().size() > 0) {
             List<JSONObject> keywords = new ArrayList<>();
@@ -165,6 +264,10 @@ public class JsonTableUtil {
      * @return
      */
     public static JSONObject toJsonTableData(DataGroup data, boolean cleanUpStrings) {
+        return toJsonTableData(data, cleanUpStrings, true);
+    }
+
+    private static JSONObject toJsonTableData(DataGroup data, boolean cleanUpStrings, boolean includeData) {
 
         JSONObject tdata = new JSONObject();
 
@@ -179,13 +282,9 @@ public class JsonTableUtil {
                 .filter(att -> att.getKey().startsWith("col."))
                 .forEach(att -> data.getTableMeta().removeAttribute(att.getKey()));
 
-        if (data.size() > 0) {
-            List<List> tableData = new ArrayList<>();
-            for (int i = 0; i < data.size(); i++) {
-                Object[] rowData = Arrays.stream(data.get(i).getData()).map(d -> mapToJsonAware(d,cleanUpStrings)).toArray();
-                tableData.add(Arrays.asList(rowData));
-            }
-            tdata.put("data", tableData);
+        if (includeData && data.size() > 0) {
+            // backed by the columns; values are written out without boxing or creating row objects
+            tdata.put("data", new TableDataList(data, cleanUpStrings));
         }
         return tdata;
     }
@@ -315,6 +414,47 @@ public class JsonTableUtil {
 //  private methods
 //====================================================================
 
+    /**
+     * The "data" array of a JSON TableData, backed by the columns of a DataGroup.
+     * When serialized, it is written by writeTableData using the typed column accessors.
+     * Row lists are only created when it is accessed as a List.
+     */
+    private static class TableDataList extends AbstractList<List> implements JSONAware, JSONStreamAware {
+        private final DataGroup data;
+        private final boolean cleanUpStrings;
+        private final PrimitiveList[] colData;
+
+        TableDataList(DataGroup data, boolean cleanUpStrings) {
+            this.data = data;
+            this.cleanUpStrings = cleanUpStrings;
+            colData = Arrays.stream(data.getDataDefinitions()).map(dt -> data.getColumnData(dt.getKeyName())).toArray(PrimitiveList[]::new);
+        }
+
+        public List get(int idx) {
+            Object[] rowData = new Object[colData.length];
+            for (int c = 0; c < colData.length; c++) {
+                rowData[c] = colData[c] == null ? null : mapToJsonAware(colData[c].get(idx), cleanUpStrings);
+            }
+            return Arrays.asList(rowData);
+        }
+
+        public int size() { return data.size(); }
+
+        public void writeJSONString(Writer out) throws IOException {
+            writeTableData(out, data, cleanUpStrings);
+        }
+
+        public String toJSONString() {
+            StringWriter out = new StringWriter();
+            try {
+                writeJSONString(out);
+            } catch (IOException e) {
+                // not possible with StringWriter
+            }
+            return out.toString();
+        }
+    }
+
     /**
      * get the type of data this table contains based on its meta information
      *
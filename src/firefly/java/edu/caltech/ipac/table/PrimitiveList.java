@@ -8,6 +8,7 @@ import javax.validation.constraints.NotNull;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
+import java.util.HashMap;
 
 /**
  * Date: 6/15/18
@@ -27,6 +28,28 @@ public interface PrimitiveList {
         set(size(), val);
     }
 
+    default boolean isNull(int idx) {
+        return get(idx) == null;
+    }
+
+    /**
+     * Implementations backed by numeric primitive arrays override this to avoid boxing.
+     * @return the value at idx as a double, or NaN if null or not a number
+     */
+    default double getDouble(int idx) {
+        Object v = get(idx);
+        return v instanceof Number n ? n.doubleValue() : Double.NaN;
+    }
+
+    /**
+     * Implementations backed by integral primitive arrays override this to avoid boxing.
+     * @return the value at idx as a long.  Caller should check isNull() first.
+     */
+    default long getLong(int idx) {
+        Object v = get(idx);
+        return v instanceof Number n ? n.longValue() : 0;
+    }
+
     default void checkType(Object val) {
         if (val != null && !val.getClass().isAssignableFrom(getDataClass())) {
             throw new RuntimeException(String.format("Type mismatch(%s): expecting %s but found %s", val, getDataClass(), val.getClass()));
@@ -79,6 +102,103 @@ public interface PrimitiveList {
         public void trimToSize() { data.trimToSize(); }
     }
 
+    /**
+     * String column stored as dictionary codes.  Columns with repeating values, ie. filter names, flags, or object types
+     * are stored once per distinct value.  When most values are unique, or a non-String value is added,
+     * it falls back to storing the values as is.
+     */
+    class Strings implements PrimitiveList {
+        private static final int MIN_DICT_SIZE = 256;
+        private int[] codes;                                // index into dict; -1 for null
+        private ArrayList<String> dict = new ArrayList<>();
+        private HashMap<String, Integer> dictIdx = new HashMap<>();
+        private Object[] values;                            // used when not dictionary-encoded
+        private int size;
+
+        public Strings() { this(1000); }
+
+        public Strings(int initCapacity) {
+            codes = new int[initCapacity];
+            Arrays.fill(codes, -1);
+        }
+
+        public Class getDataClass() {
+            return String.class;
+        }
+
+        public boolean isDictionaryEncoded() { return codes != null; }
+
+        public Object get(int idx) {
+            if (codes == null) return values[idx];
+            int code = codes[idx];
+            return code < 0 ? null : dict.get(code);
+        }
+
+        public void set(int idx, Object val) {
+            if (codes != null && val != null && !(val instanceof String)) {
+                toPlain();
+            }
+            if (codes != null) {
+                ensureCapacity(idx);
+                codes[idx] = val == null ? -1 : dictIdx.computeIfAbsent((String) val, (v) -> {
+                    dict.add(v);
+                    return dict.size() - 1;
+                });
+            } else {
+                ensureCapacity(idx);
+                values[idx] = val;
+            }
+            if (idx >= size) size = idx+1;
+            if (codes != null && dict.size() > MIN_DICT_SIZE && dict.size() > size/2) {
+                toPlain();      // mostly unique values; dictionary is no longer saving space.
+            }
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public void clear() {
+            codes = new int[MIN_DICT_SIZE];
+            Arrays.fill(codes, -1);
+            values = null;
+            dict = new ArrayList<>();
+            dictIdx = new HashMap<>();
+            size = 0;
+        }
+
+        public void trimToSize() {
+            if (codes != null) {
+                if (size != codes.length) codes = Arrays.copyOf(codes, size);
+                dict.trimToSize();
+            } else if (values != null && size != values.length) {
+                values = Arrays.copyOf(values, size);
+            }
+        }
+
+        private void toPlain() {
+            values = new Object[codes.length];
+            for (int i = 0; i < size; i++) {
+                values[i] = codes[i] < 0 ? null : dict.get(codes[i]);
+            }
+            codes = null;
+            dict = new ArrayList<>();
+            dictIdx = new HashMap<>();
+        }
+
+        private void ensureCapacity(int minCapacity) {
+            if (codes != null) {
+                if (minCapacity >= codes.length) {
+                    int oldLength = codes.length;
+                    codes = Arrays.copyOf(codes, newCapacity(minCapacity, codes.length));
+                    Arrays.fill(codes, oldLength, codes.length, -1);
+                }
+            } else if (minCapacity >= values.length) {
+                values = Arrays.copyOf(values, newCapacity(minCapacity, values.length));
+            }
+        }
+    }
+
     abstract class NullablePrimitiveList implements PrimitiveList{
         private Class clz;
         private BitSet nulls = new BitSet();
@@ -93,10 +213,22 @@ public interface PrimitiveList {
         }
 
         public Object get(int idx) {
-            if (nulls.length() > idx && nulls.get(idx)) return null;
+            if (isNull(idx)) return null;
             return getImpl(idx);
         }
 
+        public boolean isNull(int idx) {
+            return nulls.length() > idx && nulls.get(idx);
+        }
+
+        /**
+         * used by the primitive setters of the subclasses after the value is stored
+         */
+        protected void setNotNull(int idx) {
+            nulls.clear(idx);
+            if (idx >= size()) size = idx+1;
+        }
+
         public void set(int idx, Object val) {
             checkType(val);
             ensureCapacity(idx);
@@ -138,6 +270,13 @@ public interface PrimitiveList {
         public void setImpl(int idx, Object val) { data[idx] = (double) val; }
         public void clearImpl() { data = null; }
 
+        public double getDouble(int idx) { return isNull(idx) ? Double.NaN : data[idx]; }
+        public void setDouble(int idx, double val) {
+            ensureCapacity(idx);
+            data[idx] = val;
+            setNotNull(idx);
+        }
+
         /**
          * ensure data have the given minimum capacity
          * @param minCapacity
@@ -169,6 +308,14 @@ public interface PrimitiveList {
         public void setImpl(int idx, Object val) { data[idx] = (float) val; }
         public void clearImpl() { data = null; }
 
+        public double getDouble(int idx) { return isNull(idx) ? Double.NaN : data[idx]; }
+        public float getFloat(int idx) { return isNull(idx) ? Float.NaN : data[idx]; }
+        public void setFloat(int idx, float val) {
+            ensureCapacity(idx);
+            data[idx] = val;
+            setNotNull(idx);
+        }
+
         protected void ensureCapacity(int minCapacity) {
             if (minCapacity >= data.length) {
                 data = Arrays.copyOf(data, newCapacity(minCapacity, data.length));
@@ -198,6 +345,14 @@ public interface PrimitiveList {
         public void setImpl(int idx, Object val) { data[idx] = (long) val; }
         public void clearImpl() { data = null; }
 
+        public double getDouble(int idx) { return isNull(idx) ? Double.NaN : data[idx]; }
+        public long getLong(int idx) { return data[idx]; }
+        public void setLong(int idx, long val) {
+            ensureCapacity(idx);
+            data[idx] = val;
+            setNotNull(idx);
+        }
+
         protected void ensureCapacity(int minCapacity) {
             if (minCapacity >= data.length) {
                 data = Arrays.copyOf(data, newCapacity(minCapacity,data.length));
@@ -227,6 +382,15 @@ public interface PrimitiveList {
         public void setImpl(int idx, Object val) { data[idx] = (int)val; }
         public void clearImpl() { data = null; }
 
+        public double getDouble(int idx) { return isNull(idx) ? Double.NaN : data[idx]; }
+        public long getLong(int idx) { return data[idx]; }
+        public int getInt(int idx) { return data[idx]; }
+        public void setInt(int idx, int val) {
+            ensureCapacity(idx);
+            data[idx] = val;
+            setNotNull(idx);
+        }
+
         protected void ensureCapacity(int minCapacity) {
             if (minCapacity >= data.length) {
                 data = Arrays.copyOf(data, newCapacity(minCapacity, data.length));
@@ -256,6 +420,14 @@ public interface PrimitiveList {
         public void setImpl(int idx, Object val) { data[idx] = (short)val; }
         public void clearImpl() { data = null; }
 
+        public double getDouble(int idx) { return isNull(idx) ? Double.NaN : data[idx]; }
+        public long getLong(int idx) { return data[idx]; }
+        public void setShort(int idx, short val) {
+            ensureCapacity(idx);
+            data[idx] = val;
+            setNotNull(idx);
+        }
+
         protected void ensureCapacity(int minCapacity) {
             if (minCapacity >= data.length) {
                 data = Arrays.copyOf(data, newCapacity(minCapacity, data.length));
@@ -285,6 +457,14 @@ public interface PrimitiveList {
         public void setImpl(int idx, Object val) { data[idx] = (byte)val; }
         public void clearImpl() { data = null; }
 
+        public double getDouble(int idx) { return isNull(idx) ? Double.NaN : data[idx]; }
+        public long getLong(int idx) { return data[idx]; }
+        public void setByte(int idx, byte val) {
+            ensureCapacity(idx);
+            data[idx] = val;
+            setNotNull(idx);
+        }
+
         protected void ensureCapacity(int minCapacity) {
             if (minCapacity >= data.length) {
                 data = Arrays.copyOf(data, newCapacity(minCapacity, data.length));
@@ -314,6 +494,13 @@ public interface PrimitiveList {
         public void setImpl(int idx, Object val) { data[idx] = (boolean) val;}
         public void clearImpl() { data = null; }
 
+        public boolean getBoolean(int idx) { return data[idx]; }
+        public void setBoolean(int idx, boolean val) {
+            ensureCapacity(idx);
+            data[idx] = val;
+            setNotNull(idx);
+        }
+
         protected void ensureCapacity(int minCapacity) {
             if (minCapacity >= data.length) {
                 data = Arrays.copyOf(data, newCapacity(minCapacity, data.length));
@@ -80,6 +80,7 @@ public class BgIpacTableHandler extends IpacTableWriter.IpacTableHandler {
         action.setValue(tblId, "tbl_id");
         action.setValue(crows, "totalRows");
         action.setValue(state.name(), "tableMeta", DataGroupPart.LOADING_STATUS);
+        action.setSupersedeKey(FluxAction.TBL_UPDATE + "|" + tblId);
         ServerEventManager.fireAction(action);
     }
 }
@@ -136,6 +136,62 @@ public final class FITSTableReader
         }
     }
 
+    /**
+     * Parse a FITS binary or ASCII table and send its rows to the handler one at a time, so a large table is never
+     * held in memory as a DataGroup.  When the file is not compressed, nom.tam reads the table data from the file as
+     * the rows are requested instead of loading it all.  The rows are the same as the ones from
+     * convertFitsToDataGroup with the DEFAULT strategy.
+     * <p>
+     * An image read as a table is not handled here.
+     * @param handler the handler to receive the table
+     * @param fits_filename the file name
+     * @param request the request, used for the spectrum hint
+     * @param table_idx table index, i.e. HDU number in FITS, 0 is the first table when the primary HDU has no image
+     * @return false if the HDU is not a table, nothing was sent to the handler.  Use convertFitsToDataGroup instead.
+     */
+    public static boolean parseTable(TableParseHandler handler, String fits_filename, TableServerRequest request,
+                                     int table_idx) throws FitsException, IOException {
+        FitsFactory.useThreadLocalSettings(true);
+        boolean longStrings = FitsFactory.isLongStringsEnabled();
+        try (Fits fits = new Fits(fits_filename)) {
+            BasicHDU<?> hdu= fits.getHDU(table_idx);
+            BasicHDU<?> specHdu= hdu;           // same as convertFitsToDataGroup, the spectrum is searched in the requested HDU
+            if (table_idx==0 && hdu!=null && FitsReadUtil.getNaxis(hdu.getHeader()) < 1) {
+                hdu= fits.getHDU(1);            // same as convertFitsToDataGroup, an empty primary HDU is not an image
+            }
+            if (!(hdu instanceof TableHDU<?> hduTable)) return false;
+
+            FitsFactory.setLongStringsEnabled(false);
+            TableDesc desc = makeTableDesc(hduTable, fits_filename, null, null);
+            DataGroup header = desc.header();
+            SpectrumMetaInspector.searchForSpectrum(header, specHdu, SpectrumMetaInspector.hasSpectrumHint(request));
+
+            int nrow = hduTable.getNRows();
+            handler.start();
+            try {
+                handler.startTable(table_idx);
+                handler.header(header);
+                if (!handler.headerOnly()) {
+                    int ncol = header.getDataDefinitions().length;
+                    for (int row = 0; row < nrow; row++) {
+                        Object[] values = getRow(hduTable, row, ncol, desc);
+                        if (values != null) handler.data(values);
+                    }
+                }
+                handler.endTable(table_idx);
+            } finally {
+                handler.end();
+            }
+            return true;
+        } catch (FitsException|IOException e) {
+            logTableReadError(fits_filename,table_idx,e.getMessage());
+            throw e;
+        } finally {
+            FitsFactory.setLongStringsEnabled(longStrings);
+            FitsFactory.useThreadLocalSettings(false);
+        }
+    }
+
     private static boolean is1dImage(BasicHDU<?> hdu) {
         Header header = hdu.getHeader();
         int naxis = header.getIntValue("NAXIS", 0);
@@ -321,7 +377,31 @@ public final class FITSTableReader
             return null;
         }
 
-        AbstractTableData data = (AbstractTableData) hdu.getData();
+        TableDesc desc = makeTableDesc(hduTable, fitsFilename, inclCols, inclHeaders);
+        DataGroup dataGroup = desc.header();
+        // creating DataGroup rows.
+        int nrow = hduTable.getNRows();
+        dataGroup.setInitCapacity(nrow);
+        DataType[] dataDefinitions= dataGroup.getDataDefinitions();
+        for (int row = 0; row < nrow; row++){
+            addRowToDG(dataGroup, dataDefinitions, row, hduTable, desc.hasBlank(), desc.blanks(), desc.isScaled(), desc.scales(), desc.zeros());
+        }
+        dataGroup.trimToSize();
+        return dataGroup;
+    }
+
+    /**
+     * The columns and meta of a FITS table, with what is needed to convert its values.
+     */
+    private record TableDesc(DataGroup header, boolean[] hasBlank, long[] blanks, boolean[] isScaled,
+                             double[] scales, double[] zeros) {}
+
+    private static TableDesc makeTableDesc(TableHDU<?> hduTable,
+                                           String fitsFilename,
+                                           String[] inclCols,
+                                           String[] inclHeaders) throws IOException, FitsException {
+
+        AbstractTableData data = (AbstractTableData) hduTable.getData();
 
         int colCount = data.getNCols();
         Class<?>[] bases = new Class[colCount];
@@ -393,12 +473,6 @@ public final class FITSTableReader
         }
 
         DataGroup dataGroup = new DataGroup(fitsFilename, dataTypes);
-        // creating DataGroup rows.
-        dataGroup.setInitCapacity(nrow);
-        DataType[] dataDefinitions= dataGroup.getDataDefinitions();
-        for (int row = 0; row < nrow; row++){
-            addRowToDG(dataGroup, dataDefinitions, row, hduTable, hasBlank, blanks, isScaled, scales, zeros);
-        }
 
         // setting DataGroup meta info
         for(int colIdx = 0; colIdx < dataTypes.size(); colIdx++) {
@@ -430,8 +504,7 @@ public final class FITSTableReader
                 dataGroup.getTableMeta().addKeyword(n, v); //should keywords be in order as they appear in the Table Header?
             }
         }
-        dataGroup.trimToSize();
-        return dataGroup;
+        return new TableDesc(dataGroup, hasBlank, blanks, isScaled, scales, zeros);
     }
 
     record EvalVal(long blank, boolean scaled, boolean hasBlank, double scale, double zero) {
@@ -489,6 +562,23 @@ public final class FITSTableReader
         }
     }
 
+    /**
+     * @return the values of a row the same way addRowToDG sets them, or null if the row cannot be read
+     */
+    private static Object[] getRow(TableHDU<?> hduTable, int rowIdx, int ncol, TableDesc desc) {
+        Object[] row = new Object[ncol];
+        try {
+            Object[] rowData= hduTable.getRow(rowIdx);
+            for (int i = 0; i < ncol; i++) {
+                row[i] = getValAsObject(rowData[i], i, desc.hasBlank(), desc.blanks(), desc.isScaled(), desc.scales(), desc.zeros());
+            }
+        } catch (Exception e) {
+            logger.error("Unable to read table row:" + rowIdx + "   msg:" + e.getMessage());
+            return null;
+        }
+        return row;
+    }
+
     public static Class<?> formatClass(Class<?> c) throws FitsException {
         String cname = c.getName();
         //check if dimension is 0 then cname is of type "boolean" or "byte", etc.
@@ -12,15 +12,26 @@ import edu.caltech.ipac.table.IpacTableDef;
 import edu.caltech.ipac.table.IpacTableUtil;
 import edu.caltech.ipac.table.TableUtil;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * read in the file in IPAC table format
@@ -31,6 +42,9 @@ import java.util.List;
 public final class IpacTableReader {
 
     private static final Logger.LoggerImpl logger = Logger.getLogger();
+    private static final int PARALLEL_CHUNK_SIZE = 16 * 1024 * 1024;
+    private static final long MAX_IN_FLIGHT_BYTES = 256 * 1024 * 1024;
+    private static final ExecutorService PARSERS = Executors.newWorkStealingPool();
 
     public static DataGroup read(File inf, String... onlyColumns) throws IOException {
        return read(inf,null, onlyColumns) ;
@@ -93,6 +107,215 @@ public final class IpacTableReader {
         }
     }
 
+    /**
+     * Same as parseTable(handler, srcFile, onlyColumns), but the data rows are parsed by multiple threads.
+     * The file is split into chunks aligned to the start of a line.  Each chunk is memory-mapped and parsed
+     * on its own thread, and the rows are passed to the handler in their original order, always from the calling thread.
+     * Only a few chunks are held in memory at any given time, bounded by bytes rather than by count.
+     * <p>
+     * Chunks are parsed on the calling thread until the type of every column is known, so type guessing sees the
+     * same rows as parseTable.  The parallel threads do not change the columns; the first value of a column whose
+     * format is still unknown is passed back, and the guess is made on the calling thread in row order.
+     *
+     * @param handler       the handler to receive the table
+     * @param srcFile       the IPAC table file
+     * @param onlyColumns   only these columns, or all if none is given
+     * @throws IOException
+     */
+    public static void parseTableInParallel(TableParseHandler handler, File srcFile, String... onlyColumns) throws IOException {
+        parseTableInParallel(handler, srcFile, PARALLEL_CHUNK_SIZE, onlyColumns);
+    }
+
+    /**
+     * @param chunkSize the approximate size in bytes of each chunk
+     * @see #parseTableInParallel(TableParseHandler, File, String...)
+     */
+    public static void parseTableInParallel(TableParseHandler handler, File srcFile, int chunkSize, String... onlyColumns) throws IOException {
+
+        if (srcFile.length() < chunkSize * 2L) {
+            parseTable(handler, srcFile, onlyColumns);      // not worth it
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        try (FileChannel fc = FileChannel.open(srcFile.toPath(), StandardOpenOption.READ)) {
+            handler.start();
+            handler.startTable(0);
+
+            IpacTableDef tableDef = IpacTableUtil.getMetaInfo(srcFile);
+            DataGroup headers = create(tableDef, onlyColumns);
+            handler.header(headers);
+            if (handler.headerOnly()) return;
+
+            DataType[] cols = headers.getDataDefinitions();
+            TableUtil.ParsedColInfo[] parsedInfos = Arrays.stream(cols)
+                    .map(dt -> tableDef.getParsedInfo(dt.getKeyName()))
+                    .toArray(TableUtil.ParsedColInfo[]::new);
+
+            List<long[]> chunks = findChunks(fc, findDataStart(srcFile), chunkSize);
+
+            // guessing changes the columns, so it's done here, in row order, until every column has a type
+            int next = 0;
+            while (next < chunks.size() && !isTypeKnown(cols, parsedInfos)) {
+                for (Object[] row : parseChunk(fc, chunks.get(next++), cols, parsedInfos, null).rows()) handler.data(row);
+            }
+
+            // a chunk is held as raw bytes and then as rows, several times its size; limit what is held by bytes
+            long budget = Math.min(MAX_IN_FLIGHT_BYTES, Runtime.getRuntime().maxMemory() / 64);
+            int maxInFlight = (int) Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), budget / chunkSize));
+            ArrayDeque<Future<ParsedChunk>> inFlight = new ArrayDeque<>();
+            try {
+                while (next < chunks.size() || !inFlight.isEmpty()) {
+                    while (next < chunks.size() && inFlight.size() < maxInFlight) {
+                        long[] chunk = chunks.get(next++);
+                        boolean[] needFormat = new boolean[cols.length];
+                        for (int i = 0; i < cols.length; i++) needFormat[i] = !parsedInfos[i].formatChecked;
+                        inFlight.add(PARSERS.submit(() -> parseChunk(fc, chunk, cols, parsedInfos, needFormat)));
+                    }
+                    ParsedChunk parsed = inFlight.poll().get();
+                    for (int i = 0; i < cols.length; i++) {
+                        String val = parsed.formatSamples()[i];
+                        if (val != null && !parsedInfos[i].formatChecked) {
+                            parsedInfos[i].formatChecked = IpacTableUtil.guessFormatInfo(cols[i], val);
+                        }
+                    }
+                    for (Object[] row : parsed.rows()) handler.data(row);
+                }
+            } finally {
+                inFlight.forEach(f -> f.cancel(true));
+            }
+            logger.debug("parseTableInParallel: %s with %d chunks in %dms".formatted(srcFile.getName(), chunks.size(), System.currentTimeMillis() - startTime));
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() == null ? e : e.getCause();
+            logger.error(cause, "Error while parsing " + srcFile.getPath());
+            throw new IOException(cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            throw new IOException("Parsing interrupted: " + srcFile.getPath(), e);
+        } catch (RuntimeException e) {
+            logger.error(e, "Error while parsing " + srcFile.getPath());
+            throw new IOException(e.getMessage(), e);
+        } finally {
+            handler.endTable(0);
+            handler.end();
+        }
+    }
+
+    /**
+     * @return the byte offset of the first data row; the first line that is not blank, a keyword, or a column header.
+     */
+    private static long findDataStart(File srcFile) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(srcFile), IpacTableUtil.FILE_IO_BUFFER_SIZE)) {
+            long offset = 0;
+            long lineStart = 0;
+            boolean atLineStart = true;
+            for (int c = in.read(); c != -1; c = in.read(), offset++) {
+                if (atLineStart && c != '\\' && c != '|' && c != '\n' && c != '\r') return lineStart;
+                atLineStart = c == '\n';
+                if (atLineStart) lineStart = offset + 1;
+            }
+            return offset;
+        }
+    }
+
+    /**
+     * split the data section of the file into chunks of roughly chunkSize bytes, each ending with a complete line.
+     * @return a list of [start, end) byte offsets
+     */
+    private static List<long[]> findChunks(FileChannel fc, long dataStart, int chunkSize) throws IOException {
+        List<long[]> chunks = new ArrayList<>();
+        long size = fc.size();
+        ByteBuffer buf = ByteBuffer.allocate(8 * 1024);
+        long start = dataStart;
+        while (start < size) {
+            long end = Math.min(start + chunkSize, size);
+            // move end to just past the next newline
+            while (end < size) {
+                buf.clear();
+                int n = fc.read(buf, end);
+                if (n <= 0) { end = size; break; }
+                int nl = -1;
+                for (int i = 0; i < n; i++) {
+                    if (buf.get(i) == '\n') { nl = i; break; }
+                }
+                if (nl >= 0) { end += nl + 1; break; }
+                end += n;
+            }
+            chunks.add(new long[]{start, Math.min(end, size)});
+            start = end;
+        }
+        return chunks;
+    }
+
+    private static boolean isTypeKnown(DataType[] cols, TableUtil.ParsedColInfo[] parsedInfos) {
+        for (int i = 0; i < cols.length; i++) {
+            if (cols[i].getDataType() == null || !parsedInfos[i].htmlChecked) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param rows          the parsed rows
+     * @param formatSamples for each column, the first value its format can be guessed from, or null
+     */
+    private record ParsedChunk(List<Object[]> rows, String[] formatSamples) {}
+
+    /**
+     * @param needFormat    null to parse with IpacTableUtil.parseRow, which guesses and changes the columns; only on the
+     *                      calling thread.  Otherwise, the columns are not changed and the first value of each column
+     *                      marked here is returned in formatSamples.
+     */
+    private static ParsedChunk parseChunk(FileChannel fc, long[] chunk, DataType[] cols, TableUtil.ParsedColInfo[] parsedInfos,
+                                          boolean[] needFormat) throws IOException {
+        MappedByteBuffer buf = fc.map(FileChannel.MapMode.READ_ONLY, chunk[0], chunk[1] - chunk[0]);
+        int len = buf.limit();
+        byte[] line = new byte[1024];
+        List<Object[]> rows = new ArrayList<>(len / 100);
+        String[] formatSamples = new String[cols.length];
+        int lineStart = 0;
+        for (int i = 0; i <= len; i++) {
+            if (i == len || buf.get(i) == '\n') {
+                int lineEnd = i;
+                if (lineEnd > lineStart && buf.get(lineEnd - 1) == '\r') lineEnd--;
+                int llen = lineEnd - lineStart;
+                if (llen > 0) {
+                    if (llen > line.length) line = new byte[llen * 2];
+                    buf.get(lineStart, line, 0, llen);
+                    String s = new String(line, 0, llen, Charset.defaultCharset());     // same as the InputStreamReader of parseTable
+                    Object[] row = needFormat == null ? IpacTableUtil.parseRow(s, cols, parsedInfos) :
+                                                        parseRow(s, cols, parsedInfos, needFormat, formatSamples);
+                    if (row != null) rows.add(row);
+                }
+                lineStart = i + 1;
+            }
+        }
+        return new ParsedChunk(rows, formatSamples);
+    }
+
+    /**
+     * Same as IpacTableUtil.parseRow, except the columns are not changed, so rows can be parsed by multiple threads.
+     * The type of every column is already known.  The first value of a column marked in needFormat that its
+     * format can be guessed from is saved in formatSamples.
+     */
+    private static Object[] parseRow(String line, DataType[] cols, TableUtil.ParsedColInfo[] parsedInfos,
+                                     boolean[] needFormat, String[] formatSamples) {
+        if (!line.startsWith(" ") || line.isBlank()) return IpacTableUtil.parseRow(line, cols, parsedInfos);     // let parseRow handle non-data lines
+
+        int endOfLine = line.length();
+        Object[] arow = new Object[cols.length];
+        for (int i = 0; i < cols.length; i++) {
+            TableUtil.ParsedColInfo pci = parsedInfos[i];
+            DataType dt = cols[i];
+            if (pci.startIdx > endOfLine) return null;
+
+            String val = line.substring(pci.startIdx, Math.min(pci.endIdx, endOfLine)).trim();
+            if (needFormat[i] && formatSamples[i] == null && !val.isEmpty() && !val.equals(dt.getNullString())) {
+                formatSamples[i] = val;
+            }
+            arow[i] = dt.convertStringToData(val);
+        }
+        return arow;
+    }
+
     public static FileAnalysisReport analyze(File infile, FileAnalysisReport.ReportType type) throws IOException {
         IpacTableDef meta = IpacTableUtil.getMetaInfo(infile);
         FileAnalysisReport report = new FileAnalysisReport(type, TableUtil.Format.IPACTABLE.name(), infile.length(), infile.getPath());
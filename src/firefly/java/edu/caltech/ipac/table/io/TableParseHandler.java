@@ -5,12 +5,12 @@
 package edu.caltech.ipac.table.io;
 
 import edu.caltech.ipac.firefly.server.db.DbAdapter;
-import edu.caltech.ipac.firefly.server.db.EmbeddedDbUtil;
 import edu.caltech.ipac.firefly.server.db.spring.JdbcFactory;
 import edu.caltech.ipac.firefly.server.query.DataAccessException;
 import edu.caltech.ipac.firefly.server.util.Logger;
 import edu.caltech.ipac.table.DataGroup;
 import edu.caltech.ipac.table.DataType;
+import edu.caltech.ipac.table.PrimitiveList;
 import edu.caltech.ipac.table.ResourceInfo;
 import org.duckdb.DuckDBAppender;
 import org.duckdb.DuckDBConnection;
@@ -18,11 +18,17 @@ import org.duckdb.DuckDBConnection;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
-import static edu.caltech.ipac.firefly.server.db.DuckDbAdapter.addRow;
-import static edu.caltech.ipac.firefly.server.db.EmbeddedDbUtil.colIdxWithArrayData;
-import static edu.caltech.ipac.firefly.server.db.EmbeddedDbUtil.serialize;
+import static edu.caltech.ipac.firefly.server.db.DuckDbAdapter.appendRows;
 
 /**
  * Date: 10/23/24
@@ -97,14 +103,23 @@ public interface TableParseHandler {
         }
     }
 
+    /**
+     * Ingest the parsed rows into the database.  Rows are collected into batches of typed columns, then
+     * appended by a separate thread so that parsing and appending can run at the same time.
+     */
     class DbIngest extends Base {
+        static final int BATCH_SIZE = 64 * 1024;
+        private static final ExecutorService appenders = Executors.newCachedThreadPool();
+        private static final DataGroup END = new DataGroup(null, new DataType[0]);     // marks the end of the batches
+
         DbAdapter dbAdapter;
         DataGroup header;
-        DataType[] cols;
-        int rowCnt;
         DuckDBAppender appender;
         DuckDBConnection conn;
-        List<Integer> aryIdx;
+        DataGroup batch;
+        PrimitiveList[] batchCols;
+        BlockingQueue<DataGroup> batches = new ArrayBlockingQueue<>(2);
+        Future<?> appending;
 
         public DbIngest(DbAdapter dbAdapter, DataGroup meta, boolean searchForSpectrum) {
             super(meta, false, searchForSpectrum);
@@ -114,8 +129,6 @@ public interface TableParseHandler {
         public void header(DataGroup header) throws IOException {
             super.header(header);
             this.header = header;
-            cols = EmbeddedDbUtil.makeDbCols(header);
-            aryIdx = colIdxWithArrayData(cols);
 
             try {
                 dbAdapter.ingestData(() -> header, dbAdapter.getDataTable());
@@ -127,21 +140,53 @@ public interface TableParseHandler {
             } catch (SQLException | DataAccessException e) {
                 throw new IOException(e);
             }
+            newBatch();
+            appending = appenders.submit(() -> {
+                int rowCnt = 0;
+                for (DataGroup b = batches.take(); b != END; b = batches.take()) {
+                    appendRows(appender, b, rowCnt + 1);
+                    rowCnt += b.size();
+                }
+                return rowCnt;
+            });
         }
 
         public void data(Object[] row) throws IOException {
+            int ridx = batch.size();
+            for (int i = 0; i < batchCols.length; i++) {
+                batchCols[i].set(ridx, row[i]);
+            }
+            batch.setSize(ridx + 1);
+            if (batch.size() >= BATCH_SIZE) {
+                send(batch);
+                newBatch();
+            }
+        }
+
+        public void endTable(int idx) throws IOException {
+            if (appending == null) return;
             try {
-                aryIdx.forEach(idx -> row[idx] = serialize(row[idx]));      // serialize array data if necessary
-                addRow(appender, row, ++rowCnt);
-            } catch (SQLException e) {
+                if (batch.size() > 0) send(batch);
+                send(END);
+                appending.get();
+                appender.flush();
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause());
+            } catch (InterruptedException | SQLException e) {
                 throw new IOException(e);
+            } finally {
+                appending = null;
             }
         }
 
         public void end() {
+            try {
+                endTable(0);        // in case parsing ended without calling endTable
+            } catch (IOException e) {
+                Logger.getLogger().warn(e);
+            }
             try {
                 if(appender != null) {
-                    appender.flush();
                     appender.close();
                 }
                 if(conn != null) {
@@ -152,6 +197,26 @@ public interface TableParseHandler {
                 Logger.getLogger().warn(e);
             }
         }
+
+        private void newBatch() {
+            batch = new DataGroup(null, header.getDataDefinitions());
+            batch.setInitCapacity(BATCH_SIZE);
+            batchCols = Arrays.stream(header.getDataDefinitions()).map(dt -> batch.getColumnData(dt.getKeyName())).toArray(PrimitiveList[]::new);
+        }
+
+        private void send(DataGroup b) throws IOException {
+            try {
+                while (!batches.offer(b, 1, TimeUnit.SECONDS)) {
+                    if (appending.isDone()) {
+                        appending.get();        // rethrow the appender's error
+                        throw new IOException("Appender stopped before all data were added");
+                    }
+                }
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause());
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+        }
     }
 }
-
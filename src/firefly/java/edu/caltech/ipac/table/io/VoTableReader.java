@@ -25,14 +25,20 @@ import edu.caltech.ipac.util.StringUtils;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
 import uk.ac.starlink.table.ByteStore;
 import uk.ac.starlink.table.RowSequence;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.StoragePolicy;
+import uk.ac.starlink.table.TableFormatException;
 import uk.ac.starlink.table.storage.AdaptiveByteStore;
 import uk.ac.starlink.table.storage.ByteStoreStoragePolicy;
+import uk.ac.starlink.util.StarEntityResolver;
+import uk.ac.starlink.votable.TableContentHandler;
 import uk.ac.starlink.votable.TableElement;
+import uk.ac.starlink.votable.TableHandler;
 import uk.ac.starlink.votable.VOElement;
 import uk.ac.starlink.votable.VOElementFactory;
 import uk.ac.starlink.votable.VOStarTable;
@@ -51,9 +57,13 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+import javax.xml.parsers.SAXParserFactory;
+
 import static edu.caltech.ipac.table.TableUtil.getAliasName;
 import static edu.caltech.ipac.util.StringUtils.applyIfNotEmpty;
 import static edu.caltech.ipac.util.StringUtils.isEmpty;
@@ -218,29 +228,34 @@ public class VoTableReader {
 
     private static VOElement getVoTableRoot(String location, StoragePolicy policy) throws IOException {
 
-        String voTablePath = location;
+        String voTablePath = getLocalPath(location);
+        try {
+            // at this point, voTablePath is a file path.
+            return getVoTableRoot(new FileInputStream(voTablePath), policy);
+        }  catch (Exception e) {
+            throw new IOException("Unable to parse VOTABLE from "+ location + "\n" +
+                    e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return the file path of the VOTable; if location is a URL, it is downloaded first.
+     */
+    private static String getLocalPath(String location) throws IOException {
         try {
             String url = new URL(location).toString();
             // location is a URL, download it first.
             File tmpFile = File.createTempFile("voreader-", ".xml", QueryUtil.getTempDir(null));
             try {
                 HttpServices.getData( HttpServiceInput.createWithCredential(url), tmpFile);
-                voTablePath = tmpFile.getPath();
+                return tmpFile.getPath();
             } catch (Exception e) {
                 tmpFile.delete();
                 LOG.error(e);
                 throw new IOException("Unable to fetch URL: "+ location + "\n" + e.getMessage(), e);
             }
         } catch (MalformedURLException ex) { /* ok to ignore.  location may not be a URL */ }
-
-
-        try {
-            // at this point, voTablePath is a file path.
-            return getVoTableRoot(new FileInputStream(voTablePath), policy);
-        }  catch (Exception e) {
-            throw new IOException("Unable to parse VOTABLE from "+ location + "\n" +
-                    e.getMessage(), e);
-        }
+        return location;
     }
 
     private static VOElement getVoTableRoot(InputStream source, StoragePolicy policy) throws IOException {
@@ -310,6 +325,11 @@ public class VoTableReader {
 
     /**
      * Parses the provided VOTable and sends events with the parsed data to the specified handler.
+     * <p>
+     * The rows are not kept in memory.  The document is read once without its rows to get the resources and the
+     * header of each table, then once more to stream the rows of all requested tables from the file to the handler.
+     * The second pass uses STIL's TableContentHandler, which decodes TABLEDATA, BINARY, BINARY2 and FITS data
+     * without building a DOM, and stops after the last requested table.
      *
      * @param handler  the handler responsible for processing the parsed data.
      * @param location the location of the VOTable; file path or URL
@@ -319,8 +339,109 @@ public class VoTableReader {
     public static void parse(TableParseHandler handler,
                              String location,
                              int ...indices) throws IOException {
-        VOElement docRoot = getVoTableRoot(location, FIREFLY);
-        parse(handler, docRoot, indices);
+        String voTablePath = getLocalPath(location);
+        VOElement docRoot = getVoTableRoot(voTablePath, DISCARD);      // headers only, rows are thrown away
+        try {
+            handler.start();
+            List<Integer> indicesList = indices == null ? Collections.emptyList() : Arrays.asList(Arrays.stream(indices).boxed().toArray(Integer[]::new));
+            List<TableElement> tableAry = getAllTableElements(docRoot);
+            List<Node> allTables = nodeList(docRoot.getElementsByVOTagName("TABLE"));      // in document order, nested ones included
+            SortedMap<Integer, Integer> requested = new TreeMap<>();        // document index of the TABLE -> table index
+            for (int i = 0; i < tableAry.size(); i++) {
+                if (indicesList.isEmpty() || indicesList.contains(i)) {
+                    requested.put(allTables.indexOf(tableAry.get(i)), i);
+                }
+            }
+            if (requested.isEmpty()) return;
+            if (handler.headerOnly()) {
+                for (int i : requested.values()) {
+                    sendHeader(handler, docRoot, tableAry.get(i), i);
+                    handler.endTable(i);
+                }
+            } else {
+                streamTables(handler, voTablePath, docRoot, tableAry, requested);
+            }
+        } catch (Exception e) {
+            LOG.error(e);
+            throw new IOException(e.getMessage());
+        } finally {
+            handler.end();
+        }
+    }
+
+    private static DataGroup sendHeader(TableParseHandler handler, VOElement docRoot, TableElement tableEl, int idx) throws IOException {
+        handler.resources(getResourcesForTable(docRoot, tableEl));
+        handler.startTable(idx);
+        DataGroup header = makeTableHeader(tableEl, -1);
+        handler.header(header);
+        return header;
+    }
+
+    /**
+     * Send the header and rows of the requested tables straight from the file to the handler, in one pass.
+     * @param requested  the document index of each requested TABLE, counting all TABLE elements, mapped to its table index
+     */
+    private static void streamTables(TableParseHandler handler, String voTablePath, VOElement docRoot,
+                                     List<TableElement> tableAry, SortedMap<Integer, Integer> requested) throws Exception {
+        TableContentHandler tch = new TableContentHandler(VOElementFactory.isStrictByDefault());
+        tch.setReadHrefTables(true);
+        tch.setTableHandler(new TableHandler() {
+            int docIdx = -1;
+            Integer idx;            // the table index of the current table, or null if it was not requested
+            public void startTable(StarTable meta) throws SAXException {
+                idx = requested.get(++docIdx);
+                if (idx == null) return;
+                try {
+                    int colCount = sendHeader(handler, docRoot, tableAry.get(idx), idx).getDataDefinitions().length;
+                    if (meta.getColumnCount() != colCount) {
+                        throw new TableFormatException("Streamed table %d has %d columns, expected %d".formatted(docIdx, meta.getColumnCount(), colCount));
+                    }
+                } catch (IOException e) {
+                    throw new SAXException(e);
+                }
+            }
+            public void rowData(Object[] row) throws SAXException {
+                if (idx == null) return;
+                try {
+                    handler.data(handleVariance(row.clone()));      // the row array may be reused by the parser
+                } catch (IOException e) {
+                    throw new SAXException(e);
+                }
+            }
+            public void endTable() throws SAXException {
+                if (idx == null) return;
+                try {
+                    handler.endTable(idx);
+                } catch (IOException e) {
+                    throw new SAXException(e);
+                }
+                if (docIdx == requested.lastKey()) throw new StreamDone();
+            }
+        });
+
+        SAXParserFactory spf = SAXParserFactory.newInstance();
+        spf.setNamespaceAware(true);
+        XMLReader reader = spf.newSAXParser().getXMLReader();
+        reader.setContentHandler(tch);
+        reader.setEntityResolver(StarEntityResolver.getInstance());
+        try (InputStream in = new BufferedInputStream(new FileInputStream(voTablePath))) {
+            InputSource src = new InputSource(in);
+            src.setSystemId(new File(voTablePath).toURI().toString());      // to resolve relative href of FITS streams
+            reader.parse(src);
+        } catch (StreamDone done) {
+            // all requested tables were sent; the rest of the file is not read
+        } catch (SAXException e) {
+            throw e.getException() != null ? e.getException() : e;
+        }
+    }
+
+    /** thrown to stop the SAX parser after the last requested table */
+    private static class StreamDone extends SAXException {}
+
+    private static List<Node> nodeList(NodeList nl) {
+        List<Node> list = new ArrayList<>(nl.getLength());
+        for (int i = 0; i < nl.getLength(); i++) list.add(nl.item(i));
+        return list;
     }
 
     private static void parse(TableParseHandler handler,
@@ -350,19 +471,7 @@ public class VoTableReader {
 
     private static void parseTable(TableParseHandler handler, TableElement tableEl, StarTable table) throws DataAccessException {
 
-        DataGroup header = getTableHeader(tableEl);
-        List<DataType> cols = Arrays.asList(header.getDataDefinitions());
-        header.setInitCapacity((int)table.getRowCount());
-
-        // post-process to handle custom logic
-        DataType raCol = cols.stream().filter(dt -> HMS_UCD_PATTERN.matcher(String.valueOf(dt.getUCD())).matches())
-                .findFirst().orElse(null);
-        DataType decCol = cols.stream().filter(dt -> DMS_UCD_PATTERN.matcher(String.valueOf(dt.getUCD())).matches())
-                .findFirst().orElse(null);
-        if (raCol != null && decCol != null) {
-            header.addAttribute("POS_EQ_RA_MAIN", raCol.getKeyName());
-            header.addAttribute("POS_EQ_DEC_MAIN", decCol.getKeyName());
-        }
+        DataGroup header = makeTableHeader(tableEl, table.getRowCount());
         try {
             handler.header(header);
 
@@ -379,6 +488,27 @@ public class VoTableReader {
     }
 
 
+    /**
+     * @param rowCount  the number of rows, or -1 if not known
+     * @return the header of the table with the post-processing done on it
+     */
+    private static DataGroup makeTableHeader(TableElement tableEl, long rowCount) {
+        DataGroup header = getTableHeader(tableEl);
+        List<DataType> cols = Arrays.asList(header.getDataDefinitions());
+        if (rowCount > 0) header.setInitCapacity((int)rowCount);
+
+        // post-process to handle custom logic
+        DataType raCol = cols.stream().filter(dt -> HMS_UCD_PATTERN.matcher(String.valueOf(dt.getUCD())).matches())
+                .findFirst().orElse(null);
+        DataType decCol = cols.stream().filter(dt -> DMS_UCD_PATTERN.matcher(String.valueOf(dt.getUCD())).matches())
+                .findFirst().orElse(null);
+        if (raCol != null && decCol != null) {
+            header.addAttribute("POS_EQ_RA_MAIN", raCol.getKeyName());
+            header.addAttribute("POS_EQ_DEC_MAIN", decCol.getKeyName());
+        }
+        return header;
+    }
+
     private static Object[] handleVariance(Object[] row) {
         for (int i = 0; i < row.length; i++) {
             if      (row[i] instanceof Double v && v.isNaN())   row[i] = null;
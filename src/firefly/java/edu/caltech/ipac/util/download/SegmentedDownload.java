@@ -0,0 +1,296 @@
+/*
+ * License information at https://github.com/Caltech-IPAC/firefly/blob/master/License.txt
+ */
+package edu.caltech.ipac.util.download;
+
+import edu.caltech.ipac.firefly.data.FileInfo;
+import edu.caltech.ipac.firefly.server.util.Logger;
+import edu.caltech.ipac.util.AppProperties;
+import edu.caltech.ipac.util.FileUtil;
+import edu.caltech.ipac.util.UTCTimeUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static edu.caltech.ipac.util.FileUtil.MEG;
+
+/**
+ * Download a large file as several byte ranges at the same time, each on its own connection.  This is only done
+ * when the server says it accepts byte ranges and the file is not sent compressed.
+ * <p>
+ * The data is written directly into the output file.  While the download is running, and after it fails, the bytes
+ * done in each segment are kept in a state file next to the output file.  The next download of the same url to the
+ * same file continues from there, as long as the length and the ETag or Last-Modified header have not changed.
+ * When the server does not send a requested range, null is returned so the caller downloads the file as a single
+ * stream.
+ */
+class SegmentedDownload {
+
+    private enum ListenerCall { INCREMENT, START, DONE}
+
+    /** files smaller than this are downloaded as a single stream */
+    static final long MIN_SIZE= AppProperties.getLongProperty("download.segmented.minSizeMB", 32) * MEG;
+    private static final long SEGMENT_SIZE= AppProperties.getLongProperty("download.segmented.segmentSizeMB", 8) * MEG;
+    private static final int MAX_STREAMS= AppProperties.getIntProperty("download.segmented.maxStreams", 4);
+    private static final String STATE_EXT= ".segments";
+    private static final ExecutorService exeService= Executors.newCachedThreadPool();
+    private static final Logger.LoggerImpl _log = Logger.getLogger();
+
+    private final URL url;
+    private final File outfile;
+    private final File stateFile;
+    private final Map<String, String> cookies;
+    private final Map<String, String> requestHeaders;
+    private final URLDownload.Options ops;
+    private long length;
+    private String validator;
+    private AtomicLongArray segDone;
+    private final AtomicLong totalDone= new AtomicLong();
+    private long nextReport;
+    private volatile boolean restart= false;
+
+    private SegmentedDownload(URL url, File outfile, Map<String, String> cookies,
+                              Map<String, String> requestHeaders, URLDownload.Options ops) {
+        this.url= url;
+        this.outfile= outfile;
+        this.stateFile= new File(outfile.getPath()+STATE_EXT);
+        this.cookies= cookies;
+        this.requestHeaders= requestHeaders;
+        this.ops= ops;
+    }
+
+    /**
+     * @param url the url to get data from
+     * @param outfile the file to write to
+     * @param cookies a map of cookies as name value pairs, may be null
+     * @param requestHeaders a map of header name value pairs, may be null
+     * @param ops download options
+     * @return the FileInfo, or null if the url cannot be downloaded in segments, then it should be downloaded normally
+     * @throws IOException if a segment fails, what is done so far is kept for the next try
+     */
+    static FileInfo download(URL url, File outfile, Map<String, String> cookies,
+                             Map<String, String> requestHeaders, URLDownload.Options ops) throws IOException {
+        return new SegmentedDownload(url, outfile, cookies, requestHeaders, ops).download();
+    }
+
+    private FileInfo download() throws IOException {
+        if (!url.getProtocol().startsWith("http")) return null;
+        boolean partial= stateFile.exists();
+        HttpURLConnection conn= makeConnection();
+        conn.setRequestMethod("HEAD");
+        if (ops.onlyIfModified() && !partial && outfile.canRead() && outfile.length()>0) {
+            conn.setIfModifiedSince(outfile.lastModified());
+        }
+        int responseCode= conn.getResponseCode();
+        if (responseCode<400) FileUtil.silentClose(conn.getInputStream());  // lets the connection be reused
+        else conn.disconnect();
+        if (responseCode==HttpURLConnection.HTTP_NOT_MODIFIED) {
+            _log.info(outfile.getName() + ": Not downloading, already have current version, from "+url);
+            FileInfo fi= new FileInfo(outfile, URLDownload.getSugestedFileName(conn), responseCode,
+                                      ResponseMessage.getHttpResponseMessage(responseCode));
+            fi.putAttribute(FileInfo.FILE_DOWNLOADED,false+"");
+            return fi;
+        }
+        length= conn.getContentLengthLong();
+        String contentType= conn.getContentType();
+        boolean canDoSegments= responseCode==HttpURLConnection.HTTP_OK &&
+                "bytes".equalsIgnoreCase(conn.getHeaderField("Accept-Ranges")) &&
+                length>=MIN_SIZE &&
+                conn.getContentEncoding()==null &&
+                !(ops.uncompress() && contentType!=null && contentType.toLowerCase().endsWith("gzip")) &&
+                (ops.maxFileSize()<=0 || length<=ops.maxFileSize());
+        if (!canDoSegments) {
+            if (partial) clearState(); // so the partial file is not taken as a complete one
+            return null;
+        }
+        // If-Range only takes a strong ETag, a weak one would make the server send the whole file every time
+        validator= conn.getHeaderField("ETag");
+        if (validator==null || validator.startsWith("W/")) validator= conn.getHeaderField("Last-Modified");
+
+        int segCnt= (int)((length + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+        if (!(partial && loadState(segCnt))) {
+            segDone= new AtomicLongArray(segCnt);
+            try (RandomAccessFile raf= new RandomAccessFile(outfile, "rw")) {
+                raf.setLength(length);
+            }
+            saveState();   // while the state file exists the output file is never taken as complete
+        }
+        for (int i= 0; i<segCnt; i++) totalDone.addAndGet(segDone.get(i));
+
+        long start= System.currentTimeMillis();
+        fireListener(ListenerCall.START);
+        try {
+            downloadSegments(segCnt);
+        } catch (RangeNotSentException e) {
+            _log.info(outfile.getName() + ": " + e.getMessage() + ", downloading as a single stream", url.toString());
+            return null;
+        }
+        fireListener(ListenerCall.DONE);
+        stateFile.delete();
+
+        FileInfo fi= new FileInfo(outfile, URLDownload.getSugestedFileName(conn), HttpURLConnection.HTTP_OK,
+                                  ResponseMessage.getHttpResponseMessage(HttpURLConnection.HTTP_OK), contentType);
+        _log.info(String.format("Download Complete: %s : %d bytes, %d segments, time: %s",
+                                outfile.getName(), length, segCnt,
+                                UTCTimeUtil.getHMSFromMills(System.currentTimeMillis()-start)),
+                  url.toString());
+        return fi;
+    }
+
+    private void downloadSegments(int segCnt) throws IOException {
+        AtomicInteger nextSeg= new AtomicInteger();
+        try (FileChannel ch= FileChannel.open(outfile.toPath(), StandardOpenOption.WRITE)) {
+            List<Future<?>> futures= new ArrayList<>();
+            for (int i= 0; i<Math.min(MAX_STREAMS, segCnt); i++) {
+                futures.add(exeService.submit(() -> {
+                    for (int seg= nextSeg.getAndIncrement(); seg<segCnt; seg= nextSeg.getAndIncrement()) {
+                        downloadSegment(ch, seg);
+                    }
+                    return null;
+                }));
+            }
+            IOException failure= null;
+            for (Future<?> f : futures) {
+                try {
+                    f.get();
+                } catch (ExecutionException e) {
+                    nextSeg.set(segCnt);     // stop the other streams after their current segment
+                    if (failure==null) {
+                        failure= (e.getCause() instanceof IOException ioe) ? ioe : new IOException(e.getCause());
+                    }
+                } catch (InterruptedException e) {
+                    nextSeg.set(segCnt);
+                    if (failure==null) failure= new IOException("download interrupted", e);
+                }
+            }
+            if (failure!=null) {
+                if (restart) clearState();
+                else saveState();
+                throw failure;
+            }
+        }
+    }
+
+    private void downloadSegment(FileChannel ch, int seg) throws IOException {
+        long pos= seg*SEGMENT_SIZE + segDone.get(seg);
+        long end= Math.min((seg+1)*SEGMENT_SIZE, length) - 1;
+        if (pos>end) return;
+        HttpURLConnection conn= makeConnection();
+        conn.setRequestProperty("Range", "bytes=" + pos + "-" + end);
+        if (validator!=null) conn.setRequestProperty("If-Range", validator);
+        int responseCode= conn.getResponseCode();
+        if (responseCode!=HttpURLConnection.HTTP_PARTIAL) {
+            conn.disconnect();
+            restart= true;     // changed on the server or ranges not supported after all, start over
+            throw new RangeNotSentException(responseCode);
+        }
+        try (InputStream in= conn.getInputStream()) {
+            byte[] buffer= new byte[FileUtil.BUFFER_SIZE];
+            ByteBuffer bb= ByteBuffer.wrap(buffer);
+            int read;
+            while (pos<=end && (read= in.read(buffer, 0, (int)Math.min(buffer.length, end-pos+1))) != -1) {
+                bb.clear().limit(read);
+                while (bb.hasRemaining()) pos+= ch.write(bb, pos);
+                segDone.addAndGet(seg, read);
+                if (totalDone.addAndGet(read) >= nextReport) fireListener(ListenerCall.INCREMENT);
+            }
+        }
+        if (pos<=end) throw new IOException("Connection closed before the end of the range, segment: " + seg);
+    }
+
+    private HttpURLConnection makeConnection() throws IOException {
+        HttpURLConnection conn= (HttpURLConnection)URLDownload.makeConnection(url, cookies, requestHeaders);
+        conn.setRequestProperty("Accept-Encoding", "identity");
+        if (ops.timeoutInSec() > 0) {
+            conn.setConnectTimeout(ops.timeoutInSec() * 1000);
+            conn.setReadTimeout(ops.timeoutInSec() * 1000);
+        }
+        return conn;
+    }
+
+    private synchronized void fireListener(ListenerCall type) {
+        DownloadListener dl= ops.dl();
+        long current= totalDone.get();
+        if (type== ListenerCall.INCREMENT) {
+            if (current<nextReport) return;
+            nextReport= current + 5*MEG;
+        }
+        if (dl==null) return;
+        String mess= switch (type) {
+            case START -> "Starting download of " + FileUtil.getSizeAsString(length);
+            case INCREMENT -> FileUtil.getSizeAsString(current) + " out of " + FileUtil.getSizeAsString(length);
+            case DONE -> "Download Completed.";
+        };
+        DownloadEvent ev= new DownloadEvent(this, current, length, 0, 0, "", "", mess);
+        switch (type) {
+            case START -> dl.beginDownload(ev);
+            case INCREMENT -> dl.dataDownloading(ev);
+            case DONE -> dl.downloadCompleted(ev);
+        }
+    }
+
+    private boolean loadState(int segCnt) {
+        Properties p= new Properties();
+        try (InputStream in= new FileInputStream(stateFile)) {
+            p.load(in);
+            boolean same= String.valueOf(length).equals(p.getProperty("length")) &&
+                    String.valueOf(SEGMENT_SIZE).equals(p.getProperty("segmentSize")) &&
+                    String.valueOf(validator).equals(p.getProperty("validator")) &&
+                    url.toString().equals(p.getProperty("url")) &&
+                    outfile.length()==length;
+            if (!same) return false;
+            segDone= new AtomicLongArray(segCnt);
+            for (int i= 0; i<segCnt; i++) segDone.set(i, Long.parseLong(p.getProperty("done."+i, "0")));
+            _log.info("Resuming download of " + outfile.getName(), url.toString());
+            return true;
+        } catch (IOException|NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private void saveState() {
+        Properties p= new Properties();
+        p.setProperty("url", url.toString());
+        p.setProperty("length", String.valueOf(length));
+        p.setProperty("segmentSize", String.valueOf(SEGMENT_SIZE));
+        p.setProperty("validator", String.valueOf(validator));
+        for (int i= 0; i<segDone.length(); i++) p.setProperty("done."+i, String.valueOf(segDone.get(i)));
+        try (FileOutputStream out= new FileOutputStream(stateFile)) {
+            p.store(out, "segmented download state");
+        } catch (IOException e) {
+            _log.warn("Could not save download state: " + stateFile.getPath(), e.toString());
+        }
+    }
+
+    private void clearState() {
+        stateFile.delete();
+        outfile.delete();
+    }
+
+    /** the server answered a range request with something other than the range */
+    private static class RangeNotSentException extends IOException {
+        RangeNotSentException(int responseCode) {
+            super("Server did not return the requested range, response code: " + responseCode);
+        }
+    }
+}
@@ -9,6 +9,7 @@ import edu.caltech.ipac.firefly.server.RequestOwner;
 import edu.caltech.ipac.firefly.server.network.HttpServiceInput;
 import edu.caltech.ipac.firefly.server.util.Logger;
 import edu.caltech.ipac.firefly.server.util.VersionUtil;
+import edu.caltech.ipac.util.AppProperties;
 import edu.caltech.ipac.util.Base64;
 import edu.caltech.ipac.util.FileUtil;
 import edu.caltech.ipac.util.StringUtils;
@@ -57,6 +58,12 @@ public class URLDownload {
 
     static {
         if (DISABLE_SSL_VERIFICATION) disableSSLCertificateChecking();
+        // URLConnection reuses keep-alive connections from the JDK cache, which by default only keeps 5 per host.
+        // This only takes effect if it is set before the first http connection is made.
+        if (System.getProperty("http.maxConnections")==null) {
+            System.setProperty("http.maxConnections",
+                               AppProperties.getProperty("http.pool.maxHostConnections", "20"));
+        }
     }
 
 
@@ -334,21 +341,59 @@ public class URLDownload {
                                          Map<String, String> requestHeaders,
                                          Options ops) throws FailedRequestException {
         try {
-            Map<String, String> h= new HashMap<>();
-            if (requestHeaders!=null) h.putAll(requestHeaders);
-            if (ops.useCredentials) {
-                var inputs= HttpServiceInput.createWithCredential(url.toString());
-                var credentials= inputs.getHeaders();
-                if (credentials!=null && credentials.size()>0) {
-                    if (!credentials.keySet().stream().allMatch(h::containsKey)) h.putAll(credentials);
-                }
-            }
+            Map<String, String> h= addCredentials(url, requestHeaders, ops);
             return getDataToFile(makeConnection(url, cookies, h), outfile, ops, null, ops.allowRedirect?2:0);
         } catch (IOException e) {
             throw new FailedRequestException(ResponseMessage.getNetworkCallFailureMessage(e), e);
         }
     }
 
+    /**
+     * Same as {@link #getDataToFile(URL, File, Map, Map, Options)} but a large file from a server that accepts byte
+     * ranges is downloaded as several ranges in parallel. If this download fails, the next call for the same
+     * url and file continues where it stopped.  Otherwise, or when the server does not send the ranges it said it
+     * accepts, the file is downloaded normally.  This costs one more request (a HEAD) so only use it when the file
+     * is expected to be a large static file, such as a FITS image.
+     * @param url                  the url to get data from
+     * @param outfile              The name of the file to write the data to.
+     * @param cookies              a map of cookies as name value pairs, may be null
+     * @param requestHeaders       a map of header name value pairs, may be null
+     * @param ops                  download options
+     * @return an array of FileInfo objects
+     * @throws FailedRequestException Any Network Error with simple message, cause will probably be IOException
+     */
+    public static FileInfo getDataToFileInSegments(URL url,
+                                                   File outfile,
+                                                   Map<String, String> cookies,
+                                                   Map<String, String> requestHeaders,
+                                                   Options ops) throws FailedRequestException {
+        try {
+            FileInfo fi= SegmentedDownload.download(url, outfile, cookies, addCredentials(url, requestHeaders, ops), ops);
+            if (fi!=null) return fi;
+        } catch (SSLException e) {
+            return new FileInfo(495);
+        } catch (UnknownHostException e) {
+            return new FileInfo(404);
+        } catch (IOException e) {
+            logError(url, null, e);
+            throw new FailedRequestException(ResponseMessage.getNetworkCallFailureMessage(e), e);
+        }
+        return getDataToFile(url, outfile, cookies, requestHeaders, ops);
+    }
+
+    private static Map<String, String> addCredentials(URL url, Map<String, String> requestHeaders, Options ops) {
+        Map<String, String> h= new HashMap<>();
+        if (requestHeaders!=null) h.putAll(requestHeaders);
+        if (ops.useCredentials) {
+            var inputs= HttpServiceInput.createWithCredential(url.toString());
+            var credentials= inputs.getHeaders();
+            if (credentials!=null && credentials.size()>0) {
+                if (!credentials.keySet().stream().allMatch(h::containsKey)) h.putAll(credentials);
+            }
+        }
+        return h;
+    }
+
 //================================================================================
 //------------------ Public getDataToFile using a URLConnection  -----------------
 //================================================================================
@@ -24,6 +24,7 @@ public class AnyUrlParams extends BaseNetParams {
     private String _desc = null;
     private File _dir = null; // if null, the use the default dir
     private long _maxSizeToDownload= 0L;
+    private boolean _segmentedDownload= false;
     private HttpServiceInput addtlInfo;
 
 
@@ -99,6 +100,14 @@ public class AnyUrlParams extends BaseNetParams {
     public void setCheckForNewer(boolean check) { _checkForNewer= check; }
     public boolean getCheckForNewer() { return _checkForNewer; }
 
+    /**
+     * Download a large file as several byte ranges in parallel when the server allows it.  It costs an extra
+     * HEAD request, so set it only when the url is expected to be a large static file.
+     * @param segmented true to allow a segmented download
+     */
+    public void setSegmentedDownload(boolean segmented) { _segmentedDownload= segmented; }
+    public boolean getSegmentedDownload() { return _segmentedDownload; }
+
     public void addCookie(String key, String value) { cookies.put(key,value); }
 
 
@@ -4,7 +4,10 @@
 package edu.caltech.ipac.visualize.plot;
 import edu.caltech.ipac.firefly.data.HasSizeOf;
 
+import java.nio.FloatBuffer;
 import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
 
 /**
  * Creates a histogram of an image
@@ -21,6 +24,9 @@ public class Histogram implements HasSizeOf {
     private static final int HISTSIZ2 = 4096;  /* full size of hist array */
     private static final int HISTSIZ = 2048;     /* half size of hist array */
     private static final boolean debug= false;
+    private static final int FINE_FACTOR= 32;        /* fine bins per histogram bin */
+    private static final int MIN_FINE_PER_BIN= 8;    /* fine bins needed per bin to rebuild from the fine bins */
+    private static final int PARALLEL_MIN= 1<<20;    /* fewer pixels are binned on the calling thread */
 
     private final int[] hist;
     private double histMin;
@@ -32,114 +38,160 @@ public class Histogram implements HasSizeOf {
 
 
     public Histogram(float[] float1dArray, double datamin, double datamax) {
+        this(FloatBuffer.wrap(float1dArray), datamin, datamax);
+    }
+
+    /**
+     * The data is binned into FINE_FACTOR times more bins than the histogram has, in parallel partitions that are summed.
+     * The histogram bins are the sums of the fine bins. When the middle of the data is spread over too few bins, the
+     * histogram is made again over the narrower range. That is done from the fine bins when each new bin covers at least
+     * MIN_FINE_PER_BIN of them; a fine bin that straddles two new bins is counted in the one of its center, so the result
+     * is close to, but not the same as, binning the data again. Otherwise, or when the DATAMIN/DATAMAX range was wrong,
+     * the data is binned again.
+     * @param data the image data, heap or memory mapped, read with absolute gets so its position is not changed
+     * @param datamin the minimum data value or NaN to compute it
+     * @param datamax the maximum data value or NaN to compute it
+     */
+    public Histogram(FloatBuffer data, double datamin, double datamax) {
+        final int length= data.limit();
 
 	   /*
         If the datamin or datamax is NaN, adjust them
 		 */
         if (Double.isNaN(datamin) || Double.isNaN(datamax)) {
-            datamax = -Double.MAX_VALUE;
-            datamin = Double.MAX_VALUE;
-            for (int k = 0; k < float1dArray.length; k++) {
-                if (!Double.isNaN(float1dArray[k])) {
-                    if (float1dArray[k] < datamin)
-                        datamin = float1dArray[k];
-                    if (float1dArray[k] > datamax)
-                        datamax = float1dArray[k];
-                }
-            }
+            Bins minMax= binData(data, 0, 1, 0, 1);
+            datamin = minMax.dataMin;
+            datamax = minMax.dataMax;
         }
 
         hist = new int[HISTSIZ2 + 1];
-
-        double histDatamax = -Double.MAX_VALUE;
-        double histDatamin = Double.MAX_VALUE;
-
         histMin = datamin;
         double histMax = datamax;
-        boolean doing_redo = false;
-
-        while (true) {
-
-            boolean redo_flag = false;
-            histBinsize =getHistBinSize(histMax );
-             //reintialize the hist to 0
-            Arrays.fill(hist, 0);
-            int underflowCount = 0;
-            int overflowCount = 0;
-            for (int k = 0; k < float1dArray.length; k++)
-            {
-                if (!Double.isNaN(float1dArray[k]))
-                {
-                   int i = (int) ((float1dArray[k] - histMin) / histBinsize);
-                    if (i<0) {
-                        underflowCount++;
-                    }
-                    else if (i>HISTSIZ2) {
-                        overflowCount++;
-                    }
-                    else {
-                        hist[i] ++;
-                    }
-                    if (float1dArray[k] < histDatamin) histDatamin = float1dArray[k];
-                    if (float1dArray[k] > histDatamax) histDatamax = float1dArray[k];
+        histBinsize = getHistBinSize(histMax);
+        double fineBinsize= histBinsize / FINE_FACTOR;
+        Bins fine= binData(data, histMin, histBinsize, HISTSIZ2 + 1, FINE_FACTOR);
+        for (int i = 0; i < fine.counts.length; i++) hist[i / FINE_FACTOR] += fine.counts[i];
+
+        printDebugInfo(histMax, fine.underflow, fine.overflow);
+        datamin = fine.dataMin;
+        datamax = fine.dataMax;
+
+        /* redo if more than 1% of pixels fell off histogram */
+        if (fine.underflow > length * .01 || fine.overflow > length * .01) {
+            if (debug) System.out.println("rebuilding histogram with the data range. . ");
+            histMin = datamin;
+            histBinsize = getHistBinSize(datamax);
+            rebin(data);
+        }
+        else {
+            /* see what happens if we lop off top and bottom 0.05% of hist */
+            int lowLimit = getLowLimit();
+            int histMaxIndex = getHighSumIndex(lowLimit) + 1;
+            int histMinIndex = getLowSumIndex(lowLimit);
+
+            if (histMaxIndex!=-1 && histMinIndex!=-1 && (histMaxIndex - histMinIndex) < HISTSIZ) {
+                /* we can spread it out by factor of 2 */
+                if (debug) System.out.println("rebuilding histogram . . ");
+                double fineMin= histMin;
+                histMax = (histMaxIndex * histBinsize) + histMin;
+                histMin = (histMinIndex * histBinsize) + histMin;
+                histBinsize = getHistBinSize(histMax);
+                if ((histMaxIndex - histMinIndex) * FINE_FACTOR >= MIN_FINE_PER_BIN * HISTSIZ2) {
+                    rebinFine(fine.counts, fineMin, fineBinsize);
+                }
+                else {
+                    rebin(data);
                 }
             }
+        }
 
+        irafMin = datamin;
+        irafMax = datamax;
+        largeBinPercent= computeLargeBinPercent(length);
+    }
 
-            printDebugInfo(histMax, underflowCount, overflowCount);
-            datamin = histDatamin;
-            datamax = histDatamax;
-
-	        /* redo if more than 1% of pixels fell off histogram */
-            if (underflowCount > float1dArray.length * .01)
-                redo_flag = true;
-            if (overflowCount > float1dArray.length * .01)
-                redo_flag = true;
-
-            /* check if we got a good spread */
-
-            if (!redo_flag && !doing_redo) { /* don't bother checking if we already want a redo */
-
-	           /* see what happens if we lop off top and bottom 0.05% of hist */
-
-                int lowLimit = getLowLimit();
-
-                int histMaxIndex = getHighSumIndex(lowLimit) + 1;
-
-                int histMinIndex = getLowSumIndex(lowLimit);
-
-                if (histMaxIndex==-1 || histMinIndex==-1){
-                    break;
-                }
-
-                if ((histMaxIndex - histMinIndex) < HISTSIZ) {
+    /**
+     * fill the histogram by binning the data again using histMin and histBinsize
+     */
+    private void rebin(FloatBuffer data) {
+        Bins bins= binData(data, histMin, histBinsize, HISTSIZ2 + 1, 1);
+        System.arraycopy(bins.counts, 0, hist, 0, hist.length);
+    }
 
-                    histMax = (histMaxIndex * histBinsize) + histMin;
-                    histMin = (histMinIndex * histBinsize) + histMin;
-                    redo_flag = true;   /* we can spread it out by factor of 2 */
-                }
-            } else {
+    /**
+     * fill the histogram from the fine bins using histMin and histBinsize, each fine bin goes to the bin of its center
+     */
+    private void rebinFine(int[] fineCounts, double fineMin, double fineBinsize) {
+        Arrays.fill(hist, 0);
+        for (int j = 0; j < fineCounts.length; j++) {
+            if (fineCounts[j]==0) continue;
+            int i = (int) ((fineMin + (j + .5) * fineBinsize - histMin) / histBinsize);
+            if (i>=0 && i<=HISTSIZ2) hist[i] += fineCounts[j];
+        }
+    }
 
-                if (!doing_redo) {
+    /**
+     * Bin the data in parallel partitions when there is enough of it.
+     * @param min the lower edge of the first bin
+     * @param binSize the size of the bins
+     * @param nBins the number of bins, 0 to only find the minimum and maximum
+     * @param fineFactor split each bin into this many fine bins, the counts are of the fine bins
+     */
+    private static Bins binData(FloatBuffer data, double min, double binSize, int nBins, int fineFactor) {
+        int length= data.limit();
+        int parts= length < PARALLEL_MIN ? 1 : Runtime.getRuntime().availableProcessors();
+        if (parts==1) return binPart(data, 0, length, min, binSize, nBins, fineFactor);
+
+        int chunk= (length + parts - 1) / parts;
+        List<Bins> results= IntStream.range(0, parts).parallel()
+                .mapToObj( p -> binPart(data, (int)Math.min(length, (long)p*chunk),
+                                        (int)Math.min(length, (long)(p+1)*chunk), min, binSize, nBins, fineFactor))
+                .toList();
+        Bins bins= results.get(0);
+        for (int p = 1; p < results.size(); p++) bins.add(results.get(p));
+        return bins;
+    }
 
-                    histMax = datamax;
-                    histMin = datamin;
-                }
+    private static Bins binPart(FloatBuffer data, int start, int end, double min, double binSize,
+                                int nBins, int fineFactor) {
+        Bins bins= new Bins(nBins*fineFactor);
+        int[] counts= bins.counts;
+        double fineBinSize= binSize / fineFactor;
+        for (int k = start; k < end; k++) {
+            float v= data.get(k);
+            if (Float.isNaN(v)) continue;
+            if (v < bins.dataMin) bins.dataMin = v;
+            if (v > bins.dataMax) bins.dataMax = v;
+            if (nBins==0) continue;
+            int i = (int) ((v - min) / binSize);
+            if (i<0) bins.underflow++;
+            else if (i>=nBins) bins.overflow++;
+            else if (fineFactor==1) counts[i]++;
+            else {
+                // keep the fine bin inside bin i, so bin i is the sum of its own fine bins
+                int j = (int) ((v - min) / fineBinSize);
+                counts[Math.max(i*fineFactor, Math.min(j, i*fineFactor + fineFactor - 1))]++;
             }
-
-
-            if (debug) System.out.println("done");
-
-            if ( !doing_redo  &&  redo_flag ) {
-                if (debug) System.out.println("rebuilding histogram . . ");
-                doing_redo = true;
-            } else
-                break;
         }
+        return bins;
+    }
 
-        irafMin = datamin;
-        irafMax = datamax;
-        largeBinPercent= computeLargeBinPercent(float1dArray.length);
+    private static class Bins {
+        final int[] counts;
+        int underflow= 0;
+        int overflow= 0;
+        double dataMin= Double.MAX_VALUE;
+        double dataMax= -Double.MAX_VALUE;
+
+        Bins(int nBins) { counts= new int[nBins]; }
+
+        void add(Bins b) {
+            for (int i = 0; i < counts.length; i++) counts[i] += b.counts[i];
+            underflow += b.underflow;
+            overflow += b.overflow;
+            dataMin= Math.min(dataMin, b.dataMin);
+            dataMax= Math.max(dataMax, b.dataMax);
+        }
     }
 
 
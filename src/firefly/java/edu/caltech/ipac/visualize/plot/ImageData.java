@@ -199,9 +199,9 @@ public class ImageData implements Serializable {
                 bufferedImage = new BufferedImage(getColorModel(), getRaster(), false, null);
                 ImageHeader imHead= new ImageHeader(fitsReadAry[0].getHeader());
                 ImageStretch.stretchPixels8Bit(rangeValuesAry[Band.NO_BAND.getIdx()],
-                                               fitsReadAry[0].getRawFloatAry(), db.getData(0),
+                                               fitsReadAry[0].getRawFloatBuffer(), db.getData(0),
                                                imHead,  fitsReadAry[0].getHistogram(),
-                                               x, lastPixel, y, lastLine );
+                                               x, lastPixel, y, lastLine, false );
 
             }
         }
@@ -3,6 +3,7 @@
  */
 package edu.caltech.ipac.visualize.plot;
 
+import java.nio.FloatBuffer;
 import java.util.Arrays;
 
 
@@ -53,6 +54,14 @@ public class Zscale {
  */
   public static ZscaleRetval cdl_zscale ( float[] float1d, int nx, int ny,
 										  double contrast, int opt_size, int len_stdline, double blank_value ){
+	return cdl_zscale(FloatBuffer.wrap(float1d), nx, ny, contrast, opt_size, len_stdline, blank_value);
+  }
+
+/**
+ * Same as above, the image is read from a buffer with absolute gets so memory mapped data is sampled in place.
+ */
+  public static ZscaleRetval cdl_zscale ( FloatBuffer float1d, int nx, int ny,
+										  double contrast, int opt_size, int len_stdline, double blank_value ){
 
 	/* Subsample the image. */
 	SampleRetval sample_retval = sampleImage(float1d,  nx, ny,
@@ -68,7 +77,7 @@ public class Zscale {
 	/* Sort the sample, compute the minimum, maximum, and median pixel
 	 * values.
 	 */
-	Arrays.sort(sample);
+	Arrays.parallelSort(sample); // sorts in parallel when the sample is large, otherwise the same as Arrays.sort
 
   /* Yi fixes a bug:
 
@@ -133,7 +142,7 @@ public class Zscale {
   * a two-dimensional image into a one-dimensional vector.
   */
   private static SampleRetval sampleImage (
-    float[] float1d,		        /* image to be sampled			*/
+    FloatBuffer float1d,		        /* image to be sampled			*/
     int nx,
     int ny,			/* image dimensions			*/
     int optimal_size,		/* desired number of pixels in sample	*/
@@ -175,10 +184,9 @@ public class Zscale {
 	float[] sample = new float[maxpix];
 	int op = 0;
 	for (int line = (lineStep + 1)/2; line < ny; line+=lineStep) {
-	    /* Load a row of float values from the image */
+	    /* Sample the row directly from the image, blank values become NaN */
 		int ipixIndex = (line-1) * nx;
-		float[] row= getDataSlice(ipixIndex, nx, float1d, blank_value );
-		subSample (row, sample, op, npixPerLine, colStep);
+		subSample (float1d, ipixIndex, sample, op, npixPerLine, colStep, blank_value);
 		op += npixPerLine;
 		npix += npixPerLine;
 		if (npix > maxpix)
@@ -189,39 +197,19 @@ public class Zscale {
 	return new SampleRetval(npix, sample);
   }
 	
-  private static float[] getDataSlice(int start, int length, float[] data,double blank_value ){
-	  int ipixIndex = start;
-	  float[] row = new float[length];
-	  for (int i=0; i < length; i++){
-		  if ( data[ipixIndex] == blank_value){
-			  row[i] = Float.NaN;
-		  }
-		  else {
-			  row[i] = data[ipixIndex];
-
-		  }
-		  ipixIndex++;
-	  }
-	  return row;
-  }
-
 /** subSample -- Subsample an image line.  Extract the first pixel and
  * every "step"th pixel thereafter for a total of npix pixels.
  */
 
- private static void  subSample (float[] row,
-     float[] sample, int op, int npix, int step){
+ private static void  subSample (FloatBuffer data, int start,
+     float[] sample, int op, int npix, int step, double blank_value){
 
-	if (step <= 1)
-	    System.arraycopy(row, 0, sample, op, npix);
-	    //memmove (b, row, npix);
-	else {
-	    int ip = 0;
-	    for (int i=0; i < npix; i++) {
-		sample[op] = row[ip];
+	int ip = start;
+	for (int i=0; i < npix; i++) {
+		float v = data.get(ip);
+		sample[op] = (v == blank_value) ? Float.NaN : v;
 		ip += step;
 		op ++;
-	    }
 	}
 }
 
@@ -295,12 +283,13 @@ public class Zscale {
 	 */
 	int ngoodpix = npix;
 	int minpix = Math.max (MIN_NPIXELS, (int) (npix * MAX_REJECT));
+	float[] flat = new float[npix];
 
 	for (int niter=0;  niter < maxiter;  niter++) {
 	   int  lastNgoodpix = ngoodpix;
 
 	    /* Subtract the fitted line from the data array. */
-		float[] flat = flattenData (data,  normx, npix, z0, dz);
+		flattenData (data,  normx, flat, npix, z0, dz);
 
 	    /* Compute the k-sigma rejection threshold.  In principle this
 	     * could be more efficiently computed using the matrix sums
@@ -354,19 +343,17 @@ public class Zscale {
  */
 
 
-private static float[]
+private static void
   flattenData (
     float[] data,		/* raw data array			*/
     float[] x,			/* x value of each pixel		*/
+    float[] flat,		/* flattened data  (output)		*/
     int npix,			/* number of pixels			*/
     double z0,
     double dz	)	{	/* z-intercept, dz/dx of fitted line	*/
 
-	float[] flat = new float[npix]	;	/* flattened data  (output)		*/
 	for (int i=0; i < npix; i++)
 	    flat[i] = (float) (data[i] - (x[i] * dz + z0));
-
-	return flat;
 }
 
 
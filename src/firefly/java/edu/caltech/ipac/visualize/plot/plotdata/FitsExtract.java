@@ -11,6 +11,7 @@ import nom.tam.image.compression.hdu.CompressedImageHDU;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -94,8 +95,8 @@ public class FitsExtract {
      *
      * @throws IOException if it can't read the fits file
      */
-    static Number valueFromFitsFile(ImageHDU hdu, int x, int y, int plane, int ptSizeX, int ptSizeY, CombineType ct, boolean primaryHdu) throws IOException {
-        Header header= hdu.getHeader();
+    static Number valueFromFitsFile(ImageSource src, int x, int y, int plane, int ptSizeX, int ptSizeY, CombineType ct, boolean primaryHdu) throws IOException {
+        Header header= src.header();
         int naxis1= FitsReadUtil.getNaxis1(header);
         int naxis2= FitsReadUtil.getNaxis2(header);
         int bitpix= FitsReadUtil.getBitPix(header);
@@ -125,7 +126,7 @@ public class FitsExtract {
         if (!primaryHdu && (arrayType==Integer.TYPE || arrayType==Long.TYPE)) {
            ct= CombineType.OR;
         }
-        Object ary= FitsReadUtil.dataArrayFromFitsFile(hdu,x,y,ptSizeX,ptSizeY,plane,arrayType);
+        Object ary= src.reader().readTile(x,y,ptSizeX,ptSizeY,plane,arrayType);
         Number aveValue= combineArray(objToNumberAry(ary,arrayType), ct, arrayType);
 
         var bscale= FitsReadUtil.getBscale(header);
@@ -154,9 +155,30 @@ public class FitsExtract {
         return (hdus[idx] instanceof CompressedImageHDU cHDU) ? cHDU.asImageHDU() : (ImageHDU) hdus[idx];
     }
 
+    /**
+     * @return an ImageSource that reads the tiles with the nom.tam tiler of the HDU
+     */
+    static ImageSource getImageSource(BasicHDU<?>[] hdus, int idx) throws FitsException {
+        ImageHDU hdu= getImageHDU(hdus,idx);
+        return new ImageSource(hdu.getHeader(),
+                (x,y,width,height,plane,arrayType) -> FitsReadUtil.dataArrayFromFitsFile(hdu,x,y,width,height,plane,arrayType));
+    }
+
+    /**
+     * @return an ImageSource that reads the tiles directly from the file using the byte offsets of the index
+     */
+    private static ImageSource getImageSource(FitsIndex.Reader reader, FitsIndex.HduEntry entry) {
+        return new ImageSource(entry.getHeader(),
+                (x,y,width,height,plane,arrayType) -> reader.readTile(entry,x,y,width,height,plane,arrayType));
+    }
+
     public static List<Number> getPointDataAry(ImagePt[] ptAry, int plane, BasicHDU<?>[] hdus, int hduNum, int refHduNum, int ptSizeX, int ptSizeY, CombineType ct)
             throws FitsException, IOException {
-        ImageHDU hdu= getImageHDU(hdus,hduNum);
+        return getPointDataAry(ptAry, plane, getImageSource(hdus,hduNum), hduNum, refHduNum, ptSizeX, ptSizeY, ct);
+    }
+
+    static List<Number> getPointDataAry(ImagePt[] ptAry, int plane, ImageSource hdu, int hduNum, int refHduNum, int ptSizeX, int ptSizeY, CombineType ct)
+            throws IOException {
         boolean primaryHdu= hduNum==refHduNum;
         var pts= new ArrayList<Number>(ptAry.length);
         for (ImagePt pt : ptAry) {
@@ -168,7 +190,12 @@ public class FitsExtract {
     public static List<Number> getLineDataAry(ImagePt pt1, ImagePt pt2, int plane, BasicHDU<?>[] hdus,
                                               int hduNum, int refHduNum, int ptSize, CombineType ct)
             throws FitsException, IOException {
-        ImageHDU hdu= getImageHDU(hdus,hduNum);
+        return getLineDataAry(pt1, pt2, plane, getImageSource(hdus,hduNum), hduNum, refHduNum, ptSize, ct);
+    }
+
+    static List<Number> getLineDataAry(ImagePt pt1, ImagePt pt2, int plane, ImageSource hdu,
+                                       int hduNum, int refHduNum, int ptSize, CombineType ct)
+            throws IOException {
         boolean primaryHdu= hduNum==refHduNum;
         double x1 = pt1.getX();
         double y1 = pt1.getY();
@@ -216,6 +243,10 @@ public class FitsExtract {
     public static List<ExtractionResults> extractFromRelatedHDUs(File fitsFile, int refHduNum,
                                                                  boolean allMatchingHDUs, Extractor extractor)
             throws FitsException, IOException {
+        FitsIndex index= FitsIndex.getIndex(fitsFile);
+        if (index!=null && index.canReadDirectly()) {
+            return extractFromRelatedHDUs(fitsFile, index, refHduNum, allMatchingHDUs, extractor);
+        }
         try (Fits fits = new Fits(fitsFile)) {
             BasicHDU<?>[] hdus = fits.read();
             BasicHDU<?> hdu = hdus[refHduNum];
@@ -231,22 +262,58 @@ public class FitsExtract {
                 for (int i = 0; (i < hdus.length); i++) {
                     Header h = hdus[i].getHeader();
                     if (FitsReadUtil.getNaxis(h) == dims && FitsReadUtil.getNaxis1(h) == xLen && FitsReadUtil.getNaxis2(h) == yLen && FitsReadUtil.getNaxis3(h) == zLen) {
-                        var list = extractor.extractAry(hdus, i);
+                        var list = extractor.extractAry(getImageSource(hdus, i), i);
                         retList.add(new ExtractionResults(i, FitsReadUtil.getExtNameOrType(h), list, i == refHduNum, h));
                     }
                 }
             } else {
-                var list = extractor.extractAry(hdus, refHduNum);
+                var list = extractor.extractAry(getImageSource(hdus, refHduNum), refHduNum);
                 retList.add(new ExtractionResults(refHduNum, FitsReadUtil.getExtNameOrType(refHeader), list,true, refHeader));
             }
             return retList;
         }
     }
 
+    /**
+     * Extract using the byte offsets of the index, only the pixels needed are read from the file
+     */
+    private static List<ExtractionResults> extractFromRelatedHDUs(File fitsFile, FitsIndex index, int refHduNum,
+                                                                  boolean allMatchingHDUs, Extractor extractor)
+            throws FitsException, IOException {
+        FitsIndex.HduEntry ref= validateImageAtHDU(index, refHduNum);
+        try (FitsIndex.Reader reader= index.openReader(fitsFile)) {
+            List<ExtractionResults> retList = new ArrayList<>();
+            if (allMatchingHDUs) {
+                for (FitsIndex.HduEntry entry : index.getHdus()) {
+                    if (entry.image() && Arrays.equals(entry.naxes(), ref.naxes())) {
+                        ImageSource src= getImageSource(reader, entry);
+                        var list = extractor.extractAry(src, entry.hduNum());
+                        retList.add(new ExtractionResults(entry.hduNum(), FitsReadUtil.getExtNameOrType(src.header()),
+                                                          list, entry.hduNum() == refHduNum, src.header()));
+                    }
+                }
+            } else {
+                ImageSource src= getImageSource(reader, ref);
+                var list = extractor.extractAry(src, refHduNum);
+                retList.add(new ExtractionResults(refHduNum, FitsReadUtil.getExtNameOrType(src.header()), list,true, src.header()));
+            }
+            return retList;
+        }
+    }
+
     public static List<Number> extractFromHDU(File fitsFile, int hduNum, Extractor extractor)
             throws FitsException, IOException {
+        FitsIndex index= FitsIndex.getIndex(fitsFile);
+        if (index!=null && index.canReadDirectly()) {
+            FitsIndex.HduEntry entry= validateImageAtHDU(index, hduNum);
+            try (FitsIndex.Reader reader= index.openReader(fitsFile)) {
+                return extractor.extractAry(getImageSource(reader, entry), hduNum);
+            }
+        }
         try (Fits fits= new Fits(fitsFile)) {
-            return extractor.extractAry(fits.read(), hduNum);
+            BasicHDU<?>[] hdus= fits.read();
+            validateImageAtHDU(hdus, hduNum);
+            return extractor.extractAry(getImageSource(hdus, hduNum), hduNum);
         }
     }
 
@@ -256,7 +323,7 @@ public class FitsExtract {
                                                                       CombineType ct)
             throws FitsException, IOException {
         return extractFromRelatedHDUs(fitsFile, refHduNum, allMatchingHDUs,
-                (hdus, hduNum) -> getPointDataAry(ptAry, plane, hdus, hduNum, refHduNum, ptSizeX, ptSizeY,  ct));
+                (src, hduNum) -> getPointDataAry(ptAry, plane, src, hduNum, refHduNum, ptSizeX, ptSizeY,  ct));
     }
 
     public static List<ExtractionResults> getAllLinesFromRelatedHDUs(ImagePt pt, ImagePt pt2, File fitsFile,
@@ -265,7 +332,7 @@ public class FitsExtract {
                                                                      CombineType ct)
             throws FitsException, IOException {
         return extractFromRelatedHDUs(fitsFile, refHduNum, allMatchingHDUs,
-                (hdus, hduNum) -> getLineDataAry(pt, pt2, plane, hdus, hduNum, refHduNum, ptSize, ct));
+                (src, hduNum) -> getLineDataAry(pt, pt2, plane, src, hduNum, refHduNum, ptSize, ct));
     }
 
     public static List<ExtractionResults> getAllZAxisAryFromRelatedCubes(ImagePt pt, File fitsFile, int refHduNum,
@@ -273,32 +340,37 @@ public class FitsExtract {
                                                                          CombineType ct)
             throws FitsException, IOException {
         return extractFromRelatedHDUs(fitsFile, refHduNum, allMatchingHDUs,
-                (hdus,hduNum) -> getZAxisAry(pt,hdus,hduNum,refHduNum,ptSize,ct) );
+                (src,hduNum) -> getZAxisAry(pt,src,hduNum,refHduNum,ptSize,ct) );
     }
 
     public static List<Number> getPointDataAryFromFile(ImagePt[] ptAry, int plane, File fitsFile, int hduNum, int refHduNum,
                                                        int ptSizeX, int ptSizeY, CombineType ct)
             throws FitsException, IOException {
-        return extractFromHDU(fitsFile,hduNum, (hdus,num) -> getPointDataAry(ptAry,plane, hdus,num,refHduNum, ptSizeX, ptSizeY, ct));
+        return extractFromHDU(fitsFile,hduNum, (src,num) -> getPointDataAry(ptAry,plane, src,num,refHduNum, ptSizeX, ptSizeY, ct));
     }
 
     public static List<Number> getLineDataAryFromFile(ImagePt pt, ImagePt pt2, int plane, File fitsFile, int hduNum, int refHduNum,
                                                       int ptSize, CombineType ct)
             throws FitsException, IOException {
-        return extractFromHDU(fitsFile,hduNum, (hdus,num) -> getLineDataAry(pt,pt2,plane, hdus,num,refHduNum,ptSize,ct));
+        return extractFromHDU(fitsFile,hduNum, (src,num) -> getLineDataAry(pt,pt2,plane, src,num,refHduNum,ptSize,ct));
     }
 
     public static List<Number> getZAxisAryFromCube(ImagePt pt, File fitsFile, int hduNum, int ptSize, CombineType ct)
             throws FitsException, IOException {
-        return extractFromHDU(fitsFile,hduNum, (hdus,num) -> getZAxisAry(pt,hdus,num,hduNum,ptSize,ct));
+        return extractFromHDU(fitsFile,hduNum, (src,num) -> getZAxisAry(pt,src,num,hduNum,ptSize,ct));
     }
 
     public static List<Number> getZAxisAry(ImagePt pt, BasicHDU<?>[] hdus, int hduNum, int refHduNum, int ptSize, CombineType ct)
             throws FitsException, IOException {
-        validateCubeAtHDU(hdus,hduNum);
+        validateImageAtHDU(hdus,hduNum);
+        return getZAxisAry(pt, getImageSource(hdus,hduNum), hduNum, refHduNum, ptSize, ct);
+    }
+
+    static List<Number> getZAxisAry(ImagePt pt, ImageSource hdu, int hduNum, int refHduNum, int ptSize, CombineType ct)
+            throws FitsException, IOException {
+        Header header= hdu.header();
+        validateCube(header,hduNum);
         boolean primaryHdu= hduNum==refHduNum;
-        ImageHDU hdu= getImageHDU(hdus,hduNum);
-        Header header= hdu.getHeader();
         int zLen= FitsReadUtil.getNaxis3(header);
         List<Number> retList= new ArrayList<>(zLen);
         for(int i=0;i<zLen; i++) {
@@ -307,10 +379,7 @@ public class FitsExtract {
         return retList;
     }
 
-    private static void validateCubeAtHDU(BasicHDU<?>[] hdus, int hduNum) throws FitsException {
-        validateImageAtHDU(hdus,hduNum);
-        BasicHDU<?> basicHDU= hdus[hduNum];
-        Header header= basicHDU.getHeader();
+    private static void validateCube(Header header, int hduNum) throws FitsException {
         String hduNumStr= "HDU #"+hduNum;
         int nAxis= FitsReadUtil.getNaxis(header);
         if (nAxis<3) throw new FitsException(hduNumStr + " is not a cube");
@@ -326,7 +395,26 @@ public class FitsExtract {
         }
     }
 
-    public interface Extractor { List<Number> extractAry(BasicHDU<?>[] hdus, int hduNum) throws FitsException, IOException; }
+    private static FitsIndex.HduEntry validateImageAtHDU(FitsIndex index, int hduNum) throws FitsException {
+        String hduNumStr= "HDU #"+hduNum;
+        FitsIndex.HduEntry entry= index.getHdu(hduNum);
+        if (entry==null) throw new FitsException("no "+hduNumStr);
+        if (!entry.image()) throw new FitsException(hduNumStr+ " is not a image HDU");
+        return entry;
+    }
+
+    public interface Extractor { List<Number> extractAry(ImageSource src, int hduNum) throws FitsException, IOException; }
+
+    public interface TileReader {
+        Object readTile(int x, int y, int width, int height, int plane, Class<?> arrayType) throws IOException;
+    }
+
+    /**
+     * An image HDU to extract from
+     * @param header the header of the HDU
+     * @param reader reads a rectangle of a plane, the same as FitsReadUtil.dataArrayFromFitsFile
+     */
+    public record ImageSource(Header header, TileReader reader) { }
 
     public record ExtractionResults(int hduNum, String extName, List<Number> aryData, boolean refHDU, Header header) { }
 }
@@ -0,0 +1,344 @@
+/*
+ * License information at https://github.com/Caltech-IPAC/firefly/blob/master/License.txt
+ */
+package edu.caltech.ipac.visualize.plot.plotdata;
+
+import edu.caltech.ipac.firefly.server.util.Logger;
+import edu.caltech.ipac.util.FileUtil;
+import edu.caltech.ipac.util.cache.Cache;
+import edu.caltech.ipac.util.cache.CacheManager;
+import edu.caltech.ipac.util.cache.StringKey;
+import nom.tam.fits.Header;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The byte offsets of the HDUs of a FITS file, found by scanning only the headers.  With the index, a plane of a cube or
+ * a few pixels can be read with positional reads without reading or parsing the rest of the file.
+ * <p>
+ * Only uncompressed files are indexed, gzip files and tile compressed images have to go through nom.tam.
+ * The indexes are kept in the same cache as the FileInfo objects of FitsCacher.
+ */
+public class FitsIndex implements Serializable {
+
+    private static final int BLOCK_SIZE= 2880;
+    private static final int CARD_SIZE= 80;
+    private static final int MAX_READ= 1024*1024;
+
+    private final long lastModified;
+    private final long length;
+    private final List<HduEntry> hdus;
+
+    private FitsIndex(long lastModified, long length, List<HduEntry> hdus) {
+        this.lastModified= lastModified;
+        this.length= length;
+        this.hdus= Collections.unmodifiableList(hdus);
+    }
+
+    /**
+     * @param f the FITS file
+     * @return the index of the file or null if the file cannot be indexed, such as a gzip file
+     */
+    public static FitsIndex getIndex(File f) {
+        if (f==null || !f.canRead()) return null;
+        Cache cache= CacheManager.getCache(Cache.TYPE_PERM_SMALL);
+        StringKey key= new StringKey("FitsIndex|"+f.getAbsolutePath());
+        if (cache.get(key) instanceof FitsIndex index && index.lastModified==f.lastModified() && index.length==f.length()) {
+            return index;
+        }
+        try {
+            if (FileUtil.isGZipFile(f)) return null;
+            FitsIndex index= build(f);
+            if (index!=null) cache.put(key, index);
+            return index;
+        } catch (IOException e) {
+            Logger.getLogger().info("Could not index FITS file: " + f.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public int getHduCount() { return hdus.size(); }
+
+    /**
+     * @param hduNum the HDU number, 0 is the primary HDU
+     * @return the entry or null if there is no such HDU
+     */
+    public HduEntry getHdu(int hduNum) { return hduNum>=0 && hduNum<hdus.size() ? hdus.get(hduNum) : null; }
+
+    public List<HduEntry> getHdus() { return hdus; }
+
+    /**
+     * @return true if every image HDU can be read directly, false if some are tile compressed
+     */
+    public boolean canReadDirectly() { return hdus.stream().noneMatch(HduEntry::compressedImage); }
+
+    /**
+     * @param f the FITS file this index was built from
+     * @return a reader, it must be closed
+     * @throws IOException if the file cannot be opened
+     */
+    public Reader openReader(File f) throws IOException { return new Reader(f); }
+
+    static FitsIndex build(File f) throws IOException {
+        List<HduEntry> hdus= new ArrayList<>();
+        try (FileChannel ch= FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            long size= ch.size();
+            long pos= 0;
+            while (pos+BLOCK_SIZE <= size) {
+                List<String> cards= readHeaderCards(ch, pos);
+                if (cards==null) {
+                    if (hdus.isEmpty()) return null; // not a FITS file
+                    break;                           // trailing data after the last HDU
+                }
+                HduEntry entry= makeEntry(hdus.size(), pos, cards);
+                hdus.add(entry);
+                pos= entry.dataOffset() + padded(entry.dataSize());
+            }
+        }
+        return hdus.isEmpty() ? null : new FitsIndex(f.lastModified(), f.length(), hdus);
+    }
+
+    /**
+     * Read the cards of the header starting at pos
+     * @return the cards up to, but not including, END, or null if there is no valid header at pos
+     */
+    private static List<String> readHeaderCards(FileChannel ch, long pos) throws IOException {
+        List<String> cards= new ArrayList<>(36);
+        ByteBuffer block= ByteBuffer.allocate(BLOCK_SIZE);
+        while (true) {
+            block.clear();
+            readFully(ch, block, pos);
+            pos+= BLOCK_SIZE;
+            String blockStr= new String(block.array(), StandardCharsets.US_ASCII);
+            for(int i=0; i<BLOCK_SIZE; i+=CARD_SIZE) {
+                String card= blockStr.substring(i, i+CARD_SIZE);
+                if (cards.isEmpty() && !card.startsWith("SIMPLE  ") && !card.startsWith("XTENSION")) return null;
+                if (card.startsWith("END     ")) return cards;
+                cards.add(card);
+            }
+        }
+    }
+
+    private static HduEntry makeEntry(int hduNum, long headerOffset, List<String> cards) throws IOException {
+        String xtension= null;
+        int bitpix= 0;
+        int naxis= 0;
+        long pCount= 0;
+        long gCount= 1;
+        boolean groups= false;
+        boolean zImage= false;
+        double bscale= 1;
+        double bzero= 0;
+        double blank= Double.NaN;
+        int[] naxes= new int[0];
+        int headerBlocks= (cards.size()+1+35) / 36;   // 36 cards per block, +1 for the END card
+        for(String card : cards) {
+            String key= card.substring(0,8).trim();
+            String value= cardValue(card);
+            if (value==null) continue;
+            try {
+                switch (key) {
+                    case "XTENSION" -> xtension= value;
+                    case "BITPIX" -> bitpix= (int)parseNum(value);
+                    case "NAXIS" -> { naxis= (int)parseNum(value); naxes= new int[naxis]; }
+                    case "PCOUNT" -> pCount= (long)parseNum(value);
+                    case "GCOUNT" -> gCount= (long)parseNum(value);
+                    case "GROUPS" -> groups= value.equals("T");
+                    case "ZIMAGE" -> zImage= value.equals("T");
+                    case "BSCALE" -> bscale= parseNum(value);
+                    case "BZERO" -> bzero= parseNum(value);
+                    case "BLANK" -> blank= parseNum(value);
+                    default -> {
+                        if (key.startsWith("NAXIS")) {
+                            int axis= Integer.parseInt(key.substring(5));
+                            if (axis>=1 && axis<=naxes.length) naxes[axis-1]= (int)parseNum(value);
+                        }
+                    }
+                }
+            } catch (NumberFormatException e) {
+                throw new IOException("Bad value for "+key+" in HDU #"+hduNum);
+            }
+        }
+        if (bitpix==0) throw new IOException("No BITPIX in HDU #"+hduNum);
+
+        long pixels= 0;
+        if (naxis>0) {
+            pixels= 1;
+            for(int i= (groups && naxes[0]==0) ? 1 : 0; i<naxis; i++) pixels*= naxes[i];
+        }
+        long dataSize= Math.abs(bitpix)/8 * gCount * (pCount + pixels);
+        if (naxis==0) dataSize= 0;
+        boolean image= (xtension==null && naxis>=2 && !groups) || "IMAGE".equals(xtension);
+        boolean compressedImage= zImage && "BINTABLE".equals(xtension);
+        return new HduEntry(hduNum, headerOffset, headerOffset+ (long)headerBlocks*BLOCK_SIZE, dataSize, bitpix, naxes,
+                            bscale, bzero, blank, image, compressedImage, cards.toArray(new String[0]));
+    }
+
+    /**
+     * @return the value of the card, without quotes or comment, or null if the card has no value
+     */
+    private static String cardValue(String card) {
+        if (card.length()<10 || card.charAt(8)!='=' || card.charAt(9)!=' ') return null;
+        String v= card.substring(10).trim();
+        if (v.startsWith("'")) {
+            StringBuilder sb= new StringBuilder();
+            for(int i=1; i<v.length(); i++) {
+                char c= v.charAt(i);
+                if (c=='\'') {
+                    if (i+1<v.length() && v.charAt(i+1)=='\'') { sb.append(c); i++; }
+                    else break;
+                }
+                else {
+                    sb.append(c);
+                }
+            }
+            return sb.toString().trim();
+        }
+        int slash= v.indexOf('/');
+        return (slash>=0 ? v.substring(0,slash) : v).trim();
+    }
+
+    private static double parseNum(String v) { return Double.parseDouble(v.replace('D','E')); }
+
+    private static long padded(long size) { return (size + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE; }
+
+    private static void readFully(FileChannel ch, ByteBuffer buff, long pos) throws IOException {
+        while (buff.hasRemaining()) {
+            int cnt= ch.read(buff, pos);
+            if (cnt<0) throw new IOException("Unexpected end of file");
+            pos+= cnt;
+        }
+        buff.flip();
+    }
+
+    /**
+     * One HDU of the file
+     * @param naxes the length of each axis, naxes[0] is NAXIS1
+     * @param image true if this is an uncompressed image HDU
+     * @param compressedImage true if this is a tile compressed image HDU
+     * @param cards the header cards, without END
+     */
+    public record HduEntry(int hduNum, long headerOffset, long dataOffset, long dataSize, int bitpix, int[] naxes,
+                           double bscale, double bzero, double blank, boolean image, boolean compressedImage,
+                           String[] cards) implements Serializable {
+
+        public int getNaxis() { return naxes.length; }
+        public int getNaxis(int axis) { return axis<=naxes.length ? naxes[axis-1] : 0; }
+
+        /**
+         * @return a new nom.tam Header built from the cards
+         */
+        public Header getHeader() { return new Header(cards); }
+    }
+
+    /**
+     * Reads pixels of an indexed file with positional reads, the reader is safe to use from several threads.
+     */
+    public static class Reader implements Closeable {
+        private final FileChannel ch;
+
+        private Reader(File f) throws IOException {
+            ch= FileChannel.open(f.toPath(), StandardOpenOption.READ);
+        }
+
+        /**
+         * Read a rectangle of a plane, the values are converted to arrayType without applying BSCALE or BZERO.
+         * This matches FitsReadUtil.dataArrayFromFitsFile.
+         * @param hdu the image HDU
+         * @param x the first pixel
+         * @param y the first line, 0 is the first line in the file
+         * @param width number of pixels
+         * @param height number of lines
+         * @param plane the plane, 0 for 2 dimensional images
+         * @param arrayType Float.TYPE, Double.TYPE, Integer.TYPE or Long.TYPE
+         * @return a one dimensional primitive array of arrayType
+         * @throws IOException if the rectangle is outside the image or the file cannot be read
+         */
+        public Object readTile(HduEntry hdu, int x, int y, int width, int height, int plane, Class<?> arrayType)
+                throws IOException {
+            if (!hdu.image()) throw new IOException("HDU #"+hdu.hduNum()+" is not an uncompressed image");
+            int naxis= hdu.getNaxis();
+            if (naxis==4 && hdu.getNaxis(4)!=1) throw new IllegalArgumentException("naxis 4 must has naxis 4 as dimension 1");
+            else if (naxis!=2 && naxis!=3 && naxis!=4) throw new IllegalArgumentException("only naxis 2 or 3 or 4 is supported");
+            int naxis1= hdu.getNaxis(1);
+            int naxis2= hdu.getNaxis(2);
+            int naxis3= naxis>2 ? hdu.getNaxis(3) : 1;
+            if (x<0 || y<0 || width<1 || height<1 || x+width>naxis1 || y+height>naxis2 || plane<0 || plane>=naxis3) {
+                throw new IOException("Tile is outside of the image");
+            }
+            int bpp= Math.abs(hdu.bitpix())/8;
+            Object out= Array.newInstance(arrayType, width*height);
+            long planeOffset= hdu.dataOffset() + (long)plane*naxis1*naxis2*bpp;
+            if (width==naxis1) {   // the lines are contiguous
+                readValues(hdu.bitpix(), planeOffset + (long)y*naxis1*bpp, width*height, out, 0);
+            }
+            else {
+                for(int line=0; line<height; line++) {
+                    readValues(hdu.bitpix(), planeOffset + ((long)(y+line)*naxis1 + x)*bpp, width, out, line*width);
+                }
+            }
+            return out;
+        }
+
+        private void readValues(int bitpix, long offset, int count, Object out, int outPos) throws IOException {
+            int bpp= Math.abs(bitpix)/8;
+            ByteBuffer buff= ByteBuffer.allocate(Math.min(count*bpp, MAX_READ - MAX_READ%bpp));
+            int done= 0;
+            while (done<count) {
+                int cnt= Math.min(count-done, buff.capacity()/bpp);
+                buff.clear().limit(cnt*bpp);
+                readFully(ch, buff, offset + (long)done*bpp);
+                if (bitpix==-32 && out instanceof float[] fAry) {
+                    buff.asFloatBuffer().get(fAry, outPos+done, cnt);
+                }
+                else {
+                    for(int i=0; i<cnt; i++) put(out, outPos+done+i, buff, bitpix);
+                }
+                done+= cnt;
+            }
+        }
+
+        private static void put(Object out, int idx, ByteBuffer buff, int bitpix) {
+            if (bitpix==64 || (out instanceof long[])) {
+                long v= switch (bitpix) {
+                    case 8 -> buff.get();
+                    case 16 -> buff.getShort();
+                    case 32 -> buff.getInt();
+                    case 64 -> buff.getLong();
+                    case -32 -> (long)buff.getFloat();
+                    default -> (long)buff.getDouble();
+                };
+                if (out instanceof long[] a) a[idx]= v;
+                else if (out instanceof int[] a) a[idx]= (int)v;
+                else if (out instanceof float[] a) a[idx]= v;
+                else ((double[])out)[idx]= v;
+                return;
+            }
+            double v= switch (bitpix) {
+                case 8 -> buff.get();
+                case 16 -> buff.getShort();
+                case 32 -> buff.getInt();
+                case -32 -> buff.getFloat();
+                default -> buff.getDouble();
+            };
+            if (out instanceof float[] a) a[idx]= (float)v;
+            else if (out instanceof double[] a) a[idx]= v;
+            else if (out instanceof int[] a) a[idx]= (int)v;
+            else ((long[])out)[idx]= (long)v;
+        }
+
+        @Override
+        public void close() throws IOException { ch.close(); }
+    }
+}
@@ -21,6 +21,8 @@ import nom.tam.image.compression.hdu.CompressedImageHDU;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.lang.ref.SoftReference;
+import java.nio.FloatBuffer;
 
 import static edu.caltech.ipac.visualize.plot.plotdata.FitsReadUtil.SPOT_EXT;
 import static edu.caltech.ipac.visualize.plot.plotdata.FitsReadUtil.SPOT_OFF;
@@ -39,7 +41,7 @@ public class FitsRead implements Serializable, HasSizeOf {
     private final int hduNumber;
     private final Header zeroHeader;
     private ImageHDU hdu;
-    private float[] float1d;
+    private volatile float[] float1d;
     private final Header header;
     private Histogram hist;
     private final File file;
@@ -50,6 +52,9 @@ public class FitsRead implements Serializable, HasSizeOf {
     private final String bunit;
     private long estimatedBaseSize=0;
     private final boolean tileCompress;
+    private transient volatile ImagePyramid pyramid;
+    private transient volatile MappedFloatData mappedData;
+    private transient volatile SoftReference<float[]> mappedCopy;
 
 
     /**
@@ -111,6 +116,12 @@ public class FitsRead implements Serializable, HasSizeOf {
 
     public boolean isDeferredRead() { return deferredRead; }
 
+    /**
+     * @return the reduced resolution levels of this image, null if they have not been built
+     */
+    public ImagePyramid getPyramid() { return pyramid; }
+    public void setPyramid(ImagePyramid pyramid) { this.pyramid= pyramid; }
+
     public String getOrigin() {
         return header.getStringValue(ImageHeader.ORIGIN)!=null ? header.getStringValue(ImageHeader.ORIGIN) : "";
     }
@@ -118,9 +129,55 @@ public class FitsRead implements Serializable, HasSizeOf {
     public int getProjectionType() { return this.maptype; }
 
 
+    /**
+     * Move the image data off the heap into a memory mapped file. Afterward the data is read through the mapping,
+     * see getRawFloatBuffer.  Callers that still need an array get a copy that the garbage collector may reclaim
+     * when memory is short; getSizeOf includes it while it is held.
+     * Deferred reads are not changed, they read their plane when it is needed.
+     * @param storageFile the file to hold the data, it is reused if it is newer than the FITS file
+     * @throws IOException if the data cannot be written or mapped, the data stays on the heap in that case
+     */
+    public synchronized void useMappedStorage(File storageFile) throws IOException {
+        if (deferredRead || mappedData!=null || float1d==null) return;
+        mappedData= MappedFloatData.create(float1d, storageFile, file!=null ? file.lastModified() : 0);
+        mappedCopy= null;
+        float1d= null;
+    }
+
+    public boolean isMappedStorage() { return mappedData!=null; }
+
+    /**
+     * Stretching, histograms, zscale and pixel reads use this instead of getRawFloatAry, so mapped data is never
+     * copied to the heap.
+     * @return the raw image data as a buffer, memory mapped when using mapped storage. Use absolute gets.
+     */
+    public FloatBuffer getRawFloatBuffer() {
+        MappedFloatData md= mappedData;
+        return md!=null ? md.getBuffer() : FloatBuffer.wrap(getRawFloatAry());
+    }
+
     public float[] getRawFloatAry() {
         if (float1d!=null) return float1d;
+        MappedFloatData md= mappedData;
+        if (md!=null) {
+            float[] copy= mappedCopy!=null ? mappedCopy.get() : null;
+            if (copy==null) {
+                copy= md.toArray();
+                mappedCopy= new SoftReference<>(copy);
+            }
+            return copy;
+        }
         if (!deferredRead) throw new IllegalArgumentException("FitsRead not setup for deferred reading");
+        FitsIndex index= FitsIndex.getIndex(this.file);
+        if (index!=null && index.getHdu(this.hduNumber)!=null && index.getHdu(this.hduNumber).image()) {
+            try (FitsIndex.Reader reader= index.openReader(this.file)) {   // read only the bytes of this plane
+                float1d= (float [])reader.readTile(index.getHdu(this.hduNumber), 0,0,getNaxis1(),getNaxis2(), planeNumber,Float.TYPE);
+                return float1d;
+            }
+            catch (Exception e) {
+                Logger.getLogger("FitsRead").info("Could not read cube plane using the index, reading with nom.tam: " + e.getMessage());
+            }
+        }
         try (Fits fits = new Fits(this.file)) {
             BasicHDU<?> hdu= fits.read()[this.hduNumber];
             if (!(hdu instanceof ImageHDU)) return null;
@@ -160,7 +217,7 @@ public class FitsRead implements Serializable, HasSizeOf {
         byte blank_pixel_value = (byte) 255;
         int[] pixelhist = new int[256];
         ImageStretch.stretchPixelsForMask(startPixel, lastPixel, startLine, lastLine, this.getNaxis1(),
-                        blank_pixel_value, getRawFloatAry(), pixelData, pixelhist, lsstMasks);
+                        blank_pixel_value, getRawFloatBuffer(), pixelData, pixelhist, lsstMasks);
     }
 
 
@@ -182,7 +239,8 @@ public class FitsRead implements Serializable, HasSizeOf {
 
         int index = yint * this.getNaxis1() + xint;
 
-        double raw_dn = getRawFloatAry()[index];
+        MappedFloatData md= mappedData;
+        double raw_dn = md!=null ? md.get(index) : getRawFloatAry()[index];
 
         return (!getOrigin().startsWith(ImageHeader.PALOMAR_ID)) ?
                 ImageStretch.getFluxStandard(raw_dn, getBlankValue(), getBscale(), getBzero(), getBitPix()) :
@@ -213,7 +271,7 @@ public class FitsRead implements Serializable, HasSizeOf {
      * @return array of byte (4096 elements)
      */
     public byte[] getHistColors(Histogram hist, RangeValues rangeValues) {
-        return ImageStretch.getHistColors( hist, rangeValues, float1d,
+        return ImageStretch.getHistColors( hist, rangeValues, getRawFloatBuffer(),
                 getBzero(), getBscale(), getNaxis1(), getNaxis2(), getBitPix(), getBlankValue());
     }
 
@@ -225,7 +283,7 @@ public class FitsRead implements Serializable, HasSizeOf {
             double bzero= getBzero();
             double datamax = header.getDoubleValue("DATAMAX", Double.NaN);
             double datamin = header.getDoubleValue("DATAMIN", Double.NaN);
-            hist= new Histogram(getRawFloatAry(), (datamin - bzero) / bscale, (datamax - bzero) / bscale);
+            hist= new Histogram(getRawFloatBuffer(), (datamin - bzero) / bscale, (datamax - bzero) / bscale);
         }
         return hist;
     }
@@ -304,6 +362,9 @@ public class FitsRead implements Serializable, HasSizeOf {
         long retSize= estimatedBaseSize;
         if (hist!=null) retSize+= hist.getSizeOf();
         if (float1d!=null) retSize+= float1d.length*4L;
+        float[] copy= mappedCopy!=null ? mappedCopy.get() : null;
+        if (copy!=null) retSize+= copy.length*4L;
+        if (pyramid!=null) retSize+= pyramid.getSizeOf();
         if (hdu!=null) retSize+= hdu.getSize();
         return retSize;
     }
@@ -26,6 +26,7 @@ import nom.tam.util.ArrayFuncs;
 import nom.tam.util.FitsOutputStream;
 
 import java.io.IOException;
+import java.util.stream.IntStream;
 
 
 public class Geom {
@@ -126,20 +127,12 @@ public class Geom {
     /* buffers & such */
     private final float blank_val = Float.NaN;
     //int stat;
-    private int n2;
     private Projection in_proj;
     private Projection out_proj;
     private CoordinateSys in_coordinate_sys;
     private CoordinateSys out_coordinate_sys;
     private float[] in_data;
-    private double[] x_val;
-    private double[] y_val;
-    private double[] x_next;
-    private double[] y_next;
-    private double[] x_dd;
-    private double[] y_dd;
     private float[] out_data;
-    float glop5;
 
 
     public ImageHeader open_in(FitsRead inFitsRead) throws
@@ -738,306 +731,337 @@ public class Geom {
     }
 
 
-    int next_n2 = 0;
-
-    private void compute_geom_line() {
-        float n2_interp;
-        int n1;
+    /**
+     * The line buffers and the state of the tie point interpolation for one band of output lines.  Bands start on a
+     * tie point line, so each band computes exactly the same lines as one pass over the whole image would.
+     */
+    private class LineBuffers {
+        private final double[] x_val = new double[out_naxis1];
+        private final double[] y_val = new double[out_naxis1];
+        private final double[] x_next = new double[out_naxis1];
+        private final double[] y_next = new double[out_naxis1];
+        private final double[] x_dd = new double[out_naxis1];
+        private final double[] y_dd = new double[out_naxis1];
+        private int n2;
+        private int next_n2;
+        private int band_start;
+        float glop5;
+
+        /**
+         * @param start the first line, must be a tie point line
+         * @param end one past the last line
+         */
+        void compute_lines(int start, int end) {
+            band_start = start;
+            for (n2 = start; n2 < end; n2++) {
+                compute_geom_line();
+
+                if (interp_flag)
+                    bin_bilinear();
+                else
+                    bin_nearest_neighbor();
+            }
+        }
 
-        if (n2 == 0) next_n2 = 0;
+        private void compute_geom_line() {
+            float n2_interp;
+            int n1;
 
-        if (n2 == next_n2) {
-            if (n2 != 0) {
-                System.arraycopy(x_next, 0, x_val, 0, out_naxis1);
-                System.arraycopy(y_next, 0, y_val, 0, out_naxis1);
-            } else
-                compute_a_line(0, x_val, y_val);
-        }
+            if (n2 == band_start) next_n2 = band_start;
 
-        if (n2 > next_n2) {
-            next_n2 += tie_skip;
-            if (next_n2 >= out_naxis2) next_n2 = out_naxis2 - 1;
-            compute_a_line(next_n2, x_next, y_next);
-            n2_interp = next_n2 - n2 + 1;
-            if (n2_interp > 0) for (n1 = 0; n1 < out_naxis1; n1++) {
-                if (x_val[n1] == x_val[n1] && x_next[n1] == x_next[n1]) {
-                    x_dd[n1] = (x_next[n1] - x_val[n1]) / n2_interp;
-                    y_dd[n1] = (y_next[n1] - y_val[n1]) / n2_interp;
-                    glop5 = n2_interp;  // this is here to combat an optimizer bug
-                } else x_dd[n1] = blank_val;
+            if (n2 == next_n2) {
+                if (n2 != band_start) {
+                    System.arraycopy(x_next, 0, x_val, 0, out_naxis1);
+                    System.arraycopy(y_next, 0, y_val, 0, out_naxis1);
+                } else
+                    compute_a_line(n2, x_val, y_val);
             }
-        }
 
-        if (n2 < next_n2) {
-            for (n1 = 0; n1 < out_naxis1; n1++)
-                if (x_dd[n1] == x_dd[n1]) {
-                    x_val[n1] = x_val[n1] + x_dd[n1];
-                    y_val[n1] = y_val[n1] + y_dd[n1];
+            if (n2 > next_n2) {
+                next_n2 += tie_skip;
+                if (next_n2 >= out_naxis2) next_n2 = out_naxis2 - 1;
+                compute_a_line(next_n2, x_next, y_next);
+                n2_interp = next_n2 - n2 + 1;
+                if (n2_interp > 0) for (n1 = 0; n1 < out_naxis1; n1++) {
+                    if (x_val[n1] == x_val[n1] && x_next[n1] == x_next[n1]) {
+                        x_dd[n1] = (x_next[n1] - x_val[n1]) / n2_interp;
+                        y_dd[n1] = (y_next[n1] - y_val[n1]) / n2_interp;
+                        glop5 = n2_interp;  // this is here to combat an optimizer bug
+                    } else x_dd[n1] = blank_val;
                 }
-        }
+            }
 
-    } /* end compute_geom_line */
+            if (n2 < next_n2) {
+                for (n1 = 0; n1 < out_naxis1; n1++)
+                    if (x_dd[n1] == x_dd[n1]) {
+                        x_val[n1] = x_val[n1] + x_dd[n1];
+                        y_val[n1] = y_val[n1] + y_dd[n1];
+                    }
+            }
 
+        } /* end compute_geom_line */
 
-    private void compute_a_line(int local_n2, double[] local_x_dd, double[] local_y_dd) {
-        int next_n1;
-        int n1;
-        int stat;
-        double x_del = Double.NaN, y_del = Double.NaN;
-        double n1_interp;
-        double tmp_x, tmp_y;
-        double lon, lat;
-        ProjectionPt image_pt;
-        WorldPt world_pt;
 
-        next_n1 = -tie_skip;
-        for (n1 = 0; n1 < out_naxis1; n1++) {
+        private void compute_a_line(int local_n2, double[] local_x_dd, double[] local_y_dd) {
+            int next_n1;
+            int n1;
+            int stat;
+            double x_del = Double.NaN, y_del = Double.NaN;
+            double n1_interp;
+            double tmp_x, tmp_y;
+            double lon, lat;
+            ProjectionPt image_pt;
+            WorldPt world_pt;
 
-            if (n1 > next_n1) {
-	    /* compute via map functions */
-                next_n1 += tie_skip;
-                if (next_n1 >= out_naxis1) next_n1 = out_naxis1 - 1;
-                tmp_x = next_n1 + 1;
-                tmp_y = local_n2 + 1;
+            next_n1 = -tie_skip;
+            for (n1 = 0; n1 < out_naxis1; n1++) {
 
-                try {
-                    //System.out.println("in = " + tmp_x + "," + tmp_y);
-                    world_pt = out_proj.getWorldCoords(tmp_x - 1, tmp_y - 1);
-                    //System.out.println("RBH PRE lon = " + world_pt.getX()
-                    //    + "  lat = " + world_pt.getY());
-                    //System.out.println(
-                    //    "RBH out_coordinate_sys = " + out_coordinate_sys +
-                    //    "  in_coordinate_sys = " + in_coordinate_sys);
-                    if (!out_coordinate_sys.equals(in_coordinate_sys)) {
-                        world_pt = VisUtil.convert(world_pt, in_coordinate_sys);
+                if (n1 > next_n1) {
+    	    /* compute via map functions */
+                    next_n1 += tie_skip;
+                    if (next_n1 >= out_naxis1) next_n1 = out_naxis1 - 1;
+                    tmp_x = next_n1 + 1;
+                    tmp_y = local_n2 + 1;
+
+                    try {
+                        //System.out.println("in = " + tmp_x + "," + tmp_y);
+                        world_pt = out_proj.getWorldCoords(tmp_x - 1, tmp_y - 1);
+                        //System.out.println("RBH PRE lon = " + world_pt.getX()
+                        //    + "  lat = " + world_pt.getY());
+                        //System.out.println(
+                        //    "RBH out_coordinate_sys = " + out_coordinate_sys +
+                        //    "  in_coordinate_sys = " + in_coordinate_sys);
+                        if (!out_coordinate_sys.equals(in_coordinate_sys)) {
+                            world_pt = VisUtil.convert(world_pt, in_coordinate_sys);
+                        }
+                        lon = world_pt.getX();
+                        lat = world_pt.getY();
+                        //System.out.println("RBH POST lon = " + lon + "  lat = " + lat);
+                        image_pt = in_proj.getImageCoords(lon, lat);
+                        tmp_x = image_pt.getFsamp() + 1;
+                        tmp_y = image_pt.getFline() + 1;
+                        stat = 0;
+                        //System.out.println("out = " + tmp_x + "," + tmp_y);
+                    } catch (ProjectionException pe) {
+                        if (SUTDebug.isDebug()) {
+                            System.out.println("got ProjectionException: " +
+                                    pe.getMessage());
+                        }
+                        stat = 1;
                     }
-                    lon = world_pt.getX();
-                    lat = world_pt.getY();
-                    //System.out.println("RBH POST lon = " + lon + "  lat = " + lat);
-                    image_pt = in_proj.getImageCoords(lon, lat);
-                    tmp_x = image_pt.getFsamp() + 1;
-                    tmp_y = image_pt.getFline() + 1;
-                    stat = 0;
-                    //System.out.println("out = " + tmp_x + "," + tmp_y);
-                } catch (ProjectionException pe) {
-                    if (SUTDebug.isDebug()) {
-                        System.out.println("got ProjectionException: " +
-                                pe.getMessage());
+    	    /* printf(" out=%f,%f stat=%d\n",tmp_x,tmp_y,stat); */
+                    if (stat == 0) {
+                        local_x_dd[next_n1] = tmp_x;
+                        local_y_dd[next_n1] = tmp_y;
+                    } else {
+                        local_x_dd[next_n1] = blank_val;
+                        local_y_dd[next_n1] = blank_val;
                     }
-                    stat = 1;
-                }
-	    /* printf(" out=%f,%f stat=%d\n",tmp_x,tmp_y,stat); */
-                if (stat == 0) {
-                    local_x_dd[next_n1] = tmp_x;
-                    local_y_dd[next_n1] = tmp_y;
-                } else {
-                    local_x_dd[next_n1] = blank_val;
-                    local_y_dd[next_n1] = blank_val;
-                }
 
-                n1_interp = next_n1 - n1 + 1; /* compute delt pix-to-pix */
-                if ((n1_interp > 0.0) && (n1 > 0)) {
-                    if (!Double.isNaN(local_x_dd[n1])) {
-                        x_del = (local_x_dd[next_n1] - local_x_dd[n1 - 1]) / n1_interp;
-                        y_del = (local_y_dd[next_n1] - local_y_dd[n1 - 1]) / n1_interp;
-                    } else {
-                        x_del = blank_val;
-                        y_del = blank_val;
+                    n1_interp = next_n1 - n1 + 1; /* compute delt pix-to-pix */
+                    if ((n1_interp > 0.0) && (n1 > 0)) {
+                        if (!Double.isNaN(local_x_dd[n1 - 1])) {
+                            x_del = (local_x_dd[next_n1] - local_x_dd[n1 - 1]) / n1_interp;
+                            y_del = (local_y_dd[next_n1] - local_y_dd[n1 - 1]) / n1_interp;
+                        } else {
+                            x_del = blank_val;
+                            y_del = blank_val;
+                        }
                     }
                 }
-            }
 
-            if (n1 < next_n1) {
-	    /* interpolate within the line */
-                if (!Double.isNaN(x_del)) {
-                    local_x_dd[n1] = local_x_dd[n1 - 1] + x_del;
-                    local_y_dd[n1] = local_y_dd[n1 - 1] + y_del;
-                } else {
-                    local_x_dd[n1] = blank_val;
-                    local_y_dd[n1] = blank_val;
+                if (n1 < next_n1) {
+    	    /* interpolate within the line */
+                    if (!Double.isNaN(x_del)) {
+                        local_x_dd[n1] = local_x_dd[n1 - 1] + x_del;
+                        local_y_dd[n1] = local_y_dd[n1 - 1] + y_del;
+                    } else {
+                        local_x_dd[n1] = blank_val;
+                        local_y_dd[n1] = blank_val;
+                    }
                 }
-            }
 
-        } /* end for n1 */
+            } /* end for n1 */
 
-    } /* END OF compute_a_line */
+        } /* END OF compute_a_line */
 
 
-    private void bin_nearest_neighbor() {
-        double del_x, del_y;
-        int x_coord, y_coord;
-        int n1;
-        int index;
-        int out_index;
+        private void bin_nearest_neighbor() {
+            double del_x, del_y;
+            int x_coord, y_coord;
+            int n1;
+            int index;
+            int out_index;
 
-        del_x = in_crpix1 - 0.5;
-        del_y = in_crpix2 - 0.5;
+            del_x = in_crpix1 - 0.5;
+            del_y = in_crpix2 - 0.5;
 
-        for (n1 = 0; n1 < out_naxis1; n1++) {
+            for (n1 = 0; n1 < out_naxis1; n1++) {
 
-            out_index = n1 + n2 * out_naxis1;
+                out_index = n1 + n2 * out_naxis1;
 
-            if (x_val[n1] != x_val[n1]) {
-                out_data[out_index] = blank_val;
-                continue;
-            }
-            x_coord = (int) (x_val[n1] + del_x);
-            if (x_coord < 0 || x_coord >= in_naxis1) {
-                out_data[out_index] = blank_val;
-                continue;
-            }
-            y_coord = (int) (y_val[n1] + del_y);
-            if (y_coord < 0 || y_coord >= in_naxis2) {
-                out_data[out_index] = blank_val;
-                continue;
-            }
-            index = x_coord + y_coord * in_naxis1;
-            //System.out.println("x_coord = " + x_coord + "  y_coord = " + y_coord +
-            //    "   index = " + index + "  n1 = " + n1
-            //    + "  out_index = " + out_index);
-
-            out_data[out_index] = in_data[index];
-
-        } /* end for n1 */
-    } /* end bin_nearest_neighbor */
-
-
-    private void bin_bilinear() {
-        double min_x_inside, min_y_inside;
-        double max_x_inside, max_y_inside;
-        double del_x, del_y;
-        double x_float, y_float;
-        double x_frac, y_frac;
-        int x_coord, y_coord;
-        //float *ptr_00, *ptr_10, *ptr_01, *ptr_11;
-        int ptr_00, ptr_10, ptr_01, ptr_11;
-        double wgt_00, wgt_10, wgt_01, wgt_11;
-        double weight;
-        double sum;
-        int n1;
-        int index;
-        int out_index;
+                if (x_val[n1] != x_val[n1]) {
+                    out_data[out_index] = blank_val;
+                    continue;
+                }
+                x_coord = (int) (x_val[n1] + del_x);
+                if (x_coord < 0 || x_coord >= in_naxis1) {
+                    out_data[out_index] = blank_val;
+                    continue;
+                }
+                y_coord = (int) (y_val[n1] + del_y);
+                if (y_coord < 0 || y_coord >= in_naxis2) {
+                    out_data[out_index] = blank_val;
+                    continue;
+                }
+                index = x_coord + y_coord * in_naxis1;
+                //System.out.println("x_coord = " + x_coord + "  y_coord = " + y_coord +
+                //    "   index = " + index + "  n1 = " + n1
+                //    + "  out_index = " + out_index);
+
+                out_data[out_index] = in_data[index];
+
+            } /* end for n1 */
+        } /* end bin_nearest_neighbor */
+
+
+        private void bin_bilinear() {
+            double min_x_inside, min_y_inside;
+            double max_x_inside, max_y_inside;
+            double del_x, del_y;
+            double x_float, y_float;
+            double x_frac, y_frac;
+            int x_coord, y_coord;
+            //float *ptr_00, *ptr_10, *ptr_01, *ptr_11;
+            int ptr_00, ptr_10, ptr_01, ptr_11;
+            double wgt_00, wgt_10, wgt_01, wgt_11;
+            double weight;
+            double sum;
+            int n1;
+            int index;
+            int out_index;
    
-   /* compute constants */
-        min_x_inside = min_wgt - in_crpix1;
-        min_y_inside = min_wgt - in_crpix2;
-        max_x_inside = 1.0 + in_naxis1 - min_wgt - in_crpix1;
-        max_y_inside = 1.0 + in_naxis2 - min_wgt - in_crpix2;
+       /* compute constants */
+            min_x_inside = min_wgt - in_crpix1;
+            min_y_inside = min_wgt - in_crpix2;
+            max_x_inside = 1.0 + in_naxis1 - min_wgt - in_crpix1;
+            max_y_inside = 1.0 + in_naxis2 - min_wgt - in_crpix2;
 
-        del_x = in_crpix1 - 1.0;
-        del_y = in_crpix2 - 1.0;
+            del_x = in_crpix1 - 1.0;
+            del_y = in_crpix2 - 1.0;
 
-        for (n1 = 0; n1 < out_naxis1; n1++) {
+            for (n1 = 0; n1 < out_naxis1; n1++) {
 
-            out_index = n1 + n2 * out_naxis1;
+                out_index = n1 + n2 * out_naxis1;
 
-            if (x_val[n1] != x_val[n1]) {
-                out_data[out_index] = blank_val;
-                continue;
-            }
-            if (x_val[n1] < min_x_inside || x_val[n1] > max_x_inside) {
-                out_data[out_index] = blank_val;
-                continue;
-            }
-            if (y_val[n1] < min_y_inside || y_val[n1] > max_y_inside) {
-                out_data[out_index] = blank_val;
-                continue;
-            }
+                if (x_val[n1] != x_val[n1]) {
+                    out_data[out_index] = blank_val;
+                    continue;
+                }
+                if (x_val[n1] < min_x_inside || x_val[n1] > max_x_inside) {
+                    out_data[out_index] = blank_val;
+                    continue;
+                }
+                if (y_val[n1] < min_y_inside || y_val[n1] > max_y_inside) {
+                    out_data[out_index] = blank_val;
+                    continue;
+                }
 
-            x_float = x_val[n1] + del_x;
-            if (x_float > 0) x_coord = (int) x_float;
-            else x_coord = (int) x_float + 1;
-            x_frac = x_float - x_coord;
-
-            y_float = y_val[n1] + del_y;
-            if (y_float > 0) y_coord = (int) y_float;
-            else y_coord = (int) y_float + 1;
-            y_frac = y_float - y_coord;
-
-            index = x_coord + y_coord * in_naxis1;
-            ptr_00 = index;
-            ptr_10 = ptr_00 + 1;
-            ptr_01 = ptr_00 + in_naxis1;
-            ptr_11 = ptr_01 + 1;
-
-            wgt_11 = x_frac * y_frac;
-            wgt_01 = y_frac - wgt_11;
-            wgt_10 = x_frac - wgt_11;
-            wgt_00 = 1.0 - y_frac - wgt_10;
-
-            if (x_coord < 0) {
-                ptr_00 = -1;
-                ptr_01 = -1;
-            } else if (x_coord >= in_naxis1) {
-                ptr_10 = -1;
-                ptr_11 = -1;
-            }
-            if (y_coord < 0) {
-                ptr_00 = -1;
-                ptr_10 = -1;
-            } else if (y_coord >= in_naxis2) {
-                ptr_01 = -1;
-                ptr_11 = -1;
-            }
+                x_float = x_val[n1] + del_x;
+                if (x_float > 0) x_coord = (int) x_float;
+                else x_coord = (int) x_float + 1;
+                x_frac = x_float - x_coord;
 
-            try {
-                if ((ptr_00 < 0) || (ptr_00 >= in_data.length) ||
-                        (Double.isNaN(in_data[ptr_00])))
+                y_float = y_val[n1] + del_y;
+                if (y_float > 0) y_coord = (int) y_float;
+                else y_coord = (int) y_float + 1;
+                y_frac = y_float - y_coord;
+
+                index = x_coord + y_coord * in_naxis1;
+                ptr_00 = index;
+                ptr_10 = ptr_00 + 1;
+                ptr_01 = ptr_00 + in_naxis1;
+                ptr_11 = ptr_01 + 1;
+
+                wgt_11 = x_frac * y_frac;
+                wgt_01 = y_frac - wgt_11;
+                wgt_10 = x_frac - wgt_11;
+                wgt_00 = 1.0 - y_frac - wgt_10;
+
+                if (x_coord < 0) {
                     ptr_00 = -1;
-                if ((ptr_01 < 0) || (ptr_01 >= in_data.length) ||
-                        (Double.isNaN(in_data[ptr_01])))
                     ptr_01 = -1;
-                if ((ptr_10 < 0) || (ptr_10 >= in_data.length) ||
-                        (Double.isNaN(in_data[ptr_10])))
+                } else if (x_coord >= in_naxis1) {
                     ptr_10 = -1;
-                if ((ptr_11 < 0) || (ptr_11 >= in_data.length) ||
-                        (Double.isNaN(in_data[ptr_11])))
                     ptr_11 = -1;
-            } catch (ArrayIndexOutOfBoundsException ae) {
-                if (SUTDebug.isDebug()) {
-                    System.out.println("ArrayIndexOutOfBoundsException index = " +
-                            index + "  ptr_01 = " + ptr_01);
                 }
-                throw ae;
-            }
+                if (y_coord < 0) {
+                    ptr_00 = -1;
+                    ptr_10 = -1;
+                } else if (y_coord >= in_naxis2) {
+                    ptr_01 = -1;
+                    ptr_11 = -1;
+                }
 
-            sum = 0.0;
-            weight = 1.0;
-            if (ptr_00 >= 0) sum += in_data[ptr_00] * wgt_00;
-            else weight -= wgt_00;
-            if (ptr_10 >= 0) sum += in_data[ptr_10] * wgt_10;
-            else weight -= wgt_10;
-            if (ptr_01 >= 0) sum += in_data[ptr_01] * wgt_01;
-            else weight -= wgt_01;
-            if (ptr_11 >= 0) sum += in_data[ptr_11] * wgt_11;
-            else weight -= wgt_11;
-
-            if (weight >= min_wgt) out_data[out_index] = (float) (sum / weight);
-            else out_data[out_index] = blank_val;
-
-
-/* +++++++++++++++++++++++++++++++++++++
-if (n1==0)  {
-printf("n1= %d  n2=%d\n",n1,n2);
-printf("x_val[n1] = %f   y_val[n1] = %f\n",x_val[n1],y_val[n1]);
-printf("x_float = %f   y_float = %f\n",x_float,y_float);
-printf("x_coord = %d   y_coord = %d\n",x_coord,y_coord);
-printf("x_frac = %f   y_frac = %f\n",x_frac,y_frac);
-printf("ptr_00=%d  ptr_01=%d  ptr_10=%d  ptr_11=%d\n",
-  ptr_00,ptr_01,ptr_10,ptr_11);
-printf("*ptr_00=%g  *ptr_01=%g  *ptr_10=%g  *ptr_11=%g\n",
-  *ptr_00,*ptr_01,*ptr_10,*ptr_11);
-printf("wgt_00=%f  wgt_01=%f  wgt_10=%f  wgt_11=%f\n",
-  wgt_00,wgt_01,wgt_10,wgt_11);
-printf("sum = %g   weight = %f   out_data[n1] = %g\n",
-   sum, weight, out_data[n1]);
-}
-++++++++++++++++++++++++++++++++ */
+                try {
+                    if ((ptr_00 < 0) || (ptr_00 >= in_data.length) ||
+                            (Double.isNaN(in_data[ptr_00])))
+                        ptr_00 = -1;
+                    if ((ptr_01 < 0) || (ptr_01 >= in_data.length) ||
+                            (Double.isNaN(in_data[ptr_01])))
+                        ptr_01 = -1;
+                    if ((ptr_10 < 0) || (ptr_10 >= in_data.length) ||
+                            (Double.isNaN(in_data[ptr_10])))
+                        ptr_10 = -1;
+                    if ((ptr_11 < 0) || (ptr_11 >= in_data.length) ||
+                            (Double.isNaN(in_data[ptr_11])))
+                        ptr_11 = -1;
+                } catch (ArrayIndexOutOfBoundsException ae) {
+                    if (SUTDebug.isDebug()) {
+                        System.out.println("ArrayIndexOutOfBoundsException index = " +
+                                index + "  ptr_01 = " + ptr_01);
+                    }
+                    throw ae;
+                }
 
+                sum = 0.0;
+                weight = 1.0;
+                if (ptr_00 >= 0) sum += in_data[ptr_00] * wgt_00;
+                else weight -= wgt_00;
+                if (ptr_10 >= 0) sum += in_data[ptr_10] * wgt_10;
+                else weight -= wgt_10;
+                if (ptr_01 >= 0) sum += in_data[ptr_01] * wgt_01;
+                else weight -= wgt_01;
+                if (ptr_11 >= 0) sum += in_data[ptr_11] * wgt_11;
+                else weight -= wgt_11;
+
+                if (weight >= min_wgt) out_data[out_index] = (float) (sum / weight);
+                else out_data[out_index] = blank_val;
+
+
+    /* +++++++++++++++++++++++++++++++++++++
+    if (n1==0)  {
+    printf("n1= %d  n2=%d\n",n1,n2);
+    printf("x_val[n1] = %f   y_val[n1] = %f\n",x_val[n1],y_val[n1]);
+    printf("x_float = %f   y_float = %f\n",x_float,y_float);
+    printf("x_coord = %d   y_coord = %d\n",x_coord,y_coord);
+    printf("x_frac = %f   y_frac = %f\n",x_frac,y_frac);
+    printf("ptr_00=%d  ptr_01=%d  ptr_10=%d  ptr_11=%d\n",
+      ptr_00,ptr_01,ptr_10,ptr_11);
+    printf("*ptr_00=%g  *ptr_01=%g  *ptr_10=%g  *ptr_11=%g\n",
+      *ptr_00,*ptr_01,*ptr_10,*ptr_11);
+    printf("wgt_00=%f  wgt_01=%f  wgt_10=%f  wgt_11=%f\n",
+      wgt_00,wgt_01,wgt_10,wgt_11);
+    printf("sum = %g   weight = %f   out_data[n1] = %g\n",
+       sum, weight, out_data[n1]);
+    }
+    ++++++++++++++++++++++++++++++++ */
 
-        } /* end for n1 */
 
-    } /* end bin_bilinear */
+            } /* end for n1 */
+
+        } /* end bin_bilinear */
+    }
 
 
     /**
@@ -1512,24 +1536,19 @@ printf("sum = %g   weight = %f   out_data[n1] = %g\n",
         out_proj = out_header.createProjection(out_coordinate_sys);
 
         out_data = new float[out_naxis1 * out_naxis2];
-        x_val = new double[out_naxis1];
-        y_val = new double[out_naxis1];
-        x_next = new double[out_naxis1];
-        y_next = new double[out_naxis1];
-        x_dd = new double[out_naxis1];
-        y_dd = new double[out_naxis1];
-
-
-        for (n2 = 0; n2 < out_naxis2; n2++) {
-            compute_geom_line();
-
-            if (interp_flag)
-                bin_bilinear();
-            else
-                bin_nearest_neighbor();
 
-            //im_wpix_r(out_fid, out_data, out_naxis1);
+        // reproject bands of lines in parallel, each band is a whole number of tie point intervals
+        int skip = Math.max(1, tie_skip);
+        int band_cnt = Math.max(1, Math.min(out_naxis2 / skip, 4 * Runtime.getRuntime().availableProcessors()));
+        int band_lines = skip * (int) Math.ceil(out_naxis2 / (double) (skip * band_cnt));
+        boolean parallel = band_cnt > 1 && in_proj.isThreadSafe() && out_proj.isThreadSafe();
+        if (parallel && !out_coordinate_sys.equals(in_coordinate_sys)) {
+            // the coordinate conversion routines set up their static tables on the first call, do it before the threads
+            VisUtil.convert(new WorldPt(0, 0, out_coordinate_sys), in_coordinate_sys);
         }
+        IntStream bands = IntStream.range(0, (out_naxis2 + band_lines - 1) / band_lines);
+        (parallel ? bands.parallel() : bands).forEach(band ->
+                new LineBuffers().compute_lines(band * band_lines, Math.min(out_naxis2, (band + 1) * band_lines)));
 
         Fits newFits = write_pixels();
 
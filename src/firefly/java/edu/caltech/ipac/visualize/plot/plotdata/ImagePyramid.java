@@ -0,0 +1,210 @@
+/*
+ * License information at https://github.com/Caltech-IPAC/firefly/blob/master/License.txt
+ */
+package edu.caltech.ipac.visualize.plot.plotdata;
+
+import edu.caltech.ipac.firefly.data.HasSizeOf;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reduced resolution levels of an image.  Level n is reduced by a factor of 2^n, each pixel being the mean of the
+ * non-NaN pixels of the 2x2 block of the level above it (NaN if all of them are NaN).
+ * <p>
+ * Unlike the FITS data, the levels are stored in display orientation: the first line is the top line of the image.
+ * Reducing from the top keeps every block of a level aligned with the tiles DirectStretchUtils creates, so a tile
+ * of the reduced level covers exactly the same pixels as the tile decimated from the full resolution stretch.
+ * <p>
+ * A pyramid can be saved as a sidecar file so it does not have to be recomputed when the image is read again.
+ * A pyramid read from a sidecar file keeps its levels memory mapped, so they live in the OS page cache instead of
+ * the java heap.
+ */
+public class ImagePyramid implements HasSizeOf {
+
+    private static final int MAGIC= 0x50595231; // PYR1
+    private static final int HEADER_SIZE= 16;
+
+    private final int naxis1;
+    private final int naxis2;
+    private final FloatBuffer[] levels; // levels[0] is level 1, heap or memory mapped
+
+    private ImagePyramid(int naxis1, int naxis2, FloatBuffer[] levels) {
+        this.naxis1= naxis1;
+        this.naxis2= naxis2;
+        this.levels= levels;
+    }
+
+    /**
+     * Build the levels until the larger side of a level is no more than minSize pixels
+     * @param float1d the image data, in FITS orientation
+     * @param naxis1 width of the image
+     * @param naxis2 height of the image
+     * @param minSize stop when the larger side of a level is at or below this size
+     * @return the pyramid, with at least one level
+     */
+    public static ImagePyramid build(float[] float1d, int naxis1, int naxis2, int minSize) {
+        return build(FloatBuffer.wrap(float1d), naxis1, naxis2, minSize);
+    }
+
+    /**
+     * Same as above, reading the image with absolute gets, so memory mapped data is not copied to the heap
+     */
+    public static ImagePyramid build(FloatBuffer float1d, int naxis1, int naxis2, int minSize) {
+        int levelCnt= countLevels(naxis1, naxis2, minSize);
+        FloatBuffer[] levels= new FloatBuffer[levelCnt];
+        levels[0]= FloatBuffer.wrap(reduce(float1d, naxis1, naxis2, true));
+        for(int i=1; i<levelCnt; i++) {
+            levels[i]= FloatBuffer.wrap(reduce(levels[i-1], levelSize(naxis1,i), levelSize(naxis2,i), false));
+        }
+        return new ImagePyramid(naxis1, naxis2, levels);
+    }
+
+    public int getLevelCnt() { return levels.length; }
+
+    /**
+     * @param level the level, 1 is a reduction by 2, 2 by 4, etc
+     * @return the level data in display orientation, the first line is the top of the image. Use absolute gets.
+     */
+    public FloatBuffer getLevel(int level) { return levels[level-1]; }
+
+    public int getLevelWidth(int level) { return levelSize(naxis1,level); }
+
+    public int getLevelHeight(int level) { return levelSize(naxis2,level); }
+
+    public boolean hasLevel(int level) { return level>0 && level<=levels.length; }
+
+    public long getSizeOf() {
+        long size= 24;
+        for(FloatBuffer l : levels) {
+            if (l.hasArray()) size+= l.limit()*4L;   // mapped levels are not on the heap
+        }
+        return size;
+    }
+
+    /**
+     * Write the pyramid to a file.  The file is written to a temporary file of its own in the same directory and
+     * then moved into place, so a partially written file is never read, even when several threads write it.
+     * @param f the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void write(File f) throws IOException {
+        Path tmp= Files.createTempFile(f.getAbsoluteFile().getParentFile().toPath(), f.getName()+"-", ".tmp");
+        try {
+            try (FileChannel ch= FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                ByteBuffer buff= ByteBuffer.allocate(1024*1024);
+                buff.putInt(MAGIC).putInt(naxis1).putInt(naxis2).putInt(levels.length);
+                for(FloatBuffer l : levels) {
+                    for(int i=0; i<l.limit(); i++) {
+                        if (buff.remaining()<4) writeAll(ch,buff);
+                        buff.putFloat(l.get(i));
+                    }
+                }
+                writeAll(ch,buff);
+            }
+            Files.move(tmp, f.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Read a pyramid written by write.  The levels are read-only views of the memory mapped file; they are not
+     * copied to the heap.
+     * @param f the file to read
+     * @param naxis1 width of the image the pyramid was built from
+     * @param naxis2 height of the image the pyramid was built from
+     * @return the pyramid or null if the file does not exist or was built for a different size image
+     * @throws IOException if the file cannot be read
+     */
+    public static ImagePyramid read(File f, int naxis1, int naxis2) throws IOException {
+        if (!f.canRead() || f.length()<HEADER_SIZE) return null;
+        try (FileChannel ch= FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer mb= ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (mb.getInt()!=MAGIC || mb.getInt()!=naxis1 || mb.getInt()!=naxis2) return null;
+            int levelCnt= mb.getInt();
+            if (levelCnt<1) return null;
+            long expectedSize= HEADER_SIZE;
+            for(int i=1; i<=levelCnt; i++) expectedSize+= (long)levelSize(naxis1,i)*levelSize(naxis2,i)*4;
+            if (ch.size()!=expectedSize) return null;
+            // the mapping stays valid after the channel is closed
+            FloatBuffer[] levels= new FloatBuffer[levelCnt];
+            int pos= HEADER_SIZE;
+            for(int i=0; i<levelCnt; i++) {
+                int len= levelSize(naxis1,i+1)*levelSize(naxis2,i+1);
+                levels[i]= mb.slice(pos, len*4).asFloatBuffer();
+                pos+= len*4;
+            }
+            return new ImagePyramid(naxis1, naxis2, levels);
+        }
+    }
+
+    private static void writeAll(FileChannel ch, ByteBuffer buff) throws IOException {
+        buff.flip();
+        while (buff.hasRemaining()) ch.write(buff);
+        buff.clear();
+    }
+
+    private static int levelSize(int size, int level) {
+        int factor= 1<<level;
+        return (size+factor-1)/factor;
+    }
+
+    private static int countLevels(int naxis1, int naxis2, int minSize) {
+        int cnt= 1;
+        while (Math.max(levelSize(naxis1,cnt), levelSize(naxis2,cnt))>minSize && cnt<30) cnt++;
+        return cnt;
+    }
+
+    /**
+     * Reduce by 2 using the mean of the non-NaN pixels of each 2x2 block.
+     * @param in the data to reduce
+     * @param w width of the data
+     * @param h height of the data
+     * @param flip true if the data is in FITS orientation and the lines need to be read from the end
+     * @return the reduced data in display orientation
+     */
+    private static float[] reduce(FloatBuffer in, int w, int h, boolean flip) {
+        int outW= (w+1)/2;
+        int outH= (h+1)/2;
+        float[] out= new float[outW*outH];
+        for(int line=0; line<outH; line++) {
+            int l0= 2*line;
+            int l1= Math.min(l0+1, h-1);
+            int start0= (flip ? h-1-l0 : l0) * w;
+            int start1= (flip ? h-1-l1 : l1) * w;
+            boolean twoLines= l1!=l0;
+            int outIdx= line*outW;
+            for(int col=0; col<outW; col++) {
+                int c0= 2*col;
+                boolean twoCols= c0+1<w;
+                float sum= 0;
+                int cnt= 0;
+                float v= in.get(start0+c0);
+                if (!Float.isNaN(v)) { sum+= v; cnt++; }
+                if (twoCols) {
+                    v= in.get(start0+c0+1);
+                    if (!Float.isNaN(v)) { sum+= v; cnt++; }
+                }
+                if (twoLines) {
+                    v= in.get(start1+c0);
+                    if (!Float.isNaN(v)) { sum+= v; cnt++; }
+                    if (twoCols) {
+                        v= in.get(start1+c0+1);
+                        if (!Float.isNaN(v)) { sum+= v; cnt++; }
+                    }
+                }
+                out[outIdx+col]= cnt>0 ? sum/cnt : Float.NaN;
+            }
+        }
+        return out;
+    }
+}
@@ -10,6 +10,7 @@ import edu.caltech.ipac.visualize.plot.ImageHeader;
 import edu.caltech.ipac.visualize.plot.ImageMask;
 import edu.caltech.ipac.visualize.plot.RangeValues;
 
+import java.nio.FloatBuffer;
 import java.util.Arrays;
 
 import static edu.caltech.ipac.visualize.plot.plotdata.ImageStretchUtil.*;
@@ -33,12 +34,70 @@ public class ImageStretch {
                                          int lastPixel,
                                          int startLine,
                                          int lastLine ) {
+        stretchPixels8Bit(rangeValues, float1d, pixelData, iH, hist, startPixel, lastPixel, startLine, lastLine, false);
+    }
+
+    /**
+     * @param flipY if true, float1d is in the native FITS orientation(first row at the bottom) while the lines are
+     *              counted from the top.  This saves making a flipped copy of the data.
+     */
+    public static void stretchPixels8Bit(RangeValues rangeValues,
+                                         float[] float1d,
+                                         byte[] pixelData,
+                                         ImageHeader iH,
+                                         Histogram hist,
+                                         int startPixel,
+                                         int lastPixel,
+                                         int startLine,
+                                         int lastLine,
+                                         boolean flipY) {
+        stretchPixels8Bit(rangeValues, FloatBuffer.wrap(float1d), pixelData, iH, hist, startPixel, lastPixel, startLine, lastLine, flipY);
+    }
+
+    /**
+     * Same as above, reading the data from a buffer with absolute gets, so memory mapped data is not copied to the heap.
+     */
+    public static void stretchPixels8Bit(RangeValues rangeValues,
+                                         FloatBuffer float1d,
+                                         byte[] pixelData,
+                                         ImageHeader iH,
+                                         Histogram hist,
+                                         int startPixel,
+                                         int lastPixel,
+                                         int startLine,
+                                         int lastLine,
+                                         boolean flipY) {
         double slow = getSlow(rangeValues, float1d, hist, iH.bzero, iH.bscale, iH.naxis1, iH.naxis2, iH.blank_value);
         double shigh = getShigh(rangeValues, float1d, hist, iH.bzero, iH.bscale, iH.naxis1, iH.naxis2, iH.blank_value);
-        stretchPixelsByBand(startPixel, lastPixel, startLine, lastLine, iH.naxis1, hist,
+        stretchPixelsByBand(startPixel, lastPixel, startLine, lastLine, iH.naxis1, iH.naxis2, flipY, hist,
                 (byte)255, float1d, pixelData, rangeValues,slow,shigh);
     }
 
+    /**
+     * Stretch a reduced resolution level of an image. The range is computed from the full resolution data so
+     * every level is stretched the same way.
+     * @param float1d the full resolution data, in the native FITS orientation
+     * @param level the ImagePyramid level to stretch
+     * @param levelIdx the level number, the pixels and lines are in the coordinates of this level
+     */
+    public static void stretchPixels8Bit(RangeValues rangeValues,
+                                         FloatBuffer float1d,
+                                         ImageHeader iH,
+                                         Histogram hist,
+                                         ImagePyramid level,
+                                         int levelIdx,
+                                         byte[] pixelData,
+                                         int startPixel,
+                                         int lastPixel,
+                                         int startLine,
+                                         int lastLine) {
+        double slow = getSlow(rangeValues, float1d, hist, iH.bzero, iH.bscale, iH.naxis1, iH.naxis2, iH.blank_value);
+        double shigh = getShigh(rangeValues, float1d, hist, iH.bzero, iH.bscale, iH.naxis1, iH.naxis2, iH.blank_value);
+        stretchPixelsByBand(startPixel, lastPixel, startLine, lastLine,
+                level.getLevelWidth(levelIdx), level.getLevelHeight(levelIdx), false, hist,
+                (byte)255, level.getLevel(levelIdx), pixelData, rangeValues,slow,shigh);
+    }
+
     public static void stretchPixels3Color(RangeValues rangeValuesAry[],
                                            float[][] float1dAry,
                                            byte[][] pixelDataAry,
@@ -62,10 +121,11 @@ public class ImageStretch {
             for(int i=0; (i<float1dAry.length); i++) {
                 if (float1dAry[i]!=null) {
                     ImageHeader iH= imageHeaderAry[i];
-                    double slow = getSlow(rangeValuesAry[i], float1dAry[i], histAry[i], iH.bzero, iH.bscale, iH.naxis1, iH.naxis2, iH.blank_value);
-                    double shigh = getShigh(rangeValuesAry[i], float1dAry[i], histAry[i], iH.bzero, iH.bscale, iH.naxis1, iH.naxis2, iH.blank_value);
-                    stretchPixelsByBand(startPixel, lastPixel, startLine, lastLine,iH.naxis1, histAry[i],
-                            (byte)0, float1dAry[i], pixelDataAry[i], rangeValuesAry[i],slow,shigh);
+                    FloatBuffer float1d= FloatBuffer.wrap(float1dAry[i]);
+                    double slow = getSlow(rangeValuesAry[i], float1d, histAry[i], iH.bzero, iH.bscale, iH.naxis1, iH.naxis2, iH.blank_value);
+                    double shigh = getShigh(rangeValuesAry[i], float1d, histAry[i], iH.bzero, iH.bscale, iH.naxis1, iH.naxis2, iH.blank_value);
+                    stretchPixelsByBand(startPixel, lastPixel, startLine, lastLine,iH.naxis1, iH.naxis2, false, histAry[i],
+                            (byte)0, float1d, pixelDataAry[i], rangeValuesAry[i],slow,shigh);
                 }
                 else {
                     Arrays.fill(pixelDataAry[i], (byte)0);
@@ -102,7 +162,7 @@ public class ImageStretch {
         for(int i=0; i<3; i++) {
             ImageHeader iH= imageHeaderAry[i];
             blankPxValAry[i]= iH.blank_value;
-            slowAry[i] = getSlow(rangeValuesAry[i], float1dAry[i], histAry[i], iH.bzero, iH.bscale, iH.naxis1, iH.naxis2, iH.blank_value);
+            slowAry[i] = getSlow(rangeValuesAry[i], FloatBuffer.wrap(float1dAry[i]), histAry[i], iH.bzero, iH.bscale, iH.naxis1, iH.naxis2, iH.blank_value);
             slowAry[i] = getScaled(slowAry[i], imageHeaderAry[i], rangeValuesAry[i]);
         }
 
@@ -146,9 +206,9 @@ public class ImageStretch {
         double shigh = slow + stretch; // upper range for intensity
 
         // for three color we use 0 as blank pixel value
-        stretchPixelsUsingAsinh( startPixel, lastPixel,startLine,lastLine, naxis1,
+        stretchPixelsUsingAsinh( startPixel, lastPixel,startLine,lastLine, naxis1, imageHeaderAry[0].naxis2, false,
                 rgbIntensity.getIntensityDataLow(), rgbIntensity.getIntensityDataHigh(),
-                (byte)0, intensity, pixelData, rv, slow, shigh);
+                (byte)0, FloatBuffer.wrap(intensity), pixelData, rv, slow, shigh);
         for (RangeValues anRV : rangeValuesAry) {
             anRV.setAsinhQValue(rv.getAsinhQValue());
             anRV.setAsinhStretch(stretch);
@@ -212,9 +272,11 @@ public class ImageStretch {
                                            int startLine,
                                            int lastLine,
                                            int naxis1,
+                                           int naxis2,
+                                           boolean flipY,
                                            Histogram hist,
                                            byte blank_pixel_value,
-                                           float[] float1dArray,
+                                           FloatBuffer float1dArray,
                                            byte[] pixeldata,
                                            RangeValues rangeValues,
                                            double slow,
@@ -227,11 +289,11 @@ public class ImageStretch {
          * stretch algorithm
          */
         if (rangeValues.getStretchAlgorithm()==RangeValues.STRETCH_ASINH) {
-            stretchPixelsUsingAsinh( startPixel, lastPixel,startLine,lastLine, naxis1, hist.getDNMin(), hist.getDNMax(),
+            stretchPixelsUsingAsinh( startPixel, lastPixel,startLine,lastLine, naxis1, naxis2, flipY, hist.getDNMin(), hist.getDNMax(),
                     blank_pixel_value, float1dArray, pixeldata, rangeValues,slow,shigh);
         }
         else {
-            stretchPixelsUsingOtherAlgorithms(startPixel, lastPixel, startLine, lastLine,naxis1, hist,
+            stretchPixelsUsingOtherAlgorithms(startPixel, lastPixel, startLine, lastLine,naxis1, naxis2, flipY, hist,
                     blank_pixel_value,float1dArray, pixeldata, rangeValues, slow, shigh);
         }
     }
@@ -273,9 +335,11 @@ public class ImageStretch {
                                                          int startLine,
                                                          int lastLine,
                                                          int naxis1,
+                                                         int naxis2,
+                                                         boolean flipY,
                                                          Histogram hist,
                                                          byte blank_pixel_value,
-                                                         float[] float1dArray,
+                                                         FloatBuffer float1dArray,
                                                          byte[] pixeldata,
                                                          RangeValues rangeValues,
                                                          double slow,
@@ -300,12 +364,12 @@ public class ImageStretch {
             default -> (val) -> getNoneLinerStretchedPixelValue(val,dtbl,sdiff);
         };
         for (int line = startLine; line <= lastLine; line++) {
-            int start_index = line * naxis1 + startPixel;
-            int last_index = line * naxis1 + lastPixel;
+            int start_index = lineStart(line, naxis1, naxis2, flipY) + startPixel;
+            int last_index = lineStart(line, naxis1, naxis2, flipY) + lastPixel;
 
             for (int index = start_index; index <= last_index; index++) {
-                pixeldata[pixelCount]= Double.isNaN(float1dArray[index]) ?
-                        blank_pixel_value : sv.getStretchValue(float1dArray[index]);
+                float val= float1dArray.get(index);
+                pixeldata[pixelCount]= Double.isNaN(val) ? blank_pixel_value : sv.getStretchValue(val);
                 pixelCount++;
             }
         }
@@ -391,10 +455,12 @@ public class ImageStretch {
                                                 int startLine,
                                                 int lastLine,
                                                 int naxis1,
+                                                int naxis2,
+                                                boolean flipY,
                                                 double dnmin,
                                                 double dnmax,
                                                 byte blank_pixel_value,
-                                                float[] float1dArray,
+                                                FloatBuffer float1dArray,
                                                 byte[] pixeldata,
                                                 RangeValues rangeValues,
                                                 double slow,
@@ -429,10 +495,10 @@ public class ImageStretch {
         double flux;
 
         for (int line = startLine; line <= lastLine; line++) {
-            int start_index = line * naxis1 + startPixel;
-            int last_index = line * naxis1 + lastPixel;
+            int start_index = lineStart(line, naxis1, naxis2, flipY) + startPixel;
+            int last_index = lineStart(line, naxis1, naxis2, flipY) + lastPixel;
             for (int index = start_index; index <= last_index; index++) {
-                flux = float1dArray[index];
+                flux = float1dArray.get(index);
                 if (Double.isNaN(flux)) { // if original pixel value is NaN, assign it to blank
                     pixeldata[pixelCount] = blank_pixel_value;
                 } else {
@@ -443,6 +509,13 @@ public class ImageStretch {
         }
     }
 
+    /**
+     * @return the index of the first pixel of the given line; when flipY, line 0 is the last row of the data
+     */
+    private static int lineStart(int line, int naxis1, int naxis2, boolean flipY) {
+        return (flipY ? naxis2 - 1 - line : line) * naxis1;
+    }
+
     /**
      * Find default Q from asinh(Q*(xDataMax-xMin)/(xMax-xMin)) = 10 * asinh(0.1*Q)
      * @param minFlux lower range value
@@ -505,7 +578,7 @@ public class ImageStretch {
      *
      * @return array of byte (4096 elements)
      */
-    public static byte[] getHistColors(Histogram hist, RangeValues rangeValues, float[] float1d,
+    public static byte[] getHistColors(Histogram hist, RangeValues rangeValues, FloatBuffer float1d,
                                        double bzero, double bscale, int naxis1, int naxis2,
                                        int bitpix, double blank_value) {
 
@@ -528,8 +601,8 @@ public class ImageStretch {
         byte blank_pixel_value = 0;
 
         stretchPixelsByBand(start_pixel, last_pixel,
-                start_line, last_line, 1, hist,
-                blank_pixel_value, hist_bin_values,
+                start_line, last_line, 1, 1, false, hist,
+                blank_pixel_value, FloatBuffer.wrap(hist_bin_values),
                 pixeldata,  rangeValues, slow, shigh);
 
         return pixeldata;
@@ -552,7 +625,7 @@ public class ImageStretch {
                                             int lastLine,
                                             int naxis1,
                                             byte blank_pixel_value,
-                                            float[] float1dArray,
+                                            FloatBuffer float1dArray,
                                             byte[] pixeldata,
                                             int[] pixelhist,
                                             ImageMask[] lsstMasks) {
@@ -567,7 +640,8 @@ public class ImageStretch {
 
             for (int index = start_index; index <= last_index; index++) {
 
-                if (Double.isNaN(float1dArray[index])) { //original pixel value is NaN, assign it to blank
+                float val= float1dArray.get(index);
+                if (Double.isNaN(val)) { //original pixel value is NaN, assign it to blank
                     pixeldata[pixelCount] = blank_pixel_value;
                 } else {
                     /*
@@ -577,7 +651,7 @@ public class ImageStretch {
                      color stored there.  The color model is indexed.  For 8 bit image, it has 256 maximum colors.
                      For detail, see the indexColorModel defined in ImageData.java.
                      */
-                    int maskPixel= (int)float1dArray[index];
+                    int maskPixel= (int)val;
                     if (combinedMask.isSet(maskPixel )) {
                         for (int i = 0; i < lsstMasks.length; i++) {
                             if (lsstMasks[i].isSet(maskPixel)) {
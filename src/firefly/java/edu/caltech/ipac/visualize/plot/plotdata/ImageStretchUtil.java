@@ -8,7 +8,40 @@ import edu.caltech.ipac.visualize.plot.ImageHeader;
 import edu.caltech.ipac.visualize.plot.RangeValues;
 import edu.caltech.ipac.visualize.plot.Zscale;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.FloatBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 class ImageStretchUtil {
+
+    /**
+     * Zscale results for each data array, which is one per FitsRead.  Every tile of a stretch asks for the same
+     * zscale values, so they are computed once.  The entries go away when the data array is collected.
+     * The key is the array behind a heap buffer, or the buffer itself when it is memory mapped.  Keys are compared
+     * by identity; a FloatBuffer's equals and hashCode depend on its content, which would read all the mapped data.
+     */
+    private static final Map<DataKey, Map<ZscaleParams, Zscale.ZscaleRetval>> zscaleCache= new ConcurrentHashMap<>();
+    private static final ReferenceQueue<Object> collectedData= new ReferenceQueue<>();
+
+    /** a weak reference to the data, equal only to a key of the same object */
+    private static class DataKey extends WeakReference<Object> {
+        private final int hash;
+        DataKey(Object data, ReferenceQueue<Object> queue) {
+            super(data, queue);
+            hash= System.identityHashCode(data);
+        }
+        @Override public int hashCode() { return hash; }
+        @Override public boolean equals(Object o) {
+            if (this==o) return true;
+            return o instanceof DataKey k && k.hash==hash && k.get()!=null && k.get()==get();
+        }
+    }
+
+    private record ZscaleParams(int naxis1, int naxis2, double contrast, int optSize, int lenStdline, double blank) {}
+
     /**
      * The Bscale  keyword shall be used, along with the BZERO keyword, when the array pixel values are not the true  physical  values,
      * to transform the primary data array  values to the true physical values they represent, using Eq. 5.3. The value field shall contain a
@@ -34,7 +67,7 @@ class ImageStretchUtil {
         }
     }
 
-    static double getShigh(RangeValues rangeValues, float[] float1d, Histogram hist, double bzero, double bscale,
+    static double getShigh(RangeValues rangeValues, FloatBuffer float1d, Histogram hist, double bzero, double bscale,
                               int naxis1, int naxis2, double blank_value) {
         return switch (rangeValues.getUpperWhich()) {
             case RangeValues.ABSOLUTE -> (rangeValues.getUpperValue() - bzero) / bscale;
@@ -45,14 +78,20 @@ class ImageStretchUtil {
         };
     }
 
-    static Zscale.ZscaleRetval getZscaleValue(float[] float1d, int naxis1, int naxis2, double blank_value, RangeValues rangeValues) {
+    static Zscale.ZscaleRetval getZscaleValue(FloatBuffer float1d, int naxis1, int naxis2, double blank_value, RangeValues rangeValues) {
         double contrast = rangeValues.getZscaleContrast();
         int optSize = rangeValues.getZscaleSamples();
         int lenStdline = rangeValues.getZscaleSamplesPerLine();
-        return Zscale.cdl_zscale(float1d, naxis1, naxis2, contrast / 100.0, optSize, lenStdline, blank_value );
+        for(Reference<?> ref= collectedData.poll(); ref!=null; ref= collectedData.poll()) zscaleCache.remove(ref);
+        Object data= float1d.hasArray() ? float1d.array() : float1d;
+        Map<ZscaleParams, Zscale.ZscaleRetval> results=
+                zscaleCache.computeIfAbsent(new DataKey(data, collectedData), k -> new ConcurrentHashMap<>());
+        // tiles stretched at the same time wait for the first one to compute the values
+        return results.computeIfAbsent(new ZscaleParams(naxis1, naxis2, contrast, optSize, lenStdline, blank_value),
+                p -> Zscale.cdl_zscale(float1d, naxis1, naxis2, contrast / 100.0, optSize, lenStdline, blank_value ));
     }
 
-    static double getSlow(RangeValues rangeValues, float[] float1d, Histogram hist, double bzero, double bscale,
+    static double getSlow(RangeValues rangeValues, FloatBuffer float1d, Histogram hist, double bzero, double bscale,
                           int naxis1, int naxis2, double blank_value) {
         return switch (rangeValues.getLowerWhich()) {
             case RangeValues.ABSOLUTE ->  (rangeValues.getLowerValue() - bzero) / bscale;
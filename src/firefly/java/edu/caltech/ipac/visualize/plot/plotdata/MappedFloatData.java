@@ -0,0 +1,106 @@
+/*
+ * License information at https://github.com/Caltech-IPAC/firefly/blob/master/License.txt
+ */
+package edu.caltech.ipac.visualize.plot.plotdata;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Image data kept in a file of native-endian float32 values and memory mapped, so it lives in the OS page cache
+ * instead of the java heap.  The page cache is shared by every FitsRead that maps the same file.
+ */
+public class MappedFloatData {
+
+    /** the most floats a single mapping can hold */
+    public static final int MAX_LENGTH= Integer.MAX_VALUE / 4;
+
+    private final File file;
+    private final FloatBuffer buffer;
+
+    private MappedFloatData(File file, FloatBuffer buffer) {
+        this.file= file;
+        this.buffer= buffer;
+    }
+
+    /**
+     * Write the data to the file, unless the file already holds data of the same length that is newer than
+     * the source, then map it.
+     * @param data the data to store
+     * @param file the file to write
+     * @param sourceModified the last modified time of the data source, 0 if unknown
+     * @return the mapped data
+     * @throws IOException if the data cannot be written or mapped
+     */
+    public static MappedFloatData create(float[] data, File file, long sourceModified) throws IOException {
+        if (data.length>MAX_LENGTH) throw new IOException("Image too large to map: " + data.length + " pixels");
+        boolean reuse= sourceModified>0 && file.lastModified()>=sourceModified && file.length()==data.length*4L;
+        if (!reuse) write(data,file);
+        return map(file);
+    }
+
+    public File getFile() { return file; }
+
+    public int length() { return buffer.limit(); }
+
+    public float get(int idx) { return buffer.get(idx); }
+
+    /**
+     * The same read-only buffer is returned to every caller, so it can identify the data, e.g. as a cache key.
+     * Use absolute gets only; the position is shared.
+     * @return the mapped data
+     */
+    public FloatBuffer getBuffer() { return buffer; }
+
+    /**
+     * @return a heap copy of the data, for code that can only work with an array
+     */
+    public float[] toArray() {
+        float[] ary= new float[buffer.limit()];
+        buffer.duplicate().get(ary);
+        return ary;
+    }
+
+    /**
+     * The data is written to a temporary file of its own in the same directory and then moved into place, so a
+     * partially written file is never mapped, even when several threads write the same file.
+     */
+    private static void write(float[] data, File file) throws IOException {
+        Path tmp= Files.createTempFile(file.getAbsoluteFile().getParentFile().toPath(), file.getName()+"-", ".tmp");
+        try {
+            try (FileChannel ch= FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                ByteBuffer buff= ByteBuffer.allocateDirect(1024*1024).order(ByteOrder.nativeOrder());
+                FloatBuffer fBuff= buff.asFloatBuffer();
+                for(int pos=0; pos<data.length; ) {
+                    int len= Math.min(fBuff.capacity(), data.length-pos);
+                    fBuff.clear();
+                    fBuff.put(data, pos, len);
+                    buff.clear().limit(len*4);
+                    while (buff.hasRemaining()) ch.write(buff);
+                    pos+= len;
+                }
+            }
+            Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static MappedFloatData map(File file) throws IOException {
+        try (FileChannel ch= FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            FloatBuffer buffer= ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size())
+                                  .order(ByteOrder.nativeOrder())
+                                  .asFloatBuffer();
+            return new MappedFloatData(file, buffer);
+        }
+    }
+}
@@ -156,6 +156,61 @@ public class GnomonicProjection{
 	return (image_pt);
     }
 
+    /**
+     * RevProject many points without distortion corrections, the values that only depend on the header are computed
+     * once.  A point more than 90 degrees from the projection center gets NaN.
+     */
+    static void RevProject(double[] ra, double[] dec, double[] xOut, double[] yOut,
+                           int start, int end, ProjectionParams hdr)
+    {
+	double rpp1 = -hdr.cdelt1 * dtr;
+	double rpp2 = -hdr.cdelt2 * dtr;
+	double lon0 = hdr.crval1 * dtr;
+	double lat0 = hdr.crval2 * dtr;
+	double sinLat0 = Math.sin(lat0);
+	double cosLat0 = Math.cos(lat0);
+	double rtwist = hdr.crota2 * dtr;
+	double sinTwist = Math.sin(rtwist);
+	double cosTwist = Math.cos(rtwist);
+
+	for (int i = start; i < end; i++)
+	{
+	    double lon = ra[i] * dtr;
+	    double lat = dec[i] * dtr;
+	    double sinLat = Math.sin(lat);
+	    double cosLat = Math.cos(lat);
+	    double aa = cosLat * Math.cos(lon - lon0);
+	    double ff = 1./ (sinLat0 * sinLat + aa * cosLat0);
+
+	    if (ff < 0)
+	    {
+		/* we're more than 90 degrees from projection center */
+		xOut[i] = Double.NaN;
+		yOut[i] = Double.NaN;
+		continue;
+	    }
+	    double fline = -ff * (cosLat0 * sinLat - aa * sinLat0);
+	    double fsamp = -ff * cosLat * Math.sin(lon - lon0);
+	    double temp;
+
+	    if (hdr.using_cd)
+	    {
+		temp = -(hdr.dc1_1 * fsamp + hdr.dc1_2 * fline) * rtd;
+		fline = -(hdr.dc2_1 * fsamp + hdr.dc2_2 * fline) * rtd;
+		fsamp = temp;
+	    }
+	    else
+	    {
+		temp = fsamp * cosTwist + fline * sinTwist;
+		fline = -fsamp * sinTwist + fline * cosTwist;
+		fsamp = temp / rpp1;
+		fline = fline / rpp2;
+	    }
+	    xOut[i] = fsamp + hdr.crpix1 - 1;
+	    yOut[i] = fline + hdr.crpix2 - 1;
+	}
+    }
+
     static public Pt FwdProject( double x, double y, ProjectionParams hdr)
     {
 	int i, j;
@@ -287,6 +342,60 @@ public class GnomonicProjection{
 	return (_pt);
     }
 
+    /**
+     * FwdProject many points without distortion corrections, the values that only depend on the header are computed
+     * once.
+     */
+    static void FwdProject(double[] x, double[] y, double[] lonOut, double[] latOut,
+                           int start, int end, ProjectionParams hdr)
+    {
+	double rpp1 = hdr.cdelt1 * dtr;
+	double rpp2 = hdr.cdelt2 * dtr;
+	double rtwist = hdr.crota2 * dtr;
+	double sinTwist = Math.sin(rtwist);
+	double cosTwist = Math.cos(rtwist);
+	double glatr = hdr.crval2 * dtr;
+	double glongr = hdr.crval1 * dtr;
+	double sinGlat = Math.sin(glatr);
+	double cosGlat = Math.cos(glatr);
+
+	for (int i = start; i < end; i++)
+	{
+	    double fsamp = x[i] - hdr.crpix1 + 1;
+	    double fline = y[i] - hdr.crpix2 + 1;
+	    double xx, yy, temp;
+
+	    if (hdr.using_cd)
+	    {
+		xx = -(hdr.cd1_1 * fsamp + hdr.cd1_2 * fline) * dtr;
+		yy = -(hdr.cd2_1 * fsamp + hdr.cd2_2 * fline) * dtr;
+	    }
+	    else
+	    {
+		xx = -fsamp * rpp1;
+		yy = -fline * rpp2;
+		temp = xx * cosTwist - yy * sinTwist; /* do twist */
+		yy = xx * sinTwist + yy * cosTwist;
+		xx = temp;
+	    }
+
+	    double delta = Math.atan(Math.sqrt(xx * xx + yy * yy));
+	    if ((xx == 0.0) && (yy == 0.0))
+		yy = 1.0;  /* avoid domain error in atan2 */
+	    double beta = Math.atan2(-xx, yy);
+	    double sinDelta = Math.sin(delta);
+	    double cosDelta = Math.cos(delta);
+	    double cosBeta = Math.cos(beta);
+	    double lat = Math.asin(-sinDelta * cosBeta * cosGlat + cosDelta * sinGlat);
+	    double xxx = sinGlat * sinDelta * cosBeta + cosGlat * cosDelta;
+	    double yyy = sinDelta * Math.sin(beta);
+	    double lon = glongr + Math.atan2(yyy, xxx);
+
+	    latOut[i] = lat * rtd;
+	    lonOut[i] = lon * rtd;
+	}
+    }
+
 }
 
 
@@ -30,6 +30,36 @@ public class PlateProjection
 
     static public Pt FwdProject( double xpix, double ypix, ProjectionParams hdr)
 {
+    double result[] = new double[2];
+    platepos(xpix, ypix, hdr, Math.tan(hdr.plate_dec), Math.cos(hdr.plate_dec), result);
+    return new Pt(result[0], result[1]);
+}
+
+    /**
+     * FwdProject many points, the values that only depend on the plate center are computed once.
+     */
+    static void FwdProject(double[] x, double[] y, double[] lonOut, double[] latOut,
+                           int start, int end, ProjectionParams hdr)
+{
+    double result[] = new double[2];
+    double ctan = Math.tan(hdr.plate_dec);
+    double ccos = Math.cos(hdr.plate_dec);
+    for (int i = start; i < end; i++)
+    {
+        platepos(x[i], y[i], hdr, ctan, ccos, result);
+        lonOut[i] = result[0];
+        latOut[i] = result[1];
+    }
+}
+
+    /**
+     * @param ctan tan of the plate center declination
+     * @param ccos cos of the plate center declination
+     * @param result the RA and Dec in degrees are put here
+     */
+    private static void platepos(double xpix, double ypix, ProjectionParams hdr,
+                                 double ctan, double ccos, double result[])
+{
 
 /* Routine to determine accurate position for pixel coordinates */
 /* returns 0 if successful otherwise 1 = angle too large for projection; */
@@ -48,7 +78,6 @@ double	ypos;		/* y (dec) coordinate (deg) */
   double cond2r = Math.PI/180;
   double cons2r = 3600 * 180 / Math.PI;
   double twopi = 2 * Math.PI;
-  double ctan, ccos;
 
 /*  Ignore magnitude and color terms 
   double mag = 0.0;
@@ -131,8 +160,6 @@ double	ypos;		/* y (dec) coordinate (deg) */
 
 /* Convert to RA and Dec */
 
-  ctan = Math.tan (hdr.plate_dec);
-  ccos = Math.cos (hdr.plate_dec);
   raoff = Math.atan2 (xir / ccos, 1.0 - etar * ctan);
   ra = raoff + hdr.plate_ra;
   if (ra < 0.0) ra = ra + twopi;
@@ -147,8 +174,8 @@ double	ypos;		/* y (dec) coordinate (deg) */
 	"RBH PlateProjection.FwdProject: output xpos = " + xpos + 
 	"  ypos = " + ypos);
     */
-    Pt _pt = new Pt(xpos, ypos);
-    return (_pt);
+    result[0] = xpos;
+    result[1] = ypos;
 }
 
 /* Mar  6 1995	Original version of this code
@@ -274,16 +301,8 @@ double	ypos;		/* y (dec) coordinate (deg) */
 
 //extern void amdinv(imgp,ra,dec,mag,col,x,y)
 
-double x, y;
-double colour, mag;
-double xout, yout;
-int i, max_iterations;
-double tolerance;
-double xi, eta, object_x, object_y, delta_x, delta_y, f, fx, fy, g, gx, gy;
-double cjunk,x4,y4;
-
-    double crpix1 = _hdr.crpix1;
-    double crpix2 = _hdr.crpix2;
+double xi, eta;
+double result[] = new double[2];
 
     /* avoid mirror image at opposite point on sphere */
     double distance = Projection.computeDistance(
@@ -298,6 +317,73 @@ double cjunk,x4,y4;
     ra = ra * Projection.dtr;
     dec = dec * Projection.dtr;
 
+    /*
+     *  Convert RA and Dec to St.coords
+     */
+    Pt _pt = traneqstd(_hdr.plate_ra,_hdr.plate_dec,ra,dec);
+    xi = _pt.getX();
+    eta = _pt.getY();
+
+    amdinv(xi, eta, _hdr, result);
+    return new ProjectionPt(result[0], result[1]);
+}
+
+    /**
+     * RevProject many points, the values that only depend on the plate center are computed once.
+     * A point more than 90 degrees from the plate center gets NaN.
+     */
+    static void RevProject(double[] ra, double[] dec, double[] xOut, double[] yOut,
+                           int start, int end, ProjectionParams _hdr)
+{
+    double ARCSECONDS_PER_RADIAN = 206264.8062470964;
+    double result[] = new double[2];
+    double sinCenterDec = Math.sin(_hdr.plate_dec);
+    double cosCenterDec = Math.cos(_hdr.plate_dec);
+
+    for (int i = start; i < end; i++)
+    {
+        double objRa = ra[i] * Projection.dtr;
+        double objDec = dec[i] * Projection.dtr;
+        double sinDec = Math.sin(objDec);
+        double cosDec = Math.cos(objDec);
+        double cosDRa = Math.cos(objRa - _hdr.plate_ra);
+
+        /* the same as traneqstd, div is the cosine of the distance to the plate center */
+        double div = sinDec * sinCenterDec + cosDec * cosCenterDec * cosDRa;
+        if (div < 0)
+        {
+            /* avoid mirror image at opposite point on sphere */
+            xOut[i] = Double.NaN;
+            yOut[i] = Double.NaN;
+            continue;
+        }
+        double xi = cosDec * Math.sin(objRa - _hdr.plate_ra) * ARCSECONDS_PER_RADIAN / div;
+        double eta = (sinDec * cosCenterDec - cosDec * sinCenterDec * cosDRa) * ARCSECONDS_PER_RADIAN / div;
+
+        amdinv(xi, eta, _hdr, result);
+        xOut[i] = result[0];
+        yOut[i] = result[1];
+    }
+}
+
+    /**
+     * Iterate from the standard coordinates to the plate position and convert it to image coordinates.
+     * @param xi the xi standard coordinate in arcseconds
+     * @param eta the eta standard coordinate in arcseconds
+     * @param result the image x and y are put here
+     */
+    private static void amdinv(double xi, double eta, ProjectionParams _hdr, double result[])
+    {
+double x, y;
+double colour, mag;
+double xout, yout;
+int i, max_iterations;
+double tolerance;
+double object_x, object_y, delta_x, delta_y, f, fx, fy, g, gx, gy;
+double cjunk,x4,y4;
+
+    double crpix1 = _hdr.crpix1;
+    double crpix2 = _hdr.crpix2;
 
     /*
      *  Initialize
@@ -307,12 +393,6 @@ double cjunk,x4,y4;
     tolerance = 0.0000005;
     delta_x = tolerance;
     delta_y = tolerance;
-    /*
-     *  Convert RA and Dec to St.coords
-     */
-    Pt _pt = traneqstd(_hdr.plate_ra,_hdr.plate_dec,ra,dec);
-    xi = _pt.getX();
-    eta = _pt.getY();
     /*
      *  Set initial value for x,y
      */
@@ -461,8 +541,8 @@ double cjunk,x4,y4;
 
     /* end RBH added */
 
-    ProjectionPt image_pt = new ProjectionPt(x, y);
-    return (image_pt);
+    result[0] = x;
+    result[1] = y;
 
 } /* amdinv */
 
@@ -12,6 +12,7 @@ import edu.caltech.ipac.visualize.plot.Pt;
 import edu.caltech.ipac.visualize.plot.WorldPt;
 
 import java.io.Serializable;
+import java.util.stream.IntStream;
 
 
 public class Projection implements Serializable {
@@ -35,6 +36,9 @@ public class Projection implements Serializable {
     static public final int UNSPECIFIED  = 1998;
     static public final int UNRECOGNIZED = 1999;
 
+    /** the parallel batch methods only use more than one thread for at least this many points */
+    public static final int PARALLEL_MIN = 20000;
+
     private double      _scale1;
     private double      _scale2;
     private double      _pixelScaleArcSec;
@@ -173,6 +177,12 @@ public class Projection implements Serializable {
     */
 
     private WorldPt getWorldCoordsInternal(double x, double y, boolean useProjException)  throws ProjectionException {
+	Pt pt = fwdProject(x, y, useProjException);
+	WorldPt world_pt = (pt!=null) ? new WorldPt(pt.getX(), pt.getY(), _coordSys) : null;
+	return (world_pt);
+    }
+
+    private Pt fwdProject(double x, double y, boolean useProjException)  throws ProjectionException {
 	Pt pt = null;
 
 	switch (_params.maptype)
@@ -215,9 +225,129 @@ public class Projection implements Serializable {
 	default:
 	    if (useProjException) throw new ProjectionException("projection is not implemented");
 	}
+	return (pt);
+    }
 
-	WorldPt world_pt = (pt!=null) ? new WorldPt(pt.getX(), pt.getY(), _coordSys) : null;
-	return (world_pt);
+    /**
+     * Convert many world coordinates to image coordinates, the same as calling getImageCoords for each point,
+     * but without creating an object for each point.  A point that cannot be converted gets NaN.
+     * @param ra the longitudes, in the coordinate system of this projection
+     * @param dec the latitudes
+     * @param x the image x of each point is put here
+     * @param y the image y of each point is put here
+     */
+    public void getImageCoords(double[] ra, double[] dec, double[] x, double[] y) {
+        getImageCoords(ra, dec, x, y, 0, ra.length);
+    }
+
+    /**
+     * Convert the points from start to end-1.
+     * @see #getImageCoords(double[], double[], double[], double[])
+     */
+    public void getImageCoords(double[] ra, double[] dec, double[] x, double[] y, int start, int end) {
+        switch (_params.maptype) {
+            case GNOMONIC -> {
+                if (!_params.map_distortion) {
+                    GnomonicProjection.RevProject(ra, dec, x, y, start, end, _params);
+                    return;
+                }
+            }
+            case TPV -> {
+                TpvProjection.RevProject(ra, dec, x, y, start, end, _params);
+                return;
+            }
+            case PLATE -> {
+                PlateProjection.RevProject(ra, dec, x, y, start, end, _params);
+                return;
+            }
+            case SFL -> {
+                SansonFlamsteedProjection.RevProject(ra, dec, x, y, start, end, _params);
+                return;
+            }
+        }
+        for (int i = start; i < end; i++) {
+            ProjectionPt pt = getImageCoordsSilent(ra[i], dec[i]);
+            x[i] = (pt!=null) ? pt.getX() : Double.NaN;
+            y[i] = (pt!=null) ? pt.getY() : Double.NaN;
+        }
+    }
+
+    /**
+     * The same as getImageCoords, large batches are split across threads.
+     * @see #getImageCoords(double[], double[], double[], double[])
+     */
+    public void getImageCoordsParallel(double[] ra, double[] dec, double[] x, double[] y) {
+        forEachChunk(ra.length, (start, end) -> getImageCoords(ra, dec, x, y, start, end));
+    }
+
+    /**
+     * Convert many image coordinates to world coordinates, the same as calling getWorldCoords for each point,
+     * but without creating a WorldPt for each point.  A point that cannot be converted gets NaN.
+     * @param x the image x values
+     * @param y the image y values
+     * @param ra the longitude of each point is put here, in the coordinate system of this projection
+     * @param dec the latitude of each point is put here
+     */
+    public void getWorldCoords(double[] x, double[] y, double[] ra, double[] dec) {
+        getWorldCoords(x, y, ra, dec, 0, x.length);
+    }
+
+    /**
+     * Convert the points from start to end-1.
+     * @see #getWorldCoords(double[], double[], double[], double[])
+     */
+    public void getWorldCoords(double[] x, double[] y, double[] ra, double[] dec, int start, int end) {
+        switch (_params.maptype) {
+            case GNOMONIC -> {
+                if (!_params.map_distortion) {
+                    GnomonicProjection.FwdProject(x, y, ra, dec, start, end, _params);
+                    return;
+                }
+            }
+            case TPV -> {
+                TpvProjection.FwdProject(x, y, ra, dec, start, end, _params);
+                return;
+            }
+            case PLATE -> {
+                PlateProjection.FwdProject(x, y, ra, dec, start, end, _params);
+                return;
+            }
+            case SFL -> {
+                SansonFlamsteedProjection.FwdProject(x, y, ra, dec, start, end, _params);
+                return;
+            }
+        }
+        for (int i = start; i < end; i++) {
+            Pt pt;
+            try {
+                pt = fwdProject(x[i], y[i], false);
+            } catch (ProjectionException e) {
+                pt = null;
+            }
+            ra[i] = (pt!=null) ? pt.getX() : Double.NaN;
+            dec[i] = (pt!=null) ? pt.getY() : Double.NaN;
+        }
+    }
+
+    /**
+     * The same as getWorldCoords, large batches are split across threads.
+     * @see #getWorldCoords(double[], double[], double[], double[])
+     */
+    public void getWorldCoordsParallel(double[] x, double[] y, double[] ra, double[] dec) {
+        forEachChunk(x.length, (start, end) -> getWorldCoords(x, y, ra, dec, start, end));
+    }
+
+    private interface ChunkOp { void apply(int start, int end); }
+
+    private void forEachChunk(int length, ChunkOp op) {
+        int chunkCnt = Math.min(length / PARALLEL_MIN * 4, 8 * Runtime.getRuntime().availableProcessors());
+        if (chunkCnt < 2 || !isThreadSafe()) {
+            op.apply(0, length);
+            return;
+        }
+        int chunkSize = (length + chunkCnt - 1) / chunkCnt;
+        IntStream.range(0, chunkCnt).parallel()
+                .forEach(c -> op.apply(c * chunkSize, Math.min(length, (c + 1) * chunkSize)));
     }
 
 
@@ -261,6 +391,18 @@ public class Projection implements Serializable {
 	    return true;
     }
 
+    /**
+     * The CAR and CEA projections keep intermediate values in static arrays, so only one thread at a time
+     * may use them.
+     * @return true if this projection can be used by several threads at the same time
+     */
+    public boolean isThreadSafe() {
+        return switch (_params.maptype) {
+            case CAR, CEA -> false;
+            default -> true;
+        };
+    }
+
     public boolean isWrappingProjection()
     {
 	boolean retval;
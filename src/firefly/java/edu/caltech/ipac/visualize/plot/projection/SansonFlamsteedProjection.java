@@ -7,14 +7,14 @@ import edu.caltech.ipac.visualize.plot.ProjectionPt;
 import edu.caltech.ipac.visualize.plot.Pt;
 import edu.caltech.ipac.visualize.plot.ProjectionException;
 
+import java.util.Arrays;
+
 public class SansonFlamsteedProjection{
 
 
     static double dtr = Projection.dtr;
     static double rtd = Projection.rtd;
     private static double  WCSTRIG_TOL = 1e-10;
-    private static double celref[] = new double[4];
-    private static double euler[] = new double[5];
 
     static public ProjectionPt RevProject (double lon, double lat,
 	ProjectionParams hdr, boolean useProjException) throws ProjectionException
@@ -35,7 +35,8 @@ public class SansonFlamsteedProjection{
 	double dc2_1 = hdr.dc2_1;
 	double dc2_2 = hdr.dc2_2;
 	double xx, yy;
-	double result[];
+	double result[] = new double[2];
+	double euler[] = new double[5];
 
 	/*
 	if (SUTDebug.isDebug())
@@ -45,16 +46,10 @@ public class SansonFlamsteedProjection{
 	*/
 
 	/* Initialize projection parameters. */
-	/* Set reference angles for the native grid. */
-	celref[0] =   glong;
-	celref[1] =   glat;
-	celref[2] =   999.0;
-	celref[3] =   999.0;
-
-    boolean celsetSuccess= celset(useProjException);
+    boolean celsetSuccess= celset(glong, glat, euler, useProjException);
     if (!celsetSuccess && !useProjException)  return null;
 
-	result = sphfwd(lon, lat);
+	sphfwd(lon, lat, euler, result);
 	xx = result[0];
 	yy = result[1];
 
@@ -106,7 +101,8 @@ public class SansonFlamsteedProjection{
 	double          lat, lon;
 	double          rtwist, temp, rlat;
 	double xx, yy;
-	double result[];
+	double result[] = new double[2];
+	double euler[] = new double[5];
 
 	double crpix1 = hdr.crpix1;
 	double crpix2 = hdr.crpix2;
@@ -153,13 +149,7 @@ public class SansonFlamsteedProjection{
 	    yy = fline * cdelt2;
 	}
 	/* Initialize projection parameters. */
-	/* Set reference angles for the native grid. */
-	celref[0] =   glong;
-	celref[1] =   glat;
-	celref[2] =   999.0;
-	celref[3] =   999.0;
-
-    boolean celsetSuccess= celset(useProjException);
+    boolean celsetSuccess= celset(glong, glat, euler, useProjException);
     if (!celsetSuccess && !useProjException)  return null;
 
 	if (Math.cos(yy * dtr) == 0)
@@ -171,7 +161,7 @@ public class SansonFlamsteedProjection{
 	    xx = xx / Math.cos(yy * dtr);
 	}
 
-	result = sphrev(xx, yy);
+	sphrev(xx, yy, euler, result);
 	lon = result[0];
 	lat = result[1];
 
@@ -185,10 +175,116 @@ public class SansonFlamsteedProjection{
 	return (_pt);
     }
 
+    /**
+     * RevProject many points, the euler angles and the twist are computed once.  If the reference point
+     * is ill-conditioned every point gets NaN.
+     */
+    static void RevProject(double[] ra, double[] dec, double[] xOut, double[] yOut,
+                           int start, int end, ProjectionParams hdr)
+    {
+	double euler[] = new double[5];
+	double result[] = new double[2];
+	if (!celsetSilent(hdr, euler)) {
+	    fillNaN(xOut, yOut, start, end);
+	    return;
+	}
+	double rtwist = - hdr.crota2 * dtr;
+	double sinTwist = Math.sin(rtwist);
+	double cosTwist = Math.cos(rtwist);
+
+	for (int i = start; i < end; i++)
+	{
+	    sphfwd(ra[i], dec[i], euler, result);
+	    double yy = result[1];
+	    double xx = result[0] * Math.cos(yy * dtr);
+	    double fsamp, fline, temp;
+
+	    if (hdr.using_cd)
+	    {
+		fsamp = hdr.dc1_1 * xx + hdr.dc1_2 * yy;
+		fline = hdr.dc2_1 * xx + hdr.dc2_2 * yy;
+	    }
+	    else
+	    {
+		fsamp = xx / hdr.cdelt1;
+		fline = yy / hdr.cdelt2;
+	    }
+	    temp = fsamp * cosTwist + fline * sinTwist;
+	    fline = -fsamp * sinTwist + fline * cosTwist;
+	    xOut[i] = temp + hdr.crpix1 - 1;
+	    yOut[i] = fline + hdr.crpix2 - 1;
+	}
+    }
+
+    /**
+     * FwdProject many points, the euler angles and the twist are computed once.  If the reference point
+     * is ill-conditioned every point gets NaN.
+     */
+    static void FwdProject(double[] x, double[] y, double[] lonOut, double[] latOut,
+                           int start, int end, ProjectionParams hdr)
+    {
+	double euler[] = new double[5];
+	double result[] = new double[2];
+	if (!celsetSilent(hdr, euler)) {
+	    fillNaN(lonOut, latOut, start, end);
+	    return;
+	}
+	double rtwist = - hdr.crota2 * dtr;
+	double sinTwist = Math.sin(rtwist);
+	double cosTwist = Math.cos(rtwist);
+
+	for (int i = start; i < end; i++)
+	{
+	    double fsamp = x[i] - hdr.crpix1 + 1;
+	    double fline = y[i] - hdr.crpix2 + 1;
+	    double temp = fsamp * cosTwist - fline * sinTwist; /* do twist */
+	    fline = fsamp * sinTwist + fline * cosTwist;
+	    fsamp = temp;
+	    double xx, yy;
+
+	    if (hdr.using_cd)
+	    {
+		xx = (hdr.cd1_1 * fsamp + hdr.cd1_2 * fline);
+		yy = (hdr.cd2_1 * fsamp + hdr.cd2_2 * fline);
+	    }
+	    else
+	    {
+		xx = fsamp * hdr.cdelt1;
+		yy = fline * hdr.cdelt2;
+	    }
+	    double cosYY = Math.cos(yy * dtr);
+	    xx = (cosYY == 0) ? 0 : xx / cosYY;
+
+	    sphrev(xx, yy, euler, result);
+	    lonOut[i] = result[0];
+	    latOut[i] = result[1];
+	}
+    }
+
+    private static boolean celsetSilent(ProjectionParams hdr, double euler[]) {
+	try {
+	    return celset(hdr.crval1, hdr.crval2, euler, false);
+	} catch (ProjectionException e) {
+	    return false; // does not happen when useProjException is false
+	}
+    }
+
+    private static void fillNaN(double[] a, double[] b, int start, int end) {
+	Arrays.fill(a, start, end, Double.NaN);
+	Arrays.fill(b, start, end, Double.NaN);
+    }
+
 
-   private static boolean celset(boolean useProjException)  throws ProjectionException
+   /**
+    * Compute the euler angles of the native grid for the reference point glong, glat.
+    * @param euler the five angles are put here
+    */
+   private static boolean celset(double glong, double glat, double euler[], boolean useProjException)
+           throws ProjectionException
 {
    double tol = 1.0e-10;
+   /* Set reference angles for the native grid. */
+   double celref[] = {glong, glat, 999.0, 999.0};
    double clat0, cphip, cthe0, slat0, sphip, sthe0;
    double latp, latp1, latp2;
    double u, v, x, y, z;
@@ -307,11 +403,10 @@ public class SansonFlamsteedProjection{
 
 
 
-private static double[]  sphfwd (double lng, double lat)
+private static void  sphfwd (double lng, double lat, double euler[], double result[])
 {
     double tol = 1.0e-5;
     double phi, theta;
-   double result[] = new double[2];
    double coslat, coslng, dlng, dphi, sinlat, sinlng, x, y, z;
 
    coslat = cosd(lat);
@@ -363,15 +458,13 @@ private static double[]  sphfwd (double lng, double lat)
 
    result[0] = phi;
    result[1] = theta;
-   return(result);
 }
 
 
-private static double[]  sphrev (double phi, double theta)
+private static void  sphrev (double phi, double theta, double euler[], double retval[])
 {
     double tol = 1.0e-5;
     double lng, lat;
-   double retval[] = new double[2];
    double cosphi, costhe, dlng, dphi, sinphi, sinthe, x, y, z;
 
    costhe = cosd(theta);
@@ -430,7 +523,6 @@ private static double[]  sphrev (double phi, double theta)
 
    retval[0] = lng;
    retval[1] = lat;
-   return(retval);
 }
 
 
@@ -84,9 +84,97 @@ public class TpvProjection {
         fline = -fline * rtd;  // must align with East and be in degrees
 
         // Recover uncorrected-intermediate coordinate before TPV distortion
+        double[] result = new double[2];
+        undistort(fsamp, fline, hdr.pv1, hdr.pv2, result);
+        double xx = result[0];
+        double yy = result[1];
 
-        double[] axis1poly = hdr.pv1;
-        double[] axis2poly = hdr.pv2;
+        // Finally, image pixel derived from above intermdiate coordinates found
+        fsamp = -xx;
+        fline = -yy;
+        if (using_cd) {
+            temp = -(dc1_1 * fsamp + dc1_2 * fline);
+            fline = -(dc2_1 * fsamp + dc2_2 * fline);
+            fsamp = temp;
+        } else {
+        /* do the twist */
+            rtwist = twist * dtr;       /* convert to radians */
+            temp = fsamp * dtr * Math.cos(rtwist) + fline * dtr * Math.sin(rtwist);
+            fline = -fsamp * dtr * Math.sin(rtwist) + fline * dtr * Math.cos(rtwist);
+            fsamp = temp;
+
+            fsamp = (fsamp * dtr / rpp1);     /* now apply cdelt */
+            fline = (fline * dtr / rpp2);
+        }
+
+        x = fsamp + crpix1 - 1;
+        y = fline + crpix2 - 1;
+
+        return new ProjectionPt(x, y);
+
+    }
+
+    /**
+     * RevProject many points, the values that only depend on the header are computed once.  A point more than
+     * 90 degrees from the projection center gets NaN.
+     */
+    static void RevProject(double[] ra, double[] dec, double[] xOut, double[] yOut,
+                           int start, int end, ProjectionParams hdr) {
+        double[] result = new double[2];
+        double rpp1 = -hdr.cdelt1 * dtr;
+        double rpp2 = -hdr.cdelt2 * dtr;
+        double lon0 = hdr.crval1 * dtr;
+        double lat0 = hdr.crval2 * dtr;
+        double sinLat0 = Math.sin(lat0);
+        double cosLat0 = Math.cos(lat0);
+        double rtwist = hdr.crota2 * dtr;
+        double sinTwist = Math.sin(rtwist);
+        double cosTwist = Math.cos(rtwist);
+
+        for (int i = start; i < end; i++) {
+            double lon = ra[i] * dtr;
+            double lat = dec[i] * dtr;
+            double sinLat = Math.sin(lat);
+            double cosLat = Math.cos(lat);
+            double aa = cosLat * Math.cos(lon - lon0);
+            double ff = 1. / (sinLat0 * sinLat + aa * cosLat0);
+
+            if (ff < 0) {
+                /* we're more than 90 degrees from projection center */
+                xOut[i] = Double.NaN;
+                yOut[i] = Double.NaN;
+                continue;
+            }
+            double fline = -ff * (cosLat0 * sinLat - aa * sinLat0);
+            double fsamp = -ff * cosLat * Math.sin(lon - lon0);
+
+            undistort(-fsamp * rtd, -fline * rtd, hdr.pv1, hdr.pv2, result);
+            fsamp = -result[0];
+            fline = -result[1];
+            double temp;
+            if (hdr.using_cd) {
+                temp = -(hdr.dc1_1 * fsamp + hdr.dc1_2 * fline);
+                fline = -(hdr.dc2_1 * fsamp + hdr.dc2_2 * fline);
+                fsamp = temp;
+            } else {
+                temp = fsamp * dtr * cosTwist + fline * dtr * sinTwist;
+                fline = -fsamp * dtr * sinTwist + fline * dtr * cosTwist;
+                fsamp = temp * dtr / rpp1;
+                fline = fline * dtr / rpp2;
+            }
+            xOut[i] = fsamp + hdr.crpix1 - 1;
+            yOut[i] = fline + hdr.crpix2 - 1;
+        }
+    }
+
+    /**
+     * Recover the uncorrected intermediate coordinates before TPV distortion, by Newton-Raphson iteration
+     * on the distortion polynomial.
+     * @param fsamp the distorted intermediate longitude, in degrees
+     * @param fline the distorted intermediate latitude, in degrees
+     * @param result the uncorrected intermediate longitude and latitude are put here
+     */
+    private static void undistort(double fsamp, double fline, double[] axis1poly, double[] axis2poly, double[] result) {
         double X = axis1poly[0];
         double Y = axis2poly[0];
         double dx;
@@ -203,30 +291,8 @@ public class TpvProjection {
                     axis2poly[15] * yy * xx * xx * xx +
                     axis2poly[16] * xx * xx * xx * xx;
         }
-
-        // Finally, image pixel derived from above intermdiate coordinates found
-        fsamp = -xx;
-        fline = -yy;
-        if (using_cd) {
-            temp = -(dc1_1 * fsamp + dc1_2 * fline);
-            fline = -(dc2_1 * fsamp + dc2_2 * fline);
-            fsamp = temp;
-        } else {
-        /* do the twist */
-            rtwist = twist * dtr;       /* convert to radians */
-            temp = fsamp * dtr * Math.cos(rtwist) + fline * dtr * Math.sin(rtwist);
-            fline = -fsamp * dtr * Math.sin(rtwist) + fline * dtr * Math.cos(rtwist);
-            fsamp = temp;
-
-            fsamp = (fsamp * dtr / rpp1);     /* now apply cdelt */
-            fline = (fline * dtr / rpp2);
-        }
-
-        x = fsamp + crpix1 - 1;
-        y = fline + crpix2 - 1;
-
-        return new ProjectionPt(x, y);
-
+        result[0] = xx;
+        result[1] = yy;
     }
 
     /**
@@ -285,7 +351,8 @@ public class TpvProjection {
             x = temp;
         }
         // Apply PV distortion
-        double[] xy = distortion(x * rtd, y * rtd, hdr);
+        double[] xy = new double[2];
+        distortion(x * rtd, y * rtd, hdr, xy);
 
         // distortioned-corrected intermediate coordinates:
         double xx = -xy[0] * dtr;
@@ -333,15 +400,66 @@ public class TpvProjection {
         return image_pt;
     }
 
+    /**
+     * FwdProject many points, the values that only depend on the header are computed once.
+     */
+    static void FwdProject(double[] px, double[] py, double[] lonOut, double[] latOut,
+                           int start, int end, ProjectionParams hdr) {
+        double[] xy = new double[2];
+        double rpp1 = hdr.cdelt1 * DtoR;
+        double rpp2 = hdr.cdelt2 * DtoR;
+        double rtwist = hdr.crota2 * DtoR;
+        double sinTwist = Math.sin(rtwist);
+        double cosTwist = Math.cos(rtwist);
+        double glatr = hdr.crval2 * dtr;
+        double glongr = hdr.crval1 * dtr;
+        double sinGlat = Math.sin(glatr);
+        double cosGlat = Math.cos(glatr);
+
+        for (int i = start; i < end; i++) {
+            double fsamp = px[i] - hdr.crpix1 + 1;
+            double fline = py[i] - hdr.crpix2 + 1;
+            double x, y, temp;
+            if (hdr.using_cd) {
+                x = (hdr.cd1_1 * fsamp + hdr.cd1_2 * fline) * dtr;
+                y = (hdr.cd2_1 * fsamp + hdr.cd2_2 * fline) * dtr;
+            } else {
+                x = fsamp * rpp1;
+                y = fline * rpp2;
+                temp = x * cosTwist - y * sinTwist; // do twist
+                y = x * sinTwist + y * cosTwist;
+                x = temp;
+            }
+            distortion(x * rtd, y * rtd, hdr, xy);
+            double xx = -xy[0] * dtr;
+            double yy = -xy[1] * dtr;
+
+            double delta = Math.atan(Math.sqrt(xx * xx + yy * yy));
+            if ((xx == 0.0) && (yy == 0.0))
+                yy = 1.0;  /* avoid domain error in atan2 */
+            double beta = Math.atan2(-xx, yy);
+            double sinDelta = Math.sin(delta);
+            double cosDelta = Math.cos(delta);
+            double cosBeta = Math.cos(beta);
+            double lat = Math.asin(-sinDelta * cosBeta * cosGlat + cosDelta * sinGlat);
+            double xxx = sinGlat * sinDelta * cosBeta + cosGlat * cosDelta;
+            double yyy = sinDelta * Math.sin(beta);
+            double lon = glongr + Math.atan2(yyy, xxx);
+
+            latOut[i] = lat * rtd;
+            lonOut[i] = lon * rtd;
+        }
+    }
+
     /**
      * Distortion polynomial applied to intermediate coordinates using PV coefficients
      *
      * @param x fsamp, the intermediate longitude offset from the distortion-center origin
      * @param y fline, the intermediate latitude offset from the distortion-center origin
      * @param head projection parameters
-     * @return 1d array size 2 with distortioned-corrected intermediate longitude, latitude
+     * @param xy the distortioned-corrected intermediate longitude, latitude are put here
      */
-    private static double[] distortion(double x, double y, ProjectionParams head) {
+    private static void distortion(double x, double y, ProjectionParams head, double[] xy) {
         ///Correct projection plane coordinates for field distortion""";
         // Distortion coefficients
         double[] pv1 = head.pv1;
@@ -359,8 +477,8 @@ public class TpvProjection {
                 pv2[7] * Math.pow(y, 3) + pv2[8] * Math.pow(y, 2) * x + pv2[9] * y * Math.pow(x, 2) + pv2[10] * Math.pow(x, 3) + pv2[11] * Math.pow(r, 3) +
                 pv2[12] * Math.pow(y, 4) + pv2[13] * Math.pow(y, 3) * x + pv2[14] * Math.pow(y, 2) * Math.pow(x, 2) + pv2[15] * y * Math.pow(x, 3) + pv2[16] * Math.pow(x, 4);
 
-
-        return new double[]{xprime, yprime};
+        xy[0] = xprime;
+        xy[1] = yprime;
     }
 }
 
@@ -10,6 +10,7 @@ import {getAppOptions} from '../AppDataCntlr.js';
 import {showLostConnection, hideLostConnection} from '../../ui/LostConnection.jsx';
 
 export const CH_ID = 'channelID';
+const BATCH = 'batch';      // server may send multiple events as a json array in one message
 
 /**
  * A proxy to the underlining WebSocket connection
@@ -77,8 +78,8 @@ function makeWsConn(baseUrl, resolve, reject) {
 
     const urlInfo = parseUrl(document.location);
     const wsch = urlInfo.searchObject?.[WSCH] || window.firefly?.wsch;
-    const wschParam = wsch ? `?${CH_ID}=${wsch}` : '';
-    const wsUrl = `${baseUrl}sticky/firefly/events${wschParam}`;
+    const wschParam = wsch ? `&${CH_ID}=${wsch}` : '';
+    const wsUrl = `${baseUrl}sticky/firefly/events?${BATCH}=true${wschParam}`;
 
     const requireWs = getAppOptions()?.RequireWebSocketUptime ?? !!wsch;        // if flag is not set, defaults to true when wsch is given.
 
@@ -139,7 +140,14 @@ function makeWsConn(baseUrl, resolve, reject) {
     const isConnected = () => wsConn.readyState === 1;      // 1 == OPEN
 
     const onMessage = (event) => {
-        const eventData = event.data && JSON.parse(event.data);
+        const data = event.data && JSON.parse(event.data);
+        if (Array.isArray(data)) {
+            data.forEach(handleEvent);
+        } else {
+            handleEvent(data);
+        }
+    };
+    const handleEvent = (eventData) => {
         if (eventData) {
             logger.tag('onMessage').debug(eventData);
             if (eventData.name === 'EVT_CONN_EST') {
@@ -167,6 +167,7 @@ export const ServerParams = {
         VIS_PUSH_ACTION: 'pushAction',
         TILE_SIZE: 'tileSize',
         DATA_COMPRESS: 'dataCompress',
+        VIEWPORT: 'viewport',
         POINT_SIZE: 'pointSize',
         POINT_SIZE_X: 'pointSizeX',
         POINT_SIZE_Y: 'pointSizeY',
@@ -9,13 +9,16 @@ import edu.caltech.ipac.table.DataType;
 import edu.caltech.ipac.table.io.IpacTableException;
 import edu.caltech.ipac.table.io.IpacTableReader;
 import edu.caltech.ipac.table.io.IpacTableWriter;
+import edu.caltech.ipac.table.io.TableParseHandler;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.PrintWriter;
 import java.io.StringReader;
 import java.util.*;
 
@@ -435,6 +438,37 @@ public class IpacTableReaderTest extends ConfigTest{
 
     }
 
+    /**
+     * Parsing in parallel should produce the same table as parsing it sequentially
+     */
+    @Test
+    public void testParallelParse() throws IOException {
+        File tmp = File.createTempFile("parallel-", ".tbl");
+        tmp.deleteOnExit();
+        try (PrintWriter writer = new PrintWriter(new FileWriter(tmp))) {
+            writer.println("\\fixlen = T");
+            writer.println("|   id   |      ra      |  desc      |");
+            writer.println("|   int  |    double    |  char      |");
+            writer.println("|        |     deg      |            |");
+            writer.println("|  null  |    null      |  null      |");
+            for (int i = 0; i < 5000; i++) {
+                writer.printf("  %-6d  %-12s  %-10s %n", i, i % 7 == 0 ? "null" : String.format("%.6f", i * 0.01), "r" + i % 13);
+            }
+        }
+
+        DataGroup expected = IpacTableReader.read(tmp);
+        TableParseHandler.Memory handler = new TableParseHandler.Memory(false, false);
+        IpacTableReader.parseTableInParallel(handler, tmp, 4 * 1024);
+        DataGroup actual = handler.getTable(0);
+
+        Assert.assertEquals(5000, actual.size());
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertArrayEquals(expected.get(i).getData(), actual.get(i).getData());
+        }
+        Assert.assertEquals(expected.getDataDefintion("ra").getPrecision(), actual.getDataDefintion("ra").getPrecision());
+    }
+
     @Test
     /**
      * This test calls the method IpacTableReader.readIpacTable to read a table which has one datum under "|".
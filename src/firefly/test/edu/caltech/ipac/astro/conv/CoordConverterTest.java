@@ -0,0 +1,124 @@
+/*
+ * License information at https://github.com/Caltech-IPAC/firefly/blob/master/License.txt
+ */
+
+package edu.caltech.ipac.astro.conv;
+
+import edu.caltech.ipac.TestCategory;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.Random;
+
+/**
+ * CoordConverter must give the same results as CoordConv.doConv for all combinations of coordinate systems.
+ */
+public class CoordConverterTest {
+
+    // system, equinox pairs, the same ones CoordinateSys uses plus a couple of other equinoxes
+    private static final double[][] SYSTEMS = {
+            {CoordConv.EQUATORIAL_J, 2000}, {CoordConv.EQUATORIAL_J, 2015.5},
+            {CoordConv.EQUATORIAL_B, 1950}, {CoordConv.EQUATORIAL_B, 1975}, {CoordConv.EQUATORIAL_B, 2000},
+            {CoordConv.GALACTIC, 2000}, {CoordConv.SUPERGALACTIC, 2000},
+            {CoordConv.ECLIPTIC_J, 2000}, {CoordConv.ECLIPTIC_B, 1950},
+    };
+
+    @Test
+    public void testMatchesDoConv() {
+        int n= 2000;
+        double[] lon= new double[n], lat= new double[n];
+        Random r= new Random(3);
+        for (int i= 0; i<n; i++) {
+            lon[i]= r.nextDouble()*360;
+            lat[i]= Math.toDegrees(Math.asin(r.nextDouble()*2-1));
+        }
+        lat[0]= 90;
+        lat[1]= -90;
+        lat[2]= 89.9995;
+        for (double[] in : SYSTEMS) {
+            for (double[] out : SYSTEMS) {
+                for (double tobs : new double[] {0, 1983.5}) {
+                    int inSys= (int)in[0], outSys= (int)out[0];
+                    CoordConverter conv= CoordConv.getConverter(inSys, in[1], outSys, out[1], tobs);
+                    double[] lonOut= new double[n], latOut= new double[n];
+                    conv.convert(lon, lat, lonOut, latOut);
+                    for (int i= 0; i<n; i++) {
+                        LonLat expected= CoordConv.doConv(inSys, in[1], lon[i], lat[i], outSys, out[1], tobs);
+                        String desc= "%d/%.1f to %d/%.1f tobs %.1f, at %f,%f".formatted(
+                                inSys, in[1], outSys, out[1], tobs, lon[i], lat[i]);
+                        Assert.assertEquals(desc, 0, distance(expected.getLon(), expected.getLat(),
+                                                                 lonOut[i], latOut[i]), 1E-9);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRotation() {
+        CoordConverter conv= CoordConv.getConverter(CoordConv.EQUATORIAL_J, 2000, CoordConv.ECLIPTIC_J, 2000, 0);
+        Assert.assertTrue(conv.isRotation());
+        double[] m= conv.getMatrix();
+        for (int row= 0; row<3; row++) {       // rows are orthonormal
+            for (int row2= 0; row2<3; row2++) {
+                double dot= m[row*3]*m[row2*3] + m[row*3+1]*m[row2*3+1] + m[row*3+2]*m[row2*3+2];
+                Assert.assertEquals(row==row2 ? 1 : 0, dot, 1E-14);
+            }
+        }
+        Assert.assertSame(conv, CoordConv.getConverter(CoordConv.EQUATORIAL_J, 2000, CoordConv.ECLIPTIC_J, 2000, 0));
+
+        CoordConverter fk= CoordConv.getConverter(CoordConv.EQUATORIAL_J, 2000, CoordConv.GALACTIC, 2000, 0);
+        Assert.assertFalse(fk.isRotation());
+        try {
+            fk.getMatrix();
+            Assert.fail("FK4 to FK5 conversion should not have a matrix");
+        } catch (IllegalStateException ignore) {}
+
+        LonLat ll= CoordConv.getConverter(CoordConv.EQUATORIAL_J, 2000, CoordConv.EQUATORIAL_J, 0, 0).convert(10, 20);
+        Assert.assertEquals(10, ll.getLon(), 0);
+        Assert.assertEquals(20, ll.getLat(), 0);
+    }
+
+    /*
+     * 1M points, ms for doConv per point / converter:
+     *    J2000 to ecliptic J2000:     249 / 118
+     *    J2000 to J2015.5:            180 / 119
+     *    galactic to supergalactic:   179 / 114
+     *    J2000 to galactic:           635 / 537     FK5 to FK4 step is still done per point
+     */
+    @Category({TestCategory.Perf.class})
+    @Test
+    public void perfTestConverter() {
+        int n= 1_000_000;
+        double[] lon= new double[n], lat= new double[n];
+        Random r= new Random(5);
+        for (int i= 0; i<n; i++) {
+            lon[i]= r.nextDouble()*360;
+            lat[i]= r.nextDouble()*180-90;
+        }
+        double[][] tests= {
+                {CoordConv.EQUATORIAL_J, 2000, CoordConv.ECLIPTIC_J, 2000},
+                {CoordConv.EQUATORIAL_J, 2000, CoordConv.EQUATORIAL_J, 2015.5},
+                {CoordConv.GALACTIC, 2000, CoordConv.SUPERGALACTIC, 2000},
+                {CoordConv.EQUATORIAL_J, 2000, CoordConv.GALACTIC, 2000},
+        };
+        double[] lonOut= new double[n], latOut= new double[n];
+        for (double[] t : tests) {
+            long start= System.currentTimeMillis();
+            for (int i= 0; i<n; i++) CoordConv.doConv((int)t[0], t[1], lon[i], lat[i], (int)t[2], t[3], 0);
+            long single= System.currentTimeMillis() - start;
+            start= System.currentTimeMillis();
+            CoordConv.getConverter((int)t[0], t[1], (int)t[2], t[3], 0).convert(lon, lat, lonOut, latOut);
+            long batch= System.currentTimeMillis() - start;
+            System.out.printf("%d/%.1f to %d/%.1f: %5d / %5d%n", (int)t[0], t[1], (int)t[2], t[3], single, batch);
+        }
+    }
+
+    /** angular distance in degrees */
+    private static double distance(double lon1, double lat1, double lon2, double lat2) {
+        double l1= Math.toRadians(lat1), l2= Math.toRadians(lat2), dLon= Math.toRadians(lon2-lon1);
+        double a= Math.sin((l2-l1)/2), b= Math.sin(dLon/2);
+        return Math.toDegrees(2*Math.asin(Math.sqrt(a*a + Math.cos(l1)*Math.cos(l2)*b*b)));
+    }
+}
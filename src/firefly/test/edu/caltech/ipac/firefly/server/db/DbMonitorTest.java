@@ -0,0 +1,88 @@
+/*
+ * License information at https://github.com/Caltech-IPAC/firefly/blob/master/License.txt
+ */
+package edu.caltech.ipac.firefly.server.db;
+
+import edu.caltech.ipac.firefly.ConfigTest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DbMonitorTest extends ConfigTest {
+
+	private long maxMemory;
+
+	@Before
+	public void setUp() {
+		setupServerContext(null);
+		DbMonitor.cleanup(true, true);
+		maxMemory = DbMonitor.MAX_MEMORY;
+	}
+
+	@After
+	public void tearDown() {
+		DbMonitor.MAX_MEMORY = maxMemory;
+		DbMonitor.cleanup(true, true);
+	}
+
+	/**
+	 * databases are evicted by their eviction score, until the memory reported by the databases is below the low-water mark
+	 */
+	@Test
+	public void testEvictionOrder() {
+		var a = openDb("evict_a", 300, 60_000, 0);
+		var b = openDb("evict_b", 300, 120_000, 0);
+		var c = openDb("evict_c", 300, 120_000, 10_000);		// same as b, but expensive to rebuild
+		var d = openDb("evict_d", 400, 0, 0);					// in use
+
+		assertEquals(List.of(b, a, c, d), DbMonitor.evictionQueue());
+
+		DbMonitor.MAX_MEMORY = 1000;
+		assertTrue(DbMonitor.isOverHighWater(DbMonitor.getRuntimeStats()));
+		assertEquals(2, DbMonitor.evict(false));
+		assertFalse(isOpen(a));
+		assertFalse(isOpen(b));
+		assertTrue(isOpen(c));
+		assertTrue(isOpen(d));
+		assertFalse(DbMonitor.isOverHighWater(DbMonitor.getRuntimeStats()));
+	}
+
+	/**
+	 * usage at the high-water mark does not evict; temp storage above its limit does
+	 */
+	@Test
+	public void testEvictionThresholds() {
+		var a = openDb("threshold_a", 300, 60_000, 0);
+		var b = openDb("threshold_b", 300, 120_000, 0);
+
+		DbMonitor.MAX_MEMORY = 600;
+		assertFalse(DbMonitor.isOverHighWater(DbMonitor.getRuntimeStats()));
+
+		a.dbStats.tempStorage = DbMonitor.MAX_TEMP_STORAGE + 1;
+		assertTrue(DbMonitor.isOverHighWater(DbMonitor.getRuntimeStats()));
+		assertEquals(2, DbMonitor.evict(false));		// b goes first by score, but only evicting a frees the temp storage
+		assertFalse(isOpen(a));
+		assertFalse(isOpen(b));
+		assertFalse(DbMonitor.isOverHighWater(DbMonitor.getRuntimeStats()));
+	}
+
+	private static DbAdapter.EmbeddedDbInstance openDb(String name, long memory, long idle, long rebuildCost) {
+		var dbAdapter = new DuckDbAdapter(new File(System.getProperty("java.io.tmpdir"), name + ".duckdb"));
+		var db = (DbAdapter.EmbeddedDbInstance) dbAdapter.getDbInstance();
+		db.dbStats = new DbAdapter.DbStats();
+		db.dbStats.memory = memory;
+		db.dbStats.totalRows = 1;
+		db.lastAccessed = System.currentTimeMillis() - idle;
+		db.rebuildCost = rebuildCost;
+		return db;
+	}
+
+	private static boolean isOpen(DbAdapter.EmbeddedDbInstance db) {
+		return DbMonitor.getDbInstances().containsKey(db.getDbFile().getPath());
+	}
+}
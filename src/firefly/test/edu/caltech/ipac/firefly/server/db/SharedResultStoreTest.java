@@ -0,0 +1,60 @@
+/*
+ * License information at https://github.com/Caltech-IPAC/firefly/blob/master/License.txt
+ */
+package edu.caltech.ipac.firefly.server.db;
+
+import edu.caltech.ipac.firefly.ConfigTest;
+import edu.caltech.ipac.firefly.data.TableServerRequest;
+import edu.caltech.ipac.table.DataGroup;
+import edu.caltech.ipac.table.DataType;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SharedResultStoreTest extends ConfigTest {
+
+	@Before
+	public void setUp() {
+		setupServerContext(null);
+	}
+
+	/**
+	 * after a restart, the links of existing databases are known again, so their shared files are not removed
+	 */
+	@Test
+	public void testLinksSurviveRestart() throws Exception {
+		File tmp = new File(System.getProperty("java.io.tmpdir"));
+		DataGroup data = new DataGroup("restart", new DataType[] {new DataType("id", Integer.class)});
+		for (int i = 0; i < 10; i++) data.add(new Object[] {i});
+
+		TableServerRequest req = new TableServerRequest("shared_restart_test");
+		req.setParam("target", "m31_" + System.currentTimeMillis());
+		String key = SharedResultStore.makeKey(req, List.of("target"));
+
+		var first = new DuckDbAdapter(ext -> new File(tmp, "restart_1_%d.%s".formatted(System.currentTimeMillis(), ext)));
+		first.initDbFile();
+		first.ingestData(() -> data, first.getDataTable());
+		SharedResultStore.save(key, first);
+		first.close(true);
+
+		var second = new DuckDbAdapter(ext -> new File(tmp, "restart_2_%d.%s".formatted(System.currentTimeMillis(), ext)));
+		assertTrue(SharedResultStore.restore(key, second));
+		File dir = SharedResultStore.getLinked(second.getDbFile());
+		assertNotNull(dir);
+
+		SharedResultStore.forget();
+		assertEquals(dir, SharedResultStore.getLinked(second.getDbFile()));
+		SharedResultStore.clear();			// an entry in use is not removed
+		assertTrue(dir.exists());
+		assertEquals(data.size(), second.execQuery("select * from " + second.getDataTable(), second.getDataTable()).size());
+
+		second.close(true);
+		assertNull(SharedResultStore.getLinked(second.getDbFile()));
+		SharedResultStore.clear();
+		assertFalse(dir.exists());
+	}
+}
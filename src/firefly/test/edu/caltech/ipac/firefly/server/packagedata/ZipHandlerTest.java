@@ -0,0 +1,83 @@
+/*
+ * License information at https://github.com/Caltech-IPAC/firefly/blob/master/License.txt
+ */
+
+package edu.caltech.ipac.firefly.server.packagedata;
+
+import edu.caltech.ipac.firefly.ConfigTest;
+import edu.caltech.ipac.firefly.data.FileInfo;
+import edu.caltech.ipac.firefly.server.ServerContext;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+public class ZipHandlerTest extends ConfigTest {
+
+    @Before
+    public void setUp() {
+        setupServerContext(null);
+    }
+
+    @Test
+    public void testPreparedEntries() throws Exception {
+        File dir = Files.createTempDirectory("zip-handler").toFile();
+        byte[] text = "some text, some text, some text".getBytes();
+        byte[] fits = new byte[3_000_000];       // larger than the in memory limit
+        for (int i = 0; i < fits.length; i++) fits[i] = (byte) (i % 251);
+        byte[] png = new byte[5000];
+        new Random(1).nextBytes(png);
+        Files.write(new File(dir, "a.txt").toPath(), text);
+        Files.write(new File(dir, "c.png").toPath(), png);
+        Files.write(new File(dir, "d.fits").toPath(), fits);
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(new File(dir, "b.fits.gz")))) {
+            out.write(fits);
+        }
+
+        ZipHandler zipHandler = new ZipHandler(dir);
+        File zipFile = new File(dir, "out.zip");
+        try (ZipOutputStream zout = new ZipOutputStream(new FileOutputStream(zipFile))) {
+            for (String name : new String[] {"a.txt", "b.fits.gz", "c.png", "a.txt"}) {
+                ZipHandler.PreparedEntry entry = zipHandler.prepareZipEntry(new FileInfo(name, name, 0));
+                zipHandler.writeZipEntry(zout, entry);
+            }
+
+            // a large plain local file is streamed from where it is, not copied to a temp file
+            int tmpCnt = countTempFiles();
+            ZipHandler.PreparedEntry entry = zipHandler.prepareZipEntry(new FileInfo("d.fits", "d.fits", 0));
+            Assert.assertEquals(tmpCnt, countTempFiles());
+            Assert.assertEquals(fits.length, zipHandler.writeZipEntry(zout, entry));
+            try {
+                zipHandler.prepareZipEntry(new FileInfo("missing.txt", "missing.txt", 0));
+                Assert.fail("missing file should fail");
+            } catch (Exception e) {
+                Assert.assertEquals("missing.txt", e.getMessage());
+            }
+        }
+
+        try (ZipFile zf = new ZipFile(zipFile)) {
+            Assert.assertArrayEquals(text, zf.getInputStream(zf.getEntry("a.txt")).readAllBytes());
+            Assert.assertArrayEquals(text, zf.getInputStream(zf.getEntry("a-1.txt")).readAllBytes());
+            Assert.assertArrayEquals(fits, zf.getInputStream(zf.getEntry("b.fits")).readAllBytes());   // uncompressed
+            ZipEntry pngEntry = zf.getEntry("c.png");
+            Assert.assertEquals(ZipEntry.STORED, pngEntry.getMethod());
+            Assert.assertArrayEquals(png, zf.getInputStream(pngEntry).readAllBytes());
+            Assert.assertArrayEquals(fits, zf.getInputStream(zf.getEntry("d.fits")).readAllBytes());
+        }
+        Assert.assertTrue(new File(dir, "d.fits").exists());
+    }
+
+    private static int countTempFiles() {
+        String[] names = ServerContext.getTempWorkDir().list((d, name) -> name.startsWith("package-"));
+        return names == null ? 0 : names.length;
+    }
+}
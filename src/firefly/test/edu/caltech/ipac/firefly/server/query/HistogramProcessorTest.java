@@ -1,13 +1,17 @@
 package edu.caltech.ipac.firefly.server.query;
 
 import edu.caltech.ipac.firefly.ConfigTest;
+import edu.caltech.ipac.firefly.server.db.DbMonitor;
+import edu.caltech.ipac.firefly.server.db.DuckDbAdapter;
 import edu.caltech.ipac.table.DataGroup;
 import edu.caltech.ipac.table.DataObject;
 import edu.caltech.ipac.table.DataType;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.File;
 import java.util.Arrays;
+import java.util.Random;
 
 /**
  * Created by zhang on 10/29/15.
@@ -377,4 +381,66 @@ public class HistogramProcessorTest extends ConfigTest {
 
     }
 
+    /**
+     * histogram computed inside DuckDB should be the same as the one computed from the column data in memory
+     */
+    @Test
+    public void testHistogramFromDb() throws Exception {
+        setupServerContext(null);
+
+        // fixture table with a few nulls and NaNs, which both algorithms should ignore
+        DataType val = new DataType("val", Double.class);
+        DataGroup data = new DataGroup("fixture", new DataType[]{val});
+        Random rand = new Random(7);
+        double[] colData = new double[2000];
+        int n = 0;
+        for (int i = 0; i < 2100; i++) {
+            DataObject row = new DataObject(data);
+            if (i % 50 == 0) {
+                row.setDataElement(val, i % 100 == 0 ? null : Double.NaN);
+            } else {
+                double v = i % 7 == 0 ? 12.0 : rand.nextGaussian() * 3;     // repeated values, including the max
+                row.setDataElement(val, v);
+                colData[n++] = v;
+            }
+            data.add(row);
+        }
+        double[] values = Arrays.copyOf(colData, n);
+
+        DuckDbAdapter dbAdapter = new DuckDbAdapter(ext -> new File(System.getProperty("java.io.tmpdir"), "hist_%d.%s".formatted(System.currentTimeMillis(), ext)));
+        try {
+            dbAdapter.initDbFile();
+            dbAdapter.ingestData(() -> data, dbAdapter.getDataTable());
+
+            for (int nBins : new int[]{1, 6, 50}) {
+                HistogramProcessor hp = new HistogramProcessor();
+                hp.setBinNumber(nBins);
+                hp.columnName = "val";
+                HistogramProcessor fromDb = new HistogramProcessor();
+                fromDb.setBinNumber(nBins);
+                fromDb.columnName = "val";
+                compareHistograms(hp.createHistogramTable(values.clone()), fromDb.createHistogramFromTable(dbAdapter.getDataTable(), dbAdapter));
+            }
+
+            // variable bin size(Bayesian Blocks)
+            HistogramProcessor hp = new HistogramProcessor();
+            hp.columnName = "val";
+            HistogramProcessor fromDb = new HistogramProcessor();
+            fromDb.columnName = "val";
+            compareHistograms(hp.createHistogramTable(values.clone()), fromDb.createHistogramFromTable(dbAdapter.getDataTable(), dbAdapter));
+        } finally {
+            dbAdapter.close(true);
+            DbMonitor.cleanup(true, true);
+        }
+    }
+
+    private void compareHistograms(DataGroup expected, DataGroup calculated) {
+        Assert.assertEquals(expected.size(), calculated.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(((Number) expected.getData("numInBin", i)).longValue(), ((Number) calculated.getData("numInBin", i)).longValue());
+            Assert.assertEquals((Double) expected.getData("binMin", i), (Double) calculated.getData("binMin", i), 1e-10);
+            Assert.assertEquals((Double) expected.getData("binMax", i), (Double) calculated.getData("binMax", i), 1e-10);
+        }
+    }
+
 }
@@ -21,6 +21,7 @@ import edu.caltech.ipac.table.VotableTest;
 import edu.caltech.ipac.table.io.FITSTableReader;
 import edu.caltech.ipac.table.io.IpacTableReader;
 import edu.caltech.ipac.table.io.IpacTableWriter;
+import edu.caltech.ipac.table.io.TableParseHandler;
 import edu.caltech.ipac.table.io.VoTableReader;
 import nom.tam.fits.FitsException;
 import org.apache.logging.log4j.Level;
@@ -35,6 +36,7 @@ import java.lang.management.MemoryPoolMXBean;
 import java.lang.management.MemoryUsage;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 import static edu.caltech.ipac.firefly.TestUtil.getDataFile;
 import static edu.caltech.ipac.firefly.TestUtil.logMemUsage;
@@ -104,6 +106,28 @@ public class DataGroupReadTest {
         Assert.assertEquals("cell (base_GaussianCentroid_x, 764)", 850.043863, getDouble(data.get(764).getDataElement("base_GaussianCentroid_x")), 0.000001);       // last row
     }
 
+    @Test
+    public void fitsTableStreamed() throws IOException, FitsException {
+        DataGroup expected = FITSTableReader.convertFitsToDataGroup(fitsTable.getPath(), null, FITSTableReader.DEFAULT, 0);
+        var handler = new TableParseHandler.Memory(false, false);
+        Assert.assertTrue(FITSTableReader.parseTable(handler, fitsTable.getPath(), null, 0));
+        DataGroup data = handler.getTable(0);
+        Assert.assertEquals("Number of rows", expected.size(), data.size());
+        Assert.assertEquals("Number of columns", expected.getDataDefinitions().length, data.getDataDefinitions().length);
+        for (DataType dt : expected.getDataDefinitions()) {
+            Assert.assertEquals("column type " + dt.getKeyName(), dt.getDataType(), data.getDataDefintion(dt.getKeyName()).getDataType());
+            for (int r = 0; r < expected.size(); r++) {
+                Object ev = expected.get(r).getDataElement(dt.getKeyName());
+                Object v = data.get(r).getDataElement(dt.getKeyName());
+                if (ev != null && ev.getClass().isArray()) {
+                    Assert.assertTrue("cell (%s, %d)".formatted(dt.getKeyName(), r), Objects.deepEquals(ev, v));
+                } else {
+                    Assert.assertEquals("cell (%s, %d)".formatted(dt.getKeyName(), r), ev, v);
+                }
+            }
+        }
+    }
+
     @Test
     public void cloneWithoutData() throws IOException, FitsException {
         DataGroup data = IpacTableReader.read(ipacTable);
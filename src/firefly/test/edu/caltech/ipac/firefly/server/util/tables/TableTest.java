@@ -11,18 +11,26 @@ import edu.caltech.ipac.firefly.server.db.EmbeddedDbUtil;
 import edu.caltech.ipac.firefly.server.query.DataAccessException;
 import edu.caltech.ipac.firefly.server.query.EmbeddedDbProcessor;
 import edu.caltech.ipac.table.DataGroup;
+import edu.caltech.ipac.table.DataGroupPart;
 import edu.caltech.ipac.table.DataType;
 import edu.caltech.ipac.table.JsonTableUtil;
+import edu.caltech.ipac.table.PrimitiveList;
 import edu.caltech.ipac.table.io.IpacTableReader;
 import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
+import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
 
 import static edu.caltech.ipac.table.JsonTableUtil.getPathValue;
 import static org.junit.Assert.assertEquals;
@@ -38,6 +46,56 @@ public class TableTest extends ConfigTest {
         setupServerContext(null);
     }
 
+    @Test
+    public void testColumnData() {
+        DataGroup dg = new DataGroup("test", new DataType[]{new DataType("d", Double.class), new DataType("s", String.class)});
+        for (int i = 0; i < 1000; i++) {
+            dg.add(new Object[]{i % 7 == 0 ? null : i * 1.5, i % 5 == 0 ? null : "v" + (i % 3)});
+        }
+        assertEquals(Double.NaN, dg.getDouble("d", 0), 0);
+        assertEquals(1.5, dg.getDouble("d", 1), 0);
+        Assert.assertTrue(dg.isNull("s", 0));
+        assertEquals("v1", dg.getData("s", 1));
+
+        // repeating strings are dictionary-encoded
+        PrimitiveList.Strings strs = (PrimitiveList.Strings) dg.getColumnData("s");
+        Assert.assertTrue(strs.isDictionaryEncoded());
+
+        // mostly unique strings fallback to plain values
+        for (int i = 0; i < 1000; i++) {
+            dg.add(new Object[]{null, "u" + i});
+        }
+        Assert.assertFalse(strs.isDictionaryEncoded());
+        assertEquals(2000, dg.size());
+        assertEquals("v2", dg.getData("s", 2));
+        assertEquals("u999", dg.getData("s", 1999));
+        Assert.assertTrue(dg.isNull("s", 5));
+
+        // the list is usable again after clear
+        strs.clear();
+        assertEquals(0, strs.size());
+        Assert.assertTrue(strs.isDictionaryEncoded());
+        strs.add("a");
+        strs.add(null);
+        assertEquals(2, strs.size());
+        assertEquals("a", strs.get(0));
+        Assert.assertTrue(strs.isNull(1));
+    }
+
+    @Test
+    public void testStreamingJson() throws IOException {
+        DataGroup dg = makeMixedTable(1000);
+        DataGroupPart page = new DataGroupPart(dg, 0, dg.size());
+        TableServerRequest treq = new TableServerRequest("test");
+        treq.setPageSize(1000);
+
+        String expected = JsonTableUtil.toJsonTableModel(page, treq).toJSONString();
+        StringWriter out = new StringWriter();
+        JsonTableUtil.writeJsonTableModel(out, page, treq);
+
+        assertEquals(JSONValue.parse(expected), JSONValue.parse(out.toString()));
+    }
+
     @Test
     public void testFormat() {
         DataType dt = new DataType("aString", String.class);
@@ -231,4 +289,49 @@ public class TableTest extends ConfigTest {
 
     }
 
+    @Category({TestCategory.Perf.class})
+    @Test
+    public void testStreamingJsonPerf() throws IOException {
+        int rows = 100000;
+        DataGroupPart page = new DataGroupPart(makeMixedTable(rows), 0, rows);
+        TableServerRequest treq = new TableServerRequest("test");
+        treq.setPageSize(rows);
+
+        for (int i = 0; i < 3; i++) {       // first 2 rounds are warm up
+            Runtime.getRuntime().gc();
+            long start = System.currentTimeMillis();
+            int len = JsonTableUtil.toJsonTableModel(page, treq).toJSONString().length();
+            System.out.printf("toJsonTableModel: %d chars in %d msecs %n", len, System.currentTimeMillis() - start);
+
+            Runtime.getRuntime().gc();
+            start = System.currentTimeMillis();
+            Writer out = new BufferedWriter(new OutputStreamWriter(OutputStream.nullOutputStream()));
+            JsonTableUtil.writeJsonTableModel(out, page, treq);
+            System.out.printf("writeJsonTableModel: %d msecs %n", System.currentTimeMillis() - start);
+        }
+    }
+
+    private static DataGroup makeMixedTable(int rows) {
+        DataGroup dg = new DataGroup("mixed", new DataType[]{
+                new DataType("d", Double.class),
+                new DataType("f", Float.class),
+                new DataType("l", Long.class),
+                new DataType("i", Integer.class),
+                new DataType("b", Boolean.class),
+                new DataType("s", String.class)
+        });
+        for (int r = 0; r < rows; r++) {
+            boolean isNull = r % 11 == 0;
+            dg.add(new Object[]{
+                    r % 13 == 0 ? Double.NaN : r * 1.1e-3,
+                    isNull ? null : r * 0.5f,
+                    isNull ? null : r * 1000000L,
+                    r,
+                    r % 2 == 0,
+                    isNull ? null : "row \"" + r + "\"\t" + (r % 5)
+            });
+        }
+        return dg;
+    }
+
 }
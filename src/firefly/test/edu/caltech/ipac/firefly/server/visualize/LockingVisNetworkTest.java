@@ -0,0 +1,73 @@
+/*
+ * License information at https://github.com/Caltech-IPAC/firefly/blob/master/License.txt
+ */
+
+package edu.caltech.ipac.firefly.server.visualize;
+
+import edu.caltech.ipac.firefly.ConfigTest;
+import edu.caltech.ipac.firefly.data.FileInfo;
+import edu.caltech.ipac.util.download.FailedRequestException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LockingVisNetworkTest extends ConfigTest {
+
+    @Test
+    public void testSameRequestRunsOnce() throws Exception {
+        AtomicInteger calls= new AtomicInteger();
+        FileInfo result= new FileInfo(200);
+        LockingVisNetwork.ServiceCaller caller= (p, f) -> {
+            calls.incrementAndGet();
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException ignore) {}
+            return result;
+        };
+        ExecutorService exe= Executors.newFixedThreadPool(8);
+        List<Future<FileInfo>> futures= new ArrayList<>();
+        for (int i= 0; i<8; i++) futures.add(exe.submit(() -> LockingVisNetwork.retrieve(caller, "single-flight")));
+        for (Future<FileInfo> f : futures) Assert.assertSame(result, f.get());
+        exe.shutdown();
+        Assert.assertEquals(1, calls.get());
+
+        LockingVisNetwork.retrieve(caller, "single-flight");     // done, so it runs again
+        Assert.assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void testFailureIsRemembered() {
+        AtomicInteger calls= new AtomicInteger();
+        LockingVisNetwork.ServiceCaller notFound= (p, f) -> {
+            calls.incrementAndGet();
+            throw new FailedRequestException("not found", "", 404);
+        };
+        for (int i= 0; i<3; i++) {
+            try {
+                LockingVisNetwork.retrieve(notFound, "not-found");
+                Assert.fail("retrieve should fail");
+            } catch (FailedRequestException e) {
+                Assert.assertEquals(404, e.getResponseCode());
+            }
+        }
+        Assert.assertEquals(1, calls.get());
+
+        LockingVisNetwork.ServiceCaller forbidden= (p, f) -> {
+            calls.incrementAndGet();
+            throw new FailedRequestException("forbidden", "", 403);
+        };
+        for (int i= 0; i<2; i++) {
+            try {
+                LockingVisNetwork.retrieve(forbidden, "forbidden");
+                Assert.fail("retrieve should fail");
+            } catch (FailedRequestException ignore) {}
+        }
+        Assert.assertEquals(3, calls.get());
+    }
+}
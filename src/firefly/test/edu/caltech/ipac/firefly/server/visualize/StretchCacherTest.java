@@ -0,0 +1,81 @@
+/*
+ * License information at https://github.com/Caltech-IPAC/firefly/blob/master/License.txt
+ */
+
+package edu.caltech.ipac.firefly.server.visualize;
+
+import edu.caltech.ipac.firefly.ConfigTest;
+import edu.caltech.ipac.firefly.server.Counters;
+import edu.caltech.ipac.firefly.server.visualize.DirectStretchUtils.StretchDataInfo;
+import edu.caltech.ipac.firefly.visualize.WebPlotRequest;
+import edu.caltech.ipac.util.cache.CacheKey;
+import edu.caltech.ipac.util.cache.StringKey;
+import edu.caltech.ipac.visualize.plot.RangeValues;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static edu.caltech.ipac.firefly.server.Counters.Category.Visualization;
+
+public class StretchCacherTest extends ConfigTest {
+
+    @Before
+    public void setUp() {
+        setupServerContext(null);
+    }
+
+    @Test
+    public void testSameStretchRunsOnce() throws Exception {
+        Counters counters= Counters.getInstance();
+        long hits= counters.getCount(Visualization, StretchCacher.HIT);
+        long shared= counters.getCount(Visualization, StretchCacher.SHARED);
+        long misses= counters.getCount(Visualization, StretchCacher.MISS);
+
+        AtomicInteger calls= new AtomicInteger();
+        StretchDataInfo result= new StretchDataInfo(new byte[100], null, null, new RangeValues[] {new RangeValues()});
+        StretchCacher.StretchMaker maker= () -> {
+            calls.incrementAndGet();
+            Thread.sleep(500);
+            return result;
+        };
+        CacheKey key= new StringKey("stretch-test-" + System.currentTimeMillis());
+        int cnt= 8;
+        ExecutorService exe= Executors.newFixedThreadPool(cnt);
+        List<Future<StretchDataInfo>> futures= new ArrayList<>();
+        for (int i= 0; i<cnt; i++) futures.add(exe.submit(() -> StretchCacher.getStretchData(key, maker)));
+        for (Future<StretchDataInfo> f : futures) Assert.assertSame(result, f.get());
+        exe.shutdown();
+
+        Assert.assertEquals(1, calls.get());
+        Assert.assertEquals(misses+1, counters.getCount(Visualization, StretchCacher.MISS));
+        Assert.assertEquals(cnt-1, counters.getCount(Visualization, StretchCacher.SHARED) - shared +
+                                   counters.getCount(Visualization, StretchCacher.HIT) - hits);
+
+        long hitsBefore= counters.getCount(Visualization, StretchCacher.HIT);
+        Assert.assertSame(result, StretchCacher.getStretchData(key, maker));      // done, so it comes from the cache
+        Assert.assertEquals(1, calls.get());
+        Assert.assertEquals(hitsBefore+1, counters.getCount(Visualization, StretchCacher.HIT));
+    }
+
+    @Test
+    public void testPipelineDesc() {
+        WebPlotRequest plain= WebPlotRequest.makeFilePlotRequest("/tmp/test.fits", 1);
+        WebPlotRequest rotated= WebPlotRequest.makeFilePlotRequest("/tmp/test.fits", 1);
+        rotated.setRotate(true);
+        rotated.setRotationAngle(30);
+        WebPlotRequest flipped= WebPlotRequest.makeFilePlotRequest("/tmp/test.fits", 1);
+        flipped.setFlipY(true);
+
+        Assert.assertEquals("", WebPlotPipeline.getPipelineDesc(plain));
+        Assert.assertNotEquals(WebPlotPipeline.getPipelineDesc(plain), WebPlotPipeline.getPipelineDesc(rotated));
+        Assert.assertNotEquals(WebPlotPipeline.getPipelineDesc(plain), WebPlotPipeline.getPipelineDesc(flipped));
+        Assert.assertNotEquals(WebPlotPipeline.getPipelineDesc(rotated), WebPlotPipeline.getPipelineDesc(flipped));
+    }
+}
@@ -10,9 +10,13 @@ import edu.caltech.ipac.firefly.data.SortInfo;
 import edu.caltech.ipac.firefly.data.TableServerRequest;
 import edu.caltech.ipac.firefly.server.db.DbAdapter;
 import edu.caltech.ipac.firefly.server.db.DbMonitor;
+import edu.caltech.ipac.firefly.server.db.DuckDbAdapter;
 import edu.caltech.ipac.firefly.server.db.DuckDbReadable;
+import edu.caltech.ipac.firefly.server.db.EmbeddedDbUtil;
 import edu.caltech.ipac.firefly.server.db.H2DbAdapter;
 import edu.caltech.ipac.firefly.server.db.HsqlDbAdapter;
+import edu.caltech.ipac.firefly.server.db.SharedResultStore;
+import edu.caltech.ipac.firefly.server.persistence.QueryByConeSearchURL;
 import edu.caltech.ipac.firefly.server.query.DataAccessException;
 import edu.caltech.ipac.firefly.server.query.DecimationProcessor;
 import edu.caltech.ipac.firefly.server.query.EmbeddedDbProcessor;
@@ -22,6 +26,7 @@ import edu.caltech.ipac.firefly.server.query.tables.IpacTableFromSource;
 import edu.caltech.ipac.firefly.server.util.Logger;
 import edu.caltech.ipac.firefly.util.FileLoader;
 import edu.caltech.ipac.table.io.DsvTableIO;
+import edu.caltech.ipac.table.io.IpacTableReader;
 import edu.caltech.ipac.util.decimate.DecimateKey;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.logging.log4j.Level;
@@ -30,6 +35,8 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.FileWriter;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -39,6 +46,7 @@ import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.function.LongFunction;
 import java.util.function.Supplier;
@@ -47,6 +55,7 @@ import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static edu.caltech.ipac.firefly.data.TableServerRequest.FF_SESSION_ID;
 import static edu.caltech.ipac.firefly.data.TableServerRequest.TBL_FILE_TYPE;
 import static edu.caltech.ipac.firefly.server.db.DuckDbAdapter.*;
 import static edu.caltech.ipac.firefly.server.util.QueryUtil.SEARCH_REQUEST;
@@ -83,6 +92,138 @@ public class DuckDbAdapterTest extends ConfigTest {
 		assertEquals(7, data.getDataDefinitions().length);
 	}
 
+	/**
+	 * total row count should be the same for every page, including one beyond the last row
+	 */
+	@Test
+	public void testPagedRowCount() throws DataAccessException {
+		File testFile = FileLoader.resolveFile(DuckDbAdapterTest.class, "/iris.parquet");
+
+		TableServerRequest req = new TableServerRequest(IpacTableFromSource.PROC_ID);
+		req.setParam(ServerParams.SOURCE, testFile.getAbsolutePath());
+		req.setFilters(List.of("\"sepal.width\" > 3"));
+		req.setPageSize(10);
+
+		for (int startIdx : new int[]{0, 60, 100, 0}) {
+			req.setStartIndex(startIdx);
+			var dgp = new SearchManager().getDataGroup(req);
+			assertEquals(67, dgp.getRowCount());
+			assertEquals(Math.max(0, Math.min(10, 67 - startIdx)), dgp.getData().size());
+			assertEquals(7, dgp.getData().getDataDefinitions().length);		// total rows column should not be returned
+		}
+	}
+
+	/**
+	 * IPAC table ingested in multiple batches should keep all rows in their original order
+	 */
+	@Test
+	public void testIpacIngest() throws Exception {
+		int rows = 70_000;		// more than one batch
+		File testFile = File.createTempFile("ingest-", ".tbl");
+		testFile.deleteOnExit();
+		try (PrintWriter writer = new PrintWriter(new FileWriter(testFile))) {
+			writer.println("|  id    |  val    |  desc  |");
+			writer.println("|  int   |  double |  char  |");
+			writer.println("|        |         |        |");
+			writer.println("|  null  |  null   |  null  |");
+			for (int i = 0; i < rows; i++) {
+				writer.printf("  %-6d  %-7s  %-6s %n", i, i % 10 == 0 ? "null" : String.valueOf(i / 10.0), "d" + i % 3);
+			}
+		}
+
+		TableServerRequest req = new TableServerRequest(IpacTableFromSource.PROC_ID);
+		req.setParam(ServerParams.SOURCE, testFile.getAbsolutePath());
+		req.setStartIndex(rows - 10);
+		req.setPageSize(10);
+		var dgp = new SearchManager().getDataGroup(req);
+		assertEquals(rows, dgp.getRowCount());
+		DataGroup page = dgp.getData();
+		for (int i = 0; i < page.size(); i++) {
+			int id = rows - 10 + i;
+			assertEquals(id, page.getData("id", i));
+			assertEquals(id % 10 == 0 ? null : id / 10.0, page.getData("val", i));
+			assertEquals("d" + id % 3, page.getData("desc", i));
+		}
+	}
+
+	/**
+	 * identical requests should link to the shared results, and changes to one database should not affect the others
+	 */
+	@Test
+	public void testSharedResultStore() throws Exception {
+		File tmp = new File(System.getProperty("java.io.tmpdir"));
+		DataGroup data = IpacTableReader.read(FileLoader.resolveFile(DuckDbAdapterTest.class, "/embedded_db_test.tbl"));
+
+		TableServerRequest req = new TableServerRequest("shared_test");
+		req.setParam("target", "m31 ");
+		String key = SharedResultStore.makeKey(req, List.of("target", "radius"));
+		req.setParam("target", "m31");
+		assertEquals(key, SharedResultStore.makeKey(req, List.of("radius", "target")));
+
+		var first = new DuckDbAdapter(ext -> new File(tmp, "shared_1_%d.%s".formatted(System.currentTimeMillis(), ext)));
+		first.initDbFile();
+		first.ingestData(() -> data, first.getDataTable());
+		SharedResultStore.save(key, first);
+
+		var second = new DuckDbAdapter(ext -> new File(tmp, "shared_2_%d.%s".formatted(System.currentTimeMillis(), ext)));
+		assertFalse(SharedResultStore.restore("not-" + key, second));
+		assertTrue(SharedResultStore.restore(key, second));
+		assertNotNull(SharedResultStore.getLinked(second.getDbFile()));
+		assertTrue(second.hasTable(second.getDataTable()));
+		assertEquals(data.size(), second.execQuery("select * from " + second.getDataTable(), second.getDataTable()).size());
+
+		// adding a column makes a copy of the data; the shared results are not changed
+		int cols = first.getHeaders(first.getDataTable()).getDataDefinitions().length;
+		EmbeddedDbUtil.addColumn(second, new DataType("added", Integer.class), "1");
+		assertNull(SharedResultStore.getLinked(second.getDbFile()));
+		assertEquals(cols + 1, second.getHeaders(second.getDataTable()).getDataDefinitions().length);
+		assertEquals(data.size(), second.execQuery("select * from " + second.getDataTable(), second.getDataTable()).size());
+
+		var third = new DuckDbAdapter(ext -> new File(tmp, "shared_3_%d.%s".formatted(System.currentTimeMillis(), ext)));
+		assertTrue(SharedResultStore.restore(key, third));
+		assertEquals(cols, third.getHeaders(third.getDataTable()).getDataDefinitions().length);
+
+		first.close(true);
+		second.close(true);
+		third.close(true);
+		assertNull(SharedResultStore.getLinked(third.getDbFile()));
+	}
+
+	/**
+	 * two sessions running the same cone search should fetch the data once, and both link to one stored result
+	 */
+	@Test
+	public void testSharedResultsAcrossSessions() throws Exception {
+		DataGroup data = IpacTableReader.read(FileLoader.resolveFile(DuckDbAdapterTest.class, "/embedded_db_test.tbl"));
+		AtomicInteger fetchCnt = new AtomicInteger();
+		EmbeddedDbProcessor proc = new QueryByConeSearchURL() {
+			public DataGroup fetchDataGroup(TableServerRequest req) {
+				fetchCnt.incrementAndGet();
+				return data;
+			}
+		};
+
+		long hits = SharedResultStore.getHits();
+		String accessUrl = "https://example.com/scs/" + System.currentTimeMillis();
+		List<File> dbFiles = new ArrayList<>();
+		for (String sessId : new String[]{"session-a", "session-b"}) {
+			TableServerRequest req = new TableServerRequest("ConeSearchByURL");
+			req.setParam(QueryByConeSearchURL.ACCESS_URL, accessUrl);
+			req.setParam(ServerParams.USER_TARGET_WORLD_PT, "10.68;41.27;EQ_J2000");
+			req.setParam(QueryByConeSearchURL.RADIUS_KEY, "0.1");
+			req.setParam(FF_SESSION_ID, sessId);
+			req.setPageSize(10);
+
+			var dgp = proc.getData(req);
+			assertEquals(data.size(), dgp.getRowCount());
+			dbFiles.add(proc.getDbAdapter(req).getDbFile());
+		}
+		assertEquals(1, fetchCnt.get());
+		assertEquals(hits + 1, SharedResultStore.getHits());
+		assertNotEquals(dbFiles.get(0), dbFiles.get(1));
+		assertNotNull(SharedResultStore.getLinked(dbFiles.get(1)));
+	}
+
 	/**
 	 * test DuckDB decimate_key() function
 	 */
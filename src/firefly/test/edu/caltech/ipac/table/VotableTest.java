@@ -6,6 +6,7 @@ package edu.caltech.ipac.table;
 import edu.caltech.ipac.firefly.ConfigTest;
 import edu.caltech.ipac.firefly.server.db.DbAdapter;
 import edu.caltech.ipac.firefly.util.FileLoader;
+import edu.caltech.ipac.table.io.TableParseHandler;
 import edu.caltech.ipac.table.io.VoTableReader;
 import org.json.simple.JSONObject;
 import org.junit.Assert;
@@ -14,6 +15,7 @@ import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.List;
 
 import static edu.caltech.ipac.table.JsonTableUtil.getMetaFromAllMeta;
@@ -49,6 +51,57 @@ public class VotableTest extends ConfigTest {
         }
     }
 
+    @Test
+    public void streamTest() {
+        try {
+            DataGroup expected = VoTableReader.voToDataGroups(testFile.getAbsolutePath())[0];
+            TableParseHandler.Memory handler = new TableParseHandler.Memory(false, false);
+            VoTableReader.parse(handler, testFile.getAbsolutePath());
+            DataGroup data = handler.getTable(0);
+            verifyTableData(data);
+            Assert.assertEquals(expected.size(), data.size());
+            Assert.assertEquals(expected.getDataDefinitions().length, data.getDataDefinitions().length);
+            Assert.assertEquals(expected.getTableMeta().getKeywords().size(), data.getTableMeta().getKeywords().size());
+            Assert.assertEquals(expected.getResourceInfos().size(), data.getResourceInfos().size());
+        } catch (Exception e) {
+            Assert.fail("VotableTest.streamTest failed with exception: " + e.getMessage());
+        }
+    }
+
+    @Test
+    public void streamSelectedTablesTest() {
+        File multi = null;
+        try {
+            multi = File.createTempFile("multi_votable", ".xml");
+            StringBuilder sb = new StringBuilder("<?xml version=\"1.0\"?>\n<VOTABLE version=\"1.4\"><RESOURCE>\n");
+            for (int t = 0; t < 3; t++) {
+                sb.append("<TABLE name=\"t").append(t).append("\">")
+                  .append("<FIELD name=\"id\" datatype=\"int\"/><FIELD name=\"val\" datatype=\"double\"/><DATA><TABLEDATA>\n");
+                for (int r = 0; r <= t * 5; r++) {
+                    sb.append("<TR><TD>").append(r).append("</TD><TD>").append(t + r / 10.0).append("</TD></TR>\n");
+                }
+                sb.append("</TABLEDATA></DATA></TABLE>\n");
+            }
+            sb.append("</RESOURCE></VOTABLE>\n");
+            Files.writeString(multi.toPath(), sb);
+
+            TableParseHandler.Memory handler = new TableParseHandler.Memory(false, false);
+            VoTableReader.parse(handler, multi.getAbsolutePath(), 0, 2);
+            DataGroup[] tables = handler.getAllTable();
+            Assert.assertEquals(2, tables.length);
+            Assert.assertEquals("t0", tables[0].getTitle());
+            Assert.assertEquals(1, tables[0].size());
+            Assert.assertEquals("t2", tables[1].getTitle());
+            Assert.assertEquals(11, tables[1].size());
+            Assert.assertEquals(10, tables[1].getData("id", 10));
+            Assert.assertEquals(3.0, (Double) tables[1].getData("val", 10), 1e-9);
+        } catch (Exception e) {
+            Assert.fail("VotableTest.streamSelectedTablesTest failed with exception: " + e.getMessage());
+        } finally {
+            if (multi != null) multi.delete();
+        }
+    }
+
     @Test
     public void dbIngestTest() {
         try {
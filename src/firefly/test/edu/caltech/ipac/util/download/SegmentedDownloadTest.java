@@ -0,0 +1,145 @@
+/*
+ * License information at https://github.com/Caltech-IPAC/firefly/blob/master/License.txt
+ */
+
+package edu.caltech.ipac.util.download;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import edu.caltech.ipac.firefly.ConfigTest;
+import edu.caltech.ipac.firefly.data.FileInfo;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static edu.caltech.ipac.util.FileUtil.MEG;
+
+/**
+ * Downloads from a local server that supports byte ranges.
+ */
+public class SegmentedDownloadTest extends ConfigTest {
+
+    private static final URLDownload.Options OPS= new URLDownload.Options(false,false,0,false,false,0,null);
+
+    private HttpServer server;
+    private byte[] data;
+    private final AtomicLong bytesSent= new AtomicLong();
+    private final AtomicInteger rangeRequests= new AtomicInteger();
+    private volatile int failRequest= -1;   // this range request is cut off half way
+    private volatile boolean ignoreRanges= false;
+    private File outFile;
+
+    @Before
+    public void setUp() throws IOException {
+        server= HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/data", this::handle);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        outFile= File.createTempFile("segmented-", ".fits");
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        outFile.delete();
+        new File(outFile.getPath()+".segments").delete();
+    }
+
+    @Test
+    public void testDownload() throws Exception {
+        makeData(SegmentedDownload.MIN_SIZE + 3*MEG);
+        FileInfo fi= URLDownload.getDataToFileInSegments(url(), outFile, null, null, OPS);
+        Assert.assertEquals(200, fi.getResponseCode());
+        Assert.assertTrue("more than one range requested", rangeRequests.get()>1);
+        Assert.assertArrayEquals(data, Files.readAllBytes(outFile.toPath()));
+        Assert.assertFalse(new File(outFile.getPath()+".segments").exists());
+    }
+
+    @Test
+    public void testResume() throws Exception {
+        makeData(SegmentedDownload.MIN_SIZE + 3*MEG);
+        failRequest= 2;
+        try {
+            URLDownload.getDataToFileInSegments(url(), outFile, null, null, OPS);
+            Assert.fail("download should have failed");
+        } catch (FailedRequestException ignore) {}
+        Assert.assertTrue(new File(outFile.getPath()+".segments").exists());
+
+        long sentBefore= bytesSent.get();
+        FileInfo fi= URLDownload.getDataToFileInSegments(url(), outFile, null, null, OPS);
+        Assert.assertEquals(200, fi.getResponseCode());
+        Assert.assertTrue("only the missing part is downloaded again", bytesSent.get()-sentBefore < data.length);
+        Assert.assertArrayEquals(data, Files.readAllBytes(outFile.toPath()));
+        Assert.assertFalse(new File(outFile.getPath()+".segments").exists());
+    }
+
+    @Test
+    public void testRangesIgnored() throws Exception {
+        makeData(SegmentedDownload.MIN_SIZE + 3*MEG);
+        ignoreRanges= true;
+        FileInfo fi= URLDownload.getDataToFileInSegments(url(), outFile, null, null, OPS);
+        Assert.assertEquals(200, fi.getResponseCode());
+        Assert.assertArrayEquals(data, Files.readAllBytes(outFile.toPath()));
+        Assert.assertFalse(new File(outFile.getPath()+".segments").exists());
+    }
+
+    @Test
+    public void testSmallFile() throws Exception {
+        makeData(100_000);
+        FileInfo fi= URLDownload.getDataToFileInSegments(url(), outFile, null, null, OPS);
+        Assert.assertEquals(200, fi.getResponseCode());
+        Assert.assertEquals(0, rangeRequests.get());
+        Assert.assertArrayEquals(data, Files.readAllBytes(outFile.toPath()));
+    }
+
+    private void makeData(long size) {
+        data= new byte[(int)size];
+        new Random(1).nextBytes(data);
+    }
+
+    private URL url() throws IOException {
+        return new URL("http://localhost:" + server.getAddress().getPort() + "/data");
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        ex.getResponseHeaders().set("Accept-Ranges", "bytes");
+        ex.getResponseHeaders().set("ETag", "\"v1\"");
+        ex.getResponseHeaders().set("Content-Type", "application/fits");
+        if (ex.getRequestMethod().equals("HEAD")) {
+            ex.getResponseHeaders().set("Content-Length", String.valueOf(data.length));
+            ex.sendResponseHeaders(200, -1);
+            ex.close();
+            return;
+        }
+        String range= ignoreRanges ? null : ex.getRequestHeaders().getFirst("Range");
+        int start= 0, end= data.length-1, code= 200;
+        boolean fail= false;
+        if (range!=null) {
+            String[] se= range.substring("bytes=".length()).split("-");
+            start= Integer.parseInt(se[0]);
+            end= Integer.parseInt(se[1]);
+            code= 206;
+            ex.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + data.length);
+            fail= rangeRequests.getAndIncrement()==failRequest;
+        }
+        int len= end-start+1;
+        int sendLen= fail ? len/2 : len;
+        ex.sendResponseHeaders(code, fail ? 0 : len);    // a failed range is chunked, so it can end early
+        try (OutputStream out= ex.getResponseBody()) {
+            out.write(data, start, sendLen);
+            bytesSent.addAndGet(sendLen);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package edu.caltech.ipac.visualize.plot;
 
+import edu.caltech.ipac.TestCategory;
 import edu.caltech.ipac.firefly.ConfigTest;
 import edu.caltech.ipac.firefly.util.FileLoader;
 import edu.caltech.ipac.visualize.plot.plotdata.FitsRead;
@@ -12,8 +13,10 @@ import org.junit.After;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.Before;
+import org.junit.experimental.categories.Category;
 
 import java.io.*;
+import java.util.Random;
 
 /**
  * Created by zhang on 10/4/16.
@@ -359,4 +362,53 @@ public class HistogramTest extends ConfigTest {
 
         saveToJson(hist, outJsonFile);
     }
+
+    @Test
+    /**
+     * A ramp large enough to be binned in parallel, with NaNs, and no DATAMIN/DATAMAX
+     */
+    public void testPercentiles() {
+        int n= 3_000_000;
+        float[] ramp= new float[n];
+        for (int i=0; i<n; i++) ramp[i]= (i%101==0) ? Float.NaN : i;
+        Histogram h= new Histogram(ramp, Double.NaN, Double.NaN);
+        Assert.assertEquals(1, h.getDNMin(), 0);
+        Assert.assertEquals(n-1, h.getDNMax(), 0);
+        double binSize= (n-1.0)/HISTSIZ2;
+        Assert.assertEquals(n*.50, h.get_pct(50, false), 2*binSize);
+        Assert.assertEquals(n*.99, h.get_pct(99, false), 2*binSize);
+    }
+
+    @Test
+    /**
+     * A narrow peak with a few far outliers, the peak must still be resolved
+     */
+    public void testNarrowRange() {
+        Random r= new Random(3);
+        float[] peak= new float[200_000];
+        for (int i=0; i<peak.length; i++) peak[i]= (i%10_000==0) ? 1e6f : (float)(100 + r.nextGaussian());
+        Histogram h= new Histogram(peak, Double.NaN, Double.NaN);
+        Assert.assertEquals(100, h.get_pct(50, false), .05);
+        Assert.assertEquals(101.645, h.get_pct(95, false), .1);
+        Assert.assertEquals(1e6, h.getDNMax(), 0);
+    }
+
+    /*
+     * 200M pixels, 1 cpu: 1000ms
+     */
+    @Category({TestCategory.Perf.class})
+    @Test
+    public void perfTestHistogram() {
+        int n= 200_000_000;
+        Random r= new Random(5);
+        float[] big= new float[n];
+        for (int i=0; i<n; i++) big[i]= (float)(r.nextGaussian()*10 + 100);
+
+        long start= System.currentTimeMillis();
+        Histogram full= new Histogram(big, Double.NaN, Double.NaN);
+        long fullTime= System.currentTimeMillis() - start;
+
+        LOG.info(String.format("Histogram of %,d pixels: %,dms, median %.4f", n, fullTime, full.get_pct(50, false)));
+        Assert.assertEquals(100, full.get_pct(50, false), 0.1);
+    }
 }
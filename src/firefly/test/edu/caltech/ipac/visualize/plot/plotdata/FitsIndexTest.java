@@ -0,0 +1,62 @@
+/*
+ * License information at https://github.com/Caltech-IPAC/firefly/blob/master/License.txt
+ */
+
+package edu.caltech.ipac.visualize.plot.plotdata;
+
+import nom.tam.fits.BasicHDU;
+import nom.tam.fits.Fits;
+import nom.tam.fits.ImageHDU;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.reflect.Array;
+
+public class FitsIndexTest {
+
+    @Test
+    public void testReadTileMatchesTiler() throws Exception {
+        int w= 17, h= 11, planes= 5;
+        short[][][] data= new short[planes][h][w];
+        for (int p= 0; p<planes; p++) {
+            for (int y= 0; y<h; y++) {
+                for (int x= 0; x<w; x++) data[p][y][x]= (short)(p*1000 + y*w + x - 50);
+            }
+        }
+        File f= File.createTempFile("fits-index-test", ".fits");
+        try {
+            try (Fits fits= new Fits()) {
+                fits.addHDU(Fits.makeHDU(new float[][] {{1,2},{3,4}}));
+                fits.addHDU(Fits.makeHDU(data));
+                fits.write(f);
+            }
+
+            FitsIndex index= FitsIndex.build(f);
+            Assert.assertNotNull(index);
+            Assert.assertEquals(2, index.getHduCount());
+            FitsIndex.HduEntry entry= index.getHdu(1);
+            Assert.assertTrue(entry.image());
+            Assert.assertEquals(16, entry.bitpix());
+            Assert.assertArrayEquals(new int[] {w,h,planes}, entry.naxes());
+
+            try (Fits fits= new Fits(f); FitsIndex.Reader reader= index.openReader(f)) {
+                BasicHDU<?>[] hdus= fits.read();
+                ImageHDU hdu= (ImageHDU)hdus[1];
+                for (Class<?> type : new Class<?>[] {Integer.TYPE, Float.TYPE, Double.TYPE}) {
+                    Object expected= FitsReadUtil.dataArrayFromFitsFile(hdu, 3, 2, 5, 4, 3, type);
+                    Object actual= reader.readTile(entry, 3, 2, 5, 4, 3, type);
+                    Assert.assertEquals(Array.getLength(expected), Array.getLength(actual));
+                    for (int i= 0; i<Array.getLength(expected); i++) {
+                        Assert.assertEquals(((Number)Array.get(expected,i)).doubleValue(),
+                                            ((Number)Array.get(actual,i)).doubleValue(), 0);
+                    }
+                }
+                float[] plane= (float[])reader.readTile(entry, 0, 0, w, h, planes-1, Float.TYPE);
+                Assert.assertEquals(data[planes-1][h-1][w-1], plane[plane.length-1], 0);
+            }
+        } finally {
+            f.delete();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * License information at https://github.com/Caltech-IPAC/firefly/blob/master/License.txt
+ */
+
+package edu.caltech.ipac.visualize.plot.plotdata;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.FloatBuffer;
+
+public class ImagePyramidTest {
+
+    @Test
+    public void testLevels() {
+        int w= 5, h= 3;
+        float[] data= new float[w*h];   // native orientation, line 0 is the bottom
+        for (int i= 0; i<data.length; i++) data[i]= i;
+        data[0]= Float.NaN;
+
+        ImagePyramid pyr= ImagePyramid.build(data, w, h, 1);
+        Assert.assertEquals(3, pyr.getLevelWidth(1));
+        Assert.assertEquals(2, pyr.getLevelHeight(1));
+
+        // first line of level 1 is the mean of the top two native lines (2 and 1)
+        FloatBuffer l1= pyr.getLevel(1);
+        Assert.assertEquals((10+11+5+6)/4f, l1.get(0), 0);
+        Assert.assertEquals((14+9)/2f, l1.get(2), 0);
+        // second line only has the bottom native line, the NaN is left out
+        Assert.assertEquals(1f, l1.get(3), 0);
+        Assert.assertEquals(4f, l1.get(5), 0);
+
+        Assert.assertEquals(3, pyr.getLevelCnt());
+        Assert.assertEquals(1, pyr.getLevelWidth(3)*pyr.getLevelHeight(3));
+    }
+
+    @Test
+    public void testWriteRead() throws Exception {
+        int w= 300, h= 200;
+        float[] data= new float[w*h];
+        for (int i= 0; i<data.length; i++) data[i]= (i*7) % 97;
+        ImagePyramid pyr= ImagePyramid.build(data, w, h, 16);
+
+        File f= File.createTempFile("pyramid-test", ".pyramid");
+        try {
+            pyr.write(f);
+            ImagePyramid readPyr= ImagePyramid.read(f, w, h);
+            Assert.assertNotNull(readPyr);
+            Assert.assertEquals(pyr.getLevelCnt(), readPyr.getLevelCnt());
+            for (int i= 1; i<=pyr.getLevelCnt(); i++) {
+                Assert.assertEquals(pyr.getLevel(i), readPyr.getLevel(i));
+            }
+            Assert.assertNull("a pyramid of a different size image should not be read", ImagePyramid.read(f, w+1, h));
+        } finally {
+            f.delete();
+        }
+    }
+}
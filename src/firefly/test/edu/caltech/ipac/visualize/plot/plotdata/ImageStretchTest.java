@@ -0,0 +1,40 @@
+/*
+ * License information at https://github.com/Caltech-IPAC/firefly/blob/master/License.txt
+ */
+
+package edu.caltech.ipac.visualize.plot.plotdata;
+
+import edu.caltech.ipac.visualize.plot.Histogram;
+import edu.caltech.ipac.visualize.plot.ImageHeader;
+import edu.caltech.ipac.visualize.plot.RangeValues;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ImageStretchTest {
+
+    @Test
+    public void testStretchNativeOrientation() {
+        int w= 37, h= 23;
+        float[] data= new float[w*h];
+        for (int i= 0; i<data.length; i++) data[i]= (i*13) % 101;
+
+        float[] flipped= new float[data.length];
+        for (int y= 0; y<h; y++) System.arraycopy(data, (h-1-y)*w, flipped, y*w, w);
+
+        ImageHeader iH= new ImageHeader();
+        iH.naxis1= w;
+        iH.naxis2= h;
+        iH.bscale= 1;
+        iH.bzero= 0;
+        iH.blank_value= Double.NaN;
+        Histogram hist= new Histogram(data, 0, 100);
+        RangeValues rv= new RangeValues();
+
+        // a tile from line 5 to 14, pixel 3 to 20; lines are counted from the top
+        byte[] expected= new byte[18*10];
+        byte[] actual= new byte[18*10];
+        ImageStretch.stretchPixels8Bit(rv, flipped, expected, iH, hist, 3, 20, 5, 14);
+        ImageStretch.stretchPixels8Bit(rv, data, actual, iH, hist, 3, 20, 5, 14, true);
+        Assert.assertArrayEquals("stretching native data with flipY should match stretching a flipped copy", expected, actual);
+    }
+}
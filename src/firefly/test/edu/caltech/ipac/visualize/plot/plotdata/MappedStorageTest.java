@@ -0,0 +1,88 @@
+/*
+ * License information at https://github.com/Caltech-IPAC/firefly/blob/master/License.txt
+ */
+
+package edu.caltech.ipac.visualize.plot.plotdata;
+
+import edu.caltech.ipac.visualize.plot.ImageHeader;
+import edu.caltech.ipac.visualize.plot.ImagePt;
+import edu.caltech.ipac.visualize.plot.RangeValues;
+import nom.tam.fits.BasicHDU;
+import nom.tam.fits.Fits;
+import nom.tam.fits.Header;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+
+import static edu.caltech.ipac.visualize.plot.RangeValues.*;
+
+public class MappedStorageTest {
+
+    @Test
+    public void testMappedMatchesHeap() throws Exception {
+        int w= 64, h= 48;
+        float[][] data= new float[h][w];
+        for (int y= 0; y<h; y++) {
+            for (int x= 0; x<w; x++) data[y][x]= (float)(Math.sin(x*.3)*100 + y*3);
+        }
+        data[5][7]= Float.NaN;
+
+        File f= File.createTempFile("mapped-storage-test", ".fits");
+        File storage= File.createTempFile("mapped-storage-test", ".f32");
+        try {
+            try (Fits fits= new Fits()) {
+                BasicHDU<?> hdu= Fits.makeHDU(data);
+                Header header= hdu.getHeader();
+                header.addValue("CTYPE1", "RA---TAN", null);
+                header.addValue("CTYPE2", "DEC--TAN", null);
+                header.addValue("CRVAL1", 10.0, null);
+                header.addValue("CRVAL2", 20.0, null);
+                header.addValue("CRPIX1", w/2.0, null);
+                header.addValue("CRPIX2", h/2.0, null);
+                header.addValue("CDELT1", -0.001, null);
+                header.addValue("CDELT2", 0.001, null);
+                fits.addHDU(hdu);
+                fits.write(f);
+            }
+            FitsRead heap;
+            FitsRead mapped;
+            try (Fits fits= new Fits(f)) { heap= FitsReadFactory.createFitsReadArray(fits)[0]; }
+            try (Fits fits= new Fits(f)) { mapped= FitsReadFactory.createFitsReadArray(fits)[0]; }
+            mapped.useMappedStorage(storage);
+            Assert.assertTrue(mapped.isMappedStorage());
+
+            for (int y= 0; y<h; y++) {
+                for (int x= 0; x<w; x++) {
+                    ImagePt pt= new ImagePt(x+.5, y+.5);
+                    Assert.assertEquals(heap.getFlux(pt), mapped.getFlux(pt), 0);
+                }
+            }
+
+            RangeValues[] rvAry= {
+                    new RangeValues(),
+                    new RangeValues(ZSCALE, 1, ZSCALE, 99, Double.NaN, 2, STRETCH_LINEAR, 25, 600, 120, (short)0, Double.NaN, 1),
+                    new RangeValues(SIGMA, -2, SIGMA, 10, Double.NaN, 2, STRETCH_ASINH, 25, 600, 120, (short)0, Double.NaN, 1),
+                    new RangeValues(PERCENTAGE, 1, PERCENTAGE, 99, Double.NaN, 2, STRETCH_LOG, 25, 600, 120, (short)0, Double.NaN, 1),
+            };
+            ImageHeader iH= new ImageHeader(heap.getHeader());
+            for (RangeValues rv : rvAry) {
+                byte[] expected= new byte[w*h];
+                byte[] actual= new byte[w*h];
+                ImageStretch.stretchPixels8Bit((RangeValues)rv.clone(), heap.getRawFloatBuffer(), expected, iH, heap.getHistogram(), 0, w-1, 0, h-1, true);
+                ImageStretch.stretchPixels8Bit((RangeValues)rv.clone(), mapped.getRawFloatBuffer(), actual, iH, mapped.getHistogram(), 0, w-1, 0, h-1, true);
+                Assert.assertArrayEquals(expected, actual);
+                Assert.assertArrayEquals(heap.getHistColors(heap.getHistogram(), rv), mapped.getHistColors(mapped.getHistogram(), rv));
+            }
+
+            // stretching did not copy the mapped data to the heap; once something asks for the array, the copy is counted
+            long dataSize= w*h*4L;
+            Assert.assertEquals(heap.getSizeOf() - dataSize, mapped.getSizeOf());
+            Assert.assertArrayEquals(heap.getRawFloatAry(), mapped.getRawFloatAry(), 0);
+            Assert.assertEquals(heap.getSizeOf(), mapped.getSizeOf());
+        } finally {
+            f.delete();
+            storage.delete();
+        }
+    }
+}
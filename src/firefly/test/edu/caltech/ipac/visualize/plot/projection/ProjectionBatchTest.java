@@ -0,0 +1,191 @@
+/*
+ * License information at https://github.com/Caltech-IPAC/firefly/blob/master/License.txt
+ */
+
+package edu.caltech.ipac.visualize.plot.projection;
+
+import edu.caltech.ipac.TestCategory;
+import edu.caltech.ipac.visualize.plot.CoordinateSys;
+import edu.caltech.ipac.visualize.plot.ProjectionPt;
+import edu.caltech.ipac.visualize.plot.WorldPt;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The batch methods of Projection must give the same results as the single point methods for every projection type.
+ */
+public class ProjectionBatchTest {
+
+    private static final int NAXIS = 2048;
+
+    @Test
+    public void testBatchMatchesSinglePoint() {
+        for (Projection proj : makeProjections()) {
+            int n= 30_000;    // over Projection.PARALLEL_MIN so the parallel methods use threads
+            double[] x= new double[n], y= new double[n];
+            double[] ra= new double[n], dec= new double[n];
+            Random r= new Random(7);
+            for (int i= 0; i<n; i++) {
+                x[i]= r.nextDouble()*NAXIS*1.2 - NAXIS*.1;   // some points are off the image
+                y[i]= r.nextDouble()*NAXIS*1.2 - NAXIS*.1;
+            }
+            proj.getWorldCoords(x, y, ra, dec);
+            double[] ra2= new double[n], dec2= new double[n];
+            proj.getWorldCoordsParallel(x, y, ra2, dec2);
+            Assert.assertArrayEquals(ra, ra2, 0);
+            Assert.assertArrayEquals(dec, dec2, 0);
+
+            double[] xOut= new double[n], yOut= new double[n];
+            proj.getImageCoords(ra, dec, xOut, yOut);
+            double[] xOut2= new double[n], yOut2= new double[n];
+            proj.getImageCoordsParallel(ra, dec, xOut2, yOut2);
+            Assert.assertArrayEquals(xOut, xOut2, 0);
+            Assert.assertArrayEquals(yOut, yOut2, 0);
+
+            String name= proj.getProjectionName();
+            for (int i= 0; i<n; i+=97) {
+                WorldPt wp= proj.getWorldCoordsSilent(x[i], y[i]);
+                assertSame(name, wp==null ? Double.NaN : wp.getLon(), ra[i]);
+                assertSame(name, wp==null ? Double.NaN : wp.getLat(), dec[i]);
+                if (wp==null) continue;
+                ProjectionPt pt= proj.getImageCoordsSilent(ra[i], dec[i]);
+                assertSame(name, pt==null ? Double.NaN : pt.getX(), xOut[i]);
+                assertSame(name, pt==null ? Double.NaN : pt.getY(), yOut[i]);
+            }
+        }
+    }
+
+    /*
+     * 1M points, 1 cpu, ms for single point calls / batch / parallel batch, image to world then world to image:
+     *    GNOMONIC      w: 227 / 138 / 142   i: 134 /  42 /  33
+     *    GNOMONIC CD   w: 177 / 133 / 133   i:  94 /  32 /  33
+     *    GNOMONIC SIP  w: 414 / 416 / 415   i: 330 / 319 / 317
+     *    ORTHOGRAPHIC  w: 115 / 100 / 102   i: 348 / 347 / 350
+     *    AITOFF        w:  86 /  88 /  87   i: 124 / 118 / 118
+     *    CAR           w: 175 / 176 / 179   i: 184 / 184 / 182
+     *    SFL           w: 518 / 130 / 233   i: 539 / 136 / 265
+     *    TPV           w: 575 / 498 / 570   i: 544 / 394 / 417
+     *    PLATE         w: 125 /  83 /  93   i: 310 / 117 / 132
+     * The other types are the same as the single point calls, parallel needs more than one cpu to show a gain.
+     */
+    @Category({TestCategory.Perf.class})
+    @Test
+    public void perfTestBatch() {
+        int n= 1_000_000;
+        double[] x= new double[n], y= new double[n];
+        double[] ra= new double[n], dec= new double[n];
+        Random r= new Random(11);
+        for (int i= 0; i<n; i++) {
+            x[i]= r.nextDouble()*NAXIS;
+            y[i]= r.nextDouble()*NAXIS;
+        }
+        for (Projection proj : makeProjections()) {
+            long start= System.currentTimeMillis();
+            for (int i= 0; i<n; i++) proj.getWorldCoordsSilent(x[i], y[i]);
+            long wSingle= System.currentTimeMillis() - start;
+            start= System.currentTimeMillis();
+            proj.getWorldCoords(x, y, ra, dec);
+            long wBatch= System.currentTimeMillis() - start;
+            start= System.currentTimeMillis();
+            proj.getWorldCoordsParallel(x, y, ra, dec);
+            long wParallel= System.currentTimeMillis() - start;
+
+            double[] xOut= new double[n], yOut= new double[n];
+            start= System.currentTimeMillis();
+            for (int i= 0; i<n; i++) proj.getImageCoordsSilent(ra[i], dec[i]);
+            long iSingle= System.currentTimeMillis() - start;
+            start= System.currentTimeMillis();
+            proj.getImageCoords(ra, dec, xOut, yOut);
+            long iBatch= System.currentTimeMillis() - start;
+            start= System.currentTimeMillis();
+            proj.getImageCoordsParallel(ra, dec, xOut, yOut);
+            long iParallel= System.currentTimeMillis() - start;
+
+            System.out.printf("%-14s w: %4d / %4d / %4d   i: %4d / %4d / %4d%n", proj.getProjectionName(),
+                    wSingle, wBatch, wParallel, iSingle, iBatch, iParallel);
+        }
+    }
+
+    private static void assertSame(String name, double expected, double actual) {
+        if (Double.isNaN(expected)) Assert.assertTrue(name, Double.isNaN(actual));
+        else Assert.assertEquals(name, expected, actual, 1E-9);
+    }
+
+    private static List<Projection> makeProjections() {
+        List<Projection> list= new ArrayList<>();
+        for (int type : new int[] {Projection.GNOMONIC, Projection.ORTHOGRAPHIC, Projection.NCP, Projection.ARC,
+                                   Projection.AITOFF, Projection.CAR, Projection.CEA, Projection.SFL, Projection.LINEAR}) {
+            ProjectionParams p= makeParams(type, type==Projection.AITOFF ? .2 : .0003);
+            list.add(new Projection(p, CoordinateSys.EQ_J2000));
+        }
+
+        ProjectionParams cd= makeParams(Projection.GNOMONIC, .0003);
+        double c= Math.cos(Math.toRadians(20)), s= Math.sin(Math.toRadians(20));
+        setCd(cd, -.0003*c, .0003*s, .0003*s, .0003*c);
+        list.add(new Projection(cd, CoordinateSys.EQ_J2000));
+
+        ProjectionParams sip= makeParams(Projection.GNOMONIC, .0003);
+        sip.map_distortion= true;
+        sip.a_order= sip.b_order= sip.ap_order= sip.bp_order= 2;
+        sip.a[2][0]= 1e-6;
+        sip.b[0][2]= -1e-6;
+        sip.ap[2][0]= -1e-6;
+        sip.bp[0][2]= 1e-6;
+        list.add(new Projection(sip, CoordinateSys.EQ_J2000));
+
+        ProjectionParams tpv= makeParams(Projection.TPV, .0003);
+        tpv.using_tpv= true;
+        tpv.pv1= new double[40];
+        tpv.pv2= new double[40];
+        tpv.pv1[1]= tpv.pv2[1]= 1;
+        tpv.pv1[4]= 1e-3;
+        tpv.pv2[6]= -1e-3;
+        setCd(tpv, -.0003, 0, 0, .0003);
+        list.add(new Projection(tpv, CoordinateSys.EQ_J2000));
+
+        ProjectionParams plate= makeParams(Projection.PLATE, .0003);
+        plate.plate_ra= Math.toRadians(150);
+        plate.plate_dec= Math.toRadians(2);
+        plate.x_pixel_size= plate.y_pixel_size= 15;
+        plate.plt_scale= 67.2;
+        plate.ppo_coeff= new double[] {0, 0, NAXIS/2.*15, 0, 0, NAXIS/2.*15};
+        plate.amd_x_coeff= new double[20];
+        plate.amd_y_coeff= new double[20];
+        plate.amd_x_coeff[0]= plate.amd_y_coeff[0]= 67.2;
+        list.add(new Projection(plate, CoordinateSys.EQ_J2000));
+        return list;
+    }
+
+    private static ProjectionParams makeParams(int maptype, double cdelt) {
+        ProjectionParams p= new ProjectionParams();
+        p.maptype= maptype;
+        p.naxis= 2;
+        p.naxis1= p.naxis2= NAXIS;
+        p.crpix1= p.crpix2= NAXIS/2.+.5;
+        p.crval1= maptype==Projection.AITOFF ? 0 : 150;
+        p.crval2= maptype==Projection.AITOFF ? 0 : 2;
+        p.cdelt1= -cdelt;
+        p.cdelt2= cdelt;
+        p.crota2= 10;
+        p.file_equinox= 2000;
+        return p;
+    }
+
+    private static void setCd(ProjectionParams p, double cd11, double cd12, double cd21, double cd22) {
+        p.using_cd= true;
+        p.cd1_1= cd11;
+        p.cd1_2= cd12;
+        p.cd2_1= cd21;
+        p.cd2_2= cd22;
+        double det= cd11*cd22 - cd12*cd21;
+        p.dc1_1= cd22/det;
+        p.dc1_2= -cd12/det;
+        p.dc2_1= -cd21/det;
+        p.dc2_2= cd11/det;
+    }
+}